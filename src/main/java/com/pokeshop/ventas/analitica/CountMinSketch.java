@@ -0,0 +1,52 @@
+package com.pokeshop.ventas.analitica;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Frecuencia aproximada por clave en memoria fija (profundidad x ancho contadores), sin importar
+ * cuántas claves distintas haya. Nunca subestima; sobreestima como mucho en total/ancho con
+ * alta probabilidad. Las actualizaciones son sumas atómicas, sin locks.
+ */
+public final class CountMinSketch {
+
+    private final int profundidad;
+    private final int mascaraAncho;
+    private final AtomicLongArray celdas;
+
+    public CountMinSketch(int profundidad, int ancho) {
+        if (Integer.bitCount(ancho) != 1) {
+            throw new IllegalArgumentException("El ancho debe ser potencia de 2, se recibió " + ancho);
+        }
+        this.profundidad = profundidad;
+        this.mascaraAncho = ancho - 1;
+        this.celdas = new AtomicLongArray(profundidad * ancho);
+    }
+
+    /** Suma la cantidad a la clave y devuelve la nueva frecuencia estimada. */
+    public long agregar(long clave, long cantidad) {
+        long hash = Hashing.mezclar(clave);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long minimo = Long.MAX_VALUE;
+        for (int fila = 0; fila < profundidad; fila++) {
+            minimo = Math.min(minimo, celdas.addAndGet(indice(fila, h1, h2), cantidad));
+        }
+        return minimo;
+    }
+
+    public long estimar(long clave) {
+        long hash = Hashing.mezclar(clave);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long minimo = Long.MAX_VALUE;
+        for (int fila = 0; fila < profundidad; fila++) {
+            minimo = Math.min(minimo, celdas.get(indice(fila, h1, h2)));
+        }
+        return minimo;
+    }
+
+    // Una función de hash por fila a partir de dos (h1 + fila * h2, Kirsch-Mitzenmacher)
+    private int indice(int fila, int h1, int h2) {
+        return fila * (mascaraAncho + 1) + ((h1 + fila * h2) & mascaraAncho);
+    }
+}
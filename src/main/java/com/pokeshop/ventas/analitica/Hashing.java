@@ -0,0 +1,17 @@
+package com.pokeshop.ventas.analitica;
+
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    // Finalizador de MurmurHash3 (fmix64): ids consecutivos quedan bien repartidos en los 64 bits
+    static long mezclar(long valor) {
+        valor ^= valor >>> 33;
+        valor *= 0xff51afd7ed558ccdL;
+        valor ^= valor >>> 33;
+        valor *= 0xc4ceb9fe1a85ec53L;
+        valor ^= valor >>> 33;
+        return valor;
+    }
+}
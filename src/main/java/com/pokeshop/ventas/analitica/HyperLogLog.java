@@ -0,0 +1,76 @@
+package com.pokeshop.ventas.analitica;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Cantidad aproximada de valores distintos con 2^precision registros (error típico 1.04/sqrt(2^precision)).
+ * Cada registro solo crece, así que se actualiza con un CAS que casi nunca reintenta.
+ */
+public final class HyperLogLog {
+
+    private final int precision;
+    private final AtomicIntegerArray registros;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("La precisión debe estar entre 4 y 16, se recibió " + precision);
+        }
+        this.precision = precision;
+        this.registros = new AtomicIntegerArray(1 << precision);
+    }
+
+    public void agregar(long valor) {
+        long hash = Hashing.mezclar(valor);
+        int indice = (int) (hash >>> (64 - precision));
+        // Posición del primer 1 en los bits restantes (el centinela acota el resultado)
+        int rango = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int actual;
+        while ((actual = registros.get(indice)) < rango) {
+            if (registros.compareAndSet(indice, actual, rango)) {
+                return;
+            }
+        }
+    }
+
+    public void limpiar() {
+        for (int i = 0; i < registros.length(); i++) {
+            registros.set(i, 0);
+        }
+    }
+
+    public int registros() {
+        return registros.length();
+    }
+
+    /** Deja en destino el máximo registro a registro (la unión de los conjuntos). */
+    public void fusionarEn(int[] destino) {
+        for (int i = 0; i < destino.length; i++) {
+            destino[i] = Math.max(destino[i], registros.get(i));
+        }
+    }
+
+    public long estimar() {
+        int[] copia = new int[registros.length()];
+        fusionarEn(copia);
+        return estimar(copia);
+    }
+
+    public static long estimar(int[] registros) {
+        int m = registros.length;
+        double suma = 0;
+        int vacios = 0;
+        for (int registro : registros) {
+            suma += 1.0 / (1L << registro);
+            if (registro == 0) {
+                vacios++;
+            }
+        }
+        double alfa = 0.7213 / (1 + 1.079 / m);
+        double estimado = alfa * m * m / suma;
+        // Con pocos valores el estimador se sesga: se usa conteo lineal sobre los registros vacíos
+        if (estimado <= 2.5 * m && vacios > 0) {
+            estimado = m * Math.log((double) m / vacios);
+        }
+        return Math.round(estimado);
+    }
+}
@@ -0,0 +1,53 @@
+package com.pokeshop.ventas.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Envuelve el DataSource en un DataSourceConLimite cuando ventas.bd.concurrencia.habilitada=true
+ * (por defecto, cuando se activan los hilos virtuales). El tope por defecto es el tamaño del pool
+ * de Hikari, así que nadie espera dentro de Hikari: la espera y el rechazo pasan acá, con su
+ * propio plazo y sus métricas (ventas.bd.concurrencia.en-uso, en-espera y rechazadas).
+ */
+@Configuration
+@ConditionalOnProperty(name = "ventas.bd.concurrencia.habilitada", havingValue = "true")
+public class ConcurrenciaBaseDatosConfig {
+
+    // static: un BeanPostProcessor se crea antes que el resto de los beans de la configuración
+    @Bean
+    public static BeanPostProcessor limiteConcurrenciaBaseDatos(Environment entorno) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String nombre) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof DataSourceConLimite) {
+                    return bean;
+                }
+                int maximo = entorno.getProperty("ventas.bd.concurrencia.maximo", Integer.class,
+                        entorno.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+                int maximoEnEspera = entorno.getProperty("ventas.bd.concurrencia.maximo-en-espera", Integer.class, 200);
+                long esperaMaximaMs = entorno.getProperty("ventas.bd.concurrencia.espera-maxima-ms", Long.class, 1000L);
+                return new DataSourceConLimite(dataSource, maximo, maximoEnEspera, esperaMaximaMs);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasConcurrenciaBaseDatos(DataSource dataSource) {
+        return registro -> {
+            if (dataSource instanceof DataSourceConLimite limite) {
+                Gauge.builder("ventas.bd.concurrencia.en-uso", limite, DataSourceConLimite::enUso).register(registro);
+                Gauge.builder("ventas.bd.concurrencia.en-espera", limite, DataSourceConLimite::enEspera).register(registro);
+                FunctionCounter.builder("ventas.bd.concurrencia.rechazadas", limite, DataSourceConLimite::rechazadas)
+                        .register(registro);
+            }
+        };
+    }
+}
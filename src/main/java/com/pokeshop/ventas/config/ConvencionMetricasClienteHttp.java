@@ -0,0 +1,60 @@
+package com.pokeshop.ventas.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.http.client.observation.ClientRequestObservationContext;
+import org.springframework.http.client.observation.DefaultClientRequestObservationConvention;
+
+import java.util.regex.Pattern;
+
+/**
+ * Tags de http.client.requests para las llamadas a Usuarios y Productos.
+ * Agrega "servicio" (usuarios, productos u otro) y deja el tag uri con pocos valores: como las URLs
+ * se arman concatenando ids, sin esto cada producto y cada cantidad sería una serie distinta.
+ * El resto (method, status, outcome, client.name) queda como en la convención de Spring.
+ */
+public class ConvencionMetricasClienteHttp extends DefaultClientRequestObservationConvention {
+
+    private static final Pattern SEGMENTO_NUMERICO = Pattern.compile("/-?\\d+(?=/|$)");
+
+    private final String usuariosUrl;
+    private final String productosUrl;
+    private final String productosLoteUrl;
+
+    public ConvencionMetricasClienteHttp(String usuariosUrl, String productosUrl, String productosLoteUrl) {
+        this.usuariosUrl = usuariosUrl;
+        this.productosUrl = productosUrl;
+        this.productosLoteUrl = productosLoteUrl;
+    }
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ClientRequestObservationContext context) {
+        return super.getLowCardinalityKeyValues(context).and(KeyValue.of("servicio", servicio(context)));
+    }
+
+    // /api/v1/productos/42/stock?cantidad=3 -> /api/v1/productos/{id}/stock
+    @Override
+    protected KeyValue uri(ClientRequestObservationContext context) {
+        KeyValue uri = super.uri(context);
+        String ruta = uri.getValue();
+        int consulta = ruta.indexOf('?');
+        if (consulta >= 0) {
+            ruta = ruta.substring(0, consulta);
+        }
+        return KeyValue.of(uri.getKey(), SEGMENTO_NUMERICO.matcher(ruta).replaceAll("/{id}"));
+    }
+
+    private String servicio(ClientRequestObservationContext context) {
+        if (context.getCarrier() == null) {
+            return "otro";
+        }
+        String url = context.getCarrier().getURI().toString();
+        if (url.startsWith(usuariosUrl)) {
+            return "usuarios";
+        }
+        if (url.startsWith(productosUrl) || (!productosLoteUrl.isBlank() && url.startsWith(productosLoteUrl))) {
+            return "productos";
+        }
+        return "otro";
+    }
+}
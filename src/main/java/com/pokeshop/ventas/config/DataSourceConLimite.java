@@ -0,0 +1,119 @@
+package com.pokeshop.ventas.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource que deja tomar como mucho maximo conexiones a la vez, con una cola de espera
+ * acotada. Con hilos virtuales no hay un pool de hilos que limite cuántas peticiones llegan a la
+ * base de datos: sin este tope miles de hilos se encolarían en Hikari hasta su connectionTimeout.
+ * Acá el que no entra en la cola o no consigue turno a tiempo falla enseguida con una
+ * SQLTransientConnectionException, y el permiso se devuelve al cerrar la conexión.
+ *
+ * Es un semáforo de java.util.concurrent: esperar en él no ancla el hilo virtual.
+ */
+public class DataSourceConLimite extends DelegatingDataSource {
+
+    private final Semaphore permisos;
+    private final int maximo;
+    private final int maximoEnEspera;
+    private final long esperaMaximaMs;
+    private final AtomicInteger enEspera = new AtomicInteger();
+    private final LongAdder rechazadas = new LongAdder();
+
+    public DataSourceConLimite(DataSource destino, int maximo, int maximoEnEspera, long esperaMaximaMs) {
+        super(destino);
+        this.permisos = new Semaphore(maximo, true);
+        this.maximo = maximo;
+        this.maximoEnEspera = maximoEnEspera;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        adquirir();
+        try {
+            return liberarAlCerrar(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String clave) throws SQLException {
+        adquirir();
+        try {
+            return liberarAlCerrar(super.getConnection(usuario, clave));
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    private void adquirir() throws SQLException {
+        if (permisos.tryAcquire()) {
+            return;
+        }
+        if (enEspera.incrementAndGet() > maximoEnEspera) {
+            enEspera.decrementAndGet();
+            rechazadas.increment();
+            throw new SQLTransientConnectionException("Hay demasiadas operaciones esperando la base de datos.");
+        }
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                rechazadas.increment();
+                throw new SQLTransientConnectionException(
+                        "Tiempo de espera agotado esperando turno en la base de datos (" + esperaMaximaMs + " ms).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido mientras esperaba turno en la base de datos.", e);
+        } finally {
+            enEspera.decrementAndGet();
+        }
+    }
+
+    // El permiso se devuelve una sola vez, aunque la conexión se cierre dos veces
+    private Connection liberarAlCerrar(Connection conexion) {
+        AtomicBoolean cerrada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, argumentos) -> {
+                    try {
+                        if ("close".equals(metodo.getName()) && cerrada.compareAndSet(false, true)) {
+                            try {
+                                return metodo.invoke(conexion, argumentos);
+                            } finally {
+                                permisos.release();
+                            }
+                        }
+                        return metodo.invoke(conexion, argumentos);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public int enUso() {
+        return maximo - permisos.availablePermits();
+    }
+
+    public int enEspera() {
+        return enEspera.get();
+    }
+
+    public long rechazadas() {
+        return rechazadas.sum();
+    }
+}
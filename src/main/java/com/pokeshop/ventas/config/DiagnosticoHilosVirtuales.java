@@ -0,0 +1,123 @@
+package com.pokeshop.ventas.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detecta hilos virtuales anclados a su hilo portador (jdk.VirtualThreadPinned): un hilo virtual
+ * que se bloquea dentro de un synchronized o de código nativo no libera el portador, y con pocos
+ * portadores (uno por núcleo) unos cuantos anclados frenan a todos los demás.
+ *
+ * Escucha los eventos de JFR en el mismo proceso, sin grabar a disco. Cada anclaje más largo que
+ * el umbral queda en ventas.hilos-virtuales.anclados (timer, tag origen: la primera clase de la
+ * pila que no es del JDK, ej. el driver JDBC o el cliente HTTP) y la primera vez que aparece un
+ * origen se registra la pila completa en el log. ventas.hilos-virtuales.rechazados cuenta los
+ * hilos virtuales que no se pudieron programar (jdk.VirtualThreadSubmitFailed).
+ */
+@Component
+public class DiagnosticoHilosVirtuales {
+
+    private static final Logger log = LoggerFactory.getLogger(DiagnosticoHilosVirtuales.class);
+
+    // Tope de orígenes distintos como tag, para no crear series sin límite
+    private static final int MAXIMO_ORIGENES = 50;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.hilos-virtuales.diagnostico.habilitado:${spring.threads.virtual.enabled:false}}")
+    private boolean habilitado = false;
+
+    @Value("${ventas.hilos-virtuales.diagnostico.umbral-ms:20}")
+    private long umbralMs = 20;
+
+    private final Set<String> origenesVistos = ConcurrentHashMap.newKeySet();
+    private RecordingStream eventos;
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        eventos = new RecordingStream();
+        eventos.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(umbralMs)).withStackTrace();
+        eventos.enable("jdk.VirtualThreadSubmitFailed");
+        eventos.onEvent("jdk.VirtualThreadPinned", this::registrarAnclaje);
+        eventos.onEvent("jdk.VirtualThreadSubmitFailed", evento -> {
+            if (meterRegistry != null) {
+                meterRegistry.counter("ventas.hilos-virtuales.rechazados").increment();
+            }
+        });
+        eventos.startAsync();
+        log.info("Diagnóstico de hilos virtuales anclados activo (umbral {} ms)", umbralMs);
+    }
+
+    private void registrarAnclaje(RecordedEvent evento) {
+        String origen = origen(evento.getStackTrace());
+        if (origenesVistos.size() >= MAXIMO_ORIGENES && !origenesVistos.contains(origen)) {
+            origen = "otro";
+        }
+        if (origenesVistos.add(origen)) {
+            log.warn("Hilo virtual anclado {} ms en {}:\n{}", evento.getDuration().toMillis(), origen,
+                    pila(evento.getStackTrace()));
+        }
+        if (meterRegistry != null) {
+            meterRegistry.timer("ventas.hilos-virtuales.anclados", "origen", origen)
+                    .record(evento.getDuration().toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Primera clase fuera del JDK en la pila: es la que tomó el monitor o llamó al código nativo
+    static String origen(RecordedStackTrace pila) {
+        if (pila == null) {
+            return "desconocido";
+        }
+        for (RecordedFrame marco : pila.getFrames()) {
+            if (!marco.isJavaFrame() || marco.getMethod() == null) {
+                continue;
+            }
+            String clase = marco.getMethod().getType().getName();
+            if (!clase.startsWith("java.") && !clase.startsWith("jdk.") && !clase.startsWith("sun.")) {
+                return clase;
+            }
+        }
+        return "jdk";
+    }
+
+    private static String pila(RecordedStackTrace pila) {
+        if (pila == null) {
+            return "  (sin pila)";
+        }
+        StringBuilder texto = new StringBuilder();
+        for (RecordedFrame marco : pila.getFrames()) {
+            if (marco.getMethod() == null) {
+                continue;
+            }
+            texto.append("  at ").append(marco.getMethod().getType().getName()).append('.')
+                    .append(marco.getMethod().getName()).append(':').append(marco.getLineNumber()).append('\n');
+        }
+        return texto.toString();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (eventos != null) {
+            eventos.close();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.pokeshop.ventas.config;
+
+import com.pokeshop.ventas.resiliencia.Plazo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.observation.ClientRequestObservationConvention;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cliente HTTP usado para hablar con Usuarios y Productos.
+ * Por defecto es Apache HttpClient 5 con pool de conexiones persistentes, tamaño por host,
+ * desalojo de conexiones ociosas y timeouts de conexión, espera de pool y respuesta.
+ * Con api.http.cliente=jdk se usa el HttpClient del JDK (HTTP/2 si el servidor lo ofrece) y con
+ * api.http.cliente=simple el HttpURLConnection de siempre, útil para comparar en los benchmarks.
+ *
+ * Con Apache, si el hilo tiene un Plazo activo (ver VentaService) cada llamada espera por conexión
+ * y por respuesta como mucho lo que le queda al plazo, sin pasar de los timeouts configurados.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${api.http.cliente:apache}")
+    private String tipoCliente;
+
+    @Value("${api.usuarios.url}")
+    private String usuariosUrl;
+
+    @Value("${api.productos.url}")
+    private String productosUrl;
+
+    @Value("${api.productos.lote.url:}")
+    private String productosLoteUrl;
+
+    @Value("${api.http.timeout.conexion-ms:1000}")
+    private long timeoutConexionMs;
+
+    @Value("${api.http.timeout.respuesta-ms:3000}")
+    private long timeoutRespuestaMs;
+
+    // Cuánto puede esperar una petición por una conexión libre cuando el pool está lleno
+    @Value("${api.http.timeout.espera-pool-ms:500}")
+    private long timeoutEsperaPoolMs;
+
+    @Value("${api.http.pool.maximo-total:200}")
+    private int maximoTotal;
+
+    @Value("${api.http.pool.maximo-por-host.usuarios:50}")
+    private int maximoUsuarios;
+
+    @Value("${api.http.pool.maximo-por-host.productos:100}")
+    private int maximoProductos;
+
+    @Value("${api.http.pool.keep-alive-segundos:30}")
+    private long keepAliveSegundos;
+
+    @Value("${api.http.pool.desalojo-ociosas-segundos:20}")
+    private long desalojoOciosasSegundos;
+
+    @Bean
+    public RestTemplate restTemplate(ObjectProvider<RestTemplateBuilder> builder, ObjectProvider<MeterRegistry> meterRegistry) {
+        ClientHttpRequestFactory factory = switch (tipoCliente) {
+            case "simple" -> clienteSimple();
+            case "jdk" -> clienteJdk();
+            default -> clienteApache(meterRegistry.getIfAvailable());
+        };
+        // Al construirlo con el builder de Boot quedan registradas las métricas http.client.requests.
+        // Con el perfil reactivo Boot no crea el builder; los servicios bloqueantes siguen necesitando el RestTemplate
+        return builder.getIfAvailable(RestTemplateBuilder::new).requestFactory(() -> factory).build();
+    }
+
+    // Boot la toma al instrumentar el RestTemplate: http.client.requests queda con el tag servicio
+    @Bean
+    public ClientRequestObservationConvention convencionMetricasClienteHttp() {
+        return new ConvencionMetricasClienteHttp(usuariosUrl, productosUrl, productosLoteUrl);
+    }
+
+    private ClientHttpRequestFactory clienteApache(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maximoTotal)
+                .setMaxConnPerRoute(Math.max(maximoUsuarios, maximoProductos))
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(timeoutConexionMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(timeoutRespuestaMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        pool.setMaxPerRoute(ruta(usuariosUrl), maximoUsuarios);
+        pool.setMaxPerRoute(ruta(productosUrl), maximoProductos);
+
+        if (meterRegistry != null) {
+            // httpcomponents.httpclient.pool.* (conexiones libres, prestadas y peticiones esperando)
+            new PoolingHttpClientConnectionManagerMetricsBinder(pool, "ventas").bindTo(meterRegistry);
+        }
+
+        RequestConfig configuracion = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeoutEsperaPoolMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeoutRespuestaMs))
+                .setDefaultKeepAlive(keepAliveSegundos, TimeUnit.SECONDS)
+                .build();
+        CloseableHttpClient cliente = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(configuracion)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(desalojoOciosasSegundos))
+                .build();
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(cliente);
+        factory.setHttpContextFactory((metodo, uri) -> contextoConPlazo(configuracion));
+        return factory;
+    }
+
+    // Sin plazo se devuelve null y Spring usa la configuración por defecto del cliente
+    private HttpContext contextoConPlazo(RequestConfig configuracion) {
+        Plazo plazo = Plazo.actual();
+        if (plazo == null) {
+            return null;
+        }
+        long restanteMs = Math.max(1, plazo.restanteMs());
+        HttpClientContext contexto = HttpClientContext.create();
+        contexto.setRequestConfig(RequestConfig.copy(configuracion)
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(Math.min(timeoutEsperaPoolMs, restanteMs)))
+                .setResponseTimeout(Timeout.ofMilliseconds(Math.min(timeoutRespuestaMs, restanteMs)))
+                .build());
+        return contexto;
+    }
+
+    private ClientHttpRequestFactory clienteJdk() {
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(timeoutConexionMs))
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(cliente);
+        factory.setReadTimeout(Duration.ofMillis(timeoutRespuestaMs));
+        return factory;
+    }
+
+    private ClientHttpRequestFactory clienteSimple() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout((int) timeoutConexionMs);
+        factory.setReadTimeout((int) timeoutRespuestaMs);
+        return factory;
+    }
+
+    // El pool agrupa por host:puerto, así que el puerto por defecto tiene que quedar explícito
+    private HttpRoute ruta(String url) {
+        URI uri = URI.create(url);
+        int puerto = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), puerto));
+    }
+}
@@ -0,0 +1,21 @@
+package com.pokeshop.ventas.controller;
+
+import com.pokeshop.ventas.dto.AnaliticaVentasDto;
+import com.pokeshop.ventas.service.AnaliticaVentasService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// Dashboard en vivo: lee solo memoria, no toca la base de datos
+@RestController
+@RequestMapping("/api/v1/ventas/analitica")
+public class AnaliticaController {
+
+    @Autowired
+    private AnaliticaVentasService analiticaVentasService;
+
+    @GetMapping
+    public ResponseEntity<AnaliticaVentasDto> consultar(@RequestParam(defaultValue = "10") int top) {
+        return ResponseEntity.ok(analiticaVentasService.consultar(Math.min(Math.max(top, 1), 100)));
+    }
+}
@@ -0,0 +1,55 @@
+package com.pokeshop.ventas.controller;
+
+import com.pokeshop.ventas.service.CatalogoProductoCache;
+import com.pokeshop.ventas.service.UsuarioExistenciaCache;
+import com.pokeshop.ventas.service.VentaLecturaCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/ventas/cache")
+public class CacheController {
+
+    @Autowired
+    private CatalogoProductoCache catalogoProductoCache;
+
+    @Autowired
+    private UsuarioExistenciaCache usuarioExistenciaCache;
+
+    @Autowired
+    private VentaLecturaCache ventaLecturaCache;
+
+    // Para cuando Productos cambia el nombre o precio de un producto y no se quiere esperar el TTL
+    @DeleteMapping("/productos/{idProducto}")
+    public ResponseEntity<Void> invalidarProducto(@PathVariable Long idProducto) {
+        catalogoProductoCache.invalidar(idProducto);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/productos")
+    public ResponseEntity<Void> invalidarProductos() {
+        catalogoProductoCache.invalidarTodo();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Por ejemplo, tras dar de alta un usuario que tenía un "no existe" en caché
+    @DeleteMapping("/usuarios/{idUsuario}")
+    public ResponseEntity<Void> invalidarUsuario(@PathVariable Long idUsuario) {
+        usuarioExistenciaCache.invalidar(idUsuario);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Solo hace falta si una venta COMPLETADA se corrige directo en la base de datos
+    @DeleteMapping("/ventas/{idVenta}")
+    public ResponseEntity<Void> invalidarVenta(@PathVariable Long idVenta) {
+        ventaLecturaCache.invalidar(idVenta);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/ventas")
+    public ResponseEntity<Void> invalidarVentas() {
+        ventaLecturaCache.invalidarTodo();
+        return ResponseEntity.noContent().build();
+    }
+}
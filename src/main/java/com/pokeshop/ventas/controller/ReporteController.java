@@ -0,0 +1,63 @@
+package com.pokeshop.ventas.controller;
+
+import com.pokeshop.ventas.dto.ResumenProductoDto;
+import com.pokeshop.ventas.model.ResumenUsuarioMensual;
+import com.pokeshop.ventas.model.ResumenVentaDiaria;
+import com.pokeshop.ventas.service.ResumenVentasService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Reportes para el dashboard; solo leen las tablas de resumen, nunca ventas ni detalle_venta
+// Consultas JPA bloqueantes: no se sirven en el event loop del perfil reactivo
+@RestController
+@RequestMapping("/api/v1/ventas/reportes")
+@Profile("!reactivo")
+public class ReporteController {
+
+    @Autowired
+    private ResumenVentasService resumenVentasService;
+
+    // Ventas, subtotal, IVA y total por día (desde y hasta incluidos)
+    @GetMapping("/diario")
+    public ResponseEntity<List<ResumenVentaDiaria>> ventasPorDia(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(resumenVentasService.ventasPorDia(desde, hasta));
+    }
+
+    // Productos más vendidos del rango por unidades
+    @GetMapping("/productos")
+    public ResponseEntity<List<ResumenProductoDto>> productosMasVendidos(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "20") int limite) {
+        return ResponseEntity.ok(resumenVentasService.productosMasVendidos(desde, hasta, Math.min(Math.max(limite, 1), 1000)));
+    }
+
+    // Compras de un usuario por mes
+    @GetMapping("/usuarios/{idUsuario}")
+    public ResponseEntity<List<ResumenUsuarioMensual>> comprasPorMes(
+            @PathVariable Long idUsuario,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return ResponseEntity.ok(resumenVentasService.comprasPorMes(idUsuario, desde, hasta));
+    }
+
+    // Recalcula los resúmenes de un rango de días desde las tablas de ventas
+    @PostMapping("/reconstruir")
+    public ResponseEntity<?> reconstruir(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        if (hasta.isBefore(desde)) {
+            return ResponseEntity.badRequest().body("La fecha 'hasta' no puede ser anterior a 'desde'.");
+        }
+        resumenVentasService.reconstruir(desde, hasta);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,27 +1,356 @@
 package com.pokeshop.ventas.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pokeshop.ventas.diario.VentaPendienteException;
+import com.pokeshop.ventas.dto.PaginaVentasDto;
+import com.pokeshop.ventas.dto.RespuestaIdempotenteDto;
 import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.dto.TicketVentaDto;
 import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.resiliencia.ServicioNoDisponibleException;
+import com.pokeshop.ventas.service.DiarioVentasService;
+import com.pokeshop.ventas.service.IdempotenciaService;
+import com.pokeshop.ventas.service.VentaAsyncService;
+import com.pokeshop.ventas.service.VentaConsultaService;
+import com.pokeshop.ventas.service.VentaExportacionService;
+import com.pokeshop.ventas.service.VentaLecturaCache;
+import com.pokeshop.ventas.service.VentaLoteService;
 import com.pokeshop.ventas.service.VentaService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+// Con el perfil reactivo POST /api/v1/ventas lo atiende VentaReactivaController
 @RestController
 @RequestMapping("/api/v1/ventas")
+@Profile("!reactivo")
 public class VentaController {
 
     @Autowired
     private VentaService ventaService;
 
+    @Autowired
+    private VentaAsyncService ventaAsyncService;
+
+    @Autowired
+    private VentaLoteService ventaLoteService;
+
+    @Autowired
+    private VentaConsultaService ventaConsultaService;
+
+    @Autowired
+    private VentaExportacionService ventaExportacionService;
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    @Autowired
+    private VentaLecturaCache ventaLecturaCache;
+
+    @Autowired
+    private DiarioVentasService diarioVentasService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Rechazos que se repetirían igual al reintentar; el resto (conexión, tiempo agotado, guardado) son pasajeros
+    private static final Set<String> RECHAZOS_DEFINITIVOS =
+            Set.of("stock_insuficiente", "usuario_no_encontrado", "producto_no_encontrado");
+
+    // El mismo tope que aplica VentaLoteService; con NDJSON se corta al leer, sin cargar el resto
+    @Value("${ventas.lote.maximo-ordenes:5000}")
+    private int maximoOrdenesLote = 5000;
+
+    // Listado paginado por cursor: la respuesta trae siguienteCursor para pedir la página siguiente
+    @GetMapping
+    public ResponseEntity<?> listarVentas(
+            @RequestParam(required = false) Long idUsuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int tamano) {
+        try {
+            PaginaVentasDto pagina = ventaConsultaService.buscar(idUsuario, desde, hasta, estado, cursor, tamano);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping
-    public ResponseEntity<?> generarVenta(@RequestBody SolicitudVentaDto solicitud) {
+    public ResponseEntity<?> generarVenta(@Valid @RequestBody SolicitudVentaDto solicitud,
+                                          @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia)
+            throws JsonProcessingException {
+        if (claveIdempotencia == null || claveIdempotencia.isBlank()) {
+            return procesarVenta(solicitud);
+        }
+        if (claveIdempotencia.length() > 100) {
+            return ResponseEntity.badRequest().body("La Idempotency-Key no puede superar los 100 caracteres.");
+        }
+
+        // Con Idempotency-Key la venta se procesa una sola vez; los reintentos reciben la misma respuesta
+        String huella = IdempotenciaService.huella(objectMapper.writeValueAsString(solicitud));
+        ResponseEntity<?>[] propia = new ResponseEntity<?>[1];
+        boolean[] reintentable = new boolean[1];
+        RespuestaIdempotenteDto respuesta = idempotenciaService.ejecutar(claveIdempotencia, huella, () -> {
+            propia[0] = procesarVenta(solicitud,
+                    e -> reintentable[0] = !RECHAZOS_DEFINITIVOS.contains(VentaService.motivoRechazo(e)));
+            RespuestaIdempotenteDto propiaGuardable = aRespuestaIdempotente(propia[0]);
+            propiaGuardable.setReintentable(reintentable[0]);
+            return propiaGuardable;
+        });
+        if (propia[0] != null) {
+            return propia[0];
+        }
+
+        ResponseEntity.BodyBuilder repetida = ResponseEntity.status(respuesta.getCodigoEstado());
+        if (respuesta.getTipoContenido() != null) {
+            repetida.contentType(MediaType.parseMediaType(respuesta.getTipoContenido()));
+        }
+        if (respuesta.getUbicacion() != null) {
+            repetida.location(URI.create(respuesta.getUbicacion()));
+        }
+        if (respuesta.getCodigoEstado() == 409 || respuesta.getCodigoEstado() == 503) {
+            repetida.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        if (respuesta.isRepetida()) {
+            repetida.header("Idempotent-Replayed", "true");
+        }
+        return repetida.body(respuesta.getCuerpo());
+    }
+
+    private ResponseEntity<?> procesarVenta(SolicitudVentaDto solicitud) {
+        return procesarVenta(solicitud, e -> { });
+    }
+
+    // alRechazar recibe la causa de un 400, para decidir si la respuesta se guarda con la Idempotency-Key
+    private ResponseEntity<?> procesarVenta(SolicitudVentaDto solicitud, Consumer<RuntimeException> alRechazar) {
+        if (ventaAsyncService.estaHabilitado()) {
+            // Modo asíncrono: 202 con el ticket para consultar el resultado después
+            try {
+                TicketVentaDto ticket = ventaAsyncService.encolar(solicitud);
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/v1/ventas/tickets/" + ticket.getIdTicket()))
+                        .body(ticket);
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body("Hay demasiadas ventas en espera, intente nuevamente en unos segundos.");
+            }
+        }
+
         try {
             Venta ventaRealizada = ventaService.crearVenta(solicitud);
             return ResponseEntity.ok(ventaRealizada);
+        } catch (VentaPendienteException e) {
+            // La venta está en el diario local y se guardará: 202, no un 400 que invite a repetirla
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/ventas/" + e.getIdVenta()))
+                    .body(e.getMessage());
+        } catch (ServicioNoDisponibleException e) {
+            // Usuarios o Productos está caído o saturado: no es un error de la solicitud
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getReintentarEnSegundos()))
+                    .body(e.getMessage());
         } catch (RuntimeException e) {
             // Devolvemos un Bad Request (400) con el mensaje de error (ej: falta stock)
+            alRechazar.accept(e);
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // La respuesta tal como se va a repetir: la venta o el ticket en JSON, los mensajes como texto
+    private RespuestaIdempotenteDto aRespuestaIdempotente(ResponseEntity<?> respuesta) {
+        Object cuerpo = respuesta.getBody();
+        String texto;
+        String tipoContenido;
+        if (cuerpo == null || cuerpo instanceof String) {
+            texto = (String) cuerpo;
+            tipoContenido = "text/plain;charset=UTF-8";
+        } else {
+            try {
+                texto = objectMapper.writeValueAsString(cuerpo);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("No se pudo serializar la respuesta de la venta.", e);
+            }
+            tipoContenido = MediaType.APPLICATION_JSON_VALUE;
+        }
+        URI ubicacion = respuesta.getHeaders().getLocation();
+        return new RespuestaIdempotenteDto(respuesta.getStatusCode().value(), tipoContenido,
+                ubicacion != null ? ubicacion.toString() : null, texto, false);
+    }
+
+    // Lote de ventas como arreglo JSON; devuelve un resultado por orden
+    @PostMapping(value = "/lote", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> generarLote(@RequestBody List<SolicitudVentaDto> solicitudes) {
+        try {
+            return ResponseEntity.ok(ventaLoteService.procesar(solicitudes));
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
+
+    // Lote de ventas como NDJSON (una SolicitudVentaDto por línea)
+    @PostMapping(value = "/lote", consumes = "application/x-ndjson")
+    public ResponseEntity<?> generarLoteNdjson(InputStream cuerpo) throws IOException {
+        List<SolicitudVentaDto> solicitudes = new ArrayList<>();
+        BufferedReader lector = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8));
+        String linea;
+        int numeroLinea = 0;
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            if (solicitudes.size() >= maximoOrdenesLote) {
+                return ResponseEntity.badRequest().body("El lote supera el máximo de " + maximoOrdenesLote + " órdenes.");
+            }
+            try {
+                solicitudes.add(objectMapper.readValue(linea, SolicitudVentaDto.class));
+            } catch (JsonProcessingException e) {
+                return ResponseEntity.badRequest().body("Línea " + numeroLinea + " no es una venta válida: " + e.getOriginalMessage());
+            }
+        }
+        return generarLote(solicitudes);
+    }
+
+    // Exportación completa de un rango de fechas; se escribe a medida que se lee de la base de datos
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarVentas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(defaultValue = VentaExportacionService.CSV) String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        if (!VentaExportacionService.CSV.equals(format) && !VentaExportacionService.NDJSON.equals(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato no soportado: " + format + " (use csv o ndjson).");
+        }
+        if (!desde.isBefore(hasta)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha 'desde' debe ser anterior a 'hasta'.");
+        }
+
+        StreamingResponseBody cuerpo = salida -> {
+            GZIPOutputStream comprimido = gzip ? new GZIPOutputStream(salida, 64 * 1024) : null;
+            Writer escritor = new BufferedWriter(new OutputStreamWriter(
+                    comprimido != null ? comprimido : salida, StandardCharsets.UTF_8), 64 * 1024);
+            ventaExportacionService.exportar(desde, hasta, format, escritor);
+            if (comprimido != null) {
+                comprimido.finish();
+            }
+        };
+
+        String archivo = "ventas." + format + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : VentaExportacionService.CSV.equals(format) ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archivo + "\"")
+                .body(cuerpo);
+    }
+
+    // Detalle de una venta. Las COMPLETADA salen de VentaLecturaCache ya serializadas; con
+    // If-None-Match igual al ETag se responde 304 sin cuerpo. Una venta que está en el diario y
+    // todavía no llegó a la base de datos responde 202 (la Location del POST que devolvió 202)
+    @GetMapping("/{idVenta:\\d+}")
+    public ResponseEntity<byte[]> obtenerVenta(
+            @PathVariable Long idVenta,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String siNoCoincide,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String aceptaCodificacion) {
+        VentaLecturaCache.VentaSerializada venta = ventaLecturaCache.obtener(idVenta);
+        if (venta == null) {
+            if (diarioVentasService.estaPendiente(idVenta)) {
+                return ResponseEntity.accepted()
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                        .body(("La venta " + idVenta + " está registrada y todavía se está guardando.")
+                                .getBytes(StandardCharsets.UTF_8));
+            }
+            return ResponseEntity.notFound().build();
+        }
+
+        boolean gzip = venta.gzip() != null && aceptaGzip(aceptaCodificacion);
+        String etag = gzip ? venta.etagGzip() : venta.etag();
+        if (coincideEtag(siNoCoincide, venta)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(venta.gzip());
+        }
+        return respuesta.body(venta.json());
+    }
+
+    private static boolean aceptaGzip(String aceptaCodificacion) {
+        if (aceptaCodificacion == null) {
+            return false;
+        }
+        for (String codificacion : aceptaCodificacion.split(",")) {
+            String[] partes = codificacion.trim().split(";");
+            if ("gzip".equalsIgnoreCase(partes[0].trim())
+                    && !(partes.length > 1 && partes[1].replace(" ", "").matches("q=0(\\.0*)?"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-None-Match compara en forma débil: vale cualquiera de las dos variantes (JSON o gzip)
+    private static boolean coincideEtag(String siNoCoincide, VentaLecturaCache.VentaSerializada venta) {
+        if (siNoCoincide == null) {
+            return false;
+        }
+        for (String etiqueta : siNoCoincide.split(",")) {
+            String valor = etiqueta.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if ("*".equals(valor) || valor.equals(venta.etag()) || valor.equals(venta.etagGzip())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GetMapping("/tickets/{idTicket}")
+    public ResponseEntity<TicketVentaDto> consultarTicket(@PathVariable String idTicket) {
+        TicketVentaDto ticket = ventaAsyncService.consultar(idTicket);
+        if (ticket == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ticket);
+    }
 }
@@ -0,0 +1,106 @@
+package com.pokeshop.ventas.diario;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Venta en binario compacto para el diario: ids, fecha en segundos y nanos UTC, montos como
+ * double y los textos en UTF-8 modificado. Un byte de versión al inicio permite cambiar el
+ * formato sin dejar ilegibles los diarios ya escritos.
+ */
+public final class CodificadorVenta {
+
+    private static final byte VERSION = 1;
+
+    private CodificadorVenta() {
+    }
+
+    public static byte[] codificar(Venta venta) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + 64 * venta.getDetalles().size());
+        try (DataOutputStream salida = new DataOutputStream(bytes)) {
+            salida.writeByte(VERSION);
+            salida.writeLong(venta.getIdVenta());
+            salida.writeLong(venta.getIdUsuario());
+            salida.writeLong(venta.getFecha().toEpochSecond(ZoneOffset.UTC));
+            salida.writeInt(venta.getFecha().getNano());
+            escribirDouble(salida, venta.getSubtotal());
+            escribirDouble(salida, venta.getIva());
+            escribirDouble(salida, venta.getTotal());
+            escribirTexto(salida, venta.getEstado());
+            salida.writeInt(venta.getDetalles().size());
+            for (DetalleVenta detalle : venta.getDetalles()) {
+                salida.writeLong(detalle.getIdDetalle());
+                salida.writeLong(detalle.getIdProducto());
+                escribirTexto(salida, detalle.getNombreProducto());
+                salida.writeInt(detalle.getCantidad());
+                escribirDouble(salida, detalle.getPrecioUnitario());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Venta decodificar(byte[] datos) {
+        try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(datos))) {
+            byte version = entrada.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Versión de registro de venta desconocida: " + version);
+            }
+            Venta venta = new Venta();
+            venta.setIdVenta(entrada.readLong());
+            venta.setIdUsuario(entrada.readLong());
+            long segundos = entrada.readLong();
+            venta.setFecha(LocalDateTime.ofEpochSecond(segundos, entrada.readInt(), ZoneOffset.UTC));
+            venta.setSubtotal(leerDouble(entrada));
+            venta.setIva(leerDouble(entrada));
+            venta.setTotal(leerDouble(entrada));
+            venta.setEstado(leerTexto(entrada));
+            int cantidadDetalles = entrada.readInt();
+            for (int i = 0; i < cantidadDetalles; i++) {
+                DetalleVenta detalle = new DetalleVenta();
+                detalle.setIdDetalle(entrada.readLong());
+                detalle.setIdProducto(entrada.readLong());
+                detalle.setNombreProducto(leerTexto(entrada));
+                detalle.setCantidad(entrada.readInt());
+                detalle.setPrecioUnitario(leerDouble(entrada));
+                detalle.setVenta(venta);
+                venta.getDetalles().add(detalle);
+            }
+            return venta;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        salida.writeBoolean(texto != null);
+        if (texto != null) {
+            salida.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+
+    private static void escribirDouble(DataOutputStream salida, Double valor) throws IOException {
+        salida.writeBoolean(valor != null);
+        if (valor != null) {
+            salida.writeDouble(valor);
+        }
+    }
+
+    private static Double leerDouble(DataInputStream entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readDouble() : null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.pokeshop.ventas.diario;
+
+/**
+ * El diario no pudo confirmar en disco lo escrito (fsync fallido) y dejó de aceptar registros.
+ * Las ventas que no llegaron a ser durables no se van a guardar: quien la recibe repone el stock
+ * y responde 503. El diario vuelve a funcionar al reiniciar la aplicación.
+ */
+public class DiarioNoDisponibleException extends RuntimeException {
+
+    public DiarioNoDisponibleException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
@@ -0,0 +1,555 @@
+package com.pokeshop.ventas.diario;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario de solo agregado en archivos mapeados en memoria (diario-NNN.log), rotando a un archivo
+ * nuevo cuando se llena el actual. Cada registro es [longitud][crc32c][datos]; una longitud 0 es
+ * el final de lo escrito y -1 marca que el segmento terminó y sigue el próximo.
+ *
+ * Agregar solo copia los bytes al mapeo. Un hilo aparte hace el fsync (force) de todo lo
+ * agregado hasta ese momento, así que mientras se sincroniza un grupo se junta el siguiente y
+ * varios escritores comparten el mismo fsync. esperarDurable bloquea hasta que la posición
+ * quedó en disco, y solo se leen registros durables.
+ *
+ * Un fsync fallido no se reintenta: el sistema operativo puede haber soltado las páginas sucias
+ * y un fsync posterior que funcione no prueba que estén en disco. El diario deja de aceptar
+ * registros (DiarioNoDisponibleException), no vuelve a avanzar la posición durable y guarda esa
+ * posición en el archivo corte; al volver a abrir, lo escrito después del corte se copia a
+ * descartados/ y se borra del diario, así que nunca llega a la base de datos.
+ *
+ * Las posiciones son longs (segmento << 32 | desplazamiento) que crecen con cada registro. Al
+ * abrir se recorre el último segmento validando el CRC: lo que quedó a medio escribir por una
+ * caída se descarta y se pone en cero. El punto de control (hasta dónde ya se procesó) se guarda
+ * en un archivo aparte, y los segmentos anteriores a él se borran. En Windows un archivo mapeado
+ * no se puede borrar hasta que el recolector libera el mapeo (Java no permite desmapear), así que
+ * el borrado que falla se reintenta en cada confirmación y, si sigue ahí, al volver a abrir. Un registro que no se puede
+ * procesar nunca se copia a descartados/ para revisarlo a mano y el punto de control sigue.
+ */
+public final class DiarioSegmentado implements Closeable {
+
+    private static final int CABECERA = 8;
+    private static final int FIN_SEGMENTO = -1;
+    private static final String PREFIJO = "diario-";
+    private static final String SUFIJO = ".log";
+    private static final String PUNTO_CONTROL = "punto-control";
+    private static final String DESCARTADOS = "descartados";
+    private static final String CORTE = "corte";
+
+    public record Registro(byte[] datos, long fin) {
+    }
+
+    private final Path directorio;
+    private final int tamanoSegmento;
+
+    // Protegidos por escritura: los escritores y la rotación (que hace force dentro del lock)
+    private final ReentrantLock escritura = new ReentrantLock();
+    private final TreeMap<Long, MappedByteBuffer> segmentos = new TreeMap<>();
+    private long segmentoActual;
+    private MappedByteBuffer actual;
+    private int escrito;
+
+    // Protegidos por avisos: los que esperan datos nuevos (sincronizador) o el fsync (escritores).
+    // Un lock y no un monitor: un hilo virtual esperando en wait() dentro de synchronized queda anclado
+    private final ReentrantLock avisos = new ReentrantLock();
+    private final Condition cambio = avisos.newCondition();
+    private volatile long escritoHasta;
+    private volatile long durable;
+    private volatile DiarioNoDisponibleException falla;
+    private volatile boolean cerrado;
+
+    private volatile long puntoControl;
+    private final Thread sincronizador;
+
+    // Segmentos ya procesados que no se pudieron borrar todavía (se agregan y borran en confirmarLectura)
+    private final List<Path> porBorrar = new CopyOnWriteArrayList<>();
+
+    private DiarioSegmentado(Path directorio, int tamanoSegmento) throws IOException {
+        this.directorio = directorio;
+        this.tamanoSegmento = tamanoSegmento;
+        Files.createDirectories(directorio);
+        Long corte = leerPosicion(CORTE);
+        if (corte != null) {
+            cortar(corte);
+        }
+        Long guardado = leerPosicion(PUNTO_CONTROL);
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.startsWith(PREFIJO) && nombre.endsWith(SUFIJO)) {
+                    long numero = Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+                    // Ya procesado pero no se pudo borrar en la ejecución anterior: ahora no está mapeado
+                    if (guardado != null && numero < segmentoDe(guardado) && borrar(archivo)) {
+                        continue;
+                    }
+                    segmentos.put(numero, mapear(archivo, (int) Files.size(archivo)));
+                }
+            }
+        }
+        if (segmentos.isEmpty()) {
+            crearSegmento(0);
+        }
+
+        segmentoActual = segmentos.lastKey();
+        actual = segmentos.get(segmentoActual);
+        escrito = recuperarFin(actual);
+        if (escrito + 4 <= actual.capacity() && actual.getInt(escrito) == FIN_SEGMENTO) {
+            // Se cayó justo después de cerrar el segmento
+            crearSegmento(segmentoActual + 1);
+            segmentoActual++;
+            actual = segmentos.get(segmentoActual);
+            escrito = 0;
+        }
+        escritoHasta = posicion(segmentoActual, escrito);
+        durable = escritoHasta;
+
+        long primero = posicion(segmentos.firstKey(), 0);
+        puntoControl = guardado == null || guardado < primero ? primero : guardado;
+
+        sincronizador = new Thread(this::sincronizar, "diario-sincronizacion");
+        sincronizador.setDaemon(true);
+        sincronizador.start();
+    }
+
+    public static DiarioSegmentado abrir(Path directorio, int tamanoSegmento) throws IOException {
+        return new DiarioSegmentado(directorio, tamanoSegmento);
+    }
+
+    /** Agrega un registro y devuelve la posición donde termina. Todavía no es durable. */
+    public long agregar(byte[] datos) {
+        long fin;
+        escritura.lock();
+        try {
+            if (cerrado) {
+                throw new IllegalStateException("El diario está cerrado.");
+            }
+            // Después de un fsync fallido no se aceptan registros nuevos: la venta se rechaza antes de escribir
+            if (falla != null) {
+                throw new DiarioNoDisponibleException("El diario no acepta registros: " + falla.getMessage(), falla);
+            }
+            // Siempre quedan 4 bytes libres para la marca de fin de segmento
+            if (escrito + CABECERA + datos.length + 4 > actual.capacity()) {
+                if (CABECERA + datos.length + 4 > tamanoSegmento) {
+                    throw new IllegalArgumentException("El registro (" + datos.length + " bytes) no entra en un segmento.");
+                }
+                rotar();
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(datos);
+            actual.put(escrito + CABECERA, datos);
+            actual.putInt(escrito + 4, (int) crc.getValue());
+            actual.putInt(escrito, datos.length);
+            escrito += CABECERA + datos.length;
+            fin = posicion(segmentoActual, escrito);
+            escritoHasta = fin;
+        } finally {
+            escritura.unlock();
+        }
+        avisar();
+        return fin;
+    }
+
+    /**
+     * Espera a que todo lo escrito hasta la posición esté en disco. False si no llegó a tiempo;
+     * DiarioNoDisponibleException si el fsync falló antes de cubrirla (el registro no se guardará).
+     */
+    public boolean esperarDurable(long posicion, long timeoutMs) {
+        long restante = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        avisos.lock();
+        try {
+            while (durable < posicion) {
+                if (falla != null) {
+                    throw new DiarioNoDisponibleException(falla.getMessage(), falla);
+                }
+                if (restante <= 0) {
+                    return false;
+                }
+                restante = cambio.awaitNanos(restante);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            avisos.unlock();
+        }
+    }
+
+    /** Hasta el máximo de registros durables a partir de la posición. */
+    public List<Registro> leer(long desde, int maximo) {
+        List<Registro> registros = new ArrayList<>();
+        long limite = durable;
+        long segmento = segmentoDe(desde);
+        int desplazamiento = desplazamientoDe(desde);
+        while (registros.size() < maximo && posicion(segmento, desplazamiento) < limite) {
+            MappedByteBuffer buffer;
+            escritura.lock();
+            try {
+                buffer = segmentos.get(segmento);
+            } finally {
+                escritura.unlock();
+            }
+            if (buffer == null) {
+                break;
+            }
+            int longitud = buffer.getInt(desplazamiento);
+            if (longitud == FIN_SEGMENTO) {
+                segmento++;
+                desplazamiento = 0;
+                continue;
+            }
+            if (longitud <= 0) {
+                break;
+            }
+            byte[] datos = new byte[longitud];
+            buffer.get(desplazamiento + CABECERA, datos);
+            desplazamiento += CABECERA + longitud;
+            registros.add(new Registro(datos, posicion(segmento, desplazamiento)));
+        }
+        return registros;
+    }
+
+    /**
+     * Guarda el punto de control (todo lo anterior ya se procesó) y borra los segmentos que
+     * quedaron completos antes de él.
+     */
+    public void confirmarLectura(long hasta) throws IOException {
+        escribirPosicion(PUNTO_CONTROL, hasta);
+        puntoControl = hasta;
+
+        escritura.lock();
+        try {
+            List<Long> viejos = new ArrayList<>(segmentos.headMap(Math.min(segmentoDe(hasta), segmentoActual)).keySet());
+            viejos.forEach(segmentos::remove);
+            viejos.forEach(segmento -> porBorrar.add(archivo(segmento)));
+        } finally {
+            escritura.unlock();
+        }
+        porBorrar.removeIf(DiarioSegmentado::borrar);
+    }
+
+    /** Segmentos ya procesados que siguen en disco esperando que se puedan borrar. */
+    public int segmentosPorBorrar() {
+        return porBorrar.size();
+    }
+
+    /**
+     * Copia el registro a descartados/registro-POSICION.bin. El nombre sale de la posición, así
+     * que descartar dos veces el mismo registro (un lote que se reintentó) no lo duplica.
+     */
+    public Path descartar(Registro registro) throws IOException {
+        Path carpeta = directorio.resolve(DESCARTADOS);
+        Files.createDirectories(carpeta);
+        Path archivo = carpeta.resolve("registro-" + String.format("%016x", registro.fin()) + ".bin");
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            canal.write(ByteBuffer.wrap(registro.datos()));
+            canal.force(true);
+        }
+        return archivo;
+    }
+
+    public long puntoControl() {
+        return puntoControl;
+    }
+
+    /** Bytes escritos en el diario que todavía no pasaron el punto de control. */
+    public long bytesPendientes() {
+        escritura.lock();
+        try {
+            long desde = puntoControl;
+            long pendientes = 0;
+            for (Map.Entry<Long, MappedByteBuffer> entrada : segmentos.tailMap(segmentoDe(desde), true).entrySet()) {
+                int inicio = entrada.getKey() == segmentoDe(desde) ? desplazamientoDe(desde) : 0;
+                int fin = entrada.getKey() == segmentoActual ? escrito : entrada.getValue().capacity();
+                pendientes += Math.max(0, fin - inicio);
+            }
+            return pendientes;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        avisar();
+        try {
+            sincronizador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        escritura.lock();
+        try {
+            // Tras una falla no se fuerza nada más: lo posterior al corte se descarta al abrir
+            if (falla == null) {
+                actual.force();
+            }
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    private void sincronizar() {
+        while (true) {
+            avisos.lock();
+            try {
+                while (!cerrado && escritoHasta <= durable) {
+                    cambio.await();
+                }
+                if (cerrado && escritoHasta <= durable) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                avisos.unlock();
+            }
+
+            MappedByteBuffer buffer;
+            long hasta;
+            escritura.lock();
+            try {
+                buffer = actual;
+                hasta = posicion(segmentoActual, escrito);
+            } finally {
+                escritura.unlock();
+            }
+            try {
+                // Los segmentos anteriores ya se sincronizaron al rotar
+                buffer.force();
+            } catch (UncheckedIOException e) {
+                fallar(e);
+                return;
+            }
+            avisos.lock();
+            try {
+                durable = Math.max(durable, hasta);
+                cambio.signalAll();
+            } finally {
+                avisos.unlock();
+            }
+        }
+    }
+
+    private void avisar() {
+        avisos.lock();
+        try {
+            cambio.signalAll();
+        } finally {
+            avisos.unlock();
+        }
+    }
+
+    /** Marca el diario como caído y guarda el corte en la última posición durable. */
+    private void fallar(RuntimeException causa) {
+        avisos.lock();
+        try {
+            if (falla != null) {
+                return;
+            }
+            DiarioNoDisponibleException error = new DiarioNoDisponibleException(
+                    "No se pudo sincronizar el diario con el disco: " + causa.getMessage(), causa);
+            try {
+                escribirPosicion(CORTE, durable);
+            } catch (IOException | UncheckedIOException e) {
+                error.addSuppressed(e);
+            }
+            falla = error;
+            cambio.signalAll();
+        } finally {
+            avisos.unlock();
+        }
+    }
+
+    private void rotar() {
+        actual.putInt(escrito, FIN_SEGMENTO);
+        try {
+            actual.force();
+        } catch (UncheckedIOException e) {
+            fallar(e);
+            throw new DiarioNoDisponibleException(falla.getMessage(), falla);
+        }
+        try {
+            crearSegmento(segmentoActual + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el siguiente segmento del diario.", e);
+        }
+        segmentoActual++;
+        actual = segmentos.get(segmentoActual);
+        escrito = 0;
+    }
+
+    private void crearSegmento(long numero) throws IOException {
+        segmentos.put(numero, mapear(archivo(numero), tamanoSegmento));
+    }
+
+    private Path archivo(long segmento) {
+        return directorio.resolve(PREFIJO + String.format("%012d", segmento) + SUFIJO);
+    }
+
+    // False si el archivo sigue en uso (mapeado en Windows): queda para el próximo intento
+    private static boolean borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static MappedByteBuffer mapear(Path archivo, int tamano) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // El mapeo sigue válido después de cerrar el canal
+            return canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+        }
+    }
+
+    /**
+     * Al abrir después de un fsync fallido: lo escrito desde la última posición durable tuvo
+     * respuesta de error (stock repuesto) o de pendiente, y no se sabe qué parte llegó al disco.
+     * Lo que se lee completo se copia a descartados/ para revisarlo, el resto del segmento del
+     * corte se pone en cero y los segmentos posteriores se borran (todavía sin mapear).
+     */
+    private void cortar(long corte) throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.startsWith(PREFIJO) && nombre.endsWith(SUFIJO)) {
+                    numeros.add(Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length())));
+                }
+            }
+        }
+        for (long numero : numeros) {
+            if (numero < segmentoDe(corte)) {
+                continue;
+            }
+            Path archivo = archivo(numero);
+            ByteBuffer contenido = ByteBuffer.wrap(Files.readAllBytes(archivo));
+            int desde = numero == segmentoDe(corte) ? desplazamientoDe(corte) : 0;
+            List<Registro> perdidos = new ArrayList<>();
+            recorrer(contenido, numero, desde, perdidos);
+            for (Registro registro : perdidos) {
+                descartar(registro);
+            }
+            if (numero == segmentoDe(corte)) {
+                try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+                    ByteBuffer ceros = ByteBuffer.allocate(64 * 1024);
+                    for (long i = desde; i < contenido.capacity(); i += ceros.capacity()) {
+                        canal.write(ceros.clear().limit((int) Math.min(ceros.capacity(), contenido.capacity() - i)), i);
+                    }
+                    canal.force(true);
+                }
+            } else {
+                Files.delete(archivo);
+            }
+        }
+        Files.delete(directorio.resolve(CORTE));
+    }
+
+    /**
+     * Recorre los registros con CRC válido desde el desplazamiento y devuelve dónde terminan.
+     * Si recibe una lista, agrega ahí cada registro leído.
+     */
+    private static int recorrer(ByteBuffer buffer, long segmento, int desde, List<Registro> registros) {
+        int capacidad = buffer.capacity();
+        int desplazamiento = desde;
+        while (desplazamiento + 4 <= capacidad) {
+            int longitud = buffer.getInt(desplazamiento);
+            if (longitud <= 0 || desplazamiento + CABECERA + longitud + 4 > capacidad) {
+                break;
+            }
+            byte[] datos = new byte[longitud];
+            buffer.get(desplazamiento + CABECERA, datos);
+            CRC32C crc = new CRC32C();
+            crc.update(datos);
+            if ((int) crc.getValue() != buffer.getInt(desplazamiento + 4)) {
+                break;
+            }
+            desplazamiento += CABECERA + longitud;
+            if (registros != null) {
+                registros.add(new Registro(datos, posicion(segmento, desplazamiento)));
+            }
+        }
+        return desplazamiento;
+    }
+
+    /** Recorre los registros válidos del segmento y pone en cero lo que quedó a medio escribir. */
+    private static int recuperarFin(MappedByteBuffer buffer) {
+        int capacidad = buffer.capacity();
+        int desplazamiento = recorrer(buffer, 0, 0, null);
+        if (desplazamiento + 4 <= capacidad && buffer.getInt(desplazamiento) == FIN_SEGMENTO) {
+            return desplazamiento;
+        }
+        // Solo se escribe si quedó basura: un segmento recién creado ya está en cero
+        int ultimoNoCero = -1;
+        for (int i = desplazamiento; i < capacidad; i++) {
+            if (buffer.get(i) != 0) {
+                ultimoNoCero = i;
+            }
+        }
+        if (ultimoNoCero >= 0) {
+            byte[] ceros = new byte[64 * 1024];
+            for (int i = desplazamiento; i <= ultimoNoCero; i += ceros.length) {
+                buffer.put(i, ceros, 0, Math.min(ceros.length, ultimoNoCero + 1 - i));
+            }
+            buffer.force();
+        }
+        return desplazamiento;
+    }
+
+    // Escribe a un temporal y lo renombra: el archivo queda con la posición vieja o la nueva, nunca a medias
+    private void escribirPosicion(String nombre, long posicion) throws IOException {
+        Path temporal = directorio.resolve(nombre + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            canal.write(ByteBuffer.allocate(8).putLong(0, posicion));
+            canal.force(true);
+        }
+        Files.move(temporal, directorio.resolve(nombre),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Long leerPosicion(String nombre) throws IOException {
+        Path archivo = directorio.resolve(nombre);
+        if (!Files.exists(archivo)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(archivo);
+        return bytes.length == 8 ? ByteBuffer.wrap(bytes).getLong() : null;
+    }
+
+    static long posicion(long segmento, int desplazamiento) {
+        return (segmento << 32) | desplazamiento;
+    }
+
+    static long segmentoDe(long posicion) {
+        return posicion >>> 32;
+    }
+
+    static int desplazamientoDe(long posicion) {
+        return (int) posicion;
+    }
+}
@@ -0,0 +1,22 @@
+package com.pokeshop.ventas.diario;
+
+/**
+ * La venta ya está escrita en el diario pero el fsync no terminó a tiempo. No es un rechazo: se
+ * va a guardar cuando el disco sincronice, así que el stock no se repone y el controlador la
+ * traduce a 202 con la ubicación de la venta (que responde 202 hasta que llegue a la base de
+ * datos). Si ese fsync termina fallando, el registro pasa a descartados/ para revisarlo a mano.
+ */
+public class VentaPendienteException extends RuntimeException {
+
+    private final Long idVenta;
+
+    public VentaPendienteException(Long idVenta, String motivo) {
+        super("La venta " + idVenta + " quedó registrada en el diario local pero todavía no se confirmó en disco ("
+                + motivo + "); se guardará cuando se sincronice.");
+        this.idVenta = idVenta;
+    }
+
+    public Long getIdVenta() {
+        return idVenta;
+    }
+}
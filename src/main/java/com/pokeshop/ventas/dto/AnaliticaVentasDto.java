@@ -0,0 +1,27 @@
+package com.pokeshop.ventas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+// Respuesta de GET /api/v1/ventas/analitica; totales desde el arranque de esta instancia, valores aproximados
+@Data
+public class AnaliticaVentasDto {
+    private long ventas;
+    private long unidades;
+    private double ingresos;                 // Total con IVA
+    private List<ProductoTop> topProductos;  // Unidades estimadas, nunca por debajo del valor real
+    private long compradoresUltimos5Minutos;
+    private long compradoresUltimos15Minutos;
+    private long compradoresVentana;
+    private int minutosVentana;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductoTop {
+        private Long idProducto;
+        private long unidadesEstimadas;
+    }
+}
@@ -0,0 +1,12 @@
+package com.pokeshop.ventas.dto;
+
+import com.pokeshop.ventas.model.Venta;
+import lombok.Data;
+import java.util.List;
+
+// Página de GET /api/v1/ventas; para la siguiente se reenvía siguienteCursor como parámetro "cursor"
+@Data
+public class PaginaVentasDto {
+    private List<Venta> ventas;
+    private String siguienteCursor; // null cuando no hay más resultados
+}
@@ -0,0 +1,22 @@
+package com.pokeshop.ventas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Respuesta HTTP de POST /api/v1/ventas tal como se guarda para repetirla ante un reintento con la misma clave
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RespuestaIdempotenteDto {
+    private int codigoEstado;
+    private String tipoContenido;
+    private String ubicacion;  // Header Location (modo asíncrono), puede ser null
+    private String cuerpo;
+    private boolean repetida;  // true si viene de una ejecución anterior
+    private boolean reintentable; // Rechazo pasajero (conexión, tiempo agotado...): no se guarda
+
+    public RespuestaIdempotenteDto(int codigoEstado, String tipoContenido, String ubicacion, String cuerpo, boolean repetida) {
+        this(codigoEstado, tipoContenido, ubicacion, cuerpo, repetida, false);
+    }
+}
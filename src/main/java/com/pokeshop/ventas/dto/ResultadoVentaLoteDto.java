@@ -0,0 +1,14 @@
+package com.pokeshop.ventas.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+// Resultado de cada orden de un POST /api/v1/ventas/lote, en el mismo orden en que llegaron
+@Data
+public class ResultadoVentaLoteDto {
+    private int indice;
+    private String estado;  // COMPLETADA o RECHAZADA
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long idVenta;   // Solo cuando estado = COMPLETADA
+    private String mensaje; // Motivo cuando estado = RECHAZADA
+}
@@ -0,0 +1,16 @@
+package com.pokeshop.ventas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Fila de GET /api/v1/ventas/reportes/productos: totales de un producto en el rango pedido
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenProductoDto {
+    private Long idProducto;
+    private String nombreProducto;
+    private Long unidades;
+    private Double ingresos; // Sin IVA
+}
@@ -1,16 +1,26 @@
 package com.pokeshop.ventas.dto;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import java.util.List;
 
 @Data
 public class SolicitudVentaDto {
+    @NotNull(message = "El idUsuario es obligatorio")
     private Long idUsuario;
-    private List<ItemProductoDto> productos;
+
+    @NotNull(message = "La lista de productos es obligatoria")
+    private List<@Valid ItemProductoDto> productos;
 
     @Data
     public static class ItemProductoDto {
+        @NotNull(message = "El idProducto es obligatorio")
         private Long idProducto;
+
+        @NotNull(message = "La cantidad es obligatoria")
+        @Positive(message = "La cantidad debe ser mayor a cero")
         private Integer cantidad;
     }
 }
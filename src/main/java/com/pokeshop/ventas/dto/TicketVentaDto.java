@@ -0,0 +1,17 @@
+package com.pokeshop.ventas.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Respuesta del modo asíncrono: la venta queda en cola y se consulta por este ticket
+@Data
+public class TicketVentaDto {
+    private String idTicket;
+    private String estado;  // PENDIENTE, COMPLETADA o RECHAZADA
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long idVenta;   // Solo cuando estado = COMPLETADA
+    private String mensaje; // Motivo cuando estado = RECHAZADA
+    private LocalDateTime fechaRecepcion;
+    private LocalDateTime fechaActualizacion;
+}
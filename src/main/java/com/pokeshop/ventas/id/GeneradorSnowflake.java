@@ -0,0 +1,61 @@
+package com.pokeshop.ventas.id;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids de 63 bits ordenados por tiempo: 41 bits de milisegundos desde 2025-01-01,
+ * 10 bits de nodo (0-1023) y 12 bits de secuencia dentro del mismo milisegundo.
+ * Dos instancias del servicio con distinto nodo nunca generan el mismo id, y como el id
+ * se conoce antes del INSERT, Hibernate puede agrupar los inserts en lotes JDBC.
+ */
+public final class GeneradorSnowflake {
+
+    static final long EPOCA_MS = 1735689600000L; // 2025-01-01T00:00:00Z
+    static final int BITS_NODO = 10;
+    static final int BITS_SECUENCIA = 12;
+    public static final int NODO_MAXIMO = (1 << BITS_NODO) - 1;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+
+    // Una sola instancia por nodo dentro del proceso, la compartan Hibernate u otros componentes
+    private static final Map<Integer, GeneradorSnowflake> POR_NODO = new ConcurrentHashMap<>();
+
+    private final long nodo;
+
+    // Milisegundo y secuencia del último id entregado, empaquetados para avanzarlos con un solo CAS
+    private final AtomicLong estado = new AtomicLong();
+
+    private GeneradorSnowflake(int nodo) {
+        if (nodo < 0 || nodo > NODO_MAXIMO) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + NODO_MAXIMO + ", se recibió " + nodo);
+        }
+        this.nodo = nodo;
+    }
+
+    public static GeneradorSnowflake paraNodo(int nodo) {
+        return POR_NODO.computeIfAbsent(nodo, GeneradorSnowflake::new);
+    }
+
+    public long siguiente() {
+        while (true) {
+            long anterior = estado.get();
+            long ultimoMs = anterior >>> BITS_SECUENCIA;
+            long ahoraMs = System.currentTimeMillis() - EPOCA_MS;
+
+            // Si el reloj avanzó se reinicia la secuencia. Si no (mismo milisegundo o reloj atrasado)
+            // se incrementa; al desbordar los 12 bits el milisegundo pasa al siguiente, sin esperar.
+            long nuevo = ahoraMs > ultimoMs ? ahoraMs << BITS_SECUENCIA : anterior + 1;
+
+            if (estado.compareAndSet(anterior, nuevo)) {
+                long milisegundo = nuevo >>> BITS_SECUENCIA;
+                long secuencia = nuevo & MASCARA_SECUENCIA;
+                return (milisegundo << (BITS_NODO + BITS_SECUENCIA)) | (nodo << BITS_SECUENCIA) | secuencia;
+            }
+        }
+    }
+
+    public static int nodoDe(long id) {
+        return (int) ((id >>> BITS_SECUENCIA) & NODO_MAXIMO);
+    }
+}
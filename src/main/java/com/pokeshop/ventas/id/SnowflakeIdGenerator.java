@@ -0,0 +1,47 @@
+package com.pokeshop.ventas.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+/**
+ * Generador de Hibernate para {@link SnowflakeId}. El nodo se lee de la propiedad
+ * "ventas.id.nodo" de Hibernate (spring.jpa.properties.ventas.id.nodo).
+ *
+ * Hibernate busca el constructor con estos tres tipos exactos; con GeneratorCreationContext en
+ * vez de CustomIdGeneratorCreationContext no lo encuentra y el EntityManagerFactory no arranca.
+ */
+public class SnowflakeIdGenerator implements BeforeExecutionGenerator {
+
+    public static final String PROPIEDAD_NODO = "ventas.id.nodo";
+
+    private final GeneradorSnowflake generador;
+
+    public SnowflakeIdGenerator(SnowflakeId config, Member miembro, CustomIdGeneratorCreationContext contexto) {
+        Object nodo = contexto.getServiceRegistry().getService(ConfigurationService.class)
+                .getSettings().get(PROPIEDAD_NODO);
+        this.generador = GeneradorSnowflake.paraNodo(nodo == null ? 0 : Integer.parseInt(nodo.toString().trim()));
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return currentValue != null ? currentValue : generador.siguiente();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    // Permite guardar entidades que ya traen su id (por ejemplo, asignado antes de llegar a la BD)
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+}
@@ -1,16 +1,19 @@
 package com.pokeshop.ventas.model;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pokeshop.ventas.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "detalle_venta")
+@Table(name = "detalle_venta", indexes = @Index(name = "idx_detalle_venta_venta", columnList = "id_venta"))
 @Data
 public class DetalleVenta {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId // Id asignado en la aplicación: permite inserts por lotes y varias instancias
+    @JsonFormat(shape = JsonFormat.Shape.STRING) // Como idVenta: supera 2^53
     private Long idDetalle;
 
     @Column(nullable = false)
@@ -0,0 +1,47 @@
+package com.pokeshop.ventas.model;
+
+import com.pokeshop.ventas.id.SnowflakeId;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Descuento de stock pendiente de enviar a Productos, guardado junto con la venta (ver OutboxStockService)
+@Entity
+@Table(name = "outbox_stock", indexes = {
+        @Index(name = "idx_outbox_stock_pendientes", columnList = "estado, proximo_intento"),
+        @Index(name = "idx_outbox_stock_reclamo", columnList = "reclamo"),
+        @Index(name = "idx_outbox_stock_producto", columnList = "id_producto, estado")
+})
+@Data
+public class EventoStock {
+
+    @Id
+    @SnowflakeId // Id asignado en la aplicación: se inserta por lotes con la venta
+    @Column(name = "id_evento")
+    private Long idEvento;
+
+    @Column(name = "id_venta", nullable = false)
+    private Long idVenta;
+
+    @Column(nullable = false)
+    private Long idProducto;
+
+    private Integer cantidad;
+
+    @Column(length = 20, nullable = false)
+    private String estado; // PENDIENTE, ENVIADO, RECHAZADO o FALLIDO
+
+    private Integer intentos;
+
+    @Column(name = "proximo_intento")
+    private LocalDateTime proximoIntento;
+
+    // Ciclo del despachador que tomó el evento; evita que dos instancias envíen el mismo descuento
+    @Column(length = 36)
+    private String reclamo;
+
+    private LocalDateTime creado;
+
+    @Column(length = 500)
+    private String ultimoError;
+}
@@ -0,0 +1,33 @@
+package com.pokeshop.ventas.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Respuesta guardada de un POST /api/v1/ventas con Idempotency-Key (ver IdempotenciaService)
+@Entity
+@Table(name = "idempotencia", indexes = @Index(name = "idx_idempotencia_expira", columnList = "expira"))
+@Data
+public class RegistroIdempotencia {
+
+    @Id
+    @Column(length = 100)
+    private String clave;
+
+    // SHA-256 del cuerpo de la solicitud: la misma clave con otro cuerpo se rechaza
+    @Column(length = 64, nullable = false)
+    private String huella;
+
+    @Column(length = 20, nullable = false)
+    private String estado; // EN_CURSO o COMPLETADA
+
+    private Integer codigoEstado;
+    private String tipoContenido;
+    private String ubicacion;
+
+    @Lob
+    private String cuerpo;
+
+    private LocalDateTime creada;
+    private LocalDateTime expira;
+}
@@ -0,0 +1,35 @@
+package com.pokeshop.ventas.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Unidades e ingresos (sin IVA) por producto y día
+@Entity
+@Table(name = "resumen_producto_diario")
+@IdClass(ResumenProductoDiario.Clave.class)
+@Data
+public class ResumenProductoDiario {
+
+    @Id
+    private LocalDate fecha;
+
+    @Id
+    private Long idProducto;
+
+    private String nombreProducto; // Último nombre visto en el día
+
+    private Long unidades;
+    private Double ingresos;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private LocalDate fecha;
+        private Long idProducto;
+    }
+}
@@ -0,0 +1,33 @@
+package com.pokeshop.ventas.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Compras por usuario y mes; periodo es el primer día del mes
+@Entity
+@Table(name = "resumen_usuario_mensual")
+@IdClass(ResumenUsuarioMensual.Clave.class)
+@Data
+public class ResumenUsuarioMensual {
+
+    @Id
+    private Long idUsuario;
+
+    @Id
+    private LocalDate periodo;
+
+    private Long cantidadVentas;
+    private Double total;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private Long idUsuario;
+        private LocalDate periodo;
+    }
+}
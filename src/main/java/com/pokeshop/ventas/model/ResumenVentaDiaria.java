@@ -0,0 +1,20 @@
+package com.pokeshop.ventas.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDate;
+
+// Totales de ventas por día; se actualiza con cada venta guardada (ver ResumenVentasService)
+@Entity
+@Table(name = "resumen_venta_diaria")
+@Data
+public class ResumenVentaDiaria {
+
+    @Id
+    private LocalDate fecha;
+
+    private Long cantidadVentas;
+    private Double subtotal;
+    private Double iva;
+    private Double total;
+}
@@ -1,5 +1,7 @@
 package com.pokeshop.ventas.model;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.pokeshop.ventas.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -7,15 +9,23 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "ventas")
+// Índices para las consultas paginadas (filtro + fecha + id como desempate del cursor)
+@Table(name = "ventas", indexes = {
+        @Index(name = "idx_ventas_usuario_fecha", columnList = "id_usuario, fecha, id_venta"),
+        @Index(name = "idx_ventas_estado_fecha", columnList = "estado, fecha, id_venta"),
+        @Index(name = "idx_ventas_fecha", columnList = "fecha, id_venta")
+})
 @Data
 public class Venta {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId // Id asignado en la aplicación: permite inserts por lotes y varias instancias
+    @Column(name = "id_venta")
+    // En JSON va como texto: los ids Snowflake superan 2^53 y un cliente JavaScript los redondearía
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
     private Long idVenta;
 
-    @Column(nullable = false)
+    @Column(name = "id_usuario", nullable = false)
     private Long idUsuario; // ID foráneo del servicio de usuarios
 
     private LocalDateTime fecha;
@@ -0,0 +1,54 @@
+package com.pokeshop.ventas.repository;
+
+import com.pokeshop.ventas.model.EventoStock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EventoStockRepository extends JpaRepository<EventoStock, Long> {
+
+    @Query("select e.idEvento from EventoStock e where e.estado = 'PENDIENTE' and e.proximoIntento <= :ahora " +
+            "order by e.idEvento")
+    List<Long> buscarPendientes(@Param("ahora") LocalDateTime ahora, Pageable pagina);
+
+    // Toma los eventos para este ciclo corriendo el próximo intento: si el ciclo se cae, otro los retoma al vencer
+    @Modifying
+    @Transactional
+    @Query("update EventoStock e set e.reclamo = :reclamo, e.proximoIntento = :hasta " +
+            "where e.idEvento in :ids and e.estado = 'PENDIENTE' and e.proximoIntento <= :ahora")
+    int reclamar(@Param("ids") Collection<Long> ids, @Param("reclamo") String reclamo,
+                 @Param("ahora") LocalDateTime ahora, @Param("hasta") LocalDateTime hasta);
+
+    List<EventoStock> findByReclamo(String reclamo);
+
+    // Unidades vendidas que Productos todavía no descontó, por producto: [idProducto, suma]
+    @Query("select e.idProducto, sum(e.cantidad) from EventoStock e where e.estado = 'PENDIENTE' " +
+            "and e.idProducto in :idsProducto group by e.idProducto")
+    List<Object[]> sumarPendientesPorProducto(@Param("idsProducto") Collection<Long> idsProducto);
+
+    @Modifying
+    @Transactional
+    @Query("update EventoStock e set e.estado = :estado, e.ultimoError = :error where e.idEvento in :ids")
+    void marcar(@Param("ids") Collection<Long> ids, @Param("estado") String estado, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("update EventoStock e set e.intentos = e.intentos + 1, e.proximoIntento = :proximo, " +
+            "e.ultimoError = :error where e.idEvento in :ids")
+    void reprogramar(@Param("ids") Collection<Long> ids, @Param("proximo") LocalDateTime proximo,
+                     @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("delete from EventoStock e where e.estado = 'ENVIADO' and e.creado < :antes")
+    int borrarEnviados(@Param("antes") LocalDateTime antes);
+}
@@ -0,0 +1,40 @@
+package com.pokeshop.ventas.repository;
+
+import com.pokeshop.ventas.model.RegistroIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotenciaRepository extends JpaRepository<RegistroIdempotencia, String> {
+
+    // Insert directo (save haría merge): si otra instancia ya reservó la clave falla por clave duplicada
+    @Modifying
+    @Transactional
+    @Query(value = "insert into idempotencia (clave, huella, estado, creada, expira) " +
+            "values (:clave, :huella, 'EN_CURSO', :creada, :expira)", nativeQuery = true)
+    void reservar(@Param("clave") String clave, @Param("huella") String huella,
+                  @Param("creada") LocalDateTime creada, @Param("expira") LocalDateTime expira);
+
+    @Modifying
+    @Transactional
+    @Query("update RegistroIdempotencia r set r.estado = 'COMPLETADA', r.codigoEstado = :codigo, " +
+            "r.tipoContenido = :tipo, r.ubicacion = :ubicacion, r.cuerpo = :cuerpo where r.clave = :clave")
+    void completar(@Param("clave") String clave, @Param("codigo") int codigoEstado, @Param("tipo") String tipoContenido,
+                   @Param("ubicacion") String ubicacion, @Param("cuerpo") String cuerpo);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RegistroIdempotencia r where r.clave = :clave")
+    void liberar(@Param("clave") String clave);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RegistroIdempotencia r where r.expira < :ahora")
+    int borrarVencidas(@Param("ahora") LocalDateTime ahora);
+}
@@ -0,0 +1,46 @@
+package com.pokeshop.ventas.repository;
+
+import com.pokeshop.ventas.dto.ResumenProductoDto;
+import com.pokeshop.ventas.model.ResumenProductoDiario;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenProductoDiarioRepository extends JpaRepository<ResumenProductoDiario, ResumenProductoDiario.Clave> {
+
+    // Productos más vendidos del rango, sumando solo las filas diarias ya agregadas
+    @Query("select new com.pokeshop.ventas.dto.ResumenProductoDto(r.idProducto, max(r.nombreProducto), sum(r.unidades), sum(r.ingresos)) " +
+            "from ResumenProductoDiario r where r.fecha between :desde and :hasta " +
+            "group by r.idProducto order by sum(r.unidades) desc")
+    List<ResumenProductoDto> sumarPorProducto(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta, Pageable pagina);
+
+    @Modifying
+    @Query(value = "insert into resumen_producto_diario (fecha, id_producto, nombre_producto, unidades, ingresos) " +
+            "values (:fecha, :idProducto, :nombre, :unidades, :ingresos) " +
+            "on duplicate key update nombre_producto = values(nombre_producto), " +
+            "unidades = unidades + values(unidades), ingresos = ingresos + values(ingresos)",
+            nativeQuery = true)
+    void acumular(@Param("fecha") LocalDate fecha, @Param("idProducto") Long idProducto, @Param("nombre") String nombre,
+                  @Param("unidades") long unidades, @Param("ingresos") double ingresos);
+
+    @Modifying
+    @Query(value = "delete from resumen_producto_diario where fecha >= :desde and fecha < :hasta", nativeQuery = true)
+    void borrarRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Modifying
+    @Query(value = "insert into resumen_producto_diario (fecha, id_producto, nombre_producto, unidades, ingresos) " +
+            "select date(v.fecha), d.id_producto, max(d.nombre_producto), sum(d.cantidad), sum(d.cantidad * d.precio_unitario) " +
+            "from ventas v join detalle_venta d on d.id_venta = v.id_venta " +
+            "where v.fecha >= :desde and v.fecha < :hasta and v.estado = 'COMPLETADA' " +
+            "group by date(v.fecha), d.id_producto",
+            nativeQuery = true)
+    void recalcularRango(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
@@ -0,0 +1,39 @@
+package com.pokeshop.ventas.repository;
+
+import com.pokeshop.ventas.model.ResumenUsuarioMensual;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenUsuarioMensualRepository extends JpaRepository<ResumenUsuarioMensual, ResumenUsuarioMensual.Clave> {
+
+    List<ResumenUsuarioMensual> findByIdUsuarioAndPeriodoBetweenOrderByPeriodo(Long idUsuario, LocalDate desde, LocalDate hasta);
+
+    @Modifying
+    @Query(value = "insert into resumen_usuario_mensual (id_usuario, periodo, cantidad_ventas, total) " +
+            "values (:idUsuario, :periodo, :ventas, :total) " +
+            "on duplicate key update cantidad_ventas = cantidad_ventas + values(cantidad_ventas), total = total + values(total)",
+            nativeQuery = true)
+    void acumular(@Param("idUsuario") Long idUsuario, @Param("periodo") LocalDate periodo,
+                  @Param("ventas") long ventas, @Param("total") double total);
+
+    @Modifying
+    @Query(value = "delete from resumen_usuario_mensual where periodo >= :desde and periodo < :hasta", nativeQuery = true)
+    void borrarRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    // periodo = fecha menos (día del mes - 1) días, es decir el primer día del mes
+    @Modifying
+    @Query(value = "insert into resumen_usuario_mensual (id_usuario, periodo, cantidad_ventas, total) " +
+            "select v.id_usuario, date_sub(date(v.fecha), interval dayofmonth(v.fecha) - 1 day), count(*), sum(v.total) " +
+            "from ventas v where v.fecha >= :desde and v.fecha < :hasta and v.estado = 'COMPLETADA' " +
+            "group by v.id_usuario, date_sub(date(v.fecha), interval dayofmonth(v.fecha) - 1 day)",
+            nativeQuery = true)
+    void recalcularRango(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
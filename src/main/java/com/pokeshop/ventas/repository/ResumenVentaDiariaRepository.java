@@ -0,0 +1,39 @@
+package com.pokeshop.ventas.repository;
+
+import com.pokeshop.ventas.model.ResumenVentaDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenVentaDiariaRepository extends JpaRepository<ResumenVentaDiaria, LocalDate> {
+
+    List<ResumenVentaDiaria> findByFechaBetweenOrderByFecha(LocalDate desde, LocalDate hasta);
+
+    // Suma sobre la fila del día (la crea si no existe) sin leerla antes
+    @Modifying
+    @Query(value = "insert into resumen_venta_diaria (fecha, cantidad_ventas, subtotal, iva, total) " +
+            "values (:fecha, :ventas, :subtotal, :iva, :total) " +
+            "on duplicate key update cantidad_ventas = cantidad_ventas + values(cantidad_ventas), " +
+            "subtotal = subtotal + values(subtotal), iva = iva + values(iva), total = total + values(total)",
+            nativeQuery = true)
+    void acumular(@Param("fecha") LocalDate fecha, @Param("ventas") long ventas, @Param("subtotal") double subtotal,
+                  @Param("iva") double iva, @Param("total") double total);
+
+    @Modifying
+    @Query(value = "delete from resumen_venta_diaria where fecha >= :desde and fecha < :hasta", nativeQuery = true)
+    void borrarRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Modifying
+    @Query(value = "insert into resumen_venta_diaria (fecha, cantidad_ventas, subtotal, iva, total) " +
+            "select date(v.fecha), count(*), sum(v.subtotal), sum(v.iva), sum(v.total) from ventas v " +
+            "where v.fecha >= :desde and v.fecha < :hasta and v.estado = 'COMPLETADA' group by date(v.fecha)",
+            nativeQuery = true)
+    void recalcularRango(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
@@ -2,8 +2,21 @@ package com.pokeshop.ventas.repository;
 
 import com.pokeshop.ventas.model.Venta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface VentaRepository extends JpaRepository<Venta, Long> {
-}
\ No newline at end of file
+public interface VentaRepository extends JpaRepository<Venta, Long>, VentaRepositoryConsultas {
+
+    // Ventas de una página con sus detalles en una sola consulta (evita un SELECT de detalles por venta)
+    @Query("select distinct v from Venta v left join fetch v.detalles where v.idVenta in :ids")
+    List<Venta> buscarConDetalles(@Param("ids") Collection<Long> ids);
+
+    // Cuáles de estos ids ya están guardados (al pasar el diario de ventas a la base de datos)
+    @Query("select v.idVenta from Venta v where v.idVenta in :ids")
+    List<Long> buscarIdsExistentes(@Param("ids") Collection<Long> ids);
+}
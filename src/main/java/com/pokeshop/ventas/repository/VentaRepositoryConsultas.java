@@ -0,0 +1,16 @@
+package com.pokeshop.ventas.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Consultas de Venta que no se pueden expresar con métodos derivados (filtros opcionales + keyset)
+public interface VentaRepositoryConsultas {
+
+    /**
+     * Ids de una página de ventas ordenadas por fecha e id descendentes.
+     * Los filtros en null no se aplican. Si hay cursor, la página empieza justo después de
+     * (fechaCursor, idCursor) sin usar OFFSET, así que el costo no depende de la profundidad.
+     */
+    List<Long> buscarIdsPagina(Long idUsuario, LocalDateTime desde, LocalDateTime hasta, String estado,
+                               LocalDateTime fechaCursor, Long idCursor, int limite);
+}
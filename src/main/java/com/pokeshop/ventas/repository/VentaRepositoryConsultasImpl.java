@@ -0,0 +1,56 @@
+package com.pokeshop.ventas.repository;
+
+import com.pokeshop.ventas.model.Venta;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+class VentaRepositoryConsultasImpl implements VentaRepositoryConsultas {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> buscarIdsPagina(Long idUsuario, LocalDateTime desde, LocalDateTime hasta, String estado,
+                                      LocalDateTime fechaCursor, Long idCursor, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> consulta = cb.createQuery(Long.class);
+        Root<Venta> venta = consulta.from(Venta.class);
+
+        List<Predicate> condiciones = new ArrayList<>();
+        if (idUsuario != null) {
+            condiciones.add(cb.equal(venta.get("idUsuario"), idUsuario));
+        }
+        if (estado != null) {
+            condiciones.add(cb.equal(venta.get("estado"), estado));
+        }
+        if (desde != null) {
+            condiciones.add(cb.greaterThanOrEqualTo(venta.get("fecha"), desde));
+        }
+        if (hasta != null) {
+            condiciones.add(cb.lessThan(venta.get("fecha"), hasta));
+        }
+        if (fechaCursor != null && idCursor != null) {
+            // fecha < cursor OR (fecha = cursor AND id < cursor): el índice (..., fecha, id_venta) sigue desde ahí
+            condiciones.add(cb.or(
+                    cb.lessThan(venta.get("fecha"), fechaCursor),
+                    cb.and(cb.equal(venta.get("fecha"), fechaCursor), cb.lessThan(venta.get("idVenta"), idCursor))));
+        }
+
+        // Solo el id: la página se resuelve recorriendo el índice, sin leer las filas completas
+        consulta.select(venta.get("idVenta"))
+                .where(condiciones.toArray(new Predicate[0]))
+                .orderBy(cb.desc(venta.get("fecha")), cb.desc(venta.get("idVenta")));
+
+        return entityManager.createQuery(consulta)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+}
@@ -0,0 +1,133 @@
+package com.pokeshop.ventas.resiliencia;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker por conteo: mira el resultado de las últimas N llamadas y, si la proporción de
+ * fallos supera el umbral, se abre y rechaza todo sin llamar al servicio. Pasado el tiempo de espera
+ * deja pasar unas pocas llamadas de prueba (semiabierto): si todas salen bien se cierra, si una
+ * falla vuelve a abrirse. Los métodos son synchronized; solo guardan un par de campos.
+ */
+public final class CircuitBreaker {
+
+    public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final double umbralFallos;
+    private final int minimoLlamadas;
+    private final long esperaAbiertoNanos;
+    private final int llamadasPrueba;
+    private final LongSupplier reloj;
+
+    // Anillo con el resultado de las últimas llamadas (true = fallo)
+    private final boolean[] resultados;
+    private int posicion;
+    private int registradas;
+    private int fallos;
+
+    private Estado estado = Estado.CERRADO;
+    private long abiertoDesde;
+    private int pruebasEnCurso;
+    private int pruebasExitosas;
+
+    public CircuitBreaker(int ventana, double umbralFallos, int minimoLlamadas, long esperaAbiertoMs, int llamadasPrueba) {
+        this(ventana, umbralFallos, minimoLlamadas, esperaAbiertoMs, llamadasPrueba, System::nanoTime);
+    }
+
+    CircuitBreaker(int ventana, double umbralFallos, int minimoLlamadas, long esperaAbiertoMs, int llamadasPrueba,
+                   LongSupplier reloj) {
+        this.resultados = new boolean[ventana];
+        this.umbralFallos = umbralFallos;
+        this.minimoLlamadas = Math.min(minimoLlamadas, ventana);
+        this.esperaAbiertoNanos = TimeUnit.MILLISECONDS.toNanos(esperaAbiertoMs);
+        this.llamadasPrueba = llamadasPrueba;
+        this.reloj = reloj;
+    }
+
+    /** Si la llamada puede salir. Cada true debe terminar en registrarExito, registrarFallo o liberarPermiso. */
+    public synchronized boolean permitir() {
+        if (estado == Estado.ABIERTO) {
+            if (reloj.getAsLong() - abiertoDesde < esperaAbiertoNanos) {
+                return false;
+            }
+            estado = Estado.SEMIABIERTO;
+            pruebasEnCurso = 0;
+            pruebasExitosas = 0;
+        }
+        if (estado == Estado.SEMIABIERTO) {
+            if (pruebasEnCurso >= llamadasPrueba) {
+                return false;
+            }
+            pruebasEnCurso++;
+        }
+        return true;
+    }
+
+    /** Devuelve un permiso que no llegó a usarse (la llamada se rechazó más adelante). */
+    public synchronized void liberarPermiso() {
+        if (estado == Estado.SEMIABIERTO && pruebasEnCurso > 0) {
+            pruebasEnCurso--;
+        }
+    }
+
+    public synchronized void registrarExito() {
+        if (estado == Estado.SEMIABIERTO) {
+            if (++pruebasExitosas >= llamadasPrueba) {
+                cerrar();
+            }
+        } else if (estado == Estado.CERRADO) {
+            agregar(false);
+        }
+    }
+
+    public synchronized void registrarFallo() {
+        if (estado == Estado.SEMIABIERTO) {
+            abrir();
+        } else if (estado == Estado.CERRADO) {
+            agregar(true);
+            if (registradas >= minimoLlamadas && fallos >= umbralFallos * registradas) {
+                abrir();
+            }
+        }
+    }
+
+    public synchronized Estado estado() {
+        return estado;
+    }
+
+    /** Segundos (redondeados hacia arriba) hasta que se permita la próxima llamada de prueba. */
+    public synchronized long segundosHastaPrueba() {
+        if (estado != Estado.ABIERTO) {
+            return 0;
+        }
+        long restante = esperaAbiertoNanos - (reloj.getAsLong() - abiertoDesde);
+        return Math.max(1, (TimeUnit.NANOSECONDS.toMillis(restante) + 999) / 1000);
+    }
+
+    private void agregar(boolean fallo) {
+        if (registradas == resultados.length) {
+            if (resultados[posicion]) {
+                fallos--;
+            }
+        } else {
+            registradas++;
+        }
+        resultados[posicion] = fallo;
+        if (fallo) {
+            fallos++;
+        }
+        posicion = (posicion + 1) % resultados.length;
+    }
+
+    private void abrir() {
+        estado = Estado.ABIERTO;
+        abiertoDesde = reloj.getAsLong();
+    }
+
+    private void cerrar() {
+        estado = Estado.CERRADO;
+        posicion = 0;
+        registradas = 0;
+        fallos = 0;
+    }
+}
@@ -0,0 +1,89 @@
+package com.pokeshop.ventas.resiliencia;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Límite de concurrencia que se ajusta solo (AIMD, como la ventana de congestión de TCP).
+ * Cada respuesta rápida y correcta sube el límite en 1/límite, o sea cerca de uno por "ronda"
+ * de llamadas, pero solo si el límite se está usando. Una respuesta lenta (sobre la latencia
+ * objetivo) o un error de sobrecarga lo multiplica por el factor de reducción. Así, cuando el
+ * servicio se degrada, las llamadas que sobran se rechazan al instante en vez de hacer cola.
+ *
+ * Como TCP, se reduce a lo sumo una vez por ventana de latencia: una llamada lenta que salió
+ * antes de la última reducción no vuelve a reducir. Si no, las N llamadas que estaban en vuelo
+ * cuando el servicio se puso lento bajarían el límite N veces por el mismo episodio.
+ */
+public final class LimitadorAimd {
+
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaObjetivoNanos;
+    private final double factorReduccion;
+    private final LongSupplier reloj;
+
+    private final AtomicInteger enVuelo = new AtomicInteger();
+    private volatile double limite;
+
+    // Momento de la última reducción (solo válido si huboReduccion)
+    private long ultimaReduccion;
+    private boolean huboReduccion;
+
+    public LimitadorAimd(int inicial, int minimo, int maximo, long latenciaObjetivoMs, double factorReduccion) {
+        this(inicial, minimo, maximo, latenciaObjetivoMs, factorReduccion, System::nanoTime);
+    }
+
+    LimitadorAimd(int inicial, int minimo, int maximo, long latenciaObjetivoMs, double factorReduccion,
+                  LongSupplier reloj) {
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.latenciaObjetivoNanos = TimeUnit.MILLISECONDS.toNanos(latenciaObjetivoMs);
+        this.factorReduccion = factorReduccion;
+        this.reloj = reloj;
+        this.limite = Math.max(minimo, Math.min(maximo, inicial));
+    }
+
+    public boolean adquirir() {
+        while (true) {
+            int actual = enVuelo.get();
+            if (actual >= (int) limite) {
+                return false;
+            }
+            if (enVuelo.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Termina una llamada y ajusta el límite según cómo le fue. */
+    public void liberar(long latenciaNanos, boolean sobrecarga) {
+        int enVueloAntes = enVuelo.getAndDecrement();
+        synchronized (this) {
+            if (sobrecarga || latenciaNanos > latenciaObjetivoNanos) {
+                long ahora = reloj.getAsLong();
+                // La llamada salió después de la última reducción: es una señal nueva
+                if (!huboReduccion || ahora - latenciaNanos - ultimaReduccion >= 0) {
+                    limite = Math.max(minimo, limite * factorReduccion);
+                    ultimaReduccion = ahora;
+                    huboReduccion = true;
+                }
+            } else if (enVueloAntes * 2 >= limite) {
+                limite = Math.min(maximo, limite + 1.0 / limite);
+            }
+        }
+    }
+
+    /** Devuelve el permiso sin ajustar el límite (la llamada no llegó a hacerse). */
+    public void liberarSinMedir() {
+        enVuelo.decrementAndGet();
+    }
+
+    public int limite() {
+        return (int) limite;
+    }
+
+    public int enVuelo() {
+        return enVuelo.get();
+    }
+}
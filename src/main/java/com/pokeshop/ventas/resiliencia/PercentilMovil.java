@@ -0,0 +1,44 @@
+package com.pokeshop.ventas.resiliencia;
+
+import java.util.Arrays;
+
+/**
+ * Percentil de las últimas N latencias. Se recalcula cada tantas muestras (ordenar unos cientos
+ * de valores es poco comparado con una llamada HTTP) y la lectura es un campo volatile.
+ * Hasta juntar el mínimo de muestras devuelve el valor inicial.
+ */
+public final class PercentilMovil {
+
+    private final double percentil;
+    private final long[] muestras;
+    private final int minimoMuestras;
+    private final int recalcularCada;
+
+    private int posicion;
+    private long registradas;
+    private volatile long valor;
+
+    public PercentilMovil(double percentil, int ventana, int minimoMuestras, long valorInicial) {
+        this.percentil = percentil;
+        this.muestras = new long[ventana];
+        this.minimoMuestras = Math.min(minimoMuestras, ventana);
+        this.recalcularCada = Math.max(1, ventana / 10);
+        this.valor = valorInicial;
+    }
+
+    public synchronized void registrar(long muestra) {
+        muestras[posicion] = muestra;
+        posicion = (posicion + 1) % muestras.length;
+        registradas++;
+        if (registradas >= minimoMuestras && registradas % recalcularCada == 0) {
+            int cantidad = (int) Math.min(registradas, muestras.length);
+            long[] ordenadas = Arrays.copyOf(muestras, cantidad);
+            Arrays.sort(ordenadas);
+            valor = ordenadas[(int) Math.min(cantidad - 1, Math.ceil(percentil * cantidad) - 1)];
+        }
+    }
+
+    public long valor() {
+        return valor;
+    }
+}
@@ -0,0 +1,74 @@
+package com.pokeshop.ventas.resiliencia;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hora límite de una venta. Viaja en un ThreadLocal por el hilo que hace las llamadas remotas;
+ * el cliente HTTP la lee para darle a cada llamada solo el tiempo que queda, y la protección de
+ * cada servicio no llama si ya venció. Al pasar trabajo a otro hilo hay que activarla allí:
+ *
+ * Plazo plazo = Plazo.actual();
+ * ejecutor.submit(() -> { try (Plazo.Ambito ambito = Plazo.activar(plazo)) { ... } });
+ */
+public final class Plazo {
+
+    private static final ThreadLocal<Plazo> ACTUAL = new ThreadLocal<>();
+
+    private final long limiteNanos;
+
+    private Plazo(long limiteNanos) {
+        this.limiteNanos = limiteNanos;
+    }
+
+    public static Plazo en(long milisegundos) {
+        return new Plazo(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milisegundos));
+    }
+
+    /** El plazo activo en este hilo, o null si no hay ninguno (sin límite). */
+    public static Plazo actual() {
+        return ACTUAL.get();
+    }
+
+    /** Activa el plazo (null = sin plazo) hasta que se cierre el ámbito, que restaura el anterior. */
+    public static Ambito activar(Plazo plazo) {
+        Plazo anterior = ACTUAL.get();
+        ACTUAL.set(plazo);
+        return () -> {
+            if (anterior == null) {
+                ACTUAL.remove();
+            } else {
+                ACTUAL.set(anterior);
+            }
+        };
+    }
+
+    /** El más tardío de los dos; null cuenta como sin plazo, o sea el más tardío de todos. */
+    public static Plazo masTardio(Plazo a, Plazo b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return a.limiteNanos - b.limiteNanos >= 0 ? a : b;
+    }
+
+    public long limiteNanos() {
+        return limiteNanos;
+    }
+
+    public long restanteNanos() {
+        return limiteNanos - System.nanoTime();
+    }
+
+    public long restanteMs() {
+        return TimeUnit.NANOSECONDS.toMillis(restanteNanos());
+    }
+
+    public boolean vencido() {
+        return restanteNanos() <= 0;
+    }
+
+    @FunctionalInterface
+    public interface Ambito extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
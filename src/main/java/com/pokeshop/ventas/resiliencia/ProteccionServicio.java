@@ -0,0 +1,102 @@
+package com.pokeshop.ventas.resiliencia;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker y límite adaptativo de un servicio remoto, en ese orden: con el circuito
+ * abierto o el límite lleno se rechaza al instante, sin esperar. El límite no pasa del pool de
+ * conexiones del servicio, así que ninguna llamada queda esperando una conexión libre.
+ *
+ * Cuentan como fallo los errores de conexión y timeouts, los 5xx y los 429. Un 404 o un 400 son
+ * respuestas normales del servicio (usuario inexistente, stock insuficiente) y no abren el circuito.
+ * Si la venta ya no tiene plazo no se llama, y un timeout por haber agotado el plazo de la venta
+ * tampoco cuenta como fallo del servicio.
+ */
+public final class ProteccionServicio {
+
+    private final String servicio;
+    private final CircuitBreaker circuito;
+    private final LimitadorAimd limitador;
+    private MeterRegistry meterRegistry;
+
+    public ProteccionServicio(String servicio, CircuitBreaker circuito, LimitadorAimd limitador) {
+        this.servicio = servicio;
+        this.circuito = circuito;
+        this.limitador = limitador;
+    }
+
+    public <T> T ejecutar(Supplier<T> llamada) {
+        Plazo plazo = Plazo.actual();
+        if (plazo != null && plazo.vencido()) {
+            throw new RuntimeException("Tiempo de espera agotado: no queda plazo para llamar al servicio de " + servicio + ".");
+        }
+        if (!circuito.permitir()) {
+            throw rechazar("circuito_abierto", "circuito abierto", circuito.segundosHastaPrueba());
+        }
+        if (!limitador.adquirir()) {
+            circuito.liberarPermiso();
+            throw rechazar("limite_concurrencia", "demasiadas llamadas en curso", 1);
+        }
+
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        try {
+            return llamada.get();
+        } catch (RuntimeException e) {
+            fallo = esFallo(e) && (plazo == null || !plazo.vencido());
+            throw e;
+        } finally {
+            limitador.liberar(System.nanoTime() - inicio, fallo);
+            if (fallo) {
+                circuito.registrarFallo();
+            } else {
+                circuito.registrarExito();
+            }
+        }
+    }
+
+    public void ejecutar(Runnable llamada) {
+        ejecutar(() -> {
+            llamada.run();
+            return null;
+        });
+    }
+
+    /**
+     * ventas.resiliencia.circuito.estado (0 cerrado, 1 abierto, 2 semiabierto), ventas.resiliencia.limite,
+     * ventas.resiliencia.en-vuelo y el contador
+     * ventas.resiliencia.rechazos (tag motivo), todos con tag servicio.
+     */
+    public void registrarMetricas(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ventas.resiliencia.circuito.estado", circuito, c -> c.estado().ordinal())
+                .tag("servicio", servicio).register(meterRegistry);
+        Gauge.builder("ventas.resiliencia.limite", limitador, LimitadorAimd::limite)
+                .tag("servicio", servicio).register(meterRegistry);
+        Gauge.builder("ventas.resiliencia.en-vuelo", limitador, LimitadorAimd::enVuelo)
+                .tag("servicio", servicio).register(meterRegistry);
+    }
+
+    public CircuitBreaker.Estado estadoCircuito() {
+        return circuito.estado();
+    }
+
+    private ServicioNoDisponibleException rechazar(String motivo, String descripcion, long reintentarEnSegundos) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("ventas.resiliencia.rechazos", "servicio", servicio, "motivo", motivo).increment();
+        }
+        return new ServicioNoDisponibleException(servicio, descripcion, reintentarEnSegundos);
+    }
+
+    static boolean esFallo(RuntimeException e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+}
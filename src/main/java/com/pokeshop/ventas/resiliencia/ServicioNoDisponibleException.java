@@ -0,0 +1,26 @@
+package com.pokeshop.ventas.resiliencia;
+
+/**
+ * La llamada a un servicio remoto se rechazó sin hacerla: circuito abierto o sin capacidad.
+ * El controlador la traduce a 503 con Retry-After.
+ */
+public class ServicioNoDisponibleException extends RuntimeException {
+
+    private final String servicio;
+    private final long reintentarEnSegundos;
+
+    public ServicioNoDisponibleException(String servicio, String motivo, long reintentarEnSegundos) {
+        super("El servicio de " + servicio + " no está disponible en este momento (" + motivo
+                + "), intente nuevamente en unos segundos.");
+        this.servicio = servicio;
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+
+    public String getServicio() {
+        return servicio;
+    }
+
+    public long getReintentarEnSegundos() {
+        return reintentarEnSegundos;
+    }
+}
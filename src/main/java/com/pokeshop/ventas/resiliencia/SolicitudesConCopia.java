@@ -0,0 +1,163 @@
+package com.pokeshop.ventas.resiliencia;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests para consultas idempotentes: si la respuesta no llegó cuando ya pasó el
+ * percentil observado (p95 por defecto), se manda una segunda copia y gana la primera respuesta
+ * correcta. La copia que pierde no se corta (el cliente HTTP es bloqueante) y termina sola.
+ *
+ * Las copias salen de un presupuesto: cada consulta suma una fracción de ficha (0.05 = como
+ * mucho un 5% más de llamadas) y cada copia gasta una ficha entera, así que con el servicio
+ * lento para todos no se duplica la carga. Un error antes del retraso se propaga sin copia.
+ */
+public final class SolicitudesConCopia {
+
+    private static final long FICHA = 1000;
+
+    private final String endpoint;
+    private final Executor ejecutor;
+    private final PercentilMovil latencias;
+    private final long retrasoMinimoNanos;
+    private final long fraccionPorConsulta;
+    private final long maximoFichas;
+    private final AtomicLong fichas = new AtomicLong();
+    private MeterRegistry meterRegistry;
+
+    /**
+     * @param presupuesto copias permitidas por consulta (0.05 = 5%)
+     * @param rafaga      copias que se pueden acumular para ráfagas de lentitud
+     */
+    public SolicitudesConCopia(String endpoint, Executor ejecutor, PercentilMovil latencias, long retrasoMinimoMs,
+                               double presupuesto, int rafaga) {
+        this.endpoint = endpoint;
+        this.ejecutor = ejecutor;
+        this.latencias = latencias;
+        this.retrasoMinimoNanos = TimeUnit.MILLISECONDS.toNanos(retrasoMinimoMs);
+        this.fraccionPorConsulta = Math.round(presupuesto * FICHA);
+        this.maximoFichas = rafaga * FICHA;
+    }
+
+    public <T> T ejecutar(Supplier<T> llamada) {
+        Plazo plazo = Plazo.actual();
+        fichas.updateAndGet(actual -> Math.min(maximoFichas, actual + fraccionPorConsulta));
+
+        CompletableFuture<T> original = lanzar(llamada, plazo);
+        try {
+            T resultado = original.get(retrasoNanos(), TimeUnit.NANOSECONDS);
+            contar("sin_copia");
+            return resultado;
+        } catch (TimeoutException e) {
+            // Sigue abajo: la respuesta se está demorando más de lo habitual
+        } catch (ExecutionException e) {
+            throw propagar(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Consulta a " + endpoint + " interrumpida.");
+        }
+
+        if (!tomarFicha()) {
+            contar("sin_presupuesto");
+            return esperar(original);
+        }
+
+        CompletableFuture<T> copia = lanzar(llamada, plazo);
+        CompletableFuture<T> primera = new CompletableFuture<>();
+        AtomicReference<String> ganadora = new AtomicReference<>();
+        AtomicInteger fallidas = new AtomicInteger();
+        original.whenComplete((valor, error) -> completar(primera, ganadora, fallidas, "gano_original", valor, error));
+        copia.whenComplete((valor, error) -> completar(primera, ganadora, fallidas, "gano_copia", valor, error));
+
+        try {
+            return esperar(primera);
+        } finally {
+            contar(ganadora.get());
+        }
+    }
+
+    /**
+     * ventas.hedging (tags endpoint y resultado: sin_copia, sin_presupuesto, gano_original, gano_copia,
+     * fallaron_ambas) y ventas.hedging.retraso en ms, el momento en que se manda la copia.
+     */
+    public void registrarMetricas(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ventas.hedging.retraso", this, s -> s.retrasoNanos() / 1_000_000.0)
+                .tag("endpoint", endpoint).baseUnit("milliseconds").register(meterRegistry);
+    }
+
+    long retrasoNanos() {
+        return Math.max(retrasoMinimoNanos, latencias.valor());
+    }
+
+    private <T> CompletableFuture<T> lanzar(Supplier<T> llamada, Plazo plazo) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Plazo.Ambito ambito = Plazo.activar(plazo)) {
+                long inicio = System.nanoTime();
+                T resultado = llamada.get();
+                latencias.registrar(System.nanoTime() - inicio);
+                return resultado;
+            }
+        }, ejecutor);
+    }
+
+    private static <T> void completar(CompletableFuture<T> primera, AtomicReference<String> ganadora,
+                                      AtomicInteger fallidas, String resultado, T valor, Throwable error) {
+        if (error == null) {
+            if (ganadora.compareAndSet(null, resultado)) {
+                primera.complete(valor);
+            }
+        } else if (fallidas.incrementAndGet() == 2) {
+            // Fallaron las dos: se informa el error de la última
+            ganadora.compareAndSet(null, "fallaron_ambas");
+            primera.completeExceptionally(error);
+        }
+    }
+
+    private boolean tomarFicha() {
+        while (true) {
+            long actual = fichas.get();
+            if (actual < FICHA) {
+                return false;
+            }
+            if (fichas.compareAndSet(actual, actual - FICHA)) {
+                return true;
+            }
+        }
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            throw propagar(e.getCause());
+        }
+    }
+
+    private static RuntimeException propagar(Throwable causa) {
+        if (causa instanceof CompletionException && causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        if (causa instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new RuntimeException(causa);
+    }
+
+    private void contar(String resultado) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("ventas.hedging", "endpoint", endpoint, "resultado", resultado).increment();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.analitica.CountMinSketch;
+import com.pokeshop.ventas.analitica.HyperLogLog;
+import com.pokeshop.ventas.dto.AnaliticaVentasDto;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Analítica en vivo de las ventas completadas, en memoria y sin pasar por la base de datos:
+ * totales con LongAdder, productos más vendidos con un Count-Min sketch más un conjunto acotado
+ * de candidatos, y compradores distintos con HyperLogLog por minuto en una ventana de una hora.
+ * Registrar una venta no toma locks en el camino normal y la memoria no depende del catálogo.
+ * Los valores se pierden al reiniciar; para reportes exactos están las tablas de resumen.
+ */
+@Service
+public class AnaliticaVentasService {
+
+    private static final long MINUTO_MS = 60_000;
+
+    @Value("${ventas.analitica.top.candidatos:100}")
+    private int maximoCandidatos = 100;
+
+    @Value("${ventas.analitica.sketch.ancho:4096}")
+    private int anchoSketch = 4096;
+
+    @Value("${ventas.analitica.sketch.profundidad:4}")
+    private int profundidadSketch = 4;
+
+    @Value("${ventas.analitica.hll.precision:12}")
+    private int precisionHll = 12;
+
+    @Value("${ventas.analitica.ventana-minutos:60}")
+    private int minutosVentana = 60;
+
+    private final LongAdder ventas = new LongAdder();
+    private final LongAdder unidades = new LongAdder();
+    private final LongAdder ingresosCentavos = new LongAdder();
+
+    private CountMinSketch unidadesPorProducto;
+    // Productos con más unidades estimadas; se admite uno nuevo solo si supera al menor
+    private final Map<Long, Long> candidatos = new ConcurrentHashMap<>();
+    private final ReentrantLock admision = new ReentrantLock();
+    private volatile long minimoCandidatos;
+
+    // Un HyperLogLog por minuto en un anillo; cada casillero recuerda de qué minuto es
+    private HyperLogLog[] compradoresPorMinuto;
+    private AtomicLongArray minutoDeCasillero;
+
+    @PostConstruct
+    public void iniciar() {
+        unidadesPorProducto = new CountMinSketch(profundidadSketch, anchoSketch);
+        compradoresPorMinuto = new HyperLogLog[minutosVentana];
+        minutoDeCasillero = new AtomicLongArray(minutosVentana);
+        for (int i = 0; i < minutosVentana; i++) {
+            compradoresPorMinuto[i] = new HyperLogLog(precisionHll);
+            minutoDeCasillero.set(i, -1);
+        }
+    }
+
+    public void registrar(Venta venta) {
+        registrar(venta, System.currentTimeMillis());
+    }
+
+    void registrar(Venta venta, long ahoraMs) {
+        ventas.increment();
+        ingresosCentavos.add(Math.round(venta.getTotal() * 100));
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            unidades.add(detalle.getCantidad());
+            long estimado = unidadesPorProducto.agregar(detalle.getIdProducto(), detalle.getCantidad());
+            actualizarCandidato(detalle.getIdProducto(), estimado);
+        }
+        casilleroDelMinuto(ahoraMs / MINUTO_MS).agregar(venta.getIdUsuario());
+    }
+
+    public AnaliticaVentasDto consultar(int top) {
+        return consultar(top, System.currentTimeMillis());
+    }
+
+    AnaliticaVentasDto consultar(int top, long ahoraMs) {
+        AnaliticaVentasDto resultado = new AnaliticaVentasDto();
+        resultado.setVentas(ventas.sum());
+        resultado.setUnidades(unidades.sum());
+        resultado.setIngresos(ingresosCentavos.sum() / 100.0);
+
+        // Se reordena con la estimación actual del sketch, no con la que había al admitirlos
+        resultado.setTopProductos(candidatos.keySet().stream()
+                .map(idProducto -> new AnaliticaVentasDto.ProductoTop(idProducto, unidadesPorProducto.estimar(idProducto)))
+                .sorted(Comparator.comparingLong(AnaliticaVentasDto.ProductoTop::getUnidadesEstimadas).reversed())
+                .limit(top)
+                .toList());
+
+        long minutoActual = ahoraMs / MINUTO_MS;
+        resultado.setCompradoresUltimos5Minutos(compradoresDistintos(minutoActual, Math.min(5, minutosVentana)));
+        resultado.setCompradoresUltimos15Minutos(compradoresDistintos(minutoActual, Math.min(15, minutosVentana)));
+        resultado.setCompradoresVentana(compradoresDistintos(minutoActual, minutosVentana));
+        resultado.setMinutosVentana(minutosVentana);
+        return resultado;
+    }
+
+    private void actualizarCandidato(Long idProducto, long estimado) {
+        if (candidatos.computeIfPresent(idProducto, (id, previo) -> Math.max(previo, estimado)) != null) {
+            return;
+        }
+        if (candidatos.size() >= maximoCandidatos && estimado <= minimoCandidatos) {
+            return;
+        }
+        // Si otro hilo está admitiendo, se omite: el producto vuelve a intentarlo en su próxima venta
+        if (!admision.tryLock()) {
+            return;
+        }
+        try {
+            candidatos.put(idProducto, estimado);
+            if (candidatos.size() > maximoCandidatos) {
+                candidatos.entrySet().stream()
+                        .min(Map.Entry.comparingByValue())
+                        .ifPresent(menor -> candidatos.remove(menor.getKey()));
+            }
+            if (candidatos.size() >= maximoCandidatos) {
+                minimoCandidatos = candidatos.values().stream().mapToLong(Long::longValue).min().orElse(0);
+            }
+        } finally {
+            admision.unlock();
+        }
+    }
+
+    private HyperLogLog casilleroDelMinuto(long minuto) {
+        int indice = (int) (minuto % minutosVentana);
+        if (minutoDeCasillero.get(indice) != minuto) {
+            // Solo la primera venta de cada minuto entra aquí: se recicla el casillero de hace una hora
+            synchronized (compradoresPorMinuto[indice]) {
+                if (minutoDeCasillero.get(indice) != minuto) {
+                    compradoresPorMinuto[indice].limpiar();
+                    minutoDeCasillero.set(indice, minuto);
+                }
+            }
+        }
+        return compradoresPorMinuto[indice];
+    }
+
+    private long compradoresDistintos(long minutoActual, int minutos) {
+        int[] union = new int[compradoresPorMinuto[0].registros()];
+        for (long minuto = minutoActual - minutos + 1; minuto <= minutoActual; minuto++) {
+            int indice = (int) (minuto % minutosVentana);
+            if (minutoDeCasillero.get(indice) == minuto) {
+                compradoresPorMinuto[indice].fusionarEn(union);
+            }
+        }
+        return HyperLogLog.estimar(union);
+    }
+}
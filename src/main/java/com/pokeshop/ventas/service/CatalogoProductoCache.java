@@ -0,0 +1,111 @@
+package com.pokeshop.ventas.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Caché en memoria del nombre y precio de los productos (cambian poco).
+ * El stock nunca se guarda: en un acierto el producto vuelve con stock null y la
+ * disponibilidad se comprueba en vivo al descontar. En un fallo se usa la respuesta
+ * recién obtenida, que sí trae el stock actual.
+ */
+@Component
+public class CatalogoProductoCache {
+
+    @Autowired
+    private ProductoBatchLoader productoBatchLoader;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.productos.cache.habilitado:true}")
+    private boolean habilitado = true;
+
+    // Cantidad máxima de productos en memoria (desalojo W-TinyLFU de Caffeine)
+    @Value("${ventas.productos.cache.maximo:10000}")
+    private long maximo = 10000;
+
+    @Value("${ventas.productos.cache.ttl-segundos:300}")
+    private long ttlSegundos = 300;
+
+    // Pasado este tiempo, la siguiente lectura devuelve el valor actual y lo refresca en segundo plano
+    @Value("${ventas.productos.cache.refresco-segundos:240}")
+    private long refrescoSegundos = 240;
+
+    private LoadingCache<Long, ProductoExternoDto> cache;
+
+    @PostConstruct
+    public void iniciar() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .refreshAfterWrite(Duration.ofSeconds(refrescoSegundos))
+                .recordStats()
+                .build(idProducto -> soloMetadatos(productoBatchLoader.cargar(idProducto).join()));
+
+        if (meterRegistry != null) {
+            // Publica cache.gets (hit/miss), cache.evictions, cache.size, etc. con cache=productos
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "productos");
+        }
+    }
+
+    public CompletableFuture<ProductoExternoDto> obtener(Long idProducto) {
+        if (!habilitado) {
+            return productoBatchLoader.cargar(idProducto);
+        }
+
+        ProductoExternoDto enCache = cache.getIfPresent(idProducto);
+        if (enCache != null) {
+            return CompletableFuture.completedFuture(enCache);
+        }
+
+        return productoBatchLoader.cargar(idProducto).thenApply(producto -> {
+            if (producto != null) {
+                cache.put(idProducto, soloMetadatos(producto));
+            }
+            return producto;
+        });
+    }
+
+    /**
+     * Siempre consulta Productos (el stock viene en vivo) y de paso refresca nombre y precio.
+     * Para el modo outbox, donde la venta no pasa por un PUT que rechace la falta de stock.
+     */
+    public CompletableFuture<ProductoExternoDto> obtenerConStock(Long idProducto) {
+        return productoBatchLoader.cargar(idProducto).thenApply(producto -> {
+            if (habilitado && producto != null) {
+                cache.put(idProducto, soloMetadatos(producto));
+            }
+            return producto;
+        });
+    }
+
+    public void invalidar(Long idProducto) {
+        cache.invalidate(idProducto);
+    }
+
+    public void invalidarTodo() {
+        cache.invalidateAll();
+    }
+
+    private ProductoExternoDto soloMetadatos(ProductoExternoDto producto) {
+        if (producto == null) {
+            return null;
+        }
+        ProductoExternoDto metadatos = new ProductoExternoDto();
+        metadatos.setIdProducto(producto.getIdProducto());
+        metadatos.setNombre(producto.getNombre());
+        metadatos.setPrecio(producto.getPrecio());
+        return metadatos;
+    }
+}
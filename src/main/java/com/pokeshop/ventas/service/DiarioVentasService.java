@@ -0,0 +1,310 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.diario.CodificadorVenta;
+import com.pokeshop.ventas.diario.DiarioSegmentado;
+import com.pokeshop.ventas.diario.VentaPendienteException;
+import com.pokeshop.ventas.id.GeneradorSnowflake;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo diario (ventas.diario.habilitado=true): la venta se confirma al quedar en un diario local
+ * en disco (ver DiarioSegmentado) y no al hacer el INSERT, así que una base de datos lenta
+ * (mantenimiento, bloqueos) no frena las respuestas. Un hilo aparte pasa el diario a MySQL por
+ * lotes con guardarTodas. Si la base de datos no responde reintenta el mismo lote sin saltarse
+ * nada; si el lote falla por el dato (registro ilegible, restricción violada) lo parte en mitades
+ * hasta dar con el registro culpable, lo copia a descartados/ (contador ventas.diario.descartadas)
+ * y sigue, para que una sola venta mala no frene a todas las que vienen detrás.
+ *
+ * Al arrancar se retoma desde el último punto de control, lo que cubre una caída con ventas
+ * todavía sin pasar. Como los ids se asignan antes de escribir en el diario, una venta que ya
+ * llegó a la base de datos pero cuyo punto de control no se guardó se reconoce por id y no se
+ * inserta dos veces. Mientras una venta está solo en el diario no aparece en las consultas;
+ * estaPendiente dice si un id está en esa situación (GET /api/v1/ventas/{id} responde 202).
+ */
+@Service
+public class DiarioVentasService {
+
+    private static final Logger log = LoggerFactory.getLogger(DiarioVentasService.class);
+
+    @Autowired
+    private VentaPersistenciaService ventaPersistenciaService;
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.diario.habilitado:false}")
+    private boolean habilitado = false;
+
+    @Value("${ventas.diario.directorio:diario-ventas}")
+    private String directorio = "diario-ventas";
+
+    @Value("${ventas.diario.tamano-segmento-mb:64}")
+    private int tamanoSegmentoMb = 64;
+
+    // Ventas por transacción al pasar el diario a la base de datos
+    @Value("${ventas.diario.lote:500}")
+    private int tamanoLote = 500;
+
+    // Cuánto espera una venta a que su registro quede en disco
+    @Value("${ventas.diario.espera-sync-ms:2000}")
+    private long esperaSyncMs = 2000;
+
+    @Value("${ventas.diario.reintento-ms:1000}")
+    private long reintentoMs = 1000;
+
+    @Value("${ventas.id.nodo:0}")
+    private int nodo = 0;
+
+    private DiarioSegmentado diario;
+    private GeneradorSnowflake generadorIds;
+    private Thread reproductor;
+    private volatile boolean activo;
+
+    // Ventas escritas en el diario que todavía no pasaron a la base de datos (ni se descartaron)
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+
+    // Unidades por producto de esas ventas: en modo outbox su evento de stock todavía no existe
+    private final Map<Long, Integer> unidadesPendientes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        generadorIds = GeneradorSnowflake.paraNodo(nodo);
+        diario = DiarioSegmentado.abrir(Path.of(directorio), tamanoSegmentoMb * 1024 * 1024);
+        long bytesPendientes = diario.bytesPendientes();
+        if (bytesPendientes > 0) {
+            log.info("El diario de ventas tiene {} bytes sin pasar a la base de datos; se retoman", bytesPendientes);
+        }
+        if (meterRegistry != null) {
+            Gauge.builder("ventas.diario.pendientes", diario, DiarioSegmentado::bytesPendientes)
+                    .baseUnit("bytes").register(meterRegistry);
+            Gauge.builder("ventas.diario.segmentos.por-borrar", diario, DiarioSegmentado::segmentosPorBorrar)
+                    .register(meterRegistry);
+        }
+        // Las que quedaron sin pasar antes de reiniciar también se consultan como pendientes
+        long desde = diario.puntoControl();
+        List<DiarioSegmentado.Registro> registros;
+        while (!(registros = diario.leer(desde, 500)).isEmpty()) {
+            for (DiarioSegmentado.Registro registro : registros) {
+                try {
+                    agregarPendiente(CodificadorVenta.decodificar(registro.datos()));
+                } catch (RuntimeException e) {
+                    // Ilegible: el reproductor lo va a descartar
+                }
+            }
+            desde = registros.get(registros.size() - 1).fin();
+        }
+        activo = true;
+        reproductor = Thread.ofPlatform().name("diario-ventas-reproductor").daemon().start(this::reproducir);
+    }
+
+    public boolean estaHabilitado() {
+        return habilitado;
+    }
+
+    /** True si la venta está en el diario y todavía no llegó a la base de datos. */
+    public boolean estaPendiente(Long idVenta) {
+        return habilitado && pendientes.contains(idVenta);
+    }
+
+    /** Unidades de cada producto vendidas en ventas que siguen solo en el diario. */
+    public Map<Long, Integer> unidadesPendientes(Collection<Long> idsProducto) {
+        if (!habilitado || unidadesPendientes.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> unidades = new HashMap<>();
+        for (Long idProducto : idsProducto) {
+            Integer cantidad = unidadesPendientes.get(idProducto);
+            if (cantidad != null) {
+                unidades.put(idProducto, cantidad);
+            }
+        }
+        return unidades;
+    }
+
+    /**
+     * Asigna los ids, escribe la venta en el diario y espera el fsync del grupo en que entró.
+     * Si falla antes de escribir, o el fsync falla (DiarioNoDisponibleException), la venta no
+     * existe y no se guardará. Si se escribió pero el fsync no terminó a tiempo lanza
+     * VentaPendienteException: sigue en el diario y se guarda cuando el disco confirme.
+     */
+    public Venta registrar(Venta venta) {
+        long inicio = System.nanoTime();
+        if (venta.getIdVenta() == null) {
+            venta.setIdVenta(generadorIds.siguiente());
+        }
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            if (detalle.getIdDetalle() == null) {
+                detalle.setIdDetalle(generadorIds.siguiente());
+            }
+        }
+        // Antes de escribir: el reproductor podría pasarla a la base de datos apenas sea durable
+        agregarPendiente(venta);
+        boolean durable;
+        try {
+            long fin = diario.agregar(CodificadorVenta.codificar(venta));
+            durable = diario.esperarDurable(fin, esperaSyncMs);
+        } catch (RuntimeException e) {
+            // No se escribió, o quedó después del corte de un fsync fallido y se descarta al reabrir
+            quitarPendiente(venta);
+            throw e;
+        }
+        if (!durable) {
+            throw new VentaPendienteException(venta.getIdVenta(), "tiempo de espera agotado");
+        }
+        if (meterRegistry != null) {
+            meterRegistry.timer("ventas.diario.escritura").record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+        return venta;
+    }
+
+    private void reproducir() {
+        long desde = diario.puntoControl();
+        while (activo) {
+            List<DiarioSegmentado.Registro> registros = diario.leer(desde, tamanoLote);
+            if (registros.isEmpty()) {
+                esperar(50);
+                continue;
+            }
+            try {
+                int guardadas = pasar(registros);
+                desde = registros.get(registros.size() - 1).fin();
+                diario.confirmarLectura(desde);
+                if (meterRegistry != null) {
+                    meterRegistry.counter("ventas.diario.reproducidas").increment(guardadas);
+                }
+            } catch (Exception e) {
+                // Conexión, tiempo de espera, disco: nada indica que el registro esté mal, se reintenta igual
+                log.warn("No se pudo pasar un lote de {} ventas del diario a la base de datos, se reintenta: {}",
+                        registros.size(), e.getMessage());
+                esperar(reintentoMs);
+            }
+        }
+    }
+
+    /** Guarda los registros que faltan en la base de datos y devuelve cuántas ventas insertó. */
+    private int pasar(List<DiarioSegmentado.Registro> registros) throws IOException {
+        List<DiarioSegmentado.Registro> legibles = new ArrayList<>(registros.size());
+        List<Venta> ventas = new ArrayList<>(registros.size());
+        for (DiarioSegmentado.Registro registro : registros) {
+            try {
+                ventas.add(CodificadorVenta.decodificar(registro.datos()));
+                legibles.add(registro);
+            } catch (RuntimeException e) {
+                descartar(registro, e);
+            }
+        }
+        int guardadas = guardar(legibles, ventas);
+        ventas.forEach(this::quitarPendiente);
+        return guardadas;
+    }
+
+    // Un error definitivo se parte en mitades hasta aislar el registro; uno transitorio sube y se reintenta el lote
+    private int guardar(List<DiarioSegmentado.Registro> registros, List<Venta> ventas) throws IOException {
+        if (ventas.isEmpty()) {
+            return 0;
+        }
+        try {
+            Set<Long> existentes = new HashSet<>(ventaRepository.buscarIdsExistentes(
+                    ventas.stream().map(Venta::getIdVenta).toList()));
+            List<Venta> nuevas = ventas.stream().filter(v -> !existentes.contains(v.getIdVenta())).toList();
+            if (!nuevas.isEmpty()) {
+                ventaPersistenciaService.guardarTodas(nuevas);
+            }
+            return nuevas.size();
+        } catch (RuntimeException e) {
+            if (!esDefinitivo(e)) {
+                throw e;
+            }
+            if (ventas.size() == 1) {
+                descartar(registros.get(0), e);
+                return 0;
+            }
+            int mitad = ventas.size() / 2;
+            return guardar(registros.subList(0, mitad), ventas.subList(0, mitad))
+                    + guardar(registros.subList(mitad, ventas.size()), ventas.subList(mitad, ventas.size()));
+        }
+    }
+
+    private void agregarPendiente(Venta venta) {
+        if (pendientes.add(venta.getIdVenta())) {
+            venta.getDetalles().forEach(detalle ->
+                    unidadesPendientes.merge(detalle.getIdProducto(), detalle.getCantidad(), Integer::sum));
+        }
+    }
+
+    private void quitarPendiente(Venta venta) {
+        if (pendientes.remove(venta.getIdVenta())) {
+            venta.getDetalles().forEach(detalle -> unidadesPendientes.computeIfPresent(detalle.getIdProducto(),
+                    (idProducto, cantidad) -> cantidad > detalle.getCantidad() ? cantidad - detalle.getCantidad() : null));
+        }
+    }
+
+    private void descartar(DiarioSegmentado.Registro registro, Exception causa) throws IOException {
+        Path archivo = diario.descartar(registro);
+        log.error("Venta del diario descartada por no poder guardarse, queda en {} para revisión: {}", archivo, causa.getMessage());
+        if (meterRegistry != null) {
+            meterRegistry.counter("ventas.diario.descartadas").increment();
+        }
+    }
+
+    /** Errores que dependen del dato y no del momento: reintentar el mismo registro falla siempre igual. */
+    static boolean esDefinitivo(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof DataIntegrityViolationException || causa instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void esperar(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            activo = false;
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() throws InterruptedException {
+        if (diario == null) {
+            return;
+        }
+        activo = false;
+        reproductor.interrupt();
+        reproductor.join(TimeUnit.SECONDS.toMillis(10));
+        diario.close();
+    }
+}
@@ -0,0 +1,218 @@
+package com.pokeshop.ventas.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pokeshop.ventas.dto.RespuestaIdempotenteDto;
+import com.pokeshop.ventas.model.RegistroIdempotencia;
+import com.pokeshop.ventas.repository.IdempotenciaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key de POST /api/v1/ventas en dos niveles.
+ *
+ * En memoria, un mapa acotado de clave -> respuesta futura: un reintento que llega mientras la
+ * venta original sigue en curso espera esa misma respuesta en vez de volver a descontar stock, y
+ * las claves recientes responden sin tocar la base de datos. En la tabla idempotencia queda la
+ * respuesta hasta que vence, para reintentos tardíos o que llegan a otra instancia; la fila se
+ * reserva (EN_CURSO) antes de ejecutar, así dos instancias no procesan la misma clave.
+ *
+ * Se guardan las respuestas 2xx y los rechazos definitivos (stock, usuario o producto
+ * inexistente). Un 5xx (por ejemplo 503 con Productos caído) o un rechazo marcado como
+ * reintentable (conexión, tiempo agotado, error al guardar) libera la clave para que el reintento
+ * vuelva a ejecutar la venta.
+ */
+@Service
+public class IdempotenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+    public static final String EN_CURSO = "EN_CURSO";
+    public static final String COMPLETADA = "COMPLETADA";
+
+    @Autowired
+    private IdempotenciaRepository idempotenciaRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.idempotencia.ttl-horas:24}")
+    private long ttlHoras = 24;
+
+    @Value("${ventas.idempotencia.memoria.maximo:10000}")
+    private long maximoEnMemoria = 10000;
+
+    @Value("${ventas.idempotencia.memoria.ttl-minutos:10}")
+    private long ttlMemoriaMinutos = 10;
+
+    // Cuánto espera un reintento a que termine la venta original antes de responder 409
+    @Value("${ventas.idempotencia.espera-ms:15000}")
+    private long esperaMs = 15000;
+
+    // Una reserva EN_CURSO más antigua que esto es de una instancia que se cayó a mitad de la venta
+    @Value("${ventas.idempotencia.en-curso-maximo-segundos:120}")
+    private long enCursoMaximoSegundos = 120;
+
+    private Cache<String, Entrada> enMemoria;
+
+    @PostConstruct
+    public void iniciar() {
+        enMemoria = Caffeine.newBuilder()
+                .maximumSize(maximoEnMemoria)
+                .expireAfterWrite(Duration.ofMinutes(ttlMemoriaMinutos))
+                .build();
+    }
+
+    /**
+     * Ejecuta la acción una sola vez por clave. Los reintentos con la misma clave y el mismo cuerpo
+     * reciben la misma respuesta (repetida = true); con otro cuerpo, 422.
+     */
+    public RespuestaIdempotenteDto ejecutar(String clave, String huella, Supplier<RespuestaIdempotenteDto> accion) {
+        Entrada nueva = new Entrada(huella, new CompletableFuture<>());
+        Entrada existente = enMemoria.asMap().putIfAbsent(clave, nueva);
+        if (existente != null) {
+            contar("memoria");
+            return esperar(existente, huella);
+        }
+
+        try {
+            RespuestaIdempotenteDto respuesta = ejecutarConReserva(clave, huella, accion);
+            nueva.respuesta().complete(respuesta);
+            if (!guardable(respuesta)) {
+                enMemoria.asMap().remove(clave, nueva);
+            }
+            return respuesta;
+        } catch (RuntimeException e) {
+            enMemoria.asMap().remove(clave, nueva);
+            nueva.respuesta().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private RespuestaIdempotenteDto ejecutarConReserva(String clave, String huella, Supplier<RespuestaIdempotenteDto> accion) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Optional<RegistroIdempotencia> guardado = idempotenciaRepository.findById(clave);
+        if (guardado.isPresent()) {
+            RegistroIdempotencia registro = guardado.get();
+            boolean abandonada = EN_CURSO.equals(registro.getEstado())
+                    && registro.getCreada().isBefore(ahora.minusSeconds(enCursoMaximoSegundos));
+            if (registro.getExpira().isBefore(ahora) || abandonada) {
+                idempotenciaRepository.liberar(clave);
+            } else if (!registro.getHuella().equals(huella)) {
+                return claveReutilizada();
+            } else if (COMPLETADA.equals(registro.getEstado())) {
+                contar("base_datos");
+                return new RespuestaIdempotenteDto(registro.getCodigoEstado(), registro.getTipoContenido(),
+                        registro.getUbicacion(), registro.getCuerpo(), true);
+            } else {
+                return enProceso();
+            }
+        }
+
+        try {
+            idempotenciaRepository.reservar(clave, huella, ahora, ahora.plusHours(ttlHoras));
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia reservó la misma clave entre la lectura y el insert
+            return enProceso();
+        }
+        contar("nueva");
+
+        RespuestaIdempotenteDto respuesta;
+        try {
+            respuesta = accion.get();
+        } catch (RuntimeException e) {
+            idempotenciaRepository.liberar(clave);
+            throw e;
+        }
+        if (respuesta.getCodigoEstado() >= 500 || respuesta.isReintentable()) {
+            idempotenciaRepository.liberar(clave);
+        } else {
+            idempotenciaRepository.completar(clave, respuesta.getCodigoEstado(), respuesta.getTipoContenido(),
+                    respuesta.getUbicacion(), respuesta.getCuerpo());
+        }
+        return respuesta;
+    }
+
+    private RespuestaIdempotenteDto esperar(Entrada existente, String huella) {
+        if (!existente.huella().equals(huella)) {
+            return claveReutilizada();
+        }
+        try {
+            RespuestaIdempotenteDto respuesta = existente.respuesta().get(esperaMs, TimeUnit.MILLISECONDS);
+            return new RespuestaIdempotenteDto(respuesta.getCodigoEstado(), respuesta.getTipoContenido(),
+                    respuesta.getUbicacion(), respuesta.getCuerpo(), true);
+        } catch (TimeoutException | ExecutionException e) {
+            // Sigue en curso, o la original terminó con un error inesperado y la clave quedó libre
+            return enProceso();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return enProceso();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ventas.idempotencia.limpieza-ms:600000}")
+    public void limpiarVencidas() {
+        int borradas = idempotenciaRepository.borrarVencidas(LocalDateTime.now());
+        if (borradas > 0) {
+            log.info("Se borraron {} claves de idempotencia vencidas", borradas);
+        }
+    }
+
+    /** SHA-256 en hexadecimal del cuerpo de la solicitud. */
+    public static String huella(String cuerpo) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(cuerpo.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 409 y 422 son de la propia clave (en curso, reutilizada), no un resultado de la venta
+    private static boolean guardable(RespuestaIdempotenteDto respuesta) {
+        int codigo = respuesta.getCodigoEstado();
+        return codigo < 500 && codigo != 409 && codigo != 422 && !respuesta.isReintentable();
+    }
+
+    private RespuestaIdempotenteDto enProceso() {
+        contar("en_proceso");
+        return new RespuestaIdempotenteDto(409, "text/plain;charset=UTF-8", null,
+                "La venta con esta Idempotency-Key sigue en proceso, reintente en unos segundos.", false);
+    }
+
+    private RespuestaIdempotenteDto claveReutilizada() {
+        contar("clave_reutilizada");
+        return new RespuestaIdempotenteDto(422, "text/plain;charset=UTF-8", null,
+                "La Idempotency-Key ya se usó con una solicitud distinta.", false);
+    }
+
+    // ventas.idempotencia (tag origen): nueva, memoria, base_datos, en_proceso, clave_reutilizada
+    private void contar(String origen) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("ventas.idempotencia", "origen", origen).increment();
+        }
+    }
+
+    private record Entrada(String huella, CompletableFuture<RespuestaIdempotenteDto> respuesta) {
+    }
+}
@@ -0,0 +1,262 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.EventoStock;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.EventoStockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Outbox de descuentos de stock (ventas.stock.modo=outbox). La venta no llama a Productos: sus
+ * descuentos se guardan en outbox_stock dentro de la misma transacción que la Venta, así que
+ * hay descuento si y solo si la venta quedó guardada. Un despachador en segundo plano toma los
+ * pendientes por lotes, suma los de un mismo producto en un solo PUT y reintenta con backoff.
+ *
+ * La entrega es al menos una vez: si el PUT sale bien pero no se llega a marcar el evento, se
+ * vuelve a enviar cuando vence el reclamo. Si Productos rechaza un descuento agrupado (no alcanza
+ * el stock para la suma), se reenvía evento por evento y el que no entra queda RECHAZADO en el
+ * log y en la métrica para revisarlo a mano: la venta ya está confirmada.
+ */
+@Service
+public class OutboxStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxStockService.class);
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String ENVIADO = "ENVIADO";
+    public static final String RECHAZADO = "RECHAZADO";
+    public static final String FALLIDO = "FALLIDO";
+
+    @Autowired
+    private EventoStockRepository eventoStockRepository;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ProteccionServiciosRemotos proteccion;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.productos.url}")
+    private String productosUrl;
+
+    @Value("${ventas.stock.modo:remoto}")
+    private String modo = "remoto";
+
+    // Eventos que toma el despachador por ciclo
+    @Value("${ventas.outbox.lote:500}")
+    private int tamanoLote = 500;
+
+    // Si el ciclo que tomó los eventos no los marca en este tiempo (instancia caída), otro los retoma
+    @Value("${ventas.outbox.reclamo-ms:60000}")
+    private long reclamoMs = 60000;
+
+    @Value("${ventas.outbox.backoff-inicial-ms:500}")
+    private long backoffInicialMs = 500;
+
+    @Value("${ventas.outbox.backoff-maximo-ms:60000}")
+    private long backoffMaximoMs = 60000;
+
+    @Value("${ventas.outbox.maximo-intentos:20}")
+    private int maximoIntentos = 20;
+
+    @Value("${ventas.outbox.retencion-horas:24}")
+    private long retencionHoras = 24;
+
+    // Un hilo virtual por producto del lote (las llamadas de RestTemplate son bloqueantes)
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public boolean estaHabilitado() {
+        return "outbox".equals(modo);
+    }
+
+    /**
+     * Unidades de cada producto ya vendidas y todavía sin enviar a Productos. Mientras el evento
+     * está PENDIENTE el stock que informa Productos las incluye, así que hay que restarlas.
+     */
+    public Map<Long, Integer> pendientesDeEnvio(Collection<Long> idsProducto) {
+        if (!estaHabilitado() || idsProducto.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> pendientes = new HashMap<>();
+        for (Object[] fila : eventoStockRepository.sumarPendientesPorProducto(idsProducto)) {
+            pendientes.put((Long) fila[0], ((Number) fila[1]).intValue());
+        }
+        return pendientes;
+    }
+
+    /**
+     * Guarda un evento por venta y producto. Se llama dentro de la transacción que guarda las ventas.
+     */
+    public void registrar(Collection<Venta> ventas) {
+        if (!estaHabilitado()) {
+            return;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        List<EventoStock> eventos = new ArrayList<>();
+        for (Venta venta : ventas) {
+            Map<Long, Integer> cantidadPorProducto = new LinkedHashMap<>();
+            for (DetalleVenta detalle : venta.getDetalles()) {
+                cantidadPorProducto.merge(detalle.getIdProducto(), detalle.getCantidad(), Integer::sum);
+            }
+            cantidadPorProducto.forEach((idProducto, cantidad) -> {
+                EventoStock evento = new EventoStock();
+                evento.setIdVenta(venta.getIdVenta());
+                evento.setIdProducto(idProducto);
+                evento.setCantidad(cantidad);
+                evento.setEstado(PENDIENTE);
+                evento.setIntentos(0);
+                evento.setProximoIntento(ahora);
+                evento.setCreado(ahora);
+                eventos.add(evento);
+            });
+        }
+        eventoStockRepository.saveAll(eventos);
+    }
+
+    @Scheduled(fixedDelayString = "${ventas.outbox.intervalo-ms:200}")
+    public void despachar() {
+        if (!estaHabilitado()) {
+            return;
+        }
+        // Un lote completo indica que probablemente quedan más pendientes
+        int tomados;
+        do {
+            tomados = despacharLote();
+        } while (tomados >= tamanoLote);
+    }
+
+    int despacharLote() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Long> ids = eventoStockRepository.buscarPendientes(ahora, PageRequest.of(0, tamanoLote));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String reclamo = UUID.randomUUID().toString();
+        if (eventoStockRepository.reclamar(ids, reclamo, ahora, ahora.plus(reclamoMs, ChronoUnit.MILLIS)) == 0) {
+            return 0;
+        }
+
+        long inicio = System.nanoTime();
+        List<EventoStock> eventos = eventoStockRepository.findByReclamo(reclamo);
+        Map<Long, List<EventoStock>> porProducto = eventos.stream()
+                .collect(Collectors.groupingBy(EventoStock::getIdProducto, LinkedHashMap::new, Collectors.toList()));
+        List<CompletableFuture<Void>> envios = new ArrayList<>();
+        porProducto.forEach((idProducto, delProducto) ->
+                envios.add(CompletableFuture.runAsync(() -> enviar(idProducto, delProducto), ejecutor)));
+        CompletableFuture.allOf(envios.toArray(new CompletableFuture[0])).join();
+
+        if (meterRegistry != null) {
+            meterRegistry.timer("ventas.outbox.lote").record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+        return eventos.size();
+    }
+
+    /** Un PUT con la suma de los eventos del producto. */
+    private void enviar(Long idProducto, List<EventoStock> eventos) {
+        int total = eventos.stream().mapToInt(EventoStock::getCantidad).sum();
+        String urlDescuento = productosUrl + "/" + idProducto + "/stock?cantidad=" + total;
+        try {
+            proteccion.productos().ejecutar(() -> restTemplate.put(urlDescuento, null));
+            eventoStockRepository.marcar(ids(eventos), ENVIADO, null);
+            contar(ENVIADO, eventos.size());
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            reintentar(idProducto, eventos, e);
+        } catch (HttpClientErrorException e) {
+            if (eventos.size() > 1) {
+                // La suma no entra: se envía cada venta por separado para descontar las que sí alcanzan
+                eventos.forEach(evento -> enviar(idProducto, List.of(evento)));
+                return;
+            }
+            EventoStock evento = eventos.get(0);
+            log.error("Productos rechazó el descuento de {} unidades del producto {} de la venta {}: {}",
+                    evento.getCantidad(), idProducto, evento.getIdVenta(), e.getStatusCode());
+            eventoStockRepository.marcar(ids(eventos), RECHAZADO, resumir(e));
+            contar(RECHAZADO, 1);
+        } catch (RuntimeException e) {
+            // Productos caído, lento o con el circuito abierto
+            reintentar(idProducto, eventos, e);
+        }
+    }
+
+    private void reintentar(Long idProducto, List<EventoStock> eventos, RuntimeException e) {
+        int intentos = eventos.stream().mapToInt(EventoStock::getIntentos).max().orElse(0) + 1;
+        if (intentos >= maximoIntentos) {
+            log.error("Se descartan {} descuentos del producto {} tras {} intentos: {}",
+                    eventos.size(), idProducto, intentos, e.getMessage());
+            eventoStockRepository.marcar(ids(eventos), FALLIDO, resumir(e));
+            contar(FALLIDO, eventos.size());
+            return;
+        }
+        eventoStockRepository.reprogramar(ids(eventos),
+                LocalDateTime.now().plus(esperaReintento(intentos, backoffInicialMs, backoffMaximoMs), ChronoUnit.MILLIS),
+                resumir(e));
+        contar("reintento", eventos.size());
+    }
+
+    /** Backoff exponencial con jitter: entre la mitad y el total de inicial * 2^(intento-1), con tope. */
+    static long esperaReintento(int intento, long inicialMs, long maximoMs) {
+        long espera = Math.min(maximoMs, inicialMs << Math.min(intento - 1, 20));
+        return espera / 2 + ThreadLocalRandom.current().nextLong(espera / 2 + 1);
+    }
+
+    @Scheduled(fixedDelayString = "${ventas.outbox.limpieza-ms:3600000}")
+    public void limpiarEnviados() {
+        if (!estaHabilitado()) {
+            return;
+        }
+        int borrados = eventoStockRepository.borrarEnviados(LocalDateTime.now().minusHours(retencionHoras));
+        if (borrados > 0) {
+            log.info("Se borraron {} eventos de stock ya enviados", borrados);
+        }
+    }
+
+    private static List<Long> ids(List<EventoStock> eventos) {
+        return eventos.stream().map(EventoStock::getIdEvento).toList();
+    }
+
+    private static String resumir(RuntimeException e) {
+        String mensaje = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return mensaje.length() > 500 ? mensaje.substring(0, 500) : mensaje;
+    }
+
+    // ventas.outbox (tag resultado: enviado, rechazado, fallido, reintento), contado en eventos
+    private void contar(String resultado, int eventos) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("ventas.outbox", "resultado", resultado.toLowerCase()).increment(eventos);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        ejecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,248 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import com.pokeshop.ventas.resiliencia.PercentilMovil;
+import com.pokeshop.ventas.resiliencia.Plazo;
+import com.pokeshop.ventas.resiliencia.SolicitudesConCopia;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Agrupa las consultas de productos de todas las ventas en curso.
+ * Durante una ventana corta (o hasta juntar N ids) se acumulan los ids pedidos, se eliminan
+ * los repetidos y se hace una sola consulta por id distinto (o una consulta masiva si el
+ * servicio de Productos la ofrece). Cada venta recibe su ProductoExternoDto por un CompletableFuture.
+ *
+ * La consulta de una ventana usa el plazo más tardío de las ventas que la esperan (ninguna se
+ * queda sin respuesta por el plazo de otra). Con hedging habilitado, una consulta que tarda más
+ * que el p95 observado de su endpoint se repite y se usa la primera respuesta.
+ */
+@Component
+public class ProductoBatchLoader {
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ProteccionServiciosRemotos proteccion;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.productos.url}")
+    private String productosUrl;
+
+    // Endpoint opcional de consulta masiva (GET {url}?ids=1,2,3 -> arreglo de productos).
+    // Si está vacío se hace una consulta por cada id distinto del lote.
+    @Value("${api.productos.lote.url:}")
+    private String productosLoteUrl = "";
+
+    // Tiempo que se espera juntando ids antes de consultar (0 = consultar de inmediato)
+    @Value("${ventas.productos.lote.ventana-ms:2}")
+    private long ventanaMs = 2;
+
+    // Si la ventana junta esta cantidad de ids se despacha sin esperar al temporizador
+    @Value("${ventas.productos.lote.maximo-ids:50}")
+    private int maximoIds = 50;
+
+    // Hedged requests del GET por id y del GET masivo, cada uno con su propio percentil observado
+    @Value("${ventas.productos.hedging.habilitado:false}")
+    private boolean hedging = false;
+
+    @Value("${ventas.productos.hedging.percentil:0.95}")
+    private double percentilHedging = 0.95;
+
+    // Retraso usado hasta juntar suficientes muestras, y el mínimo aunque el percentil sea menor
+    @Value("${ventas.productos.hedging.retraso-inicial-ms:50}")
+    private long retrasoInicialMs = 50;
+
+    @Value("${ventas.productos.hedging.retraso-minimo-ms:5}")
+    private long retrasoMinimoMs = 5;
+
+    // Fracción de copias permitidas sobre las consultas (0.05 = como mucho un 5% más de llamadas)
+    @Value("${ventas.productos.hedging.presupuesto:0.05}")
+    private double presupuestoHedging = 0.05;
+
+    private final ReentrantLock candado = new ReentrantLock();
+    private Map<Long, CompletableFuture<ProductoExternoDto>> ventanaActual = new HashMap<>();
+    private Plazo plazoVentana;
+    private long generacion = 0;
+
+    // Consultas ya despachadas que aún no responden: quien pida el mismo id se suma a ellas
+    private final Map<Long, CompletableFuture<ProductoExternoDto>> enVuelo = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService temporizador = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("productos-lote").daemon().factory());
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private SolicitudesConCopia copiasPorId;
+    private SolicitudesConCopia copiasLote;
+
+    @PostConstruct
+    public void iniciar() {
+        if (hedging) {
+            copiasPorId = crearCopias("producto");
+            copiasLote = crearCopias("lote");
+        }
+    }
+
+    private SolicitudesConCopia crearCopias(String endpoint) {
+        SolicitudesConCopia copias = new SolicitudesConCopia(endpoint, ejecutor,
+                new PercentilMovil(percentilHedging, 1000, 100, TimeUnit.MILLISECONDS.toNanos(retrasoInicialMs)),
+                retrasoMinimoMs, presupuestoHedging, 10);
+        if (meterRegistry != null) {
+            copias.registrarMetricas(meterRegistry);
+        }
+        return copias;
+    }
+
+    public CompletableFuture<ProductoExternoDto> cargar(Long idProducto) {
+        CompletableFuture<ProductoExternoDto> enCurso = enVuelo.get(idProducto);
+        if (enCurso != null) {
+            return enCurso;
+        }
+
+        CompletableFuture<ProductoExternoDto> futuro;
+        Map<Long, CompletableFuture<ProductoExternoDto>> listo = null;
+        Plazo plazoListo = null;
+        candado.lock();
+        try {
+            plazoVentana = ventanaActual.isEmpty() ? Plazo.actual() : Plazo.masTardio(plazoVentana, Plazo.actual());
+            futuro = ventanaActual.get(idProducto);
+            if (futuro != null) {
+                return futuro;
+            }
+            futuro = new CompletableFuture<>();
+            ventanaActual.put(idProducto, futuro);
+
+            if (ventanaMs <= 0 || ventanaActual.size() >= maximoIds) {
+                plazoListo = plazoVentana;
+                listo = cerrarVentana();
+            } else if (ventanaActual.size() == 1) {
+                long generacionVentana = generacion;
+                temporizador.schedule(() -> vencerVentana(generacionVentana), ventanaMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            candado.unlock();
+        }
+
+        if (listo != null) {
+            despachar(listo, plazoListo);
+        }
+        return futuro;
+    }
+
+    private void vencerVentana(long generacionVentana) {
+        Map<Long, CompletableFuture<ProductoExternoDto>> listo = null;
+        Plazo plazoListo = null;
+        candado.lock();
+        try {
+            // Si la ventana ya se despachó por tamaño, este temporizador quedó obsoleto
+            if (generacionVentana == generacion && !ventanaActual.isEmpty()) {
+                plazoListo = plazoVentana;
+                listo = cerrarVentana();
+            }
+        } finally {
+            candado.unlock();
+        }
+        if (listo != null) {
+            despachar(listo, plazoListo);
+        }
+    }
+
+    // Debe llamarse con el candado tomado
+    private Map<Long, CompletableFuture<ProductoExternoDto>> cerrarVentana() {
+        Map<Long, CompletableFuture<ProductoExternoDto>> lote = ventanaActual;
+        ventanaActual = new HashMap<>();
+        plazoVentana = null;
+        generacion++;
+        return lote;
+    }
+
+    private void despachar(Map<Long, CompletableFuture<ProductoExternoDto>> lote, Plazo plazo) {
+        lote.forEach((idProducto, futuro) -> {
+            enVuelo.put(idProducto, futuro);
+            futuro.whenComplete((producto, error) -> enVuelo.remove(idProducto, futuro));
+        });
+
+        if (productosLoteUrl.isBlank() || lote.size() == 1) {
+            lote.forEach((idProducto, futuro) -> ejecutor.execute(() -> {
+                try (Plazo.Ambito ambito = Plazo.activar(plazo)) {
+                    consultarUno(idProducto, futuro);
+                }
+            }));
+        } else {
+            ejecutor.execute(() -> {
+                try (Plazo.Ambito ambito = Plazo.activar(plazo)) {
+                    consultarLote(lote);
+                }
+            });
+        }
+    }
+
+    private void consultarUno(Long idProducto, CompletableFuture<ProductoExternoDto> futuro) {
+        try {
+            futuro.complete(conCopia(copiasPorId, () -> proteccion.productos().ejecutar(
+                    () -> restTemplate.getForObject(productosUrl + "/" + idProducto, ProductoExternoDto.class))));
+        } catch (RuntimeException e) {
+            futuro.completeExceptionally(e);
+        }
+    }
+
+    private void consultarLote(Map<Long, CompletableFuture<ProductoExternoDto>> lote) {
+        try {
+            String ids = lote.keySet().stream().map(String::valueOf).collect(Collectors.joining(","));
+            ProductoExternoDto[] respuesta = conCopia(copiasLote, () -> proteccion.productos().ejecutar(
+                    () -> restTemplate.getForObject(productosLoteUrl + "?ids=" + ids, ProductoExternoDto[].class)));
+
+            Map<Long, ProductoExternoDto> porId = new HashMap<>();
+            if (respuesta != null) {
+                for (ProductoExternoDto producto : respuesta) {
+                    porId.put(producto.getIdProducto(), producto);
+                }
+            }
+            lote.forEach((idProducto, futuro) -> {
+                ProductoExternoDto producto = porId.get(idProducto);
+                if (producto != null) {
+                    futuro.complete(producto);
+                } else {
+                    // Mismo error que daría la consulta individual de un producto inexistente
+                    futuro.completeExceptionally(HttpClientErrorException.create(
+                            HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null));
+                }
+            });
+        } catch (RuntimeException e) {
+            lote.values().forEach(futuro -> futuro.completeExceptionally(e));
+        }
+    }
+
+    private static <T> T conCopia(SolicitudesConCopia copias, Supplier<T> consulta) {
+        return copias != null ? copias.ejecutar(consulta) : consulta.get();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        temporizador.shutdownNow();
+        ejecutor.shutdownNow();
+    }
+}
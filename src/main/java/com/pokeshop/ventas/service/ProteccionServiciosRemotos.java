@@ -0,0 +1,84 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.resiliencia.CircuitBreaker;
+import com.pokeshop.ventas.resiliencia.LimitadorAimd;
+import com.pokeshop.ventas.resiliencia.ProteccionServicio;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Protección independiente para Usuarios y Productos: si uno de los dos se degrada, sus llamadas
+ * empiezan a rechazarse rápido (503) y el otro servicio, y el resto de la aplicación, siguen
+ * funcionando con normalidad. El límite adaptativo de cada servicio no pasa de su pool de conexiones.
+ */
+@Component
+public class ProteccionServiciosRemotos {
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.resiliencia.circuito.ventana:50}")
+    private int ventanaCircuito = 50;
+
+    // Proporción de fallos (0 a 1) entre las últimas llamadas que abre el circuito
+    @Value("${ventas.resiliencia.circuito.umbral-fallos:0.5}")
+    private double umbralFallos = 0.5;
+
+    @Value("${ventas.resiliencia.circuito.minimo-llamadas:20}")
+    private int minimoLlamadas = 20;
+
+    @Value("${ventas.resiliencia.circuito.espera-abierto-ms:5000}")
+    private long esperaAbiertoMs = 5000;
+
+    @Value("${ventas.resiliencia.circuito.llamadas-prueba:5}")
+    private int llamadasPrueba = 5;
+
+    @Value("${ventas.resiliencia.limite.inicial:20}")
+    private int limiteInicial = 20;
+
+    @Value("${ventas.resiliencia.limite.minimo:5}")
+    private int limiteMinimo = 5;
+
+    // Una respuesta más lenta que esto cuenta como señal de sobrecarga y baja el límite
+    @Value("${ventas.resiliencia.limite.latencia-objetivo-ms:500}")
+    private long latenciaObjetivoMs = 500;
+
+    @Value("${ventas.resiliencia.limite.factor-reduccion:0.9}")
+    private double factorReduccion = 0.9;
+
+    @Value("${api.http.pool.maximo-por-host.usuarios:50}")
+    private int maximoUsuarios = 50;
+
+    @Value("${api.http.pool.maximo-por-host.productos:100}")
+    private int maximoProductos = 100;
+
+    private ProteccionServicio usuarios;
+    private ProteccionServicio productos;
+
+    @PostConstruct
+    public void iniciar() {
+        usuarios = crear("usuarios", maximoUsuarios);
+        productos = crear("productos", maximoProductos);
+    }
+
+    public ProteccionServicio usuarios() {
+        return usuarios;
+    }
+
+    public ProteccionServicio productos() {
+        return productos;
+    }
+
+    private ProteccionServicio crear(String servicio, int maximo) {
+        ProteccionServicio proteccion = new ProteccionServicio(servicio,
+                new CircuitBreaker(ventanaCircuito, umbralFallos, minimoLlamadas, esperaAbiertoMs, llamadasPrueba),
+                new LimitadorAimd(limiteInicial, limiteMinimo, maximo, latenciaObjetivoMs, factorReduccion));
+        if (meterRegistry != null) {
+            proteccion.registrarMetricas(meterRegistry);
+        }
+        return proteccion;
+    }
+}
@@ -0,0 +1,135 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.ResumenProductoDto;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.ResumenUsuarioMensual;
+import com.pokeshop.ventas.model.ResumenVentaDiaria;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.ResumenProductoDiarioRepository;
+import com.pokeshop.ventas.repository.ResumenUsuarioMensualRepository;
+import com.pokeshop.ventas.repository.ResumenVentaDiariaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tablas de resumen para reportes: totales por día, por producto y día, y por usuario y mes.
+ * Se actualizan dentro de la misma transacción que guarda cada venta, así que un reporte
+ * nunca cuenta una venta que no quedó guardada. Los reportes leen solo estas tablas.
+ */
+@Service
+public class ResumenVentasService {
+
+    @Autowired
+    private ResumenVentaDiariaRepository resumenDiarioRepository;
+
+    @Autowired
+    private ResumenProductoDiarioRepository resumenProductoRepository;
+
+    @Autowired
+    private ResumenUsuarioMensualRepository resumenUsuarioRepository;
+
+    /**
+     * Suma las ventas recién guardadas a los resúmenes. Primero se agrupan en memoria (un lote de
+     * 500 ventas del mismo día es un solo upsert diario) y las filas se actualizan siempre en el
+     * mismo orden de clave, para que dos transacciones concurrentes no se bloqueen en cruz.
+     */
+    @Transactional
+    public void acumular(Collection<Venta> ventas) {
+        Map<LocalDate, Acumulado> porDia = new TreeMap<>();
+        Map<ClaveProducto, Acumulado> porProducto = new TreeMap<>(
+                Comparator.comparing(ClaveProducto::fecha).thenComparing(ClaveProducto::idProducto));
+        Map<ClaveUsuario, Acumulado> porUsuario = new TreeMap<>(
+                Comparator.comparing(ClaveUsuario::idUsuario).thenComparing(ClaveUsuario::periodo));
+
+        for (Venta venta : ventas) {
+            if (!"COMPLETADA".equals(venta.getEstado())) {
+                continue;
+            }
+            LocalDate dia = venta.getFecha().toLocalDate();
+            Acumulado delDia = porDia.computeIfAbsent(dia, d -> new Acumulado());
+            delDia.cantidad += 1;
+            delDia.subtotal += venta.getSubtotal();
+            delDia.iva += venta.getIva();
+            delDia.total += venta.getTotal();
+
+            for (DetalleVenta detalle : venta.getDetalles()) {
+                Acumulado delProducto = porProducto.computeIfAbsent(
+                        new ClaveProducto(dia, detalle.getIdProducto()), c -> new Acumulado());
+                delProducto.nombre = detalle.getNombreProducto();
+                delProducto.cantidad += detalle.getCantidad();
+                delProducto.subtotal += detalle.getCantidad() * detalle.getPrecioUnitario();
+            }
+
+            Acumulado delUsuario = porUsuario.computeIfAbsent(
+                    new ClaveUsuario(venta.getIdUsuario(), dia.withDayOfMonth(1)), c -> new Acumulado());
+            delUsuario.cantidad += 1;
+            delUsuario.total += venta.getTotal();
+        }
+
+        porDia.forEach((dia, a) -> resumenDiarioRepository.acumular(dia, a.cantidad, a.subtotal, a.iva, a.total));
+        porProducto.forEach((clave, a) -> resumenProductoRepository.acumular(
+                clave.fecha(), clave.idProducto(), a.nombre, a.cantidad, a.subtotal));
+        porUsuario.forEach((clave, a) -> resumenUsuarioRepository.acumular(
+                clave.idUsuario(), clave.periodo(), a.cantidad, a.total));
+    }
+
+    /**
+     * Recalcula los resúmenes de los días desde..hasta (ambos incluidos) a partir de ventas y
+     * detalle_venta, por ejemplo tras corregir datos o al activar los resúmenes sobre ventas
+     * históricas. El resumen mensual se recalcula por meses completos.
+     */
+    @Transactional
+    public void reconstruir(LocalDate desde, LocalDate hasta) {
+        LocalDate finExclusivo = hasta.plusDays(1);
+        resumenDiarioRepository.borrarRango(desde, finExclusivo);
+        resumenDiarioRepository.recalcularRango(desde.atStartOfDay(), finExclusivo.atStartOfDay());
+
+        resumenProductoRepository.borrarRango(desde, finExclusivo);
+        resumenProductoRepository.recalcularRango(desde.atStartOfDay(), finExclusivo.atStartOfDay());
+
+        LocalDate inicioMes = desde.withDayOfMonth(1);
+        LocalDate finMes = hasta.withDayOfMonth(1).plusMonths(1);
+        resumenUsuarioRepository.borrarRango(inicioMes, finMes);
+        resumenUsuarioRepository.recalcularRango(inicioMes.atStartOfDay(), finMes.atStartOfDay());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResumenVentaDiaria> ventasPorDia(LocalDate desde, LocalDate hasta) {
+        return resumenDiarioRepository.findByFechaBetweenOrderByFecha(desde, hasta);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResumenProductoDto> productosMasVendidos(LocalDate desde, LocalDate hasta, int limite) {
+        return resumenProductoRepository.sumarPorProducto(desde, hasta, PageRequest.of(0, limite));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResumenUsuarioMensual> comprasPorMes(Long idUsuario, LocalDate desde, LocalDate hasta) {
+        return resumenUsuarioRepository.findByIdUsuarioAndPeriodoBetweenOrderByPeriodo(
+                idUsuario, desde.withDayOfMonth(1), hasta.withDayOfMonth(1));
+    }
+
+    private record ClaveProducto(LocalDate fecha, Long idProducto) {
+    }
+
+    private record ClaveUsuario(Long idUsuario, LocalDate periodo) {
+    }
+
+    // Cantidad = ventas o unidades según la tabla; subtotal = ingresos en el resumen por producto
+    private static class Acumulado {
+        long cantidad;
+        double subtotal;
+        double iva;
+        double total;
+        String nombre;
+    }
+}
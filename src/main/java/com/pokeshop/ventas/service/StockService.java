@@ -0,0 +1,220 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.resiliencia.Plazo;
+import com.pokeshop.ventas.stock.LibroReservas;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Descuenta y repone stock en el microservicio de Productos.
+ * Se llama fuera de cualquier transacción de base de datos.
+ *
+ * Con ventas.stock.modo=reservas las ventas toman el stock de reservas locales por bloques
+ * (ver LibroReservas) y solo llaman a Productos cuando se agota el bloque de un producto.
+ */
+@Service
+public class StockService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockService.class);
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ProteccionServiciosRemotos proteccion;
+
+    @Autowired
+    private OutboxStockService outboxStockService;
+
+    @Autowired
+    private DiarioVentasService diarioVentasService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.productos.url}")
+    private String productosUrl;
+
+    // remoto: un PUT a Productos por línea; reservas: bloques reservados en memoria;
+    // outbox: los descuentos se guardan con la venta y se envían agrupados en segundo plano
+    @Value("${ventas.stock.modo:remoto}")
+    private String modo = "remoto";
+
+    // Unidades que se reservan de una vez por producto
+    @Value("${ventas.stock.reservas.bloque:20}")
+    private int tamanoBloque = 20;
+
+    // Las reservas de un producto sin ventas en este tiempo vuelven a Productos
+    @Value("${ventas.stock.reservas.inactividad-ms:30000}")
+    private long inactividadMs = 30000;
+
+    private LibroReservas reservas;
+
+    @PostConstruct
+    public void iniciar() {
+        if (!"reservas".equals(modo)) {
+            return;
+        }
+        reservas = new LibroReservas(tamanoBloque, new LibroReservas.Proveedor() {
+            @Override
+            public boolean tomar(long idProducto, int cantidad) {
+                try {
+                    descontarRemoto(idProducto, cantidad);
+                    return true;
+                } catch (HttpClientErrorException.NotFound e) {
+                    throw new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.");
+                } catch (HttpClientErrorException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public void devolver(long idProducto, int cantidad) {
+                reponerRemoto(idProducto, cantidad);
+            }
+        });
+        if (meterRegistry != null) {
+            reservas.registrarMetricas(meterRegistry);
+        }
+    }
+
+    /**
+     * Descuenta el stock de cada línea. Si una línea es rechazada, repone las que ya se
+     * habían descontado antes de propagar el error.
+     */
+    public void descontar(List<DetalleVenta> detalles) {
+        List<DetalleVenta> descontados = new ArrayList<>();
+        for (DetalleVenta detalle : detalles) {
+            try {
+                descontarProducto(detalle.getIdProducto(), detalle.getCantidad(), detalle.getNombreProducto());
+            } catch (RuntimeException e) {
+                reponer(descontados);
+                throw e;
+            }
+            descontados.add(detalle);
+        }
+    }
+
+    /**
+     * Descuenta una cantidad de un solo producto (usado también para descuentos agrupados por producto).
+     */
+    public void descontarProducto(Long idProducto, int cantidad, String nombreProducto) {
+        if (reservas != null) {
+            if (!reservas.consumir(idProducto, cantidad)) {
+                throw new RuntimeException("Stock insuficiente para: " + nombreProducto);
+            }
+            return;
+        }
+        try {
+            descontarRemoto(idProducto, cantidad);
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.", e);
+        } catch (HttpClientErrorException e) {
+            // Productos rechaza el descuento cuando no alcanza el stock
+            throw new RuntimeException("Stock insuficiente para: " + nombreProducto, e);
+        }
+    }
+
+    /**
+     * Compensa descuentos ya aplicados (cantidad negativa en el mismo endpoint de stock).
+     * Un fallo al reponer no debe tapar el error original, así que solo queda en el log.
+     * La reposición no pasa por el circuit breaker ni respeta el plazo de la venta (que puede ser
+     * justo lo que venció): cortarla dejaría stock descontado de más.
+     */
+    public void reponer(List<DetalleVenta> detalles) {
+        for (DetalleVenta detalle : detalles) {
+            if (reservas != null) {
+                // Las unidades siguen descontadas en Productos: vuelven a la reserva local
+                reservas.reponer(detalle.getIdProducto(), detalle.getCantidad());
+                continue;
+            }
+            try {
+                reponerRemoto(detalle.getIdProducto(), detalle.getCantidad());
+            } catch (RuntimeException e) {
+                // Ya quedó en el log
+            }
+        }
+    }
+
+    /**
+     * Unidades del producto reservadas en esta instancia y sin vender. Productos ya las descontó,
+     * así que el stock que informa Productos más este valor es lo que esta instancia puede vender.
+     */
+    public int reservadoLocal(Long idProducto) {
+        return reservas == null ? 0 : reservas.disponible(idProducto);
+    }
+
+    /**
+     * Modo outbox: unidades de cada producto ya vendidas que Productos todavía no descontó (eventos
+     * PENDIENTE y ventas que siguen en el diario). El stock que informa Productos menos este valor
+     * es lo que se puede vender. En los demás modos el descuento es en vivo y no hay nada pendiente.
+     */
+    public Map<Long, Integer> pendienteDeDescontar(Collection<Long> idsProducto) {
+        if (!diferido()) {
+            return Map.of();
+        }
+        Map<Long, Integer> pendientes = new HashMap<>(outboxStockService.pendientesDeEnvio(idsProducto));
+        diarioVentasService.unidadesPendientes(idsProducto)
+                .forEach((idProducto, cantidad) -> pendientes.merge(idProducto, cantidad, Integer::sum));
+        return pendientes;
+    }
+
+    /**
+     * Modo outbox: el stock no se descuenta durante la venta sino después, desde los eventos que
+     * se guardan con ella (ver OutboxStockService). Tampoco hay nada que reponer si el guardado falla.
+     */
+    public boolean diferido() {
+        return "outbox".equals(modo);
+    }
+
+    @Scheduled(fixedDelayString = "${ventas.stock.reservas.revision-ms:5000}")
+    public void devolverReservasInactivas() {
+        if (reservas != null) {
+            int devueltas = reservas.devolverInactivas(inactividadMs);
+            if (devueltas > 0) {
+                log.debug("Se devolvieron {} unidades reservadas sin vender a Productos", devueltas);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (reservas != null) {
+            int devueltas = reservas.devolverTodas();
+            log.info("Se devolvieron {} unidades reservadas a Productos al apagar", devueltas);
+        }
+    }
+
+    private void descontarRemoto(long idProducto, int cantidad) {
+        // Llamada PUT al microservicio de Productos
+        // URL: http://localhost:8081/api/v1/productos/{id}/stock?cantidad={n}
+        String urlDescuento = productosUrl + "/" + idProducto + "/stock?cantidad=" + cantidad;
+        proteccion.productos().ejecutar(() -> restTemplate.put(urlDescuento, null));
+    }
+
+    private void reponerRemoto(long idProducto, int cantidad) {
+        String urlReposicion = productosUrl + "/" + idProducto + "/stock?cantidad=" + (-cantidad);
+        try (Plazo.Ambito sinPlazo = Plazo.activar(null)) {
+            restTemplate.put(urlReposicion, null);
+        } catch (RuntimeException e) {
+            log.error("No se pudo reponer stock del producto {} (cantidad {}): {}", idProducto, cantidad, e.getMessage());
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.pokeshop.ventas.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recuerda si un usuario existe para no consultar al servicio de Usuarios en cada venta.
+ * Los "sí existe" y los "no existe" tienen TTL distintos; los errores de conexión no se guardan.
+ * Caffeine garantiza una sola consulta remota aunque lleguen muchas ventas del mismo usuario a la vez.
+ *
+ * La caché guarda futuros y la consulta la hace el hilo que dejó el suyo, fuera de Caffeine: con
+ * un LoadingCache la llamada HTTP corría dentro de ConcurrentHashMap.compute, un bloque
+ * synchronized que en Java 21 ancla el hilo virtual a su carrier mientras espera la respuesta.
+ * Así el que consulta conserva su Plazo y los demás esperan el mismo futuro sin anclarse.
+ */
+@Component
+public class UsuarioExistenciaCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UsuarioExistenciaCache.class);
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ProteccionServiciosRemotos proteccion;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.usuarios.url}")
+    private String usuariosUrl;
+
+    // HEAD evita descargar el JSON del usuario. Si Usuarios responde 405 se vuelve a GET automáticamente
+    @Value("${api.usuarios.verificar-con-head:false}")
+    private volatile boolean verificarConHead = false;
+
+    @Value("${ventas.usuarios.cache.maximo:50000}")
+    private long maximo = 50000;
+
+    @Value("${ventas.usuarios.cache.ttl-positivo-segundos:600}")
+    private long ttlPositivoSegundos = 600;
+
+    @Value("${ventas.usuarios.cache.ttl-negativo-segundos:30}")
+    private long ttlNegativoSegundos = 30;
+
+    private AsyncCache<Long, Boolean> cache;
+
+    @PostConstruct
+    public void iniciar() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfter(new Expiry<Long, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(Long idUsuario, Boolean existe, long tiempoActual) {
+                        return TimeUnit.SECONDS.toNanos(existe ? ttlPositivoSegundos : ttlNegativoSegundos);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long idUsuario, Boolean existe, long tiempoActual, long duracionActual) {
+                        return expireAfterCreate(idUsuario, existe, tiempoActual);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long idUsuario, Boolean existe, long tiempoActual, long duracionActual) {
+                        return duracionActual;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "usuarios");
+        }
+    }
+
+    /**
+     * Devuelve si el usuario existe. Los errores de conexión o del servicio remoto se propagan tal cual.
+     */
+    public boolean existe(Long idUsuario) {
+        CompletableFuture<Boolean> propia = new CompletableFuture<>();
+        CompletableFuture<Boolean> existe = cache.get(idUsuario, (id, ejecutor) -> propia);
+        if (existe == propia) {
+            try {
+                propia.complete(consultarUsuario(idUsuario));
+            } catch (RuntimeException e) {
+                // Caffeine quita de la caché los futuros que terminan con error
+                propia.completeExceptionally(e);
+            }
+        }
+        try {
+            return existe.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException causa ? causa : e;
+        }
+    }
+
+    public void invalidar(Long idUsuario) {
+        cache.synchronous().invalidate(idUsuario);
+    }
+
+    private Boolean consultarUsuario(Long idUsuario) {
+        // URL Ejemplo: http://localhost:8080/api/v1/users/1
+        String urlUser = usuariosUrl + "/" + idUsuario;
+        log.debug("Validando usuario en URL: {}", urlUser);
+
+        try {
+            if (verificarConHead) {
+                try {
+                    proteccion.usuarios().ejecutar(() -> restTemplate.headForHeaders(urlUser));
+                    return Boolean.TRUE;
+                } catch (HttpClientErrorException.MethodNotAllowed e) {
+                    // Este servicio de Usuarios no soporta HEAD: seguimos con GET de aquí en adelante
+                    verificarConHead = false;
+                }
+            }
+            // Usamos String.class para recibir el JSON crudo y evitar errores de mapeo por ahora
+            proteccion.usuarios().ejecutar(() -> restTemplate.getForObject(urlUser, String.class));
+            return Boolean.TRUE;
+
+        } catch (HttpClientErrorException.NotFound e) {
+            // ESTE es el verdadero "Usuario no existe" (Error 404): se guarda con el TTL negativo
+            return Boolean.FALSE;
+        }
+    }
+}
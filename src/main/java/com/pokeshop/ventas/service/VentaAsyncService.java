@@ -0,0 +1,150 @@
+package com.pokeshop.ventas.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pokeshop.ventas.diario.VentaPendienteException;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.dto.TicketVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo asíncrono de recepción de ventas: la solicitud se deja en una cola acotada y un grupo
+ * fijo de trabajadores la procesa con {@link VentaService#crearVenta}. Si la cola está llena
+ * se rechaza de inmediato (backpressure) en vez de acumular hilos HTTP esperando.
+ */
+@Service
+public class VentaAsyncService {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String COMPLETADA = "COMPLETADA";
+    public static final String RECHAZADA = "RECHAZADA";
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.async.habilitado:false}")
+    private boolean habilitado = false;
+
+    @Value("${ventas.async.trabajadores:16}")
+    private int trabajadores = 16;
+
+    // Con hilos virtuales los trabajadores también lo son; su cantidad sigue limitando las ventas en proceso
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean hilosVirtuales = false;
+
+    @Value("${ventas.async.capacidad-cola:1000}")
+    private int capacidadCola = 1000;
+
+    @Value("${ventas.async.tickets.maximo:100000}")
+    private long maximoTickets = 100000;
+
+    @Value("${ventas.async.tickets.ttl-minutos:60}")
+    private long ttlTicketsMinutos = 60;
+
+    private ThreadPoolExecutor trabajadoresVenta;
+    private ExecutorService ejecutor;
+    private Cache<String, TicketVentaDto> tickets;
+
+    @PostConstruct
+    public void iniciar() {
+        trabajadoresVenta = new ThreadPoolExecutor(trabajadores, trabajadores, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                hilosVirtuales ? Thread.ofVirtual().name("venta-async-", 1).factory()
+                        : Thread.ofPlatform().name("venta-async-", 1).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        tickets = Caffeine.newBuilder()
+                .maximumSize(maximoTickets)
+                .expireAfterWrite(Duration.ofMinutes(ttlTicketsMinutos))
+                .build();
+
+        if (meterRegistry != null) {
+            // executor.queued (profundidad de cola), executor.active, executor.idle (espera en cola)
+            // y executor (tiempo de proceso), todos con name=ventas.async
+            ejecutor = ExecutorServiceMetrics.monitor(meterRegistry, trabajadoresVenta, "ventas.async");
+            Gauge.builder("ventas.async.utilizacion", trabajadoresVenta,
+                            pool -> (double) pool.getActiveCount() / pool.getMaximumPoolSize())
+                    .description("Fracción de trabajadores ocupados procesando ventas")
+                    .register(meterRegistry);
+        } else {
+            ejecutor = trabajadoresVenta;
+        }
+    }
+
+    public boolean estaHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Deja la venta en cola y devuelve su ticket en estado PENDIENTE.
+     * Lanza RejectedExecutionException si la cola está llena.
+     */
+    public TicketVentaDto encolar(SolicitudVentaDto solicitud) {
+        TicketVentaDto ticket = new TicketVentaDto();
+        ticket.setIdTicket(UUID.randomUUID().toString());
+        ticket.setEstado(PENDIENTE);
+        ticket.setFechaRecepcion(LocalDateTime.now());
+        ticket.setFechaActualizacion(ticket.getFechaRecepcion());
+        tickets.put(ticket.getIdTicket(), ticket);
+
+        try {
+            ejecutor.execute(() -> procesar(ticket, solicitud));
+        } catch (RejectedExecutionException e) {
+            tickets.invalidate(ticket.getIdTicket());
+            throw e;
+        }
+        return ticket;
+    }
+
+    public TicketVentaDto consultar(String idTicket) {
+        return tickets.getIfPresent(idTicket);
+    }
+
+    private void procesar(TicketVentaDto pendiente, SolicitudVentaDto solicitud) {
+        // Se publica un ticket nuevo en vez de modificar el que ya se devolvió al cliente
+        TicketVentaDto resultado = new TicketVentaDto();
+        resultado.setIdTicket(pendiente.getIdTicket());
+        resultado.setFechaRecepcion(pendiente.getFechaRecepcion());
+        try {
+            Venta venta = ventaService.crearVenta(solicitud);
+            resultado.setEstado(COMPLETADA);
+            resultado.setIdVenta(venta.getIdVenta());
+        } catch (VentaPendienteException e) {
+            // Ya está en el diario local y se guardará cuando el disco sincronice
+            resultado.setEstado(COMPLETADA);
+            resultado.setIdVenta(e.getIdVenta());
+            resultado.setMensaje(e.getMessage());
+        } catch (RuntimeException e) {
+            resultado.setEstado(RECHAZADA);
+            resultado.setMensaje(e.getMessage());
+        }
+        resultado.setFechaActualizacion(LocalDateTime.now());
+        tickets.put(resultado.getIdTicket(), resultado);
+    }
+
+    @PreDestroy
+    public void cerrar() throws InterruptedException {
+        // Se terminan las ventas ya aceptadas antes de apagar
+        trabajadoresVenta.shutdown();
+        trabajadoresVenta.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,78 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.PaginaVentasDto;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listado de ventas con paginación por cursor (keyset): cada página continúa después de la
+ * (fecha, idVenta) de la última venta devuelta, así que pedir la página 1 o la 10.000 cuesta lo mismo.
+ * Los detalles se cargan con una única consulta por página.
+ */
+@Service
+public class VentaConsultaService {
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Value("${ventas.consulta.tamano-maximo:100}")
+    private int tamanoMaximo = 100;
+
+    @Transactional(readOnly = true)
+    public PaginaVentasDto buscar(Long idUsuario, LocalDateTime desde, LocalDateTime hasta, String estado,
+                                  String cursor, int tamano) {
+        if (tamano < 1 || tamano > tamanoMaximo) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + tamanoMaximo + ".");
+        }
+        LocalDateTime fechaCursor = null;
+        Long idCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                fechaCursor = LocalDateTime.parse(partes[0]);
+                idCursor = Long.parseLong(partes[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("El cursor de paginación no es válido.");
+            }
+        }
+
+        // Se pide una de más solo para saber si existe una página siguiente
+        List<Long> ids = ventaRepository.buscarIdsPagina(idUsuario, desde, hasta, estado, fechaCursor, idCursor, tamano + 1);
+        boolean hayMas = ids.size() > tamano;
+        if (hayMas) {
+            ids = ids.subList(0, tamano);
+        }
+
+        // La consulta con join fetch no conserva el orden: se reordena según los ids de la página
+        Map<Long, Venta> porId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            ventaRepository.buscarConDetalles(ids).forEach(venta -> porId.put(venta.getIdVenta(), venta));
+        }
+        List<Venta> ventas = ids.stream().map(porId::get).filter(venta -> venta != null).toList();
+
+        PaginaVentasDto pagina = new PaginaVentasDto();
+        pagina.setVentas(ventas);
+        if (hayMas && !ventas.isEmpty()) {
+            Venta ultima = ventas.get(ventas.size() - 1);
+            pagina.setSiguienteCursor(codificarCursor(ultima.getFecha(), ultima.getIdVenta()));
+        }
+        return pagina;
+    }
+
+    // El cursor es opaco para el cliente: "fecha|idVenta" en Base64 URL-safe
+    static String codificarCursor(LocalDateTime fecha, Long idVenta) {
+        String valor = fecha + "|" + idVenta;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,173 @@
+package com.pokeshop.ventas.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Exportación completa de ventas para Finanzas. Las filas se leen con un cursor JDBC de solo avance
+ * y se escriben directo en la respuesta a medida que llegan: no se crean entidades ni se guarda
+ * nada en memoria más allá de la venta que se está escribiendo.
+ * No se abre transacción (autocommit), así que no queda una transacción larga mientras dura la descarga.
+ */
+@Service
+public class VentaExportacionService {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    // Ordenado por (fecha, id_venta): se recorre el índice idx_ventas_fecha sin ordenar en el servidor
+    // y las líneas de una misma venta llegan seguidas
+    private static final String CONSULTA =
+            "select v.id_venta, v.fecha, v.id_usuario, v.estado, v.subtotal, v.iva, v.total, " +
+            "d.id_detalle, d.id_producto, d.nombre_producto, d.cantidad, d.precio_unitario " +
+            "from ventas v left join detalle_venta d on d.id_venta = v.id_venta " +
+            "where v.fecha >= ? and v.fecha < ? " +
+            "order by v.fecha, v.id_venta";
+
+    private static final String CABECERA_CSV =
+            "id_venta,fecha,id_usuario,estado,subtotal,iva,total,id_detalle,id_producto,nombre_producto,cantidad,precio_unitario\n";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Con MySQL, Integer.MIN_VALUE hace que el driver entregue las filas una a una en vez de cargar todo el resultado
+    @Value("${ventas.exportacion.fetch-size:1000}")
+    private int fetchSize = 1000;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void iniciar() {
+        // JdbcTemplate propio para no cambiar el fetch size del resto de las consultas
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void exportar(LocalDateTime desde, LocalDateTime hasta, String formato, Writer salida) throws IOException {
+        if (CSV.equals(formato)) {
+            salida.write(CABECERA_CSV);
+            jdbcTemplate.query(CONSULTA, (RowCallbackHandler) fila -> escribirCsv(fila, salida), desde, hasta);
+        } else {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(salida)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM) // que cada venta no vacíe la respuesta
+                    .setRootValueSeparator(null);                          // el separador es el salto de línea
+            EscritorNdjson escritor = new EscritorNdjson(json, salida);
+            jdbcTemplate.query(CONSULTA, escritor, desde, hasta);
+            escritor.terminar();
+        }
+        salida.flush();
+    }
+
+    private void escribirCsv(ResultSet fila, Writer salida) throws SQLException {
+        try {
+            salida.write(fila.getLong("id_venta") + ","
+                    + valor(fila.getObject("fecha", LocalDateTime.class)) + ","
+                    + fila.getLong("id_usuario") + ","
+                    + campoCsv(fila.getString("estado")) + ","
+                    + valor(fila.getObject("subtotal")) + ","
+                    + valor(fila.getObject("iva")) + ","
+                    + valor(fila.getObject("total")) + ","
+                    + valor(fila.getObject("id_detalle")) + ","
+                    + valor(fila.getObject("id_producto")) + ","
+                    + campoCsv(fila.getString("nombre_producto")) + ","
+                    + valor(fila.getObject("cantidad")) + ","
+                    + valor(fila.getObject("precio_unitario")) + "\n");
+        } catch (IOException e) {
+            // El cliente cortó la descarga: se corta también la lectura de la base de datos
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String valor(Object valor) {
+        return valor == null ? "" : valor.toString();
+    }
+
+    private static String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.contains(",") || valor.contains("\"") || valor.contains("\n")) {
+            return "\"" + valor.replace("\"", "\"\"") + "\"";
+        }
+        return valor;
+    }
+
+    /**
+     * Una venta por línea con sus detalles anidados. Como las filas vienen ordenadas por venta,
+     * basta con cerrar el objeto anterior cuando cambia el id_venta.
+     */
+    private static class EscritorNdjson implements RowCallbackHandler {
+
+        private final JsonGenerator json;
+        private final Writer salida;
+        private Long ventaActual;
+
+        EscritorNdjson(JsonGenerator json, Writer salida) {
+            this.json = json;
+            this.salida = salida;
+        }
+
+        @Override
+        public void processRow(ResultSet fila) throws SQLException {
+            try {
+                long idVenta = fila.getLong("id_venta");
+                if (ventaActual == null || ventaActual != idVenta) {
+                    cerrarVenta();
+                    ventaActual = idVenta;
+                    json.writeStartObject();
+                    json.writeStringField("idVenta", String.valueOf(idVenta)); // Como en la API: texto
+                    json.writeStringField("fecha", valor(fila.getObject("fecha", LocalDateTime.class)));
+                    json.writeNumberField("idUsuario", fila.getLong("id_usuario"));
+                    json.writeStringField("estado", fila.getString("estado"));
+                    json.writeObjectField("subtotal", fila.getObject("subtotal"));
+                    json.writeObjectField("iva", fila.getObject("iva"));
+                    json.writeObjectField("total", fila.getObject("total"));
+                    json.writeArrayFieldStart("detalles");
+                }
+                if (fila.getObject("id_detalle") != null) {
+                    json.writeStartObject();
+                    json.writeStringField("idDetalle", String.valueOf(fila.getLong("id_detalle")));
+                    json.writeNumberField("idProducto", fila.getLong("id_producto"));
+                    json.writeStringField("nombreProducto", fila.getString("nombre_producto"));
+                    json.writeObjectField("cantidad", fila.getObject("cantidad"));
+                    json.writeObjectField("precioUnitario", fila.getObject("precio_unitario"));
+                    json.writeEndObject();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void terminar() throws IOException {
+            cerrarVenta();
+            json.flush();
+        }
+
+        private void cerrarVenta() throws IOException {
+            if (ventaActual != null) {
+                json.writeEndArray();
+                json.writeEndObject();
+                // Se vacía el generador hacia el Writer (con buffer) antes de escribir el separador de línea
+                json.flush();
+                salida.write('\n');
+            }
+        }
+    }
+}
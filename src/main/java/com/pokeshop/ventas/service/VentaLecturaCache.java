@@ -0,0 +1,171 @@
+package com.pokeshop.ventas.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché en memoria de GET /api/v1/ventas/{id}: guarda la respuesta ya serializada (JSON y, si
+ * vale la pena, también comprimida con gzip) junto con su ETag. Solo entran las ventas
+ * COMPLETADA, que ya no cambian, así que no expiran: en un acierto no se consulta la base de
+ * datos ni se pasa por Jackson. Si una se corrige a mano en la base de datos se invalida con
+ * DELETE /api/v1/ventas/cache/ventas/{id} (CacheController). El límite es de bytes totales, no
+ * de cantidad de ventas, porque una venta con muchos detalles pesa mucho más que una de uno.
+ *
+ * Muchas lecturas de la misma venta que no está en la caché hacen una sola consulta: la primera
+ * deja su futuro en la caché y consulta fuera de Caffeine (como UsuarioExistenciaCache, para no
+ * anclar hilos virtuales dentro de ConcurrentHashMap.compute) y las demás esperan ese futuro.
+ */
+@Component
+public class VentaLecturaCache {
+
+    public static final String COMPLETADA = "COMPLETADA";
+
+    // Lo que ocupa cada entrada además de los arreglos (clave, ETag, nodo de Caffeine)
+    private static final int SOBRECARGA_ENTRADA = 160;
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.ventas.cache.habilitado:true}")
+    private boolean habilitado = true;
+
+    // Tope de memoria de la caché (JSON + gzip de todas las entradas)
+    @Value("${ventas.ventas.cache.maximo-bytes:67108864}")
+    private long maximoBytes = 64L * 1024 * 1024;
+
+    // Por debajo de este tamaño el gzip casi no ahorra y no se guarda la versión comprimida
+    @Value("${ventas.ventas.cache.gzip-minimo-bytes:1024}")
+    private int gzipMinimoBytes = 1024;
+
+    private AsyncCache<Long, VentaSerializada> cache;
+
+    /**
+     * Respuesta lista para escribir. gzip es null cuando no se comprimió; etag es el hash del
+     * JSON y etagGzip el de la variante comprimida (son representaciones distintas).
+     */
+    public record VentaSerializada(byte[] json, byte[] gzip, String etag, String etagGzip) {
+
+        public int peso() {
+            return json.length + (gzip != null ? gzip.length : 0) + SOBRECARGA_ENTRADA;
+        }
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maximoBytes)
+                .weigher((Long idVenta, VentaSerializada venta) -> venta.peso())
+                .recordStats()
+                .buildAsync();
+
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "ventas");
+        }
+    }
+
+    /** Devuelve la venta serializada, o null si no existe. */
+    public VentaSerializada obtener(Long idVenta) {
+        if (!habilitado) {
+            Venta venta = consultar(idVenta);
+            return venta != null ? serializar(venta) : null;
+        }
+
+        CompletableFuture<VentaSerializada> propia = new CompletableFuture<>();
+        CompletableFuture<VentaSerializada> serializada = cache.get(idVenta, (id, ejecutor) -> propia);
+        if (serializada == propia) {
+            try {
+                Venta venta = consultar(idVenta);
+                // Una venta que todavía puede cambiar de estado no se guarda: las lecturas que ya
+                // esperaban la comparten y las siguientes la consultan de nuevo. Un null tampoco queda
+                if (venta != null && !COMPLETADA.equals(venta.getEstado())) {
+                    cache.asMap().remove(idVenta, propia);
+                }
+                propia.complete(venta != null ? serializar(venta) : null);
+            } catch (RuntimeException e) {
+                // Caffeine quita de la caché los futuros que terminan con error
+                propia.completeExceptionally(e);
+            }
+        }
+        try {
+            return serializada.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException causa ? causa : e;
+        }
+    }
+
+    public void invalidar(Long idVenta) {
+        cache.synchronous().invalidate(idVenta);
+    }
+
+    public void invalidarTodo() {
+        cache.synchronous().invalidateAll();
+    }
+
+    // Consulta con fetch join: trae los detalles en la misma consulta, sin carga perezosa
+    private Venta consultar(Long idVenta) {
+        List<Venta> ventas = ventaRepository.buscarConDetalles(List.of(idVenta));
+        return ventas.isEmpty() ? null : ventas.get(0);
+    }
+
+    private VentaSerializada serializar(Venta venta) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(venta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la venta " + venta.getIdVenta(), e);
+        }
+        String hash = hash(json);
+        byte[] gzip = json.length >= gzipMinimoBytes ? comprimir(json) : null;
+        if (gzip != null && gzip.length >= json.length) {
+            gzip = null;
+        }
+        return new VentaSerializada(json, gzip, "\"" + hash + "\"", gzip != null ? "\"" + hash + "-gz\"" : null);
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    // ETag fuerte: los primeros 16 bytes del SHA-256 del JSON
+    private static String hash(byte[] datos) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(datos);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import com.pokeshop.ventas.dto.ResultadoVentaLoteDto;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Procesa muchas ventas en una sola petición (reprocesos de POS y marketplaces).
+ * Cada usuario y producto distinto del lote se consulta una sola vez, el stock se reparte entre
+ * las órdenes en el orden en que llegaron, se descuenta con un PUT por producto y las ventas
+ * aceptadas se guardan por bloques con inserts JDBC agrupados.
+ *
+ * El lote no pasa por el diario de ventas aunque ventas.diario.habilitado esté activo: cada bloque
+ * va directo a la base de datos y, si falla, sus órdenes se rechazan y se repone el stock.
+ */
+@Service
+public class VentaLoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(VentaLoteService.class);
+
+    @Autowired
+    private ProductoBatchLoader productoBatchLoader;
+
+    @Autowired
+    private UsuarioExistenciaCache usuarioExistenciaCache;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private VentaPersistenciaService ventaPersistenciaService;
+
+    @Autowired
+    private AnaliticaVentasService analiticaVentasService;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.lote.maximo-ordenes:5000}")
+    private int maximoOrdenes = 5000;
+
+    // Ventas por transacción al guardar (cada bloque es un commit independiente)
+    @Value("${ventas.lote.tamano-bloque-bd:500}")
+    private int tamanoBloqueBd = 500;
+
+    @Value("${ventas.remoto.timeout-ms:5000}")
+    private long timeoutRemotoMs = 5000;
+
+    private final ExecutorService ejecutorRemoto = Executors.newVirtualThreadPerTaskExecutor();
+
+    public List<ResultadoVentaLoteDto> procesar(List<SolicitudVentaDto> solicitudes) {
+        if (solicitudes.size() > maximoOrdenes) {
+            throw new IllegalArgumentException("El lote supera el máximo de " + maximoOrdenes + " órdenes.");
+        }
+        long inicio = System.nanoTime();
+        ResultadoVentaLoteDto[] resultados = new ResultadoVentaLoteDto[solicitudes.size()];
+
+        // 1. Validar el formato de cada orden; las inválidas se rechazan sin consultar nada
+        List<Integer> validas = new ArrayList<>();
+        for (int i = 0; i < solicitudes.size(); i++) {
+            Set<ConstraintViolation<SolicitudVentaDto>> violaciones = validator.validate(solicitudes.get(i));
+            if (violaciones.isEmpty()) {
+                validas.add(i);
+            } else {
+                resultados[i] = rechazada(i, violaciones.iterator().next().getMessage());
+            }
+        }
+
+        // 2. Consultar en paralelo cada usuario y producto distinto de todo el lote
+        Map<Long, CompletableFuture<Boolean>> usuarios = new HashMap<>();
+        Map<Long, CompletableFuture<ProductoExternoDto>> productos = new HashMap<>();
+        for (int i : validas) {
+            SolicitudVentaDto solicitud = solicitudes.get(i);
+            usuarios.computeIfAbsent(solicitud.getIdUsuario(), idUsuario ->
+                    CompletableFuture.supplyAsync(() -> usuarioExistenciaCache.existe(idUsuario), ejecutorRemoto));
+            for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+                // Directo al loader (sin caché de catálogo): para repartir el stock hace falta el valor en vivo
+                productos.computeIfAbsent(item.getIdProducto(), productoBatchLoader::cargar);
+            }
+        }
+        esperarConsultas(usuarios, productos);
+
+        // 3. Repartir el stock disponible entre las órdenes, en orden de llegada
+        Map<Long, Integer> disponible = new HashMap<>();
+        // En modo outbox se resta lo vendido que todavía no se envió a Productos
+        Map<Long, Integer> pendientes = stockService.pendienteDeDescontar(productos.keySet());
+        productos.forEach((idProducto, consulta) -> {
+            ProductoExternoDto producto = resultado(consulta);
+            // Sin stock conocido el producto queda sin disponible y sus órdenes se rechazan (también
+            // en modo outbox, donde ningún PUT en vivo lo comprobaría después)
+            if (producto != null && producto.getStock() != null) {
+                // Con reservas locales, lo ya reservado por esta instancia también se puede vender
+                disponible.put(idProducto, producto.getStock() + stockService.reservadoLocal(idProducto)
+                        - pendientes.getOrDefault(idProducto, 0));
+            }
+        });
+
+        Map<Integer, Venta> aceptadas = new LinkedHashMap<>();
+        for (int i : validas) {
+            SolicitudVentaDto solicitud = solicitudes.get(i);
+            String motivo = motivoRechazo(solicitud, usuarios, productos, disponible);
+            if (motivo != null) {
+                resultados[i] = rechazada(i, motivo);
+                continue;
+            }
+            Map<Long, ProductoExternoDto> productosOrden = new HashMap<>();
+            for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+                disponible.merge(item.getIdProducto(), -item.getCantidad(), Integer::sum);
+                productosOrden.put(item.getIdProducto(), resultado(productos.get(item.getIdProducto())));
+            }
+            aceptadas.put(i, VentaService.armarVenta(solicitud.getIdUsuario(), solicitud.getProductos(), productosOrden));
+        }
+
+        // 4. Descontar el stock con un solo PUT por producto (sumando todas las órdenes aceptadas).
+        // En modo outbox el descuento se guarda con cada bloque de ventas y se envía después
+        boolean descontado = !stockService.diferido();
+        Map<Integer, Map<Long, String>> sinDescontar = descontado ? descontarAgrupado(aceptadas) : Map.of();
+        if (!sinDescontar.isEmpty()) {
+            List<DetalleVenta> aReponer = new ArrayList<>();
+            aceptadas.entrySet().removeIf(entrada -> {
+                Map<Long, String> fallidos = sinDescontar.get(entrada.getKey());
+                if (fallidos == null) {
+                    return false;
+                }
+                String motivo = fallidos.values().iterator().next();
+                // Las demás líneas de esta orden sí se descontaron: hay que devolverlas
+                entrada.getValue().getDetalles().stream()
+                        .filter(detalle -> !fallidos.containsKey(detalle.getIdProducto()))
+                        .forEach(aReponer::add);
+                resultados[entrada.getKey()] = rechazada(entrada.getKey(), motivo);
+                return true;
+            });
+            stockService.reponer(aReponer);
+        }
+
+        // 5. Guardar por bloques; si un bloque falla se repone su stock y sus órdenes quedan rechazadas
+        List<Integer> indices = new ArrayList<>(aceptadas.keySet());
+        for (int desde = 0; desde < indices.size(); desde += tamanoBloqueBd) {
+            List<Integer> bloque = indices.subList(desde, Math.min(desde + tamanoBloqueBd, indices.size()));
+            List<Venta> ventas = bloque.stream().map(aceptadas::get).toList();
+            try {
+                ventaPersistenciaService.guardarTodas(ventas);
+                ventas.forEach(analiticaVentasService::registrar);
+                for (int i : bloque) {
+                    resultados[i] = completada(i, aceptadas.get(i).getIdVenta());
+                }
+            } catch (RuntimeException e) {
+                if (descontado) {
+                    stockService.reponer(ventas.stream().flatMap(venta -> venta.getDetalles().stream()).toList());
+                }
+                for (int i : bloque) {
+                    resultados[i] = rechazada(i, "Error al guardar la venta, se repuso el stock descontado: " + e.getMessage());
+                }
+            }
+        }
+
+        registrarMetricas(resultados, System.nanoTime() - inicio);
+        return Arrays.asList(resultados);
+    }
+
+    private void esperarConsultas(Map<Long, CompletableFuture<Boolean>> usuarios,
+                                  Map<Long, CompletableFuture<ProductoExternoDto>> productos) {
+        List<CompletableFuture<?>> todas = new ArrayList<>(usuarios.values());
+        todas.addAll(productos.values());
+        try {
+            CompletableFuture.allOf(todas.toArray(new CompletableFuture[0])).get(timeoutRemotoMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Los errores se resuelven por id en motivoRechazo: una consulta fallida no tumba el lote entero
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Lote interrumpido mientras se consultaban los servicios remotos.");
+        }
+    }
+
+    private String motivoRechazo(SolicitudVentaDto solicitud,
+                                 Map<Long, CompletableFuture<Boolean>> usuarios,
+                                 Map<Long, CompletableFuture<ProductoExternoDto>> productos,
+                                 Map<Long, Integer> disponible) {
+        CompletableFuture<Boolean> usuario = usuarios.get(solicitud.getIdUsuario());
+        if (resultado(usuario) == null) {
+            return "Error de conexión: No se pudo validar el usuario con ID " + solicitud.getIdUsuario();
+        }
+        if (!resultado(usuario)) {
+            return "El usuario con ID " + solicitud.getIdUsuario() + " no existe en la base de datos.";
+        }
+
+        Map<Long, Integer> cantidadPorProducto = new LinkedHashMap<>();
+        for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+            cantidadPorProducto.merge(item.getIdProducto(), item.getCantidad(), Integer::sum);
+        }
+        for (Map.Entry<Long, Integer> linea : cantidadPorProducto.entrySet()) {
+            CompletableFuture<ProductoExternoDto> consulta = productos.get(linea.getKey());
+            ProductoExternoDto producto = resultado(consulta);
+            if (producto == null) {
+                // Respondió sin producto o con un 4xx: no existe. Si no respondió a tiempo o falló: conexión
+                boolean noEncontrado = consulta.isDone()
+                        && (!consulta.isCompletedExceptionally() || causa(consulta) instanceof HttpClientErrorException);
+                if (noEncontrado) {
+                    return "Error: Producto ID " + linea.getKey() + " no encontrado.";
+                }
+                return "Error de conexión: No se pudo consultar el producto ID " + linea.getKey();
+            }
+            if (disponible.getOrDefault(linea.getKey(), 0) < linea.getValue()) {
+                return "Stock insuficiente para: " + producto.getNombre();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Un PUT por producto con la suma de todas las ventas. Si Productos rechaza la suma (4xx) se
+     * descuenta venta por venta, en orden de llegada, para aceptar las que sí alcanzan. Devuelve,
+     * por índice de orden, los productos que no se le descontaron con el motivo.
+     */
+    private Map<Integer, Map<Long, String>> descontarAgrupado(Map<Integer, Venta> ventas) {
+        Map<Long, Map<Integer, Integer>> cantidadesPorProducto = new LinkedHashMap<>();
+        Map<Long, String> nombres = new HashMap<>();
+        for (Map.Entry<Integer, Venta> venta : ventas.entrySet()) {
+            for (DetalleVenta detalle : venta.getValue().getDetalles()) {
+                cantidadesPorProducto.computeIfAbsent(detalle.getIdProducto(), id -> new LinkedHashMap<>())
+                        .merge(venta.getKey(), detalle.getCantidad(), Integer::sum);
+                nombres.putIfAbsent(detalle.getIdProducto(), detalle.getNombreProducto());
+            }
+        }
+
+        Map<Integer, Map<Long, String>> sinDescontar = new HashMap<>();
+        List<CompletableFuture<Void>> descuentos = new ArrayList<>();
+        cantidadesPorProducto.forEach((idProducto, cantidades) -> descuentos.add(CompletableFuture.runAsync(() -> {
+            String nombre = nombres.get(idProducto);
+            int total = cantidades.values().stream().mapToInt(Integer::intValue).sum();
+            try {
+                stockService.descontarProducto(idProducto, total, nombre);
+            } catch (RuntimeException e) {
+                boolean rechazado = e.getCause() instanceof HttpClientErrorException rechazo
+                        && !(rechazo instanceof HttpClientErrorException.TooManyRequests);
+                cantidades.forEach((indice, cantidad) -> {
+                    // La suma no entra: se descuenta cada venta por separado
+                    String motivo = rechazado && cantidades.size() > 1
+                            ? descontarVenta(idProducto, cantidad, nombre)
+                            : e.getMessage();
+                    if (motivo != null) {
+                        synchronized (sinDescontar) {
+                            sinDescontar.computeIfAbsent(indice, i -> new LinkedHashMap<>()).put(idProducto, motivo);
+                        }
+                    }
+                });
+            }
+        }, ejecutorRemoto)));
+        CompletableFuture.allOf(descuentos.toArray(new CompletableFuture[0])).join();
+        return sinDescontar;
+    }
+
+    /** Devuelve el motivo si Productos rechaza el descuento, o null si se descontó. */
+    private String descontarVenta(Long idProducto, int cantidad, String nombre) {
+        try {
+            stockService.descontarProducto(idProducto, cantidad, nombre);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void registrarMetricas(ResultadoVentaLoteDto[] resultados, long duracionNanos) {
+        long completadas = Arrays.stream(resultados).filter(r -> VentaAsyncService.COMPLETADA.equals(r.getEstado())).count();
+        double segundos = Math.max(duracionNanos, 1) / 1_000_000_000.0;
+        log.info("Lote de {} órdenes procesado en {} s ({} órdenes/s, {} completadas)", resultados.length,
+                String.format("%.3f", segundos), String.format("%.1f", resultados.length / segundos), completadas);
+
+        if (meterRegistry != null) {
+            // La tasa de ventas.lote.ordenes da el throughput en órdenes por segundo
+            meterRegistry.counter("ventas.lote.ordenes", "resultado", "completada").increment(completadas);
+            meterRegistry.counter("ventas.lote.ordenes", "resultado", "rechazada").increment(resultados.length - completadas);
+            meterRegistry.timer("ventas.lote.duracion").record(duracionNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static <T> T resultado(CompletableFuture<T> consulta) {
+        if (consulta == null || !consulta.isDone() || consulta.isCompletedExceptionally()) {
+            return null;
+        }
+        return consulta.join();
+    }
+
+    private static Throwable causa(CompletableFuture<?> consulta) {
+        try {
+            consulta.join();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    private static ResultadoVentaLoteDto rechazada(int indice, String mensaje) {
+        ResultadoVentaLoteDto resultado = new ResultadoVentaLoteDto();
+        resultado.setIndice(indice);
+        resultado.setEstado(VentaAsyncService.RECHAZADA);
+        resultado.setMensaje(mensaje);
+        return resultado;
+    }
+
+    private static ResultadoVentaLoteDto completada(int indice, Long idVenta) {
+        ResultadoVentaLoteDto resultado = new ResultadoVentaLoteDto();
+        resultado.setIndice(indice);
+        resultado.setEstado(VentaAsyncService.COMPLETADA);
+        resultado.setIdVenta(idVenta);
+        return resultado;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        ejecutorRemoto.shutdownNow();
+    }
+}
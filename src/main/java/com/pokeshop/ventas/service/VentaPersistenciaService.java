@@ -0,0 +1,46 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Fase final de la venta: la única que toma una conexión de base de datos.
+ * Todo lo remoto ya se resolvió antes, así que la transacción dura lo que tardan los INSERT.
+ * En la misma transacción se suman las ventas a las tablas de resumen para reportes y, en modo
+ * outbox, se guardan los descuentos de stock que después envía OutboxStockService.
+ */
+@Service
+public class VentaPersistenciaService {
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private ResumenVentasService resumenVentasService;
+
+    @Autowired
+    private OutboxStockService outboxStockService;
+
+    @Transactional
+    public Venta guardar(Venta venta) {
+        // Cascada guarda los detalles también
+        Venta guardada = ventaRepository.save(venta);
+        resumenVentasService.acumular(List.of(guardada));
+        outboxStockService.registrar(List.of(guardada));
+        return guardada;
+    }
+
+    // Un bloque de ventas en una sola transacción; con ids asignados Hibernate los inserta por lotes JDBC
+    @Transactional
+    public List<Venta> guardarTodas(List<Venta> ventas) {
+        List<Venta> guardadas = ventaRepository.saveAll(ventas);
+        resumenVentasService.acumular(guardadas);
+        outboxStockService.registrar(guardadas);
+        return guardadas;
+    }
+}
@@ -1,90 +1,217 @@
 package com.pokeshop.ventas.service;
 
+import com.pokeshop.ventas.diario.DiarioNoDisponibleException;
+import com.pokeshop.ventas.diario.VentaPendienteException;
 import com.pokeshop.ventas.dto.*;
 import com.pokeshop.ventas.model.*;
-import com.pokeshop.ventas.repository.VentaRepository;
+import com.pokeshop.ventas.resiliencia.Plazo;
+import com.pokeshop.ventas.resiliencia.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.ResourceAccessException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class VentaService {
 
+    private static final Logger log = LoggerFactory.getLogger(VentaService.class);
+
+    @Autowired
+    private VentaPersistenciaService ventaPersistenciaService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private DiarioVentasService diarioVentasService;
+
+    @Autowired
+    private CatalogoProductoCache catalogoProductoCache;
+
     @Autowired
-    private VentaRepository ventaRepository;
+    private UsuarioExistenciaCache usuarioExistenciaCache;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private AnaliticaVentasService analiticaVentasService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
 
     @Value("${api.usuarios.url}")
     private String usuariosUrl;
 
-    @Value("${api.productos.url}")
-    private String productosUrl;
+    // Plazo total para validar el usuario y obtener todos los productos
+    @Value("${ventas.remoto.timeout-ms:5000}")
+    private long timeoutRemotoMs = 5000;
+
+    // Plazo de toda la venta: cada llamada remota (usuario, productos, descuentos de stock) solo recibe lo que queda
+    @Value("${ventas.plazo-ms:8000}")
+    private long plazoVentaMs = 8000;
+
+    // Cada consulta remota corre en su propio hilo virtual (las llamadas de RestTemplate son bloqueantes)
+    private final ExecutorService ejecutorRemoto = Executors.newVirtualThreadPerTaskExecutor();
 
-    @Transactional
+    /**
+     * La venta se arma en fases: validación remota, precios y descuento de stock sin transacción,
+     * y al final una transacción corta que solo guarda la Venta y sus detalles.
+     * Si el guardado falla, se repone el stock ya descontado.
+     *
+     * Cada fase queda medida en el timer ventas.fase (tag fase), la venta completa en ventas.crear
+     * (tag resultado) y cada rechazo en el contador ventas.rechazos (tag motivo).
+     * Toda la venta tiene un plazo (ventas.plazo-ms) que viaja con cada llamada remota.
+     */
     public Venta crearVenta(SolicitudVentaDto solicitud) {
-        
-        // 1. Validar que el usuario exista en el microservicio de Usuarios
-        // URL Ejemplo: http://localhost:8080/api/v1/users/1
-        String urlUser = usuariosUrl + "/" + solicitud.getIdUsuario();  
-        System.out.println("Validando usuario en URL: " + urlUser); // <- Imprime esto en consola
+        long inicio = System.nanoTime();
+        try (Plazo.Ambito ambito = Plazo.activar(Plazo.en(plazoVentaMs))) {
+            Venta guardada = procesarVenta(solicitud);
+            registrarResultado(inicio, "completada");
+            return guardada;
+        } catch (VentaPendienteException e) {
+            // No es un rechazo: la venta está en el diario y se guardará
+            registrarResultado(inicio, "pendiente");
+            throw e;
+        } catch (RuntimeException e) {
+            registrarResultado(inicio, "rechazada");
+            if (meterRegistry != null) {
+                meterRegistry.counter("ventas.rechazos", "motivo", motivoRechazo(e)).increment();
+            }
+            throw e;
+        }
+    }
 
+    private Venta procesarVenta(SolicitudVentaDto solicitud) {
+
+        // 1. Validar el usuario y obtener los productos en paralelo.
+        // La latencia queda marcada por la llamada más lenta y no por la suma de todas.
+        long inicioFase = System.nanoTime();
+        Map<Long, ProductoExternoDto> productos;
         try {
-        // Usamos String.class para recibir el JSON crudo y evitar errores de mapeo por ahora
-        restTemplate.getForObject(urlUser, String.class);
-    
-        } catch (org.springframework.web.client.HttpClientErrorException.NotFound e) {
-        // ESTE es el verdadero "Usuario no existe" (Error 404)
-        throw new RuntimeException("El usuario con ID " + solicitud.getIdUsuario() + " no existe en la base de datos.");
-    
-        } catch (org.springframework.web.client.ResourceAccessException e) {
-        // Esto pasa si el microservicio de Usuarios está APAGADO o el puerto es incorrecto
-        e.printStackTrace(); // Imprime el error completo en la consola
-        throw new RuntimeException("Error de conexión: No se pudo contactar con la API de Usuarios en " + urlUser);
-    
-        } catch (Exception e) {
-        // Cualquier otro error (ej: error interno 500 del otro servicio)
-        e.printStackTrace();
-        throw new RuntimeException("Error inesperado al validar usuario: " + e.getMessage());
+            productos = consultarServiciosRemotos(solicitud);
+        } finally {
+            registrarFase("consultas_remotas", inicioFase);
         }
 
-        // 2. Crear objeto Venta
-        Venta venta = new Venta();
-        venta.setIdUsuario(solicitud.getIdUsuario());
-        venta.setFecha(LocalDateTime.now());
-        venta.setEstado("COMPLETADA");
+        // 2. Validar Stock con los resultados combinados (sumando líneas repetidas del mismo producto)
+        Map<Long, Integer> cantidadPorProducto = new LinkedHashMap<>();
+        for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+            cantidadPorProducto.merge(item.getIdProducto(), item.getCantidad(), Integer::sum);
+        }
+        // En modo outbox lo vendido y todavía no enviado a Productos sigue figurando en su stock
+        Map<Long, Integer> pendientes = stockService.pendienteDeDescontar(cantidadPorProducto.keySet());
+        cantidadPorProducto.forEach((idProducto, cantidad) -> {
+            ProductoExternoDto prodExterno = productos.get(idProducto);
+            if (prodExterno == null) {
+                throw new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.");
+            }
+            // Stock null = nombre/precio salieron de la caché; el stock se comprueba en vivo al descontar.
+            // En modo outbox no hay descuento en vivo: sin stock conocido la venta no se confirma
+            if (prodExterno.getStock() == null && stockService.diferido()) {
+                throw new RuntimeException("No se pudo comprobar el stock de: " + prodExterno.getNombre());
+            }
+            // Lo reservado localmente ya no figura en Productos pero esta instancia sí lo puede vender
+            if (prodExterno.getStock() != null && prodExterno.getStock() + stockService.reservadoLocal(idProducto)
+                    - pendientes.getOrDefault(idProducto, 0) < cantidad) {
+                throw new RuntimeException("Stock insuficiente para: " + prodExterno.getNombre());
+            }
+        });
 
-        double subtotal = 0.0;
+        // 3. Crear la Venta con sus detalles y totales
+        inicioFase = System.nanoTime();
+        Venta venta = armarVenta(solicitud.getIdUsuario(), solicitud.getProductos(), productos);
+        registrarFase("armar_venta", inicioFase);
 
-        // 3. Iterar sobre los productos solicitados
-        for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
-            
-            // A. Obtener info del producto del microservicio de Productos
-            String urlProd = productosUrl + "/" + item.getIdProducto();
-            ProductoExternoDto prodExterno;
+        // 4. Descontar Stock en Productos (fuera de la transacción).
+        // En modo outbox el descuento se guarda junto con la venta y se envía después
+        boolean descontado = !stockService.diferido();
+        if (descontado) {
+            inicioFase = System.nanoTime();
             try {
-                 prodExterno = restTemplate.getForObject(urlProd, ProductoExternoDto.class);
-            } catch (HttpClientErrorException e) {
-                throw new RuntimeException("Error: Producto ID " + item.getIdProducto() + " no encontrado.");
+                stockService.descontar(venta.getDetalles());
+            } finally {
+                registrarFase("descontar_stock", inicioFase);
             }
+        }
 
-            // B. Validar Stock
-            if (prodExterno.getStock() < item.getCantidad()) {
-                throw new RuntimeException("Stock insuficiente para: " + prodExterno.getNombre());
+        // 5. Guardar en Base de Datos en una transacción corta; si falla, compensar el stock.
+        // Con el diario habilitado basta con que la venta quede en el disco local
+        Venta guardada;
+        inicioFase = System.nanoTime();
+        if (diarioVentasService.estaHabilitado()) {
+            // Si vence la espera del disco la venta igual está en el diario y se guardará: no se repone el stock.
+            // Si falló antes de escribirla (diario cerrado, registro demasiado grande) o falló el fsync, la venta no existe
+            try {
+                guardada = diarioVentasService.registrar(venta);
+            } catch (VentaPendienteException e) {
+                throw e;
+            } catch (DiarioNoDisponibleException e) {
+                if (descontado) {
+                    stockService.reponer(venta.getDetalles());
+                }
+                // No es un error de la solicitud: 503, y otra instancia (o esta después de reiniciar) la puede tomar
+                throw new ServicioNoDisponibleException("diario de ventas",
+                        "no se pudo escribir en disco, se repuso el stock descontado", 30);
+            } catch (RuntimeException e) {
+                if (descontado) {
+                    stockService.reponer(venta.getDetalles());
+                }
+                throw new RuntimeException("Error al guardar la venta, se repuso el stock descontado: " + e.getMessage(), e);
+            } finally {
+                registrarFase("guardar", inicioFase);
+            }
+        } else {
+            try {
+                guardada = ventaPersistenciaService.guardar(venta);
+            } catch (RuntimeException e) {
+                if (descontado) {
+                    stockService.reponer(venta.getDetalles());
+                }
+                throw new RuntimeException("Error al guardar la venta, se repuso el stock descontado: " + e.getMessage(), e);
+            } finally {
+                registrarFase("guardar", inicioFase);
             }
+        }
+
+        // 6. Analítica en vivo (solo memoria, ya con la venta confirmada)
+        analiticaVentasService.registrar(guardada);
+        return guardada;
+    }
+
+    /**
+     * Arma la Venta (detalles, subtotal, IVA 19% y total) a partir de productos ya validados.
+     * No hace llamadas remotas ni toca la base de datos.
+     */
+    public static Venta armarVenta(Long idUsuario, List<SolicitudVentaDto.ItemProductoDto> items,
+                                   Map<Long, ProductoExternoDto> productos) {
+        Venta venta = new Venta();
+        venta.setIdUsuario(idUsuario);
+        venta.setFecha(LocalDateTime.now());
+        venta.setEstado("COMPLETADA");
+
+        double subtotal = 0.0;
 
-            // C. Descontar Stock (Llamada PUT al microservicio de Productos)
-            // URL: http://localhost:8081/api/v1/productos/{id}/stock?cantidad={n}
-            String urlDescuento = productosUrl + "/" + item.getIdProducto() + "/stock?cantidad=" + item.getCantidad();
-            restTemplate.put(urlDescuento, null);
+        // Crear un detalle por cada producto solicitado
+        for (SolicitudVentaDto.ItemProductoDto item : items) {
+            ProductoExternoDto prodExterno = productos.get(item.getIdProducto());
 
-            // D. Crear Detalle
             DetalleVenta detalle = new DetalleVenta();
             detalle.setIdProducto(item.getIdProducto());
             detalle.setNombreProducto(prodExterno.getNombre());
@@ -97,12 +224,171 @@ public class VentaService {
             subtotal += (prodExterno.getPrecio() * item.getCantidad());
         }
 
-        // 4. Calcular Totales
+        // Calcular Totales
         venta.setSubtotal(subtotal);
         venta.setIva(subtotal * 0.19); // IVA 19%
         venta.setTotal(subtotal * 1.19);
+        return venta;
+    }
+
+    /**
+     * Lanza la validación del usuario y la consulta de cada producto distinto al mismo tiempo,
+     * con un único plazo para toda la etapa. Ante el primer error se cancelan las consultas pendientes.
+     */
+    private Map<Long, ProductoExternoDto> consultarServiciosRemotos(SolicitudVentaDto solicitud) {
+        Plazo plazo = Plazo.actual();
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutRemotoMs);
+        if (plazo != null && plazo.limiteNanos() - limite < 0) {
+            limite = plazo.limiteNanos();
+        }
+        CompletionService<Object> etapa = new ExecutorCompletionService<>(ejecutorRemoto);
+        List<Future<Object>> tareas = new ArrayList<>();
+        Map<Long, Future<Object>> consultasProductos = new LinkedHashMap<>();
+
+        tareas.add(etapa.submit(() -> {
+            long inicio = System.nanoTime();
+            try (Plazo.Ambito ambito = Plazo.activar(plazo)) {
+                validarUsuario(solicitud.getIdUsuario());
+            } finally {
+                registrarFase("validar_usuario", inicio);
+            }
+            return Boolean.TRUE;
+        }));
+        for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+            Long idProducto = item.getIdProducto();
+            if (!consultasProductos.containsKey(idProducto)) {
+                Future<Object> consulta = etapa.submit(() -> {
+                    long inicio = System.nanoTime();
+                    try (Plazo.Ambito ambito = Plazo.activar(plazo)) {
+                        return obtenerProducto(idProducto);
+                    } finally {
+                        registrarFase("obtener_producto", inicio);
+                    }
+                });
+                consultasProductos.put(idProducto, consulta);
+                tareas.add(consulta);
+            }
+        }
+
+        try {
+            for (int i = 0; i < tareas.size(); i++) {
+                Future<Object> terminada = etapa.poll(limite - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (terminada == null) {
+                    throw new RuntimeException("Tiempo de espera agotado al consultar los servicios de Usuarios y Productos.");
+                }
+                terminada.get(); // Propaga el primer error apenas ocurre
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException("Error inesperado en la consulta remota: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Venta interrumpida mientras se consultaban los servicios remotos.");
+        } finally {
+            // Si algo falló o venció el plazo, no dejamos consultas colgando
+            tareas.forEach(tarea -> tarea.cancel(true));
+        }
+
+        Map<Long, ProductoExternoDto> productos = new HashMap<>();
+        consultasProductos.forEach((idProducto, consulta) -> productos.put(idProducto, (ProductoExternoDto) consulta.resultNow()));
+        return productos;
+    }
+
+    private void validarUsuario(Long idUsuario) {
+        // Validar que el usuario exista en el microservicio de Usuarios (con caché de positivos y negativos)
+        boolean existe;
+        try {
+        existe = usuarioExistenciaCache.existe(idUsuario);
+
+        } catch (ServicioNoDisponibleException e) {
+        // Rechazada por el circuit breaker o el límite de concurrencia: se responde 503, no 400
+        throw e;
+
+        } catch (ResourceAccessException e) {
+        // Esto pasa si el microservicio de Usuarios está APAGADO o el puerto es incorrecto
+        log.warn("No se pudo contactar con la API de Usuarios para el usuario {}: {}", idUsuario, e.getMessage());
+        throw new RuntimeException("Error de conexión: No se pudo contactar con la API de Usuarios en " + usuariosUrl + "/" + idUsuario);
+
+        } catch (Exception e) {
+        // Cualquier otro error (ej: error interno 500 del otro servicio)
+        log.error("Error inesperado al validar el usuario {}", idUsuario, e);
+        throw new RuntimeException("Error inesperado al validar usuario: " + e.getMessage());
+        }
+
+        if (!existe) {
+            // ESTE es el verdadero "Usuario no existe" (Error 404)
+            throw new RuntimeException("El usuario con ID " + idUsuario + " no existe en la base de datos.");
+        }
+    }
+
+    private ProductoExternoDto obtenerProducto(Long idProducto) throws InterruptedException {
+        // Obtener info del producto del microservicio de Productos.
+        // Nombre y precio salen de la caché si están; si no, el loader agrupa la consulta con otras ventas.
+        // En modo outbox se consulta siempre: el stock hay que validarlo acá, no lo valida ningún PUT
+        try {
+            return (stockService.diferido()
+                    ? catalogoProductoCache.obtenerConStock(idProducto)
+                    : catalogoProductoCache.obtener(idProducto)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpClientErrorException) {
+                throw new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.");
+            }
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException("Error inesperado al consultar el producto " + idProducto + ": " + e.getCause().getMessage());
+        }
+    }
+
+    private void registrarFase(String fase, long inicioNanos) {
+        if (meterRegistry != null) {
+            meterRegistry.timer("ventas.fase", "fase", fase).record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void registrarResultado(long inicioNanos, String resultado) {
+        if (meterRegistry != null) {
+            meterRegistry.timer("ventas.crear", "resultado", resultado).record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Motivo del rechazo para el tag de ventas.rechazos, a partir de los mensajes que arma cada fase.
+     * Son pocos valores fijos: el mensaje completo no sirve como tag porque lleva ids y nombres.
+     */
+    public static String motivoRechazo(Throwable e) {
+        if (e instanceof ServicioNoDisponibleException) {
+            return "servicio_no_disponible";
+        }
+        if (e instanceof ResourceAccessException || e.getCause() instanceof ResourceAccessException) {
+            return "error_conexion";
+        }
+        String mensaje = e.getMessage() == null ? "" : e.getMessage();
+        if (mensaje.startsWith("Stock insuficiente")) {
+            return "stock_insuficiente";
+        }
+        if (mensaje.startsWith("El usuario con ID")) {
+            return "usuario_no_encontrado";
+        }
+        if (mensaje.startsWith("Error: Producto ID")) {
+            return "producto_no_encontrado";
+        }
+        if (mensaje.startsWith("Error de conexión")) {
+            return "error_conexion";
+        }
+        if (mensaje.startsWith("Tiempo de espera agotado")) {
+            return "tiempo_agotado";
+        }
+        if (mensaje.startsWith("Error al guardar la venta")) {
+            return "error_guardado";
+        }
+        return "otro";
+    }
 
-        // 5. Guardar en Base de Datos (Cascada guarda los detalles también)
-        return ventaRepository.save(venta);
+    @PreDestroy
+    public void cerrar() {
+        ejecutorRemoto.shutdownNow();
     }
 }
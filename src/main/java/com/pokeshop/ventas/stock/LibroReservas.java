@@ -0,0 +1,249 @@
+package com.pokeshop.ventas.stock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Reservas locales de stock: en vez de un PUT a Productos por cada línea vendida, se descuenta de
+ * Productos un bloque de unidades por producto y las ventas las van tomando de memoria con CAS.
+ * Solo se entrega lo que ya se descontó en Productos, así que nunca se vende de más; lo que puede
+ * pasar es que Productos muestre menos stock del real mientras haya unidades reservadas aquí.
+ *
+ * Cuando el bloque se agota, un solo hilo por producto pide el siguiente (los demás esperan el
+ * lock de recarga y toman del bloque nuevo). Si Productos ya no tiene un bloque entero, se pide
+ * justo lo que falta para la venta. Las unidades de productos que dejan de venderse vuelven a
+ * Productos con devolverInactivas; si la instancia se cae sin devolverlas, quedan descontadas de
+ * más (se vende de menos, no de más) hasta que se corrija el stock en Productos.
+ *
+ * devolverInactivas también saca del mapa las reservas inactivas que quedaron vacías, para que el
+ * mapa no crezca con cada producto vendido alguna vez. Se retiran con el lock de recarga tomado y
+ * quedan marcadas: quien ya tenía la reserva vuelve a buscarla en vez de dejar unidades en una
+ * que ya no está en el mapa.
+ */
+public final class LibroReservas {
+
+    /** Las llamadas a Productos que hace el libro. */
+    public interface Proveedor {
+
+        /** Descuenta la cantidad en Productos; false si no hay stock suficiente. */
+        boolean tomar(long idProducto, int cantidad);
+
+        /** Devuelve unidades a Productos (descuento negativo). */
+        void devolver(long idProducto, int cantidad);
+    }
+
+    private final int bloque;
+    private final Proveedor proveedor;
+    private final LongSupplier reloj;
+    private final ConcurrentHashMap<Long, Reserva> reservas = new ConcurrentHashMap<>();
+    private MeterRegistry meterRegistry;
+
+    public LibroReservas(int bloque, Proveedor proveedor) {
+        this(bloque, proveedor, System::nanoTime);
+    }
+
+    LibroReservas(int bloque, Proveedor proveedor, LongSupplier reloj) {
+        this.bloque = bloque;
+        this.proveedor = proveedor;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Toma la cantidad de la reserva del producto, pidiendo otro bloque a Productos si hace falta.
+     * False si entre la reserva y Productos no alcanza. Los errores de Productos se propagan.
+     */
+    public boolean consumir(long idProducto, int cantidad) {
+        while (true) {
+            Reserva reserva = reservas.computeIfAbsent(idProducto, id -> new Reserva());
+            reserva.ultimoUso = reloj.getAsLong();
+            if (reserva.tomar(cantidad)) {
+                contar("local");
+                return true;
+            }
+
+            reserva.recarga.lock();
+            try {
+                if (reserva.retirada) {
+                    // devolverInactivas la sacó del mapa mientras esperábamos el lock
+                    continue;
+                }
+                return consumirConLock(idProducto, reserva, cantidad);
+            } finally {
+                reserva.recarga.unlock();
+            }
+        }
+    }
+
+    // Con el lock de recarga tomado
+    private boolean consumirConLock(long idProducto, Reserva reserva, int cantidad) {
+        // Mientras esperábamos el lock otro hilo puede haber traído un bloque
+        if (reserva.tomar(cantidad)) {
+            contar("local");
+            return true;
+        }
+        int pedido = Math.max(bloque, cantidad);
+        if (proveedor.tomar(idProducto, pedido)) {
+            // Esta venta se queda con su parte y el resto del bloque queda para las siguientes
+            reserva.disponible.addAndGet(pedido - cantidad);
+            contar("bloque");
+            return true;
+        }
+
+        // Productos ya no tiene un bloque entero: se usa lo que queda aquí y se pide solo el resto
+        int locales = reserva.disponible.getAndSet(0);
+        if (locales >= cantidad) {
+            reserva.disponible.addAndGet(locales - cantidad);
+            contar("local");
+            return true;
+        }
+        boolean tomado;
+        try {
+            tomado = proveedor.tomar(idProducto, cantidad - locales);
+        } catch (RuntimeException e) {
+            reserva.disponible.addAndGet(locales);
+            throw e;
+        }
+        if (!tomado) {
+            reserva.disponible.addAndGet(locales);
+            contar("sin_stock");
+            return false;
+        }
+        contar("justo");
+        return true;
+    }
+
+    /** Vuelve unidades a la reserva local (compensación de una venta que no se guardó). */
+    public void reponer(long idProducto, int cantidad) {
+        while (true) {
+            Reserva reserva = reservas.computeIfAbsent(idProducto, id -> new Reserva());
+            reserva.recarga.lock();
+            try {
+                if (!reserva.retirada) {
+                    reserva.disponible.addAndGet(cantidad);
+                    // Sin esto, unidades recién repuestas se podrían devolver en la próxima revisión
+                    reserva.ultimoUso = reloj.getAsLong();
+                    return;
+                }
+            } finally {
+                reserva.recarga.unlock();
+            }
+        }
+    }
+
+    /** Unidades reservadas y sin vender del producto. */
+    public int disponible(long idProducto) {
+        Reserva reserva = reservas.get(idProducto);
+        return reserva == null ? 0 : reserva.disponible.get();
+    }
+
+    /**
+     * Devuelve a Productos las reservas de productos que no se vendieron en el tiempo indicado y
+     * saca del mapa las que quedan vacías.
+     */
+    public int devolverInactivas(long inactividadMs) {
+        long limite = reloj.getAsLong() - TimeUnit.MILLISECONDS.toNanos(inactividadMs);
+        int devueltas = 0;
+        for (var entrada : reservas.entrySet()) {
+            if (entrada.getValue().ultimoUso - limite < 0) {
+                devueltas += devolver(entrada.getKey(), entrada.getValue());
+                retirarSiVacia(entrada.getKey(), entrada.getValue(), limite);
+            }
+        }
+        return devueltas;
+    }
+
+    /** Productos con reserva en memoria (vacías incluidas). */
+    int productosEnMemoria() {
+        return reservas.size();
+    }
+
+    /** Devuelve todo lo reservado (al apagar la instancia). */
+    public int devolverTodas() {
+        int devueltas = 0;
+        for (var entrada : reservas.entrySet()) {
+            devueltas += devolver(entrada.getKey(), entrada.getValue());
+        }
+        return devueltas;
+    }
+
+    /**
+     * ventas.stock.reservas.unidades (unidades reservadas sin vender, entre todos los productos) y
+     * ventas.stock.reservas (tag origen: local, bloque, justo, sin_stock).
+     */
+    public void registrarMetricas(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ventas.stock.reservas.unidades", reservas,
+                        r -> r.values().stream().mapToInt(reserva -> reserva.disponible.get()).sum())
+                .register(meterRegistry);
+    }
+
+    private int devolver(long idProducto, Reserva reserva) {
+        // Con el lock de recarga: no se devuelve un bloque mientras otro hilo está pidiendo el siguiente
+        if (!reserva.recarga.tryLock()) {
+            return 0;
+        }
+        try {
+            int cantidad = reserva.disponible.getAndSet(0);
+            if (cantidad == 0) {
+                return 0;
+            }
+            try {
+                proveedor.devolver(idProducto, cantidad);
+                return cantidad;
+            } catch (RuntimeException e) {
+                // Quedan reservadas y se reintenta en la próxima revisión (el proveedor deja el error en el log)
+                reserva.disponible.addAndGet(cantidad);
+                return 0;
+            }
+        } finally {
+            reserva.recarga.unlock();
+        }
+    }
+
+    private void retirarSiVacia(long idProducto, Reserva reserva, long limite) {
+        if (!reserva.recarga.tryLock()) {
+            return;
+        }
+        try {
+            // Se vuelve a mirar con el lock: una venta o una reposición pudo usarla recién
+            if (reserva.disponible.get() == 0 && reserva.ultimoUso - limite < 0) {
+                reserva.retirada = true;
+                reservas.remove(idProducto, reserva);
+            }
+        } finally {
+            reserva.recarga.unlock();
+        }
+    }
+
+    private void contar(String origen) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("ventas.stock.reservas", "origen", origen).increment();
+        }
+    }
+
+    private static final class Reserva {
+        private final AtomicInteger disponible = new AtomicInteger();
+        private final ReentrantLock recarga = new ReentrantLock();
+        private volatile long ultimoUso;
+        // Solo cambia con el lock de recarga tomado
+        private boolean retirada;
+
+        boolean tomar(int cantidad) {
+            while (true) {
+                int actual = disponible.get();
+                if (actual < cantidad) {
+                    return false;
+                }
+                if (disponible.compareAndSet(actual, actual - cantidad)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.pokeshop.ventas.perf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class Argumentos {
+
+    private Argumentos() {
+    }
+
+    // "--clave=valor" -> clave: valor
+    static Map<String, String> leer(String[] args) {
+        Map<String, String> opciones = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento no válido (se espera --clave=valor): " + arg);
+            }
+            int igual = arg.indexOf('=');
+            opciones.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+        return opciones;
+    }
+}
@@ -0,0 +1,70 @@
+package com.pokeshop.ventas.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.service.VentaService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Piezas de crearVenta sin red ni base de datos: armado de la entidad con el cálculo de totales
+ * y serialización JSON de la Venta como la hace el controlador.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComponentesVentaBenchmark {
+
+    @Param({"1", "5", "20", "100"})
+    public int tamanoCarrito;
+
+    private SolicitudVentaDto solicitud;
+    private Map<Long, ProductoExternoDto> productos;
+    private Venta venta;
+    private ObjectMapper objectMapper;
+    private ObjectWriter escritorVenta;
+
+    @Setup
+    public void iniciar() {
+        solicitud = CrearVentaBenchmark.solicitudAleatoria(tamanoCarrito);
+        productos = new HashMap<>();
+        for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+            ProductoExternoDto producto = new ProductoExternoDto();
+            producto.setIdProducto(item.getIdProducto());
+            producto.setNombre("Producto " + item.getIdProducto());
+            producto.setPrecio(1000.0 + item.getIdProducto() % 100);
+            productos.put(item.getIdProducto(), producto);
+        }
+        venta = VentaService.armarVenta(solicitud.getIdUsuario(), solicitud.getProductos(), productos);
+        venta.setIdVenta(123456789L);
+
+        // Mismos módulos que registra Spring Boot (JavaTimeModule para LocalDateTime)
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        escritorVenta = objectMapper.writerFor(Venta.class);
+    }
+
+    @Benchmark
+    public Venta armarVenta() {
+        return VentaService.armarVenta(solicitud.getIdUsuario(), solicitud.getProductos(), productos);
+    }
+
+    @Benchmark
+    public byte[] serializarVenta() throws Exception {
+        return objectMapper.writeValueAsBytes(venta);
+    }
+
+    @Benchmark
+    public byte[] serializarVentaConWriter() throws Exception {
+        return escritorVenta.writeValueAsBytes(venta);
+    }
+}
@@ -0,0 +1,93 @@
+package com.pokeshop.ventas.perf;
+
+import com.pokeshop.ventas.VentasApplication;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.service.VentaService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VentaService.crearVenta de punta a punta: validación de usuario y productos contra los servicios
+ * simulados (HTTP real por localhost), descuento de stock y guardado en H2.
+ * La cantidad de hilos se elige con JMH: -Djmh.args="CrearVenta -t 16".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CrearVentaBenchmark {
+
+    private static final int PRODUCTOS_CATALOGO = 500;
+    private static final int USUARIOS = 1000;
+
+    @Param({"1", "5", "20"})
+    public int tamanoCarrito;
+
+    // Latencia de cada respuesta de Usuarios y Productos
+    @Param({"0", "5"})
+    public long latenciaMs;
+
+    // Cachés de productos y de usuarios encendidas o apagadas
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private ServiciosSimulados servicios;
+    private ConfigurableApplicationContext contexto;
+    private VentaService ventaService;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws Exception {
+        servicios = new ServiciosSimulados(latenciaMs);
+        contexto = new SpringApplicationBuilder(VentasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:perf;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "api.usuarios.url=" + servicios.usuariosUrl(),
+                        "api.productos.url=" + servicios.productosUrl(),
+                        "ventas.productos.cache.habilitado=" + cache,
+                        "ventas.usuarios.cache.maximo=" + (cache ? 50000 : 0))
+                .run();
+        ventaService = contexto.getBean(VentaService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+        servicios.close();
+    }
+
+    @Benchmark
+    public Venta crearVenta() {
+        return ventaService.crearVenta(solicitudAleatoria(tamanoCarrito));
+    }
+
+    static SolicitudVentaDto solicitudAleatoria(int tamanoCarrito) {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L + azar.nextInt(USUARIOS));
+        List<SolicitudVentaDto.ItemProductoDto> items = new ArrayList<>(tamanoCarrito);
+        for (int i = 0; i < tamanoCarrito; i++) {
+            SolicitudVentaDto.ItemProductoDto item = new SolicitudVentaDto.ItemProductoDto();
+            item.setIdProducto(1L + azar.nextInt(PRODUCTOS_CATALOGO));
+            item.setCantidad(1 + azar.nextInt(3));
+            items.add(item);
+        }
+        solicitud.setProductos(items);
+        return solicitud;
+    }
+}
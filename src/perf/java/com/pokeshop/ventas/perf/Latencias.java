@@ -0,0 +1,54 @@
+package com.pokeshop.ventas.perf;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Distribuciones de latencia para los servicios simulados, en microsegundos.
+ * Formatos (valores en ms): "fija:5", "uniforme:2-10", "exponencial:4" (media)
+ * y "lognormal:3,40" (mediana y p99, para colas largas como las de producción).
+ */
+public final class Latencias {
+
+    // z de la normal estándar para el percentil 99
+    private static final double Z_P99 = 2.3263;
+
+    private Latencias() {
+    }
+
+    public static LongSupplier fija(long micros) {
+        return () -> micros;
+    }
+
+    public static LongSupplier leer(String especificacion) {
+        String[] partes = especificacion.split(":", 2);
+        String valores = partes.length > 1 ? partes[1] : "0";
+        switch (partes[0]) {
+            case "fija": {
+                return fija(micros(valores));
+            }
+            case "uniforme": {
+                String[] rango = valores.split("-");
+                long minimo = micros(rango[0]);
+                long maximo = micros(rango[1]);
+                return () -> ThreadLocalRandom.current().nextLong(minimo, maximo + 1);
+            }
+            case "exponencial": {
+                double media = micros(valores);
+                return () -> (long) (-media * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+            }
+            case "lognormal": {
+                String[] parametros = valores.split(",");
+                double mu = Math.log(micros(parametros[0]));
+                double sigma = (Math.log(micros(parametros[1])) - mu) / Z_P99;
+                return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+            }
+            default:
+                throw new IllegalArgumentException("Distribución de latencia desconocida: " + especificacion);
+        }
+    }
+
+    private static long micros(String milisegundos) {
+        return Math.round(Double.parseDouble(milisegundos.trim()) * 1000);
+    }
+}
@@ -0,0 +1,259 @@
+package com.pokeshop.ventas.perf;
+
+import com.pokeshop.ventas.VentasApplication;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prueba de carga de POST /api/v1/ventas a tasa fija.
+ *
+ * Cada petición tiene una hora de inicio planificada (inicio + i / tasa). La latencia se mide desde
+ * esa hora y no desde que realmente salió, así que si el servicio se atasca y las peticiones se
+ * retrasan, el retraso cuenta (corrección de coordinated omission). También se guarda el tiempo
+ * de servicio sin corregir para comparar. Un máximo de peticiones en vuelo evita abrir conexiones
+ * sin límite; cuando se alcanza, la espera también cuenta en la latencia corregida.
+ *
+ * Sin --url levanta los servicios simulados y la aplicación (H2, puerto aleatorio) en este proceso.
+ * .\mvnw.cmd -Pperf test-compile exec:exec@carga -Dcarga.args="--tasa=300 --duracion=60 --p99-maximo-ms=50"
+ *
+ * Opciones: --tasa (ventas/s), --duracion y --calentamiento (s), --en-vuelo, --carrito, --usuarios,
+ * --productos, --url, --salida (carpeta del informe), --p99-maximo-ms (sale con código 1 si se supera),
+ * --perfil=reactivo (levanta la pila WebFlux/R2DBC, compilando con -Pperf,reactivo),
+ * --hilos-virtuales=true|false (spring.threads.virtual.enabled de la aplicación levantada)
+ * y las de los servicios simulados (ver ServiciosSimulados.Configuracion).
+ *
+ * Para comparar MVC y reactivo se corre dos veces con la misma carga y las mismas latencias
+ * simuladas, cambiando solo --perfil; cada informe lleva las opciones con que se generó.
+ */
+public class PruebaCarga {
+
+    private final HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final Recorder latenciaCorregida = new Recorder(TimeUnit.SECONDS.toMicros(60), 3);
+    private final Recorder tiempoServicio = new Recorder(TimeUnit.SECONDS.toMicros(60), 3);
+    private final Map<String, LongAdder> resultados = new ConcurrentHashMap<>();
+    private Histogram corregida;
+    private Histogram servicio;
+
+    private final URI urlVentas;
+    private final int tamanoCarrito;
+    private final int usuarios;
+    private final int productos;
+
+    PruebaCarga(URI urlVentas, int tamanoCarrito, int usuarios, int productos) {
+        this.urlVentas = urlVentas;
+        this.tamanoCarrito = tamanoCarrito;
+        this.usuarios = usuarios;
+        this.productos = productos;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = Argumentos.leer(args);
+        int tasa = Integer.parseInt(opciones.getOrDefault("tasa", "200"));
+        int duracion = Integer.parseInt(opciones.getOrDefault("duracion", "30"));
+        int calentamiento = Integer.parseInt(opciones.getOrDefault("calentamiento", "10"));
+        int enVuelo = Integer.parseInt(opciones.getOrDefault("en-vuelo", "256"));
+        double p99Maximo = Double.parseDouble(opciones.getOrDefault("p99-maximo-ms", "0"));
+
+        ServiciosSimulados servicios = null;
+        ConfigurableApplicationContext aplicacion = null;
+        String url = opciones.get("url");
+        // Dentro del try: si la aplicación no arranca igual se cierran los servicios simulados
+        try {
+            if (url == null) {
+                servicios = new ServiciosSimulados(ServiciosSimulados.Configuracion.desde(opciones));
+                aplicacion = levantarAplicacion(servicios, opciones.get("perfil"), opciones.get("hilos-virtuales"));
+                url = "http://127.0.0.1:" + aplicacion.getEnvironment().getProperty("local.server.port") + "/api/v1/ventas";
+            }
+
+            PruebaCarga prueba = new PruebaCarga(URI.create(url),
+                    Integer.parseInt(opciones.getOrDefault("carrito", "3")),
+                    Integer.parseInt(opciones.getOrDefault("usuarios", "1000")),
+                    Integer.parseInt(opciones.getOrDefault("productos", "500")));
+
+            System.out.println("Calentamiento: " + calentamiento + " s a " + tasa + " ventas/s contra " + url);
+            prueba.ejecutar(tasa, calentamiento, enVuelo);
+            prueba.reiniciar();
+
+            System.out.println("Medición: " + duracion + " s a " + tasa + " ventas/s");
+            long inicio = System.nanoTime();
+            prueba.ejecutar(tasa, duracion, enVuelo);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            Path informe = prueba.informar(opciones, tasa, segundos, Path.of(opciones.getOrDefault("salida", "target/carga")));
+            System.out.println("Informe: " + informe.toAbsolutePath());
+
+            double p99 = prueba.p99Ms();
+            if (p99Maximo > 0 && p99 > p99Maximo) {
+                System.out.println("FALLA: p99 " + p99 + " ms supera el máximo de " + p99Maximo + " ms");
+                System.exit(1);
+            }
+        } finally {
+            if (aplicacion != null) {
+                aplicacion.close();
+            }
+            if (servicios != null) {
+                servicios.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    // Como argumentos y no como properties() del builder: esos son valores por defecto y
+    // application.properties (MySQL) les ganaría
+    private static ConfigurableApplicationContext levantarAplicacion(ServiciosSimulados servicios, String perfil,
+                                                                     String hilosVirtuales) {
+        List<String> argumentos = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:carga;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--api.usuarios.url=" + servicios.usuariosUrl(),
+                "--api.productos.url=" + servicios.productosUrl(),
+                // Compilando con -Pperf,reactivo los drivers R2DBC están en el classpath y el bean de
+                // ConnectionFactory que crearía Spring Boot apagaría el DataSource de JPA también en MVC
+                "--spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration"));
+        if (hilosVirtuales != null) {
+            argumentos.add("--spring.threads.virtual.enabled=" + hilosVirtuales);
+        }
+        if ("reactivo".equals(perfil)) {
+            // La misma base H2 en memoria (carga) que usa JPA, vista por el driver R2DBC
+            argumentos.add("--spring.profiles.active=reactivo");
+            argumentos.add("--ventas.reactivo.r2dbc.url=r2dbc:h2:mem:///carga?options=MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        }
+        return new SpringApplicationBuilder(VentasApplication.class).run(argumentos.toArray(new String[0]));
+    }
+
+    void ejecutar(int tasa, int segundos, int maximoEnVuelo) throws InterruptedException {
+        Semaphore enVuelo = new Semaphore(maximoEnVuelo);
+        long intervaloNanos = TimeUnit.SECONDS.toNanos(1) / tasa;
+        long inicio = System.nanoTime();
+        long total = (long) tasa * segundos;
+
+        for (long i = 0; i < total; i++) {
+            long planificado = inicio + i * intervaloNanos;
+            long espera;
+            while ((espera = planificado - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            enVuelo.acquire();
+            long enviado = System.nanoTime();
+            HttpRequest peticion = HttpRequest.newBuilder(urlVentas)
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(solicitudJson()))
+                    .build();
+            cliente.sendAsync(peticion, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((respuesta, error) -> {
+                        long fin = System.nanoTime();
+                        latenciaCorregida.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(fin - planificado), TimeUnit.SECONDS.toMicros(60)));
+                        tiempoServicio.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(fin - enviado), TimeUnit.SECONDS.toMicros(60)));
+                        resultados.computeIfAbsent(clasificar(respuesta, error), c -> new LongAdder()).increment();
+                        enVuelo.release();
+                    });
+        }
+        // Se espera a que terminen todas las que siguen en vuelo
+        enVuelo.acquire(maximoEnVuelo);
+        enVuelo.release(maximoEnVuelo);
+    }
+
+    void reiniciar() {
+        latenciaCorregida.reset();
+        tiempoServicio.reset();
+        resultados.clear();
+    }
+
+    private String solicitudJson() {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        StringBuilder json = new StringBuilder("{\"idUsuario\":").append(1 + azar.nextInt(usuarios)).append(",\"productos\":[");
+        for (int i = 0; i < tamanoCarrito; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"idProducto\":").append(1 + azar.nextInt(productos))
+                    .append(",\"cantidad\":").append(1 + azar.nextInt(3)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    // "200", "400 Stock insuficiente para", "503", "error ConnectException"...
+    private static String clasificar(HttpResponse<String> respuesta, Throwable error) {
+        if (error != null) {
+            Throwable causa = error.getCause() != null ? error.getCause() : error;
+            return "error " + causa.getClass().getSimpleName();
+        }
+        if (respuesta.statusCode() == 400) {
+            String cuerpo = respuesta.body();
+            int corte = cuerpo.indexOf(':');
+            return "400 " + (corte > 0 ? cuerpo.substring(0, corte) : cuerpo.substring(0, Math.min(cuerpo.length(), 60)));
+        }
+        return String.valueOf(respuesta.statusCode());
+    }
+
+    Path informar(Map<String, String> opciones, int tasa, double segundos, Path carpeta) throws IOException {
+        corregida = latenciaCorregida.getIntervalHistogram();
+        servicio = tiempoServicio.getIntervalHistogram();
+        long completadas = corregida.getTotalCount();
+        long exitosas = resultados.getOrDefault("200", new LongAdder()).sum();
+
+        Files.createDirectories(carpeta);
+        Path archivo = carpeta.resolve("carga-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt");
+        try (PrintStream salida = new PrintStream(Files.newOutputStream(archivo), true, "UTF-8")) {
+            for (PrintStream destino : new PrintStream[]{System.out, salida}) {
+                destino.println("Opciones: " + new TreeMap<>(opciones));
+                destino.printf("Tasa objetivo: %d ventas/s, lograda: %.1f ventas/s (%.1f exitosas/s)%n",
+                        tasa, completadas / segundos, exitosas / segundos);
+                destino.println("Latencia corregida (desde la hora planificada), ms:");
+                imprimirPercentiles(destino, corregida);
+                destino.println("Tiempo de servicio sin corregir, ms:");
+                imprimirPercentiles(destino, servicio);
+                destino.println("Resultados:");
+                new TreeMap<>(resultados).forEach((clase, cantidad) ->
+                        destino.printf("  %-40s %8d (%.2f%%)%n", clase, cantidad.sum(), 100.0 * cantidad.sum() / Math.max(completadas, 1)));
+            }
+            salida.println();
+            salida.println("Distribución completa de la latencia corregida (ms):");
+            corregida.outputPercentileDistribution(salida, 1000.0);
+        }
+        return archivo;
+    }
+
+    private static void imprimirPercentiles(PrintStream destino, Histogram histograma) {
+        destino.printf("  p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                histograma.getValueAtPercentile(50) / 1000.0,
+                histograma.getValueAtPercentile(90) / 1000.0,
+                histograma.getValueAtPercentile(99) / 1000.0,
+                histograma.getValueAtPercentile(99.9) / 1000.0,
+                histograma.getMaxValue() / 1000.0);
+    }
+
+    double p99Ms() {
+        return corregida.getValueAtPercentile(99) / 1000.0;
+    }
+}
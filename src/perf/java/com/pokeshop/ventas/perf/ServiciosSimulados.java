@@ -0,0 +1,193 @@
+package com.pokeshop.ventas.perf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Servicios de Usuarios y Productos falsos, en el mismo proceso, para benchmarks y pruebas de carga.
+ * Cada respuesta espera según la distribución de latencia configurada y puede fallar con un 500
+ * según la tasa de error. Usuarios con id mayor a idUsuarioMaximo no existen (404). El stock de
+ * cada producto arranca en stockInicial y los PUT lo descuentan de verdad (400 si no alcanza).
+ *
+ * Para levantarlos solos (contra una instancia desplegada):
+ * .\mvnw.cmd -Pperf test-compile exec:exec@stubs -Dstubs.args="--puerto=9090 --latencia-productos=lognormal:3,40"
+ */
+public class ServiciosSimulados implements AutoCloseable {
+
+    private final HttpServer servidor;
+    private final Configuracion configuracion;
+    private final Map<Long, AtomicLong> stock = new ConcurrentHashMap<>();
+
+    public ServiciosSimulados(Configuracion configuracion) throws IOException {
+        this.configuracion = configuracion;
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", configuracion.puerto), 1024);
+        // Un hilo virtual por petición: la latencia simulada no limita la concurrencia del stub
+        servidor.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        servidor.createContext("/api/v1/usuarios/", this::usuarios);
+        servidor.createContext("/api/v1/productos/", this::productos);
+        servidor.start();
+    }
+
+    public ServiciosSimulados(long latenciaFijaMs) throws IOException {
+        this(new Configuracion().latencia(Latencias.fija(TimeUnit.MILLISECONDS.toMicros(latenciaFijaMs))));
+    }
+
+    public String usuariosUrl() {
+        return base() + "/api/v1/usuarios";
+    }
+
+    public String productosUrl() {
+        return base() + "/api/v1/productos";
+    }
+
+    public String productosLoteUrl() {
+        return base() + "/api/v1/productos/lote";
+    }
+
+    private String base() {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort();
+    }
+
+    private void usuarios(HttpExchange intercambio) throws IOException {
+        esperar(configuracion.latenciaUsuariosMicros);
+        if (falla(configuracion.tasaErrorUsuarios)) {
+            responder(intercambio, 500, "{\"mensaje\":\"error simulado\"}");
+            return;
+        }
+        long idUsuario = Long.parseLong(ultimoSegmento(intercambio));
+        if (idUsuario > configuracion.idUsuarioMaximo) {
+            responder(intercambio, 404, "{\"mensaje\":\"no existe\"}");
+        } else {
+            responder(intercambio, 200, "{\"id\":" + idUsuario + ",\"nombre\":\"Usuario " + idUsuario + "\"}");
+        }
+    }
+
+    private void productos(HttpExchange intercambio) throws IOException {
+        esperar(configuracion.latenciaProductosMicros);
+        if (falla(configuracion.tasaErrorProductos)) {
+            responder(intercambio, 500, "{\"mensaje\":\"error simulado\"}");
+            return;
+        }
+        String ruta = intercambio.getRequestURI().getPath();
+        if ("PUT".equals(intercambio.getRequestMethod())) {
+            // /{id}/stock?cantidad=n: descuento (o reposición con n negativo)
+            long idProducto = Long.parseLong(ruta.split("/")[4]);
+            long cantidad = Long.parseLong(intercambio.getRequestURI().getQuery().substring("cantidad=".length()));
+            AtomicLong disponible = stockDe(idProducto);
+            boolean descontado = disponible.getAndUpdate(actual -> actual >= cantidad ? actual - cantidad : actual) >= cantidad;
+            responder(intercambio, descontado ? 200 : 400, descontado ? "" : "{\"mensaje\":\"stock insuficiente\"}");
+        } else if (ruta.endsWith("/lote")) {
+            String ids = intercambio.getRequestURI().getQuery().substring("ids=".length());
+            responder(intercambio, 200, Arrays.stream(ids.split(","))
+                    .map(id -> producto(Long.parseLong(id)))
+                    .collect(Collectors.joining(",", "[", "]")));
+        } else {
+            responder(intercambio, 200, producto(Long.parseLong(ultimoSegmento(intercambio))));
+        }
+    }
+
+    private AtomicLong stockDe(long idProducto) {
+        return stock.computeIfAbsent(idProducto, id -> new AtomicLong(configuracion.stockInicial));
+    }
+
+    private String producto(long idProducto) {
+        return "{\"idProducto\":" + idProducto + ",\"nombre\":\"Producto " + idProducto
+                + "\",\"precio\":" + (1000 + idProducto % 100) + ".0,\"stock\":" + stockDe(idProducto).get() + "}";
+    }
+
+    private static boolean falla(double tasaError) {
+        return tasaError > 0 && ThreadLocalRandom.current().nextDouble() < tasaError;
+    }
+
+    private static void esperar(LongSupplier latenciaMicros) {
+        long micros = latenciaMicros.getAsLong();
+        if (micros > 0) {
+            try {
+                Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String ultimoSegmento(HttpExchange intercambio) {
+        String ruta = intercambio.getRequestURI().getPath();
+        return ruta.substring(ruta.lastIndexOf('/') + 1);
+    }
+
+    private static void responder(HttpExchange intercambio, int estado, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json");
+        if ("HEAD".equals(intercambio.getRequestMethod()) || bytes.length == 0) {
+            intercambio.sendResponseHeaders(estado, -1);
+        } else {
+            intercambio.sendResponseHeaders(estado, bytes.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(bytes);
+            }
+        }
+        intercambio.close();
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = Argumentos.leer(args);
+        try (ServiciosSimulados servicios = new ServiciosSimulados(Configuracion.desde(opciones))) {
+            System.out.println("api.usuarios.url=" + servicios.usuariosUrl());
+            System.out.println("api.productos.url=" + servicios.productosUrl());
+            System.out.println("api.productos.lote.url=" + servicios.productosLoteUrl());
+            new CountDownLatch(1).await();
+        }
+    }
+
+    public static class Configuracion {
+        int puerto = 0;
+        LongSupplier latenciaUsuariosMicros = Latencias.fija(0);
+        LongSupplier latenciaProductosMicros = Latencias.fija(0);
+        double tasaErrorUsuarios = 0;
+        double tasaErrorProductos = 0;
+        long stockInicial = 1_000_000_000L;
+        long idUsuarioMaximo = Long.MAX_VALUE;
+
+        public Configuracion latencia(LongSupplier latenciaMicros) {
+            this.latenciaUsuariosMicros = latenciaMicros;
+            this.latenciaProductosMicros = latenciaMicros;
+            return this;
+        }
+
+        /**
+         * Opciones: --puerto, --latencia-usuarios, --latencia-productos (ver Latencias.leer),
+         * --error-usuarios, --error-productos (0 a 1), --stock, --usuarios-existentes.
+         */
+        public static Configuracion desde(Map<String, String> opciones) {
+            Configuracion configuracion = new Configuracion();
+            configuracion.puerto = Integer.parseInt(opciones.getOrDefault("puerto", "0"));
+            configuracion.latenciaUsuariosMicros = Latencias.leer(opciones.getOrDefault("latencia-usuarios", "fija:0"));
+            configuracion.latenciaProductosMicros = Latencias.leer(opciones.getOrDefault("latencia-productos", "fija:0"));
+            configuracion.tasaErrorUsuarios = Double.parseDouble(opciones.getOrDefault("error-usuarios", "0"));
+            configuracion.tasaErrorProductos = Double.parseDouble(opciones.getOrDefault("error-productos", "0"));
+            configuracion.stockInicial = Long.parseLong(opciones.getOrDefault("stock", "1000000000"));
+            configuracion.idUsuarioMaximo = Long.parseLong(opciones.getOrDefault("usuarios-existentes", String.valueOf(Long.MAX_VALUE)));
+            return configuracion;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.pokeshop.ventas.reactivo;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Usuarios y Productos con WebClient sobre Reactor Netty: ninguna llamada ocupa un hilo mientras
+ * espera la respuesta. El pool tiene un máximo de conexiones y de peticiones esperando conexión;
+ * pasado ese máximo la petición falla enseguida en vez de encolarse sin límite.
+ *
+ * Los errores se traducen a los mismos mensajes que arma VentaService, así que el controlador
+ * responde igual que en la pila MVC.
+ */
+@Component
+@Profile("reactivo")
+public class ClienteRemotoReactivo {
+
+    private static final Logger log = LoggerFactory.getLogger(ClienteRemotoReactivo.class);
+
+    private final String usuariosUrl;
+    private final String productosUrl;
+    private final ConnectionProvider conexiones;
+    private final WebClient cliente;
+
+    public ClienteRemotoReactivo(WebClient.Builder builder,
+                                 @Value("${api.usuarios.url}") String usuariosUrl,
+                                 @Value("${api.productos.url}") String productosUrl,
+                                 @Value("${api.http.timeout.conexion-ms:1000}") int timeoutConexionMs,
+                                 @Value("${api.http.timeout.respuesta-ms:3000}") long timeoutRespuestaMs,
+                                 @Value("${ventas.reactivo.http.maximo-conexiones:500}") int maximoConexiones,
+                                 @Value("${ventas.reactivo.http.maximo-en-espera:1000}") int maximoEnEspera) {
+        this.usuariosUrl = usuariosUrl;
+        this.productosUrl = productosUrl;
+        this.conexiones = ConnectionProvider.builder("ventas-remoto")
+                .maxConnections(maximoConexiones)
+                .pendingAcquireMaxCount(maximoEnEspera)
+                .pendingAcquireTimeout(Duration.ofMillis(timeoutRespuestaMs))
+                .maxIdleTime(Duration.ofSeconds(20))
+                .build();
+        HttpClient http = HttpClient.create(conexiones)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeoutConexionMs)
+                .responseTimeout(Duration.ofMillis(timeoutRespuestaMs));
+        this.cliente = builder.clientConnector(new ReactorClientHttpConnector(http)).build();
+    }
+
+    public Mono<Void> validarUsuario(Long idUsuario) {
+        String urlUser = usuariosUrl + "/" + idUsuario;
+        return cliente.get().uri(urlUser)
+                .retrieve()
+                .toBodilessEntity()
+                .then()
+                .onErrorMap(e -> {
+                    if (e instanceof WebClientResponseException r && r.getStatusCode() == HttpStatus.NOT_FOUND) {
+                        return new RuntimeException("El usuario con ID " + idUsuario + " no existe en la base de datos.");
+                    }
+                    if (e instanceof WebClientRequestException) {
+                        log.warn("No se pudo contactar con la API de Usuarios para el usuario {}: {}", idUsuario, e.getMessage());
+                        return new RuntimeException("Error de conexión: No se pudo contactar con la API de Usuarios en " + urlUser);
+                    }
+                    return new RuntimeException("Error inesperado al validar usuario: " + e.getMessage());
+                });
+    }
+
+    public Mono<ProductoExternoDto> obtenerProducto(Long idProducto) {
+        return cliente.get().uri(productosUrl + "/" + idProducto)
+                .retrieve()
+                .bodyToMono(ProductoExternoDto.class)
+                .onErrorMap(e -> traducirErrorProducto(idProducto, e))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.")));
+    }
+
+    /** PUT de stock con cantidad positiva. Un 4xx es falta de stock (o producto inexistente si es 404). */
+    public Mono<Void> descontarStock(Long idProducto, int cantidad, String nombreProducto) {
+        return cliente.put().uri(productosUrl + "/" + idProducto + "/stock?cantidad=" + cantidad)
+                .retrieve()
+                .toBodilessEntity()
+                .then()
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                        return new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.");
+                    }
+                    if (e.getStatusCode().is4xxClientError()) {
+                        return new RuntimeException("Stock insuficiente para: " + nombreProducto);
+                    }
+                    return e;
+                })
+                .onErrorMap(WebClientRequestException.class,
+                        e -> new RuntimeException("Error de conexión: No se pudo contactar con la API de Productos en " + productosUrl));
+    }
+
+    /** Compensación: el error queda en el log y no tapa el error original de la venta. */
+    public Mono<Void> reponerStock(Long idProducto, int cantidad) {
+        return cliente.put().uri(productosUrl + "/" + idProducto + "/stock?cantidad=" + (-cantidad))
+                .retrieve()
+                .toBodilessEntity()
+                .then()
+                .onErrorResume(e -> {
+                    log.error("No se pudo reponer stock del producto {} (cantidad {}): {}", idProducto, cantidad, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private RuntimeException traducirErrorProducto(Long idProducto, Throwable e) {
+        if (e instanceof WebClientResponseException r && r.getStatusCode().is4xxClientError()) {
+            return new RuntimeException("Error: Producto ID " + idProducto + " no encontrado.");
+        }
+        if (e instanceof WebClientRequestException) {
+            return new RuntimeException("Error de conexión: No se pudo contactar con la API de Productos en " + productosUrl);
+        }
+        return new RuntimeException("Error inesperado al consultar el producto " + idProducto + ": " + e.getMessage());
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        conexiones.dispose();
+    }
+}
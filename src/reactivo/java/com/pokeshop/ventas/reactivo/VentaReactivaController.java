@@ -0,0 +1,64 @@
+package com.pokeshop.ventas.reactivo;
+
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * POST /api/v1/ventas sobre WebFlux (perfil reactivo), con las mismas respuestas que
+ * VentaController: 200 con la venta o 400 con el mensaje del error.
+ *
+ * Como una venta en espera no ocupa un hilo, nada limita cuántas se aceptan a la vez; el tope
+ * maximo-en-curso lo hace explícito y por encima responde 503 con Retry-After en vez de
+ * acumular ventas que igual vencerían el plazo esperando conexiones.
+ *
+ * Es el único endpoint del perfil: las consultas, el lote, la exportación, los tickets y los
+ * reportes solo existen en la pila MVC. Tampoco hay Idempotency-Key; si llega se responde 400
+ * en vez de ignorarla, porque un reintento del cliente crearía una segunda venta.
+ */
+@RestController
+@RequestMapping("/api/v1/ventas")
+@Profile("reactivo")
+public class VentaReactivaController {
+
+    @Autowired
+    private VentaReactivaService ventaReactivaService;
+
+    @Value("${ventas.reactivo.maximo-en-curso:2000}")
+    private int maximoEnCurso = 2000;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    @PostMapping
+    public Mono<ResponseEntity<Object>> generarVenta(@Valid @RequestBody SolicitudVentaDto solicitud,
+                                                     @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia) {
+        if (claveIdempotencia != null) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body("La Idempotency-Key no está disponible con el perfil reactivo."));
+        }
+        if (enCurso.incrementAndGet() > maximoEnCurso) {
+            enCurso.decrementAndGet();
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Hay demasiadas ventas en curso, intente nuevamente en unos segundos."));
+        }
+        return ventaReactivaService.crearVenta(solicitud)
+                .<ResponseEntity<Object>>map(ResponseEntity::ok)
+                // Devolvemos un Bad Request (400) con el mensaje de error (ej: falta stock)
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())))
+                .doFinally(senal -> enCurso.decrementAndGet());
+    }
+}
@@ -0,0 +1,146 @@
+package com.pokeshop.ventas.reactivo;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Guardado de la venta con R2DBC: los mismos INSERT de ventas y detalle_venta y los mismos
+ * upserts de resumen que VentaPersistenciaService, en una transacción y sin bloquear hilos.
+ *
+ * El pool de conexiones es de este componente y no un bean de ConnectionFactory: si lo fuera,
+ * Spring Boot dejaría de configurar el DataSource y JPA, que el resto del servicio sigue usando.
+ * Cuando no hay conexión libre la venta espera en el pool (hasta maximo-espera-ms) sin ocupar
+ * un hilo; esa espera es lo que frena a los que llegan cuando la base de datos no da abasto.
+ */
+@Component
+@Profile("reactivo")
+public class VentaReactivaRepositorio {
+
+    private final ConnectionPool pool;
+    private final DatabaseClient db;
+    private final TransactionalOperator transaccion;
+
+    public VentaReactivaRepositorio(@Value("${ventas.reactivo.r2dbc.url}") String url,
+                                    @Value("${ventas.reactivo.r2dbc.usuario:${spring.datasource.username:}}") String usuario,
+                                    @Value("${ventas.reactivo.r2dbc.clave:${spring.datasource.password:}}") String clave,
+                                    @Value("${ventas.reactivo.r2dbc.pool.maximo:20}") int maximo,
+                                    @Value("${ventas.reactivo.r2dbc.pool.maximo-espera-ms:2000}") long maximoEsperaMs) {
+        ConnectionFactoryOptions opciones = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, usuario)
+                .option(ConnectionFactoryOptions.PASSWORD, clave)
+                .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(opciones))
+                .name("ventas-r2dbc")
+                .initialSize(Math.min(5, maximo))
+                .maxSize(maximo)
+                .maxAcquireTime(Duration.ofMillis(maximoEsperaMs))
+                .build());
+        this.db = DatabaseClient.create(pool);
+        this.transaccion = TransactionalOperator.create(new R2dbcTransactionManager(pool));
+    }
+
+    /** La venta ya trae los ids asignados (GeneradorSnowflake), igual que con @SnowflakeId. */
+    public Mono<Venta> guardar(Venta venta) {
+        Mono<Void> insertarVenta = db.sql("insert into ventas (id_venta, id_usuario, fecha, subtotal, iva, total, estado) "
+                        + "values (:id, :usuario, :fecha, :subtotal, :iva, :total, :estado)")
+                .bind("id", venta.getIdVenta())
+                .bind("usuario", venta.getIdUsuario())
+                .bind("fecha", venta.getFecha())
+                .bind("subtotal", venta.getSubtotal())
+                .bind("iva", venta.getIva())
+                .bind("total", venta.getTotal())
+                .bind("estado", venta.getEstado())
+                .then();
+
+        Flux<Long> insertarDetalles = Flux.fromIterable(venta.getDetalles())
+                .concatMap(detalle -> texto(db.sql("insert into detalle_venta (id_detalle, id_venta, id_producto, nombre_producto, cantidad, precio_unitario) "
+                                + "values (:id, :venta, :producto, :nombre, :cantidad, :precio)"), "nombre", detalle.getNombreProducto())
+                        .bind("id", detalle.getIdDetalle())
+                        .bind("venta", venta.getIdVenta())
+                        .bind("producto", detalle.getIdProducto())
+                        .bind("cantidad", detalle.getCantidad())
+                        .bind("precio", detalle.getPrecioUnitario())
+                        .fetch().rowsUpdated());
+
+        return insertarVenta
+                .thenMany(insertarDetalles)
+                .then(acumularResumenes(venta))
+                .as(transaccion::transactional)
+                .thenReturn(venta);
+    }
+
+    // Mismo orden de filas que ResumenVentasService.acumular: día, productos por id, usuario
+    private Mono<Void> acumularResumenes(Venta venta) {
+        if (!"COMPLETADA".equals(venta.getEstado())) {
+            return Mono.empty();
+        }
+        LocalDate dia = venta.getFecha().toLocalDate();
+        Map<Long, long[]> unidadesPorProducto = new TreeMap<>();
+        Map<Long, Double> ingresosPorProducto = new TreeMap<>();
+        Map<Long, String> nombrePorProducto = new TreeMap<>();
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            unidadesPorProducto.computeIfAbsent(detalle.getIdProducto(), id -> new long[1])[0] += detalle.getCantidad();
+            ingresosPorProducto.merge(detalle.getIdProducto(), detalle.getCantidad() * detalle.getPrecioUnitario(), Double::sum);
+            nombrePorProducto.put(detalle.getIdProducto(), detalle.getNombreProducto());
+        }
+
+        Mono<Long> diario = db.sql("insert into resumen_venta_diaria (fecha, cantidad_ventas, subtotal, iva, total) "
+                        + "values (:fecha, 1, :subtotal, :iva, :total) "
+                        + "on duplicate key update cantidad_ventas = cantidad_ventas + values(cantidad_ventas), "
+                        + "subtotal = subtotal + values(subtotal), iva = iva + values(iva), total = total + values(total)")
+                .bind("fecha", dia)
+                .bind("subtotal", venta.getSubtotal())
+                .bind("iva", venta.getIva())
+                .bind("total", venta.getTotal())
+                .fetch().rowsUpdated();
+
+        Flux<Long> porProducto = Flux.fromIterable(unidadesPorProducto.keySet())
+                .concatMap(idProducto -> texto(db.sql("insert into resumen_producto_diario (fecha, id_producto, nombre_producto, unidades, ingresos) "
+                                + "values (:fecha, :producto, :nombre, :unidades, :ingresos) "
+                                + "on duplicate key update nombre_producto = values(nombre_producto), "
+                                + "unidades = unidades + values(unidades), ingresos = ingresos + values(ingresos)"), "nombre", nombrePorProducto.get(idProducto))
+                        .bind("fecha", dia)
+                        .bind("producto", idProducto)
+                        .bind("unidades", unidadesPorProducto.get(idProducto)[0])
+                        .bind("ingresos", ingresosPorProducto.get(idProducto))
+                        .fetch().rowsUpdated());
+
+        Mono<Long> porUsuario = db.sql("insert into resumen_usuario_mensual (id_usuario, periodo, cantidad_ventas, total) "
+                        + "values (:usuario, :periodo, 1, :total) "
+                        + "on duplicate key update cantidad_ventas = cantidad_ventas + values(cantidad_ventas), total = total + values(total)")
+                .bind("usuario", venta.getIdUsuario())
+                .bind("periodo", dia.withDayOfMonth(1))
+                .bind("total", venta.getTotal())
+                .fetch().rowsUpdated();
+
+        return diario.thenMany(porProducto).then(porUsuario).then();
+    }
+
+    // bind no acepta null: el nombre del producto puede venir vacío desde Productos
+    private static DatabaseClient.GenericExecuteSpec texto(DatabaseClient.GenericExecuteSpec sql, String nombre, String valor) {
+        return valor != null ? sql.bind(nombre, valor) : sql.bindNull(nombre, String.class);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        pool.dispose();
+    }
+}
@@ -0,0 +1,148 @@
+package com.pokeshop.ventas.reactivo;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.id.GeneradorSnowflake;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.service.AnaliticaVentasService;
+import com.pokeshop.ventas.service.VentaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Las mismas fases que VentaService.crearVenta pero como una cadena de Mono: usuario y productos
+ * en paralelo, validación de stock, descuento en Productos, guardado con R2DBC y compensación
+ * del stock si el guardado falla. Ningún paso bloquea un hilo, así que las ventas en curso no
+ * están limitadas por la cantidad de hilos sino por maximo-en-curso y los pools de conexiones.
+ *
+ * Solo descuenta el stock en Productos (ventas.stock.modo=remoto). Reservas locales, outbox,
+ * diario e Idempotency-Key siguen siendo de la pila MVC.
+ */
+@Service
+@Profile("reactivo")
+public class VentaReactivaService {
+
+    @Autowired
+    private ClienteRemotoReactivo clienteRemoto;
+
+    @Autowired
+    private VentaReactivaRepositorio ventaRepositorio;
+
+    @Autowired
+    private AnaliticaVentasService analiticaVentasService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${ventas.remoto.timeout-ms:5000}")
+    private long timeoutRemotoMs = 5000;
+
+    @Value("${ventas.plazo-ms:8000}")
+    private long plazoVentaMs = 8000;
+
+    // Productos consultados a la vez dentro de una venta
+    @Value("${ventas.reactivo.consultas-por-venta:16}")
+    private int consultasPorVenta = 16;
+
+    @Value("${ventas.id.nodo:0}")
+    private int nodo = 0;
+
+    public Mono<Venta> crearVenta(SolicitudVentaDto solicitud) {
+        return Mono.defer(() -> {
+                    long inicio = System.nanoTime();
+                    return procesarVenta(solicitud)
+                            .timeout(Duration.ofMillis(plazoVentaMs))
+                            .onErrorMap(TimeoutException.class,
+                                    e -> new RuntimeException("Tiempo de espera agotado al procesar la venta."))
+                            .doOnSuccess(venta -> registrarResultado(inicio, "completada"))
+                            .doOnError(e -> {
+                                registrarResultado(inicio, "rechazada");
+                                if (meterRegistry != null) {
+                                    meterRegistry.counter("ventas.rechazos", "motivo", VentaService.motivoRechazo(e)).increment();
+                                }
+                            });
+                });
+    }
+
+    private Mono<Venta> procesarVenta(SolicitudVentaDto solicitud) {
+        Map<Long, Integer> cantidadPorProducto = new LinkedHashMap<>();
+        for (SolicitudVentaDto.ItemProductoDto item : solicitud.getProductos()) {
+            cantidadPorProducto.merge(item.getIdProducto(), item.getCantidad(), Integer::sum);
+        }
+
+        // 1. Validar el usuario y obtener los productos en paralelo
+        Mono<Map<Long, ProductoExternoDto>> productos = Flux.fromIterable(cantidadPorProducto.keySet())
+                .flatMap(idProducto -> clienteRemoto.obtenerProducto(idProducto)
+                        .map(producto -> Map.entry(idProducto, producto)), consultasPorVenta)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+        return Mono.zip(clienteRemoto.validarUsuario(solicitud.getIdUsuario()).thenReturn(Boolean.TRUE), productos)
+                .map(resultado -> resultado.getT2())
+                .timeout(Duration.ofMillis(timeoutRemotoMs))
+                .onErrorMap(TimeoutException.class,
+                        e -> new RuntimeException("Tiempo de espera agotado al consultar los servicios de Usuarios y Productos."))
+                .flatMap(encontrados -> {
+                    // 2. Validar stock
+                    for (Map.Entry<Long, Integer> linea : cantidadPorProducto.entrySet()) {
+                        ProductoExternoDto producto = encontrados.get(linea.getKey());
+                        if (producto == null) {
+                            return Mono.error(new RuntimeException("Error: Producto ID " + linea.getKey() + " no encontrado."));
+                        }
+                        if (producto.getStock() != null && producto.getStock() < linea.getValue()) {
+                            return Mono.error(new RuntimeException("Stock insuficiente para: " + producto.getNombre()));
+                        }
+                    }
+
+                    // 3. Armar la venta con los ids ya asignados
+                    Venta venta = VentaService.armarVenta(solicitud.getIdUsuario(), solicitud.getProductos(), encontrados);
+                    GeneradorSnowflake generador = GeneradorSnowflake.paraNodo(nodo);
+                    venta.setIdVenta(generador.siguiente());
+                    venta.getDetalles().forEach(detalle -> detalle.setIdDetalle(generador.siguiente()));
+
+                    // 4. Descontar stock y 5. guardar; si el guardado falla se repone lo descontado
+                    return descontar(venta.getDetalles())
+                            .then(ventaRepositorio.guardar(venta)
+                                    .onErrorResume(e -> reponer(venta.getDetalles()).then(Mono.error(new RuntimeException(
+                                            "Error al guardar la venta, se repuso el stock descontado: " + e.getMessage(), e)))));
+                })
+                // 6. Analítica en vivo (solo memoria)
+                .doOnNext(analiticaVentasService::registrar);
+    }
+
+    /** Una línea a la vez, igual que StockService.descontar: si una falla se reponen las anteriores. */
+    private Mono<Void> descontar(List<DetalleVenta> detalles) {
+        List<DetalleVenta> descontados = Collections.synchronizedList(new ArrayList<>());
+        return Flux.fromIterable(detalles)
+                .concatMap(detalle -> clienteRemoto.descontarStock(detalle.getIdProducto(), detalle.getCantidad(), detalle.getNombreProducto())
+                        .doOnSuccess(nada -> descontados.add(detalle)))
+                .then()
+                .onErrorResume(e -> reponer(new ArrayList<>(descontados)).then(Mono.error(e)));
+    }
+
+    private Mono<Void> reponer(List<DetalleVenta> detalles) {
+        return Flux.fromIterable(detalles)
+                .flatMap(detalle -> clienteRemoto.reponerStock(detalle.getIdProducto(), detalle.getCantidad()))
+                .then();
+    }
+
+    // Mismo timer que la pila MVC, para comparar las dos con las mismas métricas
+    private void registrarResultado(long inicioNanos, String resultado) {
+        if (meterRegistry != null) {
+            meterRegistry.timer("ventas.crear", "resultado", resultado).record(System.nanoTime() - inicioNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.pokeshop.ventas.reactivo;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Impide arrancar el perfil reactivo con una configuración que la pila reactiva no respeta.
+ *
+ * VentaReactivaService descuenta con un PUT a Productos por línea y guarda con R2DBC: no pasa
+ * por StockService ni por el diario. Con ventas.stock.modo=reservas u outbox, o con el diario
+ * habilitado, las ventas del POST reactivo saldrían por otro camino que las demás, sin
+ * reservas, sin eventos de outbox o sin quedar en disco. Mejor fallar al arrancar que vender así.
+ */
+@Component
+@Profile("reactivo")
+public class VerificacionPerfilReactivo {
+
+    @Value("${ventas.stock.modo:remoto}")
+    private String modoStock = "remoto";
+
+    @Value("${ventas.diario.habilitado:false}")
+    private boolean diarioHabilitado;
+
+    @PostConstruct
+    public void verificar() {
+        if (!"remoto".equals(modoStock)) {
+            throw new IllegalStateException("El perfil reactivo solo admite ventas.stock.modo=remoto, se configuró "
+                    + modoStock + ".");
+        }
+        if (diarioHabilitado) {
+            throw new IllegalStateException("El perfil reactivo no escribe en el diario de ventas: "
+                    + "desactive ventas.diario.habilitado.");
+        }
+    }
+}
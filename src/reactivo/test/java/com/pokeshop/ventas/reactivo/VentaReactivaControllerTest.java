@@ -0,0 +1,120 @@
+package com.pokeshop.ventas.reactivo;
+
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(controllers = VentaReactivaController.class, properties = "ventas.reactivo.maximo-en-curso=1")
+@ActiveProfiles("reactivo")
+class VentaReactivaControllerTest {
+
+    private static final String SOLICITUD = """
+            {"idUsuario": 1, "productos": [{"idProducto": 10, "cantidad": 2}]}
+            """;
+
+    @Autowired
+    private WebTestClient cliente;
+
+    @Autowired
+    private VentaReactivaController controller;
+
+    @MockBean
+    private VentaReactivaService ventaReactivaService;
+
+    @Test
+    void generarVenta_CuandoLaVentaSeCompleta_DeberiaRetornar200ConLaVenta() {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdVenta(123L);
+        venta.setEstado("COMPLETADA");
+        when(ventaReactivaService.crearVenta(any(SolicitudVentaDto.class))).thenReturn(Mono.just(venta));
+
+        // Act & Assert
+        cliente.post().uri("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(SOLICITUD)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.idVenta").isEqualTo("123")
+                .jsonPath("$.estado").isEqualTo("COMPLETADA");
+    }
+
+    @Test
+    void generarVenta_CuandoElServicioFalla_DeberiaRetornar400ConElMensaje() {
+        // Arrange
+        when(ventaReactivaService.crearVenta(any(SolicitudVentaDto.class)))
+                .thenReturn(Mono.error(new RuntimeException("Stock insuficiente para: Pikachu")));
+
+        // Act & Assert
+        cliente.post().uri("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(SOLICITUD)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Stock insuficiente para: Pikachu");
+    }
+
+    @Test
+    void generarVenta_ConIdempotencyKey_DeberiaRetornar400SinCrearLaVenta() {
+        // Act & Assert - Ignorarla haría que un reintento creara otra venta
+        cliente.post().uri("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "pedido-42")
+                .bodyValue(SOLICITUD)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("La Idempotency-Key no está disponible con el perfil reactivo.");
+        verifyNoInteractions(ventaReactivaService);
+    }
+
+    @Test
+    void generarVenta_CuandoSeSuperaElMaximoEnCurso_DeberiaRetornar503SinLlamarAlServicio() {
+        // Arrange - Una venta que no termina ocupa el único lugar (maximo-en-curso=1)
+        when(ventaReactivaService.crearVenta(any(SolicitudVentaDto.class))).thenReturn(Mono.never());
+        Disposable enCurso = controller.generarVenta(new SolicitudVentaDto(), null).subscribe();
+
+        try {
+            // Act & Assert
+            cliente.post().uri("/api/v1/ventas")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(SOLICITUD)
+                    .exchange()
+                    .expectStatus().isEqualTo(503)
+                    .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+            verify(ventaReactivaService, times(1)).crearVenta(any(SolicitudVentaDto.class));
+        } finally {
+            // Al cancelarla se libera el lugar para las demás pruebas
+            enCurso.dispose();
+        }
+    }
+
+    @Test
+    void generarVenta_CuandoUnaVentaTermina_DeberiaLiberarSuLugar() {
+        // Arrange
+        when(ventaReactivaService.crearVenta(any(SolicitudVentaDto.class)))
+                .thenReturn(Mono.error(new RuntimeException("Error: Producto ID 10 no encontrado.")));
+
+        // Act & Assert - La segunda venta entra porque la primera ya terminó (aunque con error)
+        for (int i = 0; i < 2; i++) {
+            cliente.post().uri("/api/v1/ventas")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(SOLICITUD)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+        verify(ventaReactivaService, times(2)).crearVenta(any(SolicitudVentaDto.class));
+    }
+}
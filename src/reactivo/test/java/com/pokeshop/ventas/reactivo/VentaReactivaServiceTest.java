@@ -0,0 +1,155 @@
+package com.pokeshop.ventas.reactivo;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.service.AnaliticaVentasService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VentaReactivaServiceTest {
+
+    @Mock
+    private ClienteRemotoReactivo clienteRemoto;
+
+    @Mock
+    private VentaReactivaRepositorio ventaRepositorio;
+
+    @Mock
+    private AnaliticaVentasService analiticaVentasService;
+
+    private VentaReactivaService ventaReactivaService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ventaReactivaService = new VentaReactivaService();
+        setPrivateField(ventaReactivaService, "clienteRemoto", clienteRemoto);
+        setPrivateField(ventaReactivaService, "ventaRepositorio", ventaRepositorio);
+        setPrivateField(ventaReactivaService, "analiticaVentasService", analiticaVentasService);
+    }
+
+    @Test
+    void crearVenta_CuandoTodoEsValido_DeberiaGuardarYRegistrarLaVenta() {
+        // Arrange
+        simularConsultasValidas();
+        when(clienteRemoto.descontarStock(anyLong(), anyInt(), anyString())).thenReturn(Mono.empty());
+        when(ventaRepositorio.guardar(any(Venta.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        // Act
+        Venta venta = ventaReactivaService.crearVenta(crearSolicitud()).block();
+
+        // Assert
+        assertNotNull(venta);
+        assertNotNull(venta.getIdVenta());
+        assertEquals(2, venta.getDetalles().size());
+        verify(clienteRemoto).descontarStock(10L, 2, "Pikachu Plush");
+        verify(clienteRemoto).descontarStock(20L, 1, "Charmander Plush");
+        verify(clienteRemoto, never()).reponerStock(anyLong(), anyInt());
+        verify(analiticaVentasService).registrar(venta);
+    }
+
+    @Test
+    void crearVenta_CuandoElGuardadoFalla_DeberiaReponerElStockDescontado() {
+        // Arrange
+        simularConsultasValidas();
+        when(clienteRemoto.descontarStock(anyLong(), anyInt(), anyString())).thenReturn(Mono.empty());
+        when(clienteRemoto.reponerStock(anyLong(), anyInt())).thenReturn(Mono.empty());
+        when(ventaRepositorio.guardar(any(Venta.class))).thenReturn(Mono.error(new RuntimeException("conexión cerrada")));
+
+        // Act
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ventaReactivaService.crearVenta(crearSolicitud()).block());
+
+        // Assert - Se repone cada línea descontada y el error lo dice
+        assertTrue(exception.getMessage().contains("se repuso el stock descontado"));
+        assertTrue(exception.getMessage().contains("conexión cerrada"));
+        verify(clienteRemoto).reponerStock(10L, 2);
+        verify(clienteRemoto).reponerStock(20L, 1);
+        verify(analiticaVentasService, never()).registrar(any());
+    }
+
+    @Test
+    void crearVenta_CuandoFallaElDescuentoDeUnaLinea_DeberiaReponerSoloLasAnteriores() {
+        // Arrange
+        simularConsultasValidas();
+        when(clienteRemoto.descontarStock(10L, 2, "Pikachu Plush")).thenReturn(Mono.empty());
+        when(clienteRemoto.descontarStock(20L, 1, "Charmander Plush"))
+                .thenReturn(Mono.error(new RuntimeException("Stock insuficiente para: Charmander Plush")));
+        when(clienteRemoto.reponerStock(anyLong(), anyInt())).thenReturn(Mono.empty());
+        when(ventaRepositorio.guardar(any(Venta.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        // Act
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ventaReactivaService.crearVenta(crearSolicitud()).block());
+
+        // Assert
+        assertEquals("Stock insuficiente para: Charmander Plush", exception.getMessage());
+        verify(clienteRemoto).reponerStock(10L, 2);
+        verify(clienteRemoto, never()).reponerStock(eq(20L), anyInt());
+        verify(analiticaVentasService, never()).registrar(any());
+    }
+
+    @Test
+    void crearVenta_CuandoNoHayStockSuficiente_NoDeberiaDescontarNiGuardar() {
+        // Arrange
+        when(clienteRemoto.validarUsuario(1L)).thenReturn(Mono.empty());
+        when(clienteRemoto.obtenerProducto(10L)).thenReturn(Mono.just(crearProducto(10L, "Pikachu Plush", 1)));
+        when(clienteRemoto.obtenerProducto(20L)).thenReturn(Mono.just(crearProducto(20L, "Charmander Plush", 5)));
+
+        // Act
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ventaReactivaService.crearVenta(crearSolicitud()).block());
+
+        // Assert
+        assertEquals("Stock insuficiente para: Pikachu Plush", exception.getMessage());
+        verify(clienteRemoto, never()).descontarStock(anyLong(), anyInt(), anyString());
+        verifyNoInteractions(ventaRepositorio);
+    }
+
+    private void simularConsultasValidas() {
+        when(clienteRemoto.validarUsuario(1L)).thenReturn(Mono.empty());
+        when(clienteRemoto.obtenerProducto(10L)).thenReturn(Mono.just(crearProducto(10L, "Pikachu Plush", 5)));
+        when(clienteRemoto.obtenerProducto(20L)).thenReturn(Mono.just(crearProducto(20L, "Charmander Plush", 5)));
+    }
+
+    private SolicitudVentaDto crearSolicitud() {
+        SolicitudVentaDto.ItemProductoDto pikachu = new SolicitudVentaDto.ItemProductoDto();
+        pikachu.setIdProducto(10L);
+        pikachu.setCantidad(2);
+        SolicitudVentaDto.ItemProductoDto charmander = new SolicitudVentaDto.ItemProductoDto();
+        charmander.setIdProducto(20L);
+        charmander.setCantidad(1);
+
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(List.of(pikachu, charmander));
+        return solicitud;
+    }
+
+    private ProductoExternoDto crearProducto(Long idProducto, String nombre, int stock) {
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(idProducto);
+        producto.setNombre(nombre);
+        producto.setPrecio(19.99);
+        producto.setStock(stock);
+        return producto;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
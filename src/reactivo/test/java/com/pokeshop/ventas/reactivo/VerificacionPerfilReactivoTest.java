@@ -0,0 +1,42 @@
+package com.pokeshop.ventas.reactivo;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerificacionPerfilReactivoTest {
+
+    @Test
+    void verificar_ConStockRemotoYSinDiario_DeberiaArrancar() {
+        assertDoesNotThrow(() -> new VerificacionPerfilReactivo().verificar());
+    }
+
+    @Test
+    void verificar_ConStockEnModoOutbox_DeberiaImpedirElArranque() throws Exception {
+        // Arrange
+        VerificacionPerfilReactivo verificacion = new VerificacionPerfilReactivo();
+        setPrivateField(verificacion, "modoStock", "outbox");
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, verificacion::verificar);
+        assertEquals("El perfil reactivo solo admite ventas.stock.modo=remoto, se configuró outbox.", exception.getMessage());
+    }
+
+    @Test
+    void verificar_ConElDiarioHabilitado_DeberiaImpedirElArranque() throws Exception {
+        // Arrange
+        VerificacionPerfilReactivo verificacion = new VerificacionPerfilReactivo();
+        setPrivateField(verificacion, "diarioHabilitado", true);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, verificacion::verificar);
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,45 @@
+package com.pokeshop.ventas.analitica;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimar_ConMuchosValoresRepetidos_DeberiaAcercarseALosDistintos() {
+        // Arrange - 100.000 ids distintos, cada uno agregado 3 veces
+        HyperLogLog hll = new HyperLogLog(12);
+        for (int vuelta = 0; vuelta < 3; vuelta++) {
+            for (long id = 1; id <= 100_000; id++) {
+                hll.agregar(id);
+            }
+        }
+
+        // Act
+        long estimado = hll.estimar();
+
+        // Assert - Error típico con 4096 registros ~1.6%; se deja margen de 5%
+        assertEquals(100_000, estimado, 5_000);
+    }
+
+    @Test
+    void estimar_ConPocosValores_DeberiaSerCasiExacto() {
+        HyperLogLog hll = new HyperLogLog(12);
+        for (long id = 1; id <= 50; id++) {
+            hll.agregar(id);
+        }
+        assertEquals(50, hll.estimar(), 2);
+    }
+
+    @Test
+    void countMinSketch_NuncaDeberiaSubestimar() {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        for (long id = 1; id <= 5_000; id++) {
+            sketch.agregar(id, id % 7 + 1);
+        }
+        for (long id = 1; id <= 5_000; id++) {
+            assertTrue(sketch.estimar(id) >= id % 7 + 1);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.pokeshop.ventas.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DataSourceConLimiteTest {
+
+    @Mock
+    private DataSource destino;
+
+    @Mock
+    private Connection conexion;
+
+    @Test
+    void getConnection_CuandoSeCierra_DeberiaDevolverElPermisoUnaSolaVez() throws Exception {
+        // Arrange
+        when(destino.getConnection()).thenReturn(conexion);
+        DataSourceConLimite dataSource = new DataSourceConLimite(destino, 2, 10, 100);
+
+        // Act
+        Connection tomada = dataSource.getConnection();
+        int enUsoAbierta = dataSource.enUso();
+        tomada.close();
+        tomada.close();
+
+        // Assert
+        assertEquals(1, enUsoAbierta);
+        assertEquals(0, dataSource.enUso());
+        verify(conexion, times(2)).close();
+    }
+
+    @Test
+    void getConnection_CuandoNoHayTurnoATiempo_DeberiaFallarSinEsperarAHikari() throws Exception {
+        // Arrange
+        when(destino.getConnection()).thenReturn(conexion);
+        DataSourceConLimite dataSource = new DataSourceConLimite(destino, 1, 10, 50);
+        Connection ocupada = dataSource.getConnection();
+
+        // Act & Assert
+        SQLTransientConnectionException error = assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertTrue(error.getMessage().startsWith("Tiempo de espera agotado"));
+        assertEquals(1, dataSource.rechazadas());
+        verify(destino, times(1)).getConnection();
+
+        ocupada.close();
+        assertNotNull(dataSource.getConnection());
+    }
+
+    @Test
+    void getConnection_CuandoLaColaDeEsperaEstaLlena_DeberiaRechazarEnseguida() throws Exception {
+        // Arrange
+        when(destino.getConnection()).thenReturn(conexion);
+        DataSourceConLimite dataSource = new DataSourceConLimite(destino, 1, 0, 10_000);
+        dataSource.getConnection();
+
+        // Act
+        long inicio = System.nanoTime();
+        SQLTransientConnectionException error = assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        // Assert
+        assertTrue((System.nanoTime() - inicio) / 1_000_000 < 1000);
+        assertTrue(error.getMessage().startsWith("Hay demasiadas operaciones"));
+        assertEquals(0, dataSource.enEspera());
+    }
+
+    @Test
+    void getConnection_CuandoFallaElPool_DeberiaDevolverElPermiso() throws Exception {
+        // Arrange
+        when(destino.getConnection()).thenThrow(new SQLException("Connection is not available"));
+        DataSourceConLimite dataSource = new DataSourceConLimite(destino, 1, 10, 50);
+
+        // Act & Assert
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertEquals(0, dataSource.enUso());
+    }
+}
@@ -0,0 +1,155 @@
+package com.pokeshop.ventas.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientConfigTest {
+
+    // Usuarios y Productos en puertos distintos: el pool los trata como rutas separadas
+    private HttpServer usuarios;
+    private HttpServer productos;
+
+    // Las peticiones a /bloqueado avisan que llegaron y esperan hasta que se libera
+    private final CountDownLatch enCurso = new CountDownLatch(1);
+    private final CountDownLatch liberar = new CountDownLatch(1);
+
+    private ApplicationContextRunner contexto;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        usuarios = levantarServidor();
+        productos = levantarServidor();
+        contexto = new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(RestTemplateAutoConfiguration.class))
+                .withUserConfiguration(HttpClientConfig.class)
+                .withPropertyValues(
+                        "api.usuarios.url=" + url(usuarios) + "/api/v1/usuarios",
+                        "api.productos.url=" + url(productos) + "/api/v1/productos");
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberar.countDown();
+        usuarios.stop(0);
+        productos.stop(0);
+    }
+
+    @Test
+    void restTemplate_PorDefecto_DeberiaUsarApacheConPool() {
+        contexto.run(ctx -> assertInstanceOf(HttpComponentsClientHttpRequestFactory.class,
+                ctx.getBean(RestTemplate.class).getRequestFactory()));
+    }
+
+    @Test
+    void restTemplate_ConClienteJdk_DeberiaUsarElHttpClientDelJdk() {
+        contexto.withPropertyValues("api.http.cliente=jdk").run(ctx -> {
+            RestTemplate restTemplate = ctx.getBean(RestTemplate.class);
+            assertInstanceOf(JdkClientHttpRequestFactory.class, restTemplate.getRequestFactory());
+            assertEquals("ok", restTemplate.getForObject(url(usuarios) + "/api/v1/usuarios/1", String.class));
+        });
+    }
+
+    @Test
+    void restTemplate_ConClienteSimple_DeberiaUsarHttpUrlConnection() {
+        contexto.withPropertyValues("api.http.cliente=simple").run(ctx -> {
+            RestTemplate restTemplate = ctx.getBean(RestTemplate.class);
+            assertInstanceOf(SimpleClientHttpRequestFactory.class, restTemplate.getRequestFactory());
+            assertEquals("ok", restTemplate.getForObject(url(usuarios) + "/api/v1/usuarios/1", String.class));
+        });
+    }
+
+    @Test
+    void restTemplate_CuandoLaRespuestaTardaMasQueElTimeout_DeberiaCortarALosMsConfigurados() {
+        contexto.withPropertyValues("api.http.timeout.respuesta-ms=200").run(ctx -> {
+            RestTemplate restTemplate = ctx.getBean(RestTemplate.class);
+
+            // Act
+            long inicio = System.nanoTime();
+            assertThrows(ResourceAccessException.class,
+                    () -> restTemplate.getForObject(url(usuarios) + "/bloqueado", String.class));
+            long transcurridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+            // Assert - Corta por el timeout de respuesta, no por el de 3000 ms por defecto
+            assertTrue(transcurridoMs >= 150 && transcurridoMs < 2000, "Cortó a los " + transcurridoMs + " ms");
+        });
+    }
+
+    @Test
+    void restTemplate_ConElMaximoPorHostDeUsuariosOcupado_DeberiaEsperarSoloEsaRuta() {
+        contexto.withPropertyValues(
+                "api.http.pool.maximo-por-host.usuarios=1",
+                "api.http.timeout.espera-pool-ms=100").run(ctx -> {
+            // Arrange - La única conexión permitida hacia Usuarios queda ocupada
+            RestTemplate restTemplate = ctx.getBean(RestTemplate.class);
+            CompletableFuture<String> ocupada = CompletableFuture.supplyAsync(
+                    () -> restTemplate.getForObject(url(usuarios) + "/bloqueado", String.class));
+            esperarPeticionEnCurso();
+
+            // Act & Assert - Otra petición a Usuarios no consigue conexión del pool a tiempo
+            long inicio = System.nanoTime();
+            assertThrows(ResourceAccessException.class,
+                    () -> restTemplate.getForObject(url(usuarios) + "/api/v1/usuarios/2", String.class));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 2000);
+
+            // Productos tiene su propio máximo y sigue respondiendo
+            assertEquals("ok", restTemplate.getForObject(url(productos) + "/api/v1/productos/1", String.class));
+
+            liberar.countDown();
+            assertEquals("ok", ocupada.get(5, TimeUnit.SECONDS));
+        });
+    }
+
+    private void esperarPeticionEnCurso() throws InterruptedException {
+        assertTrue(enCurso.await(5, TimeUnit.SECONDS), "La primera petición no llegó al servidor");
+    }
+
+    private HttpServer levantarServidor() throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 50);
+        servidor.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        servidor.createContext("/", this::responder);
+        servidor.start();
+        return servidor;
+    }
+
+    private void responder(HttpExchange intercambio) throws IOException {
+        if (intercambio.getRequestURI().getPath().equals("/bloqueado")) {
+            enCurso.countDown();
+            try {
+                liberar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] cuerpo = "ok".getBytes(StandardCharsets.UTF_8);
+        intercambio.sendResponseHeaders(200, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static String url(HttpServer servidor) {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort();
+    }
+}
@@ -1,7 +1,21 @@
 package com.pokeshop.ventas.controller;
 
+import com.pokeshop.ventas.diario.VentaPendienteException;
+import com.pokeshop.ventas.dto.PaginaVentasDto;
+import com.pokeshop.ventas.dto.RespuestaIdempotenteDto;
+import com.pokeshop.ventas.dto.ResultadoVentaLoteDto;
 import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.dto.TicketVentaDto;
+import com.pokeshop.ventas.model.DetalleVenta;
 import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.resiliencia.ServicioNoDisponibleException;
+import com.pokeshop.ventas.service.DiarioVentasService;
+import com.pokeshop.ventas.service.IdempotenciaService;
+import com.pokeshop.ventas.service.VentaAsyncService;
+import com.pokeshop.ventas.service.VentaConsultaService;
+import com.pokeshop.ventas.service.VentaExportacionService;
+import com.pokeshop.ventas.service.VentaLecturaCache;
+import com.pokeshop.ventas.service.VentaLoteService;
 import com.pokeshop.ventas.service.VentaService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -10,15 +24,34 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.Writer;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(VentaController.class)
+@WebMvcTest(controllers = VentaController.class, properties = "ventas.lote.maximo-ordenes=2")
 class VentaControllerTest {
 
     @Autowired
@@ -30,6 +63,54 @@ class VentaControllerTest {
     @MockBean
     private VentaService ventaService;
 
+    @MockBean
+    private VentaAsyncService ventaAsyncService;
+
+    @MockBean
+    private VentaLoteService ventaLoteService;
+
+    @MockBean
+    private VentaConsultaService ventaConsultaService;
+
+    @MockBean
+    private VentaExportacionService ventaExportacionService;
+
+    @MockBean
+    private IdempotenciaService idempotenciaService;
+
+    @MockBean
+    private VentaLecturaCache ventaLecturaCache;
+
+    @MockBean
+    private DiarioVentasService diarioVentasService;
+
+    @Test
+    void generarVenta_CuandoIdSuperaElEnteroSeguroDeJavaScript_DeberiaEnviarloComoTexto() throws Exception {
+        // Arrange - Un id Snowflake real ronda 2^60
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        SolicitudVentaDto.ItemProductoDto item = new SolicitudVentaDto.ItemProductoDto();
+        item.setIdProducto(100L);
+        item.setCantidad(1);
+        solicitud.setProductos(List.of(item));
+
+        Venta ventaMock = new Venta();
+        ventaMock.setIdVenta(1234567890123456789L);
+        ventaMock.setEstado("COMPLETADA");
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdDetalle(1234567890123456790L);
+        ventaMock.getDetalles().add(detalle);
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class))).thenReturn(ventaMock);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"idVenta\":\"1234567890123456789\"")))
+                .andExpect(content().string(containsString("\"idDetalle\":\"1234567890123456790\"")));
+    }
+
     @Test
     void generarVenta_CuandoSolicitudValida_DeberiaRetornarVenta() throws Exception {
         // Arrange
@@ -53,7 +134,7 @@ class VentaControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(solicitud)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.idVenta").value(1L))
+                .andExpect(jsonPath("$.idVenta").value("1"))
                 .andExpect(jsonPath("$.idUsuario").value(1L))
                 .andExpect(jsonPath("$.estado").value("COMPLETADA"));
     }
@@ -76,6 +157,25 @@ class VentaControllerTest {
                 .andExpect(content().string("Stock insuficiente"));
     }
 
+    @Test
+    void generarVenta_CuandoCircuitoAbierto_DeberiaRetornarServiceUnavailable() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class)))
+            .thenThrow(new ServicioNoDisponibleException("productos", "circuito abierto", 4));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "4"))
+                .andExpect(content().string(containsString("productos")));
+    }
+
     @Test
     void generarVenta_CuandoSolicitudInvalida_DeberiaRetornarBadRequest() throws Exception {
         // Arrange - Solicitud sin usuario
@@ -97,4 +197,365 @@ class VentaControllerTest {
                 .content("{}"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void generarVenta_CuandoModoAsincrono_DeberiaRetornarAcceptedConTicket() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        TicketVentaDto ticket = new TicketVentaDto();
+        ticket.setIdTicket("abc-123");
+        ticket.setEstado("PENDIENTE");
+
+        when(ventaAsyncService.estaHabilitado()).thenReturn(true);
+        when(ventaAsyncService.encolar(any(SolicitudVentaDto.class))).thenReturn(ticket);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/ventas/tickets/abc-123"))
+                .andExpect(jsonPath("$.idTicket").value("abc-123"))
+                .andExpect(jsonPath("$.estado").value("PENDIENTE"));
+    }
+
+    @Test
+    void generarVenta_CuandoColaAsincronaLlena_DeberiaRetornarServiceUnavailable() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        when(ventaAsyncService.estaHabilitado()).thenReturn(true);
+        when(ventaAsyncService.encolar(any(SolicitudVentaDto.class))).thenThrow(new RejectedExecutionException());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void generarVenta_CuandoIdempotencyKeyNueva_DeberiaProcesarYRetornarVenta() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        Venta ventaMock = new Venta();
+        ventaMock.setIdVenta(1L);
+        ventaMock.setEstado("COMPLETADA");
+
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class))).thenReturn(ventaMock);
+        when(idempotenciaService.ejecutar(eq("clave-1"), anyString(), any()))
+            .thenAnswer(invocacion -> invocacion.<Supplier<RespuestaIdempotenteDto>>getArgument(2).get());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .header("Idempotency-Key", "clave-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andExpect(jsonPath("$.idVenta").value("1"));
+    }
+
+    @Test
+    void generarVenta_CuandoLaVentaQuedaPendienteEnElDiario_DeberiaRetornarAccepted() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class)))
+            .thenThrow(new VentaPendienteException(42L, "tiempo de espera agotado"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/ventas/42"));
+    }
+
+    @Test
+    void generarVenta_CuandoIdempotencyKeyRepetida_DeberiaRetornarRespuestaGuardada() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        when(idempotenciaService.ejecutar(eq("clave-1"), anyString(), any()))
+            .thenReturn(new RespuestaIdempotenteDto(200, "application/json", null,
+                    "{\"idVenta\":7,\"estado\":\"COMPLETADA\"}", true));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .header("Idempotency-Key", "clave-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.idVenta").value(7L));
+        verify(ventaService, never()).crearVenta(any(SolicitudVentaDto.class));
+    }
+
+    @Test
+    void generarVenta_ConIdempotencyKey_DeberiaMarcarComoReintentableSoloElRechazoPasajero() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        RespuestaIdempotenteDto[] guardada = new RespuestaIdempotenteDto[1];
+        when(idempotenciaService.ejecutar(anyString(), anyString(), any())).thenAnswer(invocacion -> {
+            Supplier<RespuestaIdempotenteDto> accion = invocacion.getArgument(2);
+            guardada[0] = accion.get();
+            return guardada[0];
+        });
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class)))
+            .thenThrow(new RuntimeException("Tiempo de espera agotado al consultar los servicios de Usuarios y Productos."))
+            .thenThrow(new RuntimeException("Stock insuficiente para: Pokemon Plush"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .header("Idempotency-Key", "clave-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isBadRequest());
+        assertTrue(guardada[0].isReintentable());
+
+        mockMvc.perform(post("/api/v1/ventas")
+                .header("Idempotency-Key", "clave-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isBadRequest());
+        assertFalse(guardada[0].isReintentable());
+    }
+
+    @Test
+    void generarVenta_CuandoIdempotencyKeyEnCurso_DeberiaRetornarConflict() throws Exception {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+
+        when(idempotenciaService.ejecutar(eq("clave-1"), anyString(), any()))
+            .thenReturn(new RespuestaIdempotenteDto(409, "text/plain;charset=UTF-8", null, "sigue en proceso", false));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas")
+                .header("Idempotency-Key", "clave-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(solicitud)))
+                .andExpect(status().isConflict())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void consultarTicket_CuandoExiste_DeberiaRetornarEstado() throws Exception {
+        // Arrange
+        TicketVentaDto ticket = new TicketVentaDto();
+        ticket.setIdTicket("abc-123");
+        ticket.setEstado("COMPLETADA");
+        ticket.setIdVenta(10L);
+
+        when(ventaAsyncService.consultar("abc-123")).thenReturn(ticket);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ventas/tickets/abc-123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.estado").value("COMPLETADA"))
+                .andExpect(jsonPath("$.idVenta").value("10"));
+    }
+
+    @Test
+    void consultarTicket_CuandoNoExiste_DeberiaRetornarNotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/ventas/tickets/no-existe"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void generarLoteNdjson_DeberiaProcesarUnaVentaPorLinea() throws Exception {
+        // Arrange
+        ResultadoVentaLoteDto completada = new ResultadoVentaLoteDto();
+        completada.setIndice(0);
+        completada.setEstado("COMPLETADA");
+        completada.setIdVenta(10L);
+
+        ResultadoVentaLoteDto rechazada = new ResultadoVentaLoteDto();
+        rechazada.setIndice(1);
+        rechazada.setEstado("RECHAZADA");
+        rechazada.setMensaje("Stock insuficiente para: Pokemon Plush");
+
+        when(ventaLoteService.procesar(anyList())).thenReturn(List.of(completada, rechazada));
+
+        String ndjson = "{\"idUsuario\":1,\"productos\":[{\"idProducto\":100,\"cantidad\":1}]}\n"
+                + "{\"idUsuario\":2,\"productos\":[{\"idProducto\":100,\"cantidad\":9}]}\n";
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas/lote")
+                .contentType("application/x-ndjson")
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].estado").value("COMPLETADA"))
+                .andExpect(jsonPath("$[0].idVenta").value("10"))
+                .andExpect(jsonPath("$[1].estado").value("RECHAZADA"));
+    }
+
+    @Test
+    void generarLoteNdjson_CuandoSuperaElMaximoDeOrdenes_DeberiaCortarSinLeerElResto() throws Exception {
+        // Arrange - La tercera línea ya pasa el tope; la cuarta ni siquiera es JSON y no se llega a leer
+        String ndjson = "{\"idUsuario\":1}\n{\"idUsuario\":2}\n{\"idUsuario\":3}\nesto no es json\n";
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/ventas/lote")
+                .contentType("application/x-ndjson")
+                .content(ndjson))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("supera el máximo de 2")));
+        verify(ventaLoteService, never()).procesar(anyList());
+    }
+
+    @Test
+    void generarLoteNdjson_CuandoLineaInvalida_DeberiaRetornarBadRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/ventas/lote")
+                .contentType("application/x-ndjson")
+                .content("{\"idUsuario\":1}\nesto no es json\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("2 no es una venta")));
+    }
+
+    @Test
+    void listarVentas_CuandoHayMasResultados_DeberiaRetornarCursor() throws Exception {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdVenta(10L);
+        venta.setIdUsuario(1L);
+        PaginaVentasDto pagina = new PaginaVentasDto();
+        pagina.setVentas(List.of(venta));
+        pagina.setSiguienteCursor("abc");
+
+        when(ventaConsultaService.buscar(eq(1L), isNull(), isNull(), eq("COMPLETADA"), isNull(), eq(1)))
+            .thenReturn(pagina);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ventas")
+                .param("idUsuario", "1")
+                .param("estado", "COMPLETADA")
+                .param("tamano", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ventas[0].idVenta").value("10"))
+                .andExpect(jsonPath("$.siguienteCursor").value("abc"));
+    }
+
+    @Test
+    void listarVentas_CuandoCursorInvalido_DeberiaRetornarBadRequest() throws Exception {
+        // Arrange
+        when(ventaConsultaService.buscar(any(), any(), any(), any(), eq("xx"), anyInt()))
+            .thenThrow(new IllegalArgumentException("El cursor de paginación no es válido."));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ventas").param("cursor", "xx"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportarVentas_EnCsv_DeberiaEscribirLoQueEntregaElServicio() throws Exception {
+        // Arrange
+        doAnswer(invocacion -> {
+            Writer salida = invocacion.getArgument(3);
+            salida.write("id_venta,fecha\n1,2025-01-01T10:00\n");
+            salida.flush();
+            return null;
+        }).when(ventaExportacionService).exportar(any(), any(), eq("csv"), any(Writer.class));
+
+        // Act
+        MvcResult resultado = mockMvc.perform(get("/api/v1/ventas/export")
+                .param("desde", "2025-01-01T00:00:00")
+                .param("hasta", "2025-02-01T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("ventas.csv")))
+                .andExpect(content().string("id_venta,fecha\n1,2025-01-01T10:00\n"));
+    }
+
+    @Test
+    void exportarVentas_CuandoFormatoNoSoportado_DeberiaRetornarBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/ventas/export")
+                .param("desde", "2025-01-01T00:00:00")
+                .param("hasta", "2025-02-01T00:00:00")
+                .param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason(containsString("Formato no soportado")));
+    }
+
+    @Test
+    void exportarVentas_CuandoRangoInvertido_DeberiaRetornarBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/ventas/export")
+                .param("desde", "2025-02-01T00:00:00")
+                .param("hasta", "2025-01-01T00:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason(containsString("anterior a 'hasta'")));
+    }
+
+    @Test
+    void obtenerVenta_CuandoAceptaGzip_DeberiaRetornarLosBytesComprimidosConEtag() throws Exception {
+        // Arrange
+        byte[] json = "{\"idVenta\":1}".getBytes();
+        byte[] gzip = new byte[]{31, -117, 8};
+        when(ventaLecturaCache.obtener(1L))
+                .thenReturn(new VentaLecturaCache.VentaSerializada(json, gzip, "\"abc\"", "\"abc-gz\""));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ventas/1").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-gz\""))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", containsString("Accept-Encoding")))
+                .andExpect(content().bytes(gzip));
+    }
+
+    @Test
+    void obtenerVenta_CuandoEtagCoincide_DeberiaRetornarNotModifiedSinCuerpo() throws Exception {
+        // Arrange
+        byte[] json = "{\"idVenta\":1}".getBytes();
+        when(ventaLecturaCache.obtener(1L))
+                .thenReturn(new VentaLecturaCache.VentaSerializada(json, null, "\"abc\"", null));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ventas/1").header("If-None-Match", "W/\"abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void obtenerVenta_CuandoNoExiste_DeberiaRetornarNotFound() throws Exception {
+        when(ventaLecturaCache.obtener(99L)).thenReturn(null);
+
+        mockMvc.perform(get("/api/v1/ventas/99"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void obtenerVenta_CuandoSigueEnElDiario_DeberiaRetornarAcceptedEnVezDeNotFound() throws Exception {
+        // Arrange - La Location de un POST que respondió 202
+        when(ventaLecturaCache.obtener(42L)).thenReturn(null);
+        when(diarioVentasService.estaPendiente(42L)).thenReturn(true);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/ventas/42"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(content().string(containsString("todavía se está guardando")));
+    }
 }
@@ -0,0 +1,66 @@
+package com.pokeshop.ventas.diario;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodificadorVentaTest {
+
+    @Test
+    void decodificar_DeberiaDevolverLaMismaVenta() {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdVenta(123456789L);
+        venta.setIdUsuario(42L);
+        venta.setFecha(LocalDateTime.of(2024, 5, 17, 10, 30, 15, 123_000_000));
+        venta.setSubtotal(1000.0);
+        venta.setIva(190.0);
+        venta.setTotal(1190.0);
+        venta.setEstado("COMPLETADA");
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdDetalle(987654321L);
+        detalle.setIdProducto(7L);
+        detalle.setNombreProducto("Poción ñandú");
+        detalle.setCantidad(4);
+        detalle.setPrecioUnitario(250.0);
+        detalle.setVenta(venta);
+        venta.getDetalles().add(detalle);
+
+        // Act
+        Venta leida = CodificadorVenta.decodificar(CodificadorVenta.codificar(venta));
+
+        // Assert
+        assertEquals(venta.getIdVenta(), leida.getIdVenta());
+        assertEquals(venta.getIdUsuario(), leida.getIdUsuario());
+        assertEquals(venta.getFecha(), leida.getFecha());
+        assertEquals(venta.getTotal(), leida.getTotal());
+        assertEquals("COMPLETADA", leida.getEstado());
+        assertEquals(1, leida.getDetalles().size());
+        DetalleVenta detalleLeido = leida.getDetalles().get(0);
+        assertEquals(987654321L, detalleLeido.getIdDetalle());
+        assertEquals("Poción ñandú", detalleLeido.getNombreProducto());
+        assertEquals(4, detalleLeido.getCantidad());
+        assertSame(leida, detalleLeido.getVenta());
+    }
+
+    @Test
+    void decodificar_CuandoFaltanValoresOpcionales_DeberiaDejarlosNulos() {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdVenta(1L);
+        venta.setIdUsuario(2L);
+        venta.setFecha(LocalDateTime.of(2024, 1, 1, 0, 0));
+
+        // Act
+        Venta leida = CodificadorVenta.decodificar(CodificadorVenta.codificar(venta));
+
+        // Assert
+        assertNull(leida.getSubtotal());
+        assertNull(leida.getEstado());
+        assertTrue(leida.getDetalles().isEmpty());
+    }
+}
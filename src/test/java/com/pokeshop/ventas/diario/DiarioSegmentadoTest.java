@@ -0,0 +1,211 @@
+package com.pokeshop.ventas.diario;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiarioSegmentadoTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void agregar_DeberiaLeerseEnOrdenUnaVezDurable() throws Exception {
+        // Arrange
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            long fin = 0;
+            for (int i = 0; i < 3; i++) {
+                fin = diario.agregar(texto("venta-" + i));
+            }
+
+            // Act
+            assertTrue(diario.esperarDurable(fin, 5000));
+            List<DiarioSegmentado.Registro> registros = diario.leer(diario.puntoControl(), 10);
+
+            // Assert
+            assertEquals(3, registros.size());
+            assertEquals("venta-0", leer(registros.get(0)));
+            assertEquals("venta-2", leer(registros.get(2)));
+            assertEquals(fin, registros.get(2).fin());
+        }
+    }
+
+    @Test
+    void agregar_CuandoSeLlenaElSegmento_DeberiaRotarYSeguirLeyendo() throws Exception {
+        // Arrange
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 256)) {
+            long fin = 0;
+
+            // Act
+            for (int i = 0; i < 20; i++) {
+                fin = diario.agregar(texto("venta-rotada-" + i));
+            }
+            assertTrue(diario.esperarDurable(fin, 5000));
+
+            // Assert
+            assertTrue(segmentos() > 1);
+            List<DiarioSegmentado.Registro> registros = diario.leer(diario.puntoControl(), 100);
+            assertEquals(20, registros.size());
+            assertEquals("venta-rotada-19", leer(registros.get(19)));
+        }
+    }
+
+    @Test
+    void abrir_DeberiaRetomarDesdeElPuntoDeControl() throws Exception {
+        // Arrange
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            diario.agregar(texto("procesada"));
+            long fin = diario.agregar(texto("pendiente"));
+            assertTrue(diario.esperarDurable(fin, 5000));
+            diario.confirmarLectura(diario.leer(diario.puntoControl(), 1).get(0).fin());
+        }
+
+        // Act
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            long fin = diario.agregar(texto("nueva"));
+            assertTrue(diario.esperarDurable(fin, 5000));
+            List<DiarioSegmentado.Registro> registros = diario.leer(diario.puntoControl(), 10);
+
+            // Assert
+            assertEquals(List.of("pendiente", "nueva"), registros.stream().map(this::leer).toList());
+        }
+    }
+
+    @Test
+    void abrir_CuandoQuedoUnRegistroAMedioEscribir_DeberiaDescartarlo() throws Exception {
+        // Arrange
+        long fin;
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            fin = diario.agregar(texto("completa"));
+            assertTrue(diario.esperarDurable(fin, 5000));
+        }
+        // Cabecera de un registro cuyos datos no llegaron a disco
+        Path segmento = directorio.resolve("diario-000000000000.log");
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.allocate(12).putInt(0, 40).putInt(4, 12345).putInt(8, 7), DiarioSegmentado.desplazamientoDe(fin));
+        }
+
+        // Act
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            long nuevo = diario.agregar(texto("despues"));
+            assertTrue(diario.esperarDurable(nuevo, 5000));
+            List<DiarioSegmentado.Registro> registros = diario.leer(diario.puntoControl(), 10);
+
+            // Assert
+            assertEquals(List.of("completa", "despues"), registros.stream().map(this::leer).toList());
+        }
+    }
+
+    @Test
+    void confirmarLectura_DeberiaBorrarLosSegmentosYaProcesados() throws Exception {
+        // Arrange
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 256)) {
+            long fin = 0;
+            for (int i = 0; i < 20; i++) {
+                fin = diario.agregar(texto("venta-" + i));
+            }
+            assertTrue(diario.esperarDurable(fin, 5000));
+            int antes = segmentos();
+
+            // Act
+            diario.confirmarLectura(fin);
+
+            // Assert
+            assertTrue(antes > 1);
+            assertEquals(1, segmentos());
+            assertEquals(0, diario.bytesPendientes());
+            assertTrue(diario.leer(diario.puntoControl(), 10).isEmpty());
+        }
+    }
+
+    @Test
+    void abrir_CuandoQuedoUnCortePorFsyncFallido_DeberiaDescartarLoPosterior() throws Exception {
+        // Arrange - Lo último durable fue "confirmada"; las dos siguientes se escribieron pero su fsync falló
+        long corte;
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            corte = diario.agregar(texto("confirmada"));
+            diario.agregar(texto("rechazada-1"));
+            long fin = diario.agregar(texto("rechazada-2"));
+            assertTrue(diario.esperarDurable(fin, 5000));
+        }
+        Files.write(directorio.resolve("corte"), ByteBuffer.allocate(8).putLong(0, corte).array());
+
+        // Act
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 4096)) {
+            long nuevo = diario.agregar(texto("despues"));
+            assertTrue(diario.esperarDurable(nuevo, 5000));
+            List<DiarioSegmentado.Registro> registros = diario.leer(diario.puntoControl(), 10);
+
+            // Assert - Las cortadas no se leen más, quedan en descartados/ y el corte ya se aplicó
+            assertEquals(List.of("confirmada", "despues"), registros.stream().map(this::leer).toList());
+        }
+        try (Stream<Path> descartados = Files.list(directorio.resolve("descartados"))) {
+            assertEquals(List.of("rechazada-1", "rechazada-2"), descartados.sorted()
+                    .map(archivo -> {
+                        try {
+                            return new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }).toList());
+        }
+        assertFalse(Files.exists(directorio.resolve("corte")));
+    }
+
+    @Test
+    void abrir_CuandoQuedoUnSegmentoProcesadoSinBorrar_DeberiaBorrarloAntesDeMapearlo() throws Exception {
+        // Arrange - Como en Windows, donde el segmento mapeado no se pudo borrar al confirmar
+        long fin = 0;
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 256)) {
+            for (int i = 0; i < 20; i++) {
+                fin = diario.agregar(texto("venta-" + i));
+            }
+            assertTrue(diario.esperarDurable(fin, 5000));
+            diario.confirmarLectura(fin);
+            assertEquals(0, diario.segmentosPorBorrar());
+        }
+        Path sobrante = directorio.resolve("diario-000000000000.log");
+        Files.write(sobrante, new byte[256]);
+
+        // Act
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 256)) {
+
+            // Assert
+            assertFalse(Files.exists(sobrante));
+            assertEquals(1, segmentos());
+            assertEquals(fin, diario.puntoControl());
+            assertTrue(diario.leer(diario.puntoControl(), 10).isEmpty());
+        }
+    }
+
+    @Test
+    void agregar_CuandoElRegistroNoEntraEnUnSegmento_DeberiaLanzarExcepcion() throws Exception {
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 64)) {
+            assertThrows(IllegalArgumentException.class, () -> diario.agregar(new byte[100]));
+        }
+    }
+
+    private int segmentos() throws Exception {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return (int) archivos.filter(a -> a.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private static byte[] texto(String valor) {
+        return valor.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String leer(DiarioSegmentado.Registro registro) {
+        return new String(registro.datos(), StandardCharsets.UTF_8);
+    }
+}
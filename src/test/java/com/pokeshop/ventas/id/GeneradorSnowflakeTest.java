@@ -0,0 +1,60 @@
+package com.pokeshop.ventas.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneradorSnowflakeTest {
+
+    @Test
+    void siguiente_DeberiaSerEstrictamenteCreciente() {
+        GeneradorSnowflake generador = GeneradorSnowflake.paraNodo(1);
+
+        long anterior = generador.siguiente();
+        for (int i = 0; i < 100_000; i++) {
+            long actual = generador.siguiente();
+            assertTrue(actual > anterior);
+            anterior = actual;
+        }
+    }
+
+    @Test
+    void siguiente_CuandoVariosHilosGeneranALaVez_NoDeberiaRepetirIds() throws Exception {
+        GeneradorSnowflake generador = GeneradorSnowflake.paraNodo(2);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        for (int h = 0; h < 8; h++) {
+            hilos.execute(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    ids.add(generador.siguiente());
+                }
+            });
+        }
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(160_000, ids.size());
+    }
+
+    @Test
+    void siguiente_DeberiaCodificarElNodo() {
+        long idNodo3 = GeneradorSnowflake.paraNodo(3).siguiente();
+        long idNodo4 = GeneradorSnowflake.paraNodo(4).siguiente();
+
+        assertEquals(3, GeneradorSnowflake.nodoDe(idNodo3));
+        assertEquals(4, GeneradorSnowflake.nodoDe(idNodo4));
+        assertNotEquals(idNodo3, idNodo4);
+    }
+
+    @Test
+    void paraNodo_CuandoNodoFueraDeRango_DeberiaLanzarExcepcion() {
+        assertThrows(IllegalArgumentException.class, () -> GeneradorSnowflake.paraNodo(GeneradorSnowflake.NODO_MAXIMO + 1));
+    }
+}
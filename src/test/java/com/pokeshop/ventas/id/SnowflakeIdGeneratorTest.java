@@ -0,0 +1,66 @@
+package com.pokeshop.ventas.id;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Levanta Hibernate de verdad (H2 embebida): un constructor que Hibernate no reconoce solo falla aquí
+@DataJpaTest(properties = "ventas.id.nodo=7")
+class SnowflakeIdGeneratorTest {
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Test
+    void guardar_DeberiaAsignarIdsSnowflakeDelNodoConfigurado() {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdUsuario(1L);
+        venta.setFecha(LocalDateTime.now());
+        venta.setSubtotal(100.0);
+        venta.setIva(19.0);
+        venta.setTotal(119.0);
+        venta.setEstado("COMPLETADA");
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdProducto(100L);
+        detalle.setNombreProducto("Pokemon Plush");
+        detalle.setCantidad(1);
+        detalle.setPrecioUnitario(100.0);
+        detalle.setVenta(venta);
+        venta.getDetalles().add(detalle);
+
+        // Act
+        Venta guardada = ventaRepository.saveAndFlush(venta);
+
+        // Assert
+        assertNotNull(guardada.getIdVenta());
+        assertEquals(7, GeneradorSnowflake.nodoDe(guardada.getIdVenta()));
+        assertEquals(7, GeneradorSnowflake.nodoDe(guardada.getDetalles().get(0).getIdDetalle()));
+    }
+
+    @Test
+    void guardar_ConIdYaAsignado_DeberiaRespetarlo() {
+        // Arrange - Como las ventas del diario, que llegan con su id
+        Venta venta = new Venta();
+        venta.setIdVenta(123456789L);
+        venta.setIdUsuario(1L);
+        venta.setFecha(LocalDateTime.now());
+        venta.setSubtotal(0.0);
+        venta.setIva(0.0);
+        venta.setTotal(0.0);
+        venta.setEstado("COMPLETADA");
+
+        // Act
+        ventaRepository.saveAndFlush(venta);
+
+        // Assert
+        assertTrue(ventaRepository.findById(123456789L).isPresent());
+    }
+}
@@ -0,0 +1,132 @@
+package com.pokeshop.ventas.resiliencia;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong reloj = new AtomicLong();
+
+    @Test
+    void registrarFallo_CuandoSuperaElUmbral_DeberiaAbrirYRechazar() {
+        // Arrange - ventana de 10, se abre con 50% de fallos tras al menos 4 llamadas
+        CircuitBreaker circuito = new CircuitBreaker(10, 0.5, 4, 1000, 2, reloj::get);
+
+        // Act
+        for (int i = 0; i < 2; i++) {
+            assertTrue(circuito.permitir());
+            circuito.registrarExito();
+            assertTrue(circuito.permitir());
+            circuito.registrarFallo();
+        }
+
+        // Assert
+        assertEquals(CircuitBreaker.Estado.ABIERTO, circuito.estado());
+        assertFalse(circuito.permitir());
+        assertEquals(1, circuito.segundosHastaPrueba());
+    }
+
+    @Test
+    void permitir_PasadaLaEspera_DeberiaDejarSoloLasPruebasYCerrarSiSalenBien() {
+        // Arrange
+        CircuitBreaker circuito = new CircuitBreaker(10, 0.5, 2, 1000, 2, reloj::get);
+        circuito.permitir();
+        circuito.registrarFallo();
+        circuito.permitir();
+        circuito.registrarFallo();
+        assertEquals(CircuitBreaker.Estado.ABIERTO, circuito.estado());
+
+        // Act
+        reloj.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        boolean primera = circuito.permitir();
+        boolean segunda = circuito.permitir();
+        boolean tercera = circuito.permitir();
+
+        // Assert - Semiabierto: solo pasan las 2 llamadas de prueba
+        assertTrue(primera);
+        assertTrue(segunda);
+        assertFalse(tercera);
+        circuito.registrarExito();
+        circuito.registrarExito();
+        assertEquals(CircuitBreaker.Estado.CERRADO, circuito.estado());
+    }
+
+    @Test
+    void registrarFallo_CuandoFallaUnaPrueba_DeberiaVolverAAbrir() {
+        CircuitBreaker circuito = new CircuitBreaker(10, 0.5, 1, 1000, 3, reloj::get);
+        circuito.permitir();
+        circuito.registrarFallo();
+        reloj.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        assertTrue(circuito.permitir());
+        circuito.registrarFallo();
+
+        assertEquals(CircuitBreaker.Estado.ABIERTO, circuito.estado());
+        assertFalse(circuito.permitir());
+    }
+
+    @Test
+    void ejecutar_ConRespuestas404_NoDeberiaAbrirElCircuito() {
+        // Arrange
+        ProteccionServicio proteccion = new ProteccionServicio("usuarios",
+                new CircuitBreaker(10, 0.5, 2, 1000, 1, reloj::get),
+                new LimitadorAimd(10, 1, 10, 1000, 0.9));
+
+        // Act - Un usuario inexistente es una respuesta normal del servicio
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpClientErrorException.NotFound.class, () -> proteccion.ejecutar(() -> {
+                throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null);
+            }));
+        }
+
+        // Assert
+        assertEquals(CircuitBreaker.Estado.CERRADO, proteccion.estadoCircuito());
+    }
+
+    @Test
+    void ejecutar_ConErroresDeConexion_DeberiaAbrirYLuegoRechazarSinLlamar() {
+        // Arrange
+        ProteccionServicio proteccion = new ProteccionServicio("productos",
+                new CircuitBreaker(10, 0.5, 2, 1000, 1, reloj::get),
+                new LimitadorAimd(10, 1, 10, 1000, 0.9));
+        AtomicLong llamadas = new AtomicLong();
+        for (int i = 0; i < 2; i++) {
+            assertThrows(ResourceAccessException.class, () -> proteccion.ejecutar(() -> {
+                llamadas.incrementAndGet();
+                throw new ResourceAccessException("Connection refused");
+            }));
+        }
+
+        // Act & Assert
+        ServicioNoDisponibleException rechazo = assertThrows(ServicioNoDisponibleException.class,
+                () -> proteccion.ejecutar(llamadas::incrementAndGet));
+        assertEquals("productos", rechazo.getServicio());
+        assertEquals(2, llamadas.get());
+    }
+
+    @Test
+    void ejecutar_ConElLimiteLleno_DeberiaRechazarYDevolverElPermisoDePrueba() {
+        // Arrange - Circuito semiabierto con una sola llamada de prueba y el límite ocupado
+        CircuitBreaker circuito = new CircuitBreaker(10, 0.5, 1, 1000, 1, reloj::get);
+        circuito.permitir();
+        circuito.registrarFallo();
+        reloj.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        LimitadorAimd limitador = new LimitadorAimd(1, 1, 1, 1000, 0.9);
+        limitador.adquirir();
+        ProteccionServicio proteccion = new ProteccionServicio("productos", circuito, limitador);
+
+        // Act
+        assertThrows(ServicioNoDisponibleException.class, () -> proteccion.ejecutar(() -> "ok"));
+
+        // Assert - La prueba no se gastó: la siguiente llamada todavía puede salir
+        assertTrue(circuito.permitir());
+    }
+}
@@ -0,0 +1,100 @@
+package com.pokeshop.ventas.resiliencia;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitadorAimdTest {
+
+    private static final long RAPIDA = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long LENTA = TimeUnit.MILLISECONDS.toNanos(900);
+
+    private final AtomicLong reloj = new AtomicLong();
+
+    @Test
+    void adquirir_CuandoSeAlcanzaElLimite_DeberiaRechazarAlInstante() {
+        LimitadorAimd limitador = new LimitadorAimd(3, 1, 10, 500, 0.5);
+
+        assertTrue(limitador.adquirir());
+        assertTrue(limitador.adquirir());
+        assertTrue(limitador.adquirir());
+        assertFalse(limitador.adquirir());
+        assertEquals(3, limitador.enVuelo());
+    }
+
+    @Test
+    void liberar_ConRespuestasLentas_DeberiaReducirElLimiteHastaElMinimo() {
+        // Arrange
+        LimitadorAimd limitador = new LimitadorAimd(8, 2, 10, 500, 0.5, reloj::get);
+
+        // Act - Una llamada lenta tras otra: cada una salió después de la reducción anterior
+        for (int i = 0; i < 5; i++) {
+            limitador.adquirir();
+            reloj.addAndGet(LENTA);
+            limitador.liberar(LENTA, false);
+        }
+
+        // Assert
+        assertEquals(2, limitador.limite());
+        assertEquals(0, limitador.enVuelo());
+    }
+
+    @Test
+    void liberar_ConVariasLentasDelMismoEpisodio_DeberiaReducirUnaSolaVez() {
+        // Arrange - Seis llamadas salen juntas y todas tardan de más
+        LimitadorAimd limitador = new LimitadorAimd(8, 2, 10, 500, 0.5, reloj::get);
+        for (int i = 0; i < 6; i++) {
+            limitador.adquirir();
+        }
+        reloj.addAndGet(LENTA);
+
+        // Act
+        for (int i = 0; i < 6; i++) {
+            limitador.liberar(LENTA, false);
+        }
+
+        // Assert - Un solo episodio de lentitud: 8 * 0.5
+        assertEquals(4, limitador.limite());
+
+        // Una llamada que sale después de la reducción y también es lenta sí vuelve a reducir
+        limitador.adquirir();
+        reloj.addAndGet(LENTA);
+        limitador.liberar(LENTA, false);
+        assertEquals(2, limitador.limite());
+    }
+
+    @Test
+    void liberar_ConRespuestasRapidasYLimiteEnUso_DeberiaSubirSinPasarElMaximo() {
+        // Arrange
+        LimitadorAimd limitador = new LimitadorAimd(2, 1, 4, 500, 0.5);
+
+        // Act - Siempre con el límite lleno, como bajo carga
+        for (int i = 0; i < 200; i++) {
+            int enUso = 0;
+            while (limitador.adquirir()) {
+                enUso++;
+            }
+            for (int j = 0; j < enUso; j++) {
+                limitador.liberar(RAPIDA, false);
+            }
+        }
+
+        // Assert
+        assertEquals(4, limitador.limite());
+    }
+
+    @Test
+    void liberar_ConRespuestasRapidasYPocoUso_NoDeberiaSubir() {
+        LimitadorAimd limitador = new LimitadorAimd(10, 1, 50, 500, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            limitador.adquirir();
+            limitador.liberar(RAPIDA, false);
+        }
+
+        assertEquals(10, limitador.limite());
+    }
+}
@@ -0,0 +1,125 @@
+package com.pokeshop.ventas.resiliencia;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolicitudesConCopiaTest {
+
+    private final ExecutorService ejecutor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        ejecutor.shutdownNow();
+    }
+
+    @Test
+    void ejecutar_CuandoRespondeAntesDelRetraso_NoDeberiaMandarCopia() {
+        // Arrange
+        SolicitudesConCopia copias = crear(100, 1.0);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        // Act
+        String resultado = copias.ejecutar(() -> {
+            llamadas.incrementAndGet();
+            return "ok";
+        });
+
+        // Assert
+        assertEquals("ok", resultado);
+        assertEquals(1, llamadas.get());
+    }
+
+    @Test
+    void ejecutar_CuandoLaOriginalSeDemora_DeberiaUsarLaCopia() {
+        // Arrange - La primera llamada tarda 2 s, la copia responde al instante
+        SolicitudesConCopia copias = crear(20, 1.0);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        // Act
+        long inicio = System.nanoTime();
+        String resultado = copias.ejecutar(() -> {
+            if (llamadas.incrementAndGet() == 1) {
+                dormir(2000);
+                return "original";
+            }
+            return "copia";
+        });
+        long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        // Assert
+        assertEquals("copia", resultado);
+        assertEquals(2, llamadas.get());
+        assertTrue(duracionMs < 1000, "Tardó " + duracionMs + " ms");
+    }
+
+    @Test
+    void ejecutar_SinPresupuesto_DeberiaEsperarLaOriginal() {
+        // Arrange
+        SolicitudesConCopia copias = crear(20, 0.0);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        // Act
+        String resultado = copias.ejecutar(() -> {
+            llamadas.incrementAndGet();
+            dormir(100);
+            return "original";
+        });
+
+        // Assert
+        assertEquals("original", resultado);
+        assertEquals(1, llamadas.get());
+    }
+
+    @Test
+    void ejecutar_DeberiaLlevarElPlazoAlHiloDeLaConsulta() {
+        // Arrange
+        SolicitudesConCopia copias = crear(100, 1.0);
+        Plazo plazo = Plazo.en(1000);
+        AtomicReference<Plazo> visto = new AtomicReference<>();
+
+        // Act
+        try (Plazo.Ambito ambito = Plazo.activar(plazo)) {
+            copias.ejecutar(() -> {
+                visto.set(Plazo.actual());
+                return "ok";
+            });
+        }
+
+        // Assert
+        assertSame(plazo, visto.get());
+        assertNull(Plazo.actual());
+    }
+
+    @Test
+    void percentilMovil_ConSuficientesMuestras_DeberiaDevolverElPercentil() {
+        PercentilMovil p95 = new PercentilMovil(0.95, 100, 100, 7);
+        assertEquals(7, p95.valor());
+
+        for (long muestra = 1; muestra <= 100; muestra++) {
+            p95.registrar(muestra);
+        }
+
+        assertEquals(95, p95.valor());
+    }
+
+    private SolicitudesConCopia crear(long retrasoMs, double presupuesto) {
+        return new SolicitudesConCopia("producto", ejecutor,
+                new PercentilMovil(0.95, 100, 100, TimeUnit.MILLISECONDS.toNanos(retrasoMs)), 1, presupuesto, 1);
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
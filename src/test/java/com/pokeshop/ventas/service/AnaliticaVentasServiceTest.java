@@ -0,0 +1,81 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.AnaliticaVentasDto;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnaliticaVentasServiceTest {
+
+    private AnaliticaVentasService analitica;
+
+    private final long ahora = 1_750_000_000_000L;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        analitica = new AnaliticaVentasService();
+        setPrivateField(analitica, "maximoCandidatos", 3);
+        analitica.iniciar();
+    }
+
+    @Test
+    void consultar_DeberiaSumarTotalesYOrdenarLosProductosMasVendidos() {
+        // Arrange - El producto 7 es el más vendido; hay más productos que candidatos
+        for (long idProducto = 1; idProducto <= 10; idProducto++) {
+            analitica.registrar(venta(1L, idProducto, 1, 10.0), ahora);
+        }
+        analitica.registrar(venta(2L, 7L, 50, 10.0), ahora);
+        analitica.registrar(venta(3L, 8L, 20, 10.0), ahora);
+
+        // Act
+        AnaliticaVentasDto resultado = analitica.consultar(2, ahora);
+
+        // Assert
+        assertEquals(12, resultado.getVentas());
+        assertEquals(80, resultado.getUnidades());
+        assertEquals(7L, resultado.getTopProductos().get(0).getIdProducto());
+        assertTrue(resultado.getTopProductos().get(0).getUnidadesEstimadas() >= 51);
+        assertEquals(8L, resultado.getTopProductos().get(1).getIdProducto());
+    }
+
+    @Test
+    void consultar_DeberiaContarCompradoresDistintosSoloDentroDeLaVentana() {
+        // Arrange - El usuario 1 compró hace 30 minutos; 2 y 3 en el último minuto (3 dos veces)
+        analitica.registrar(venta(1L, 100L, 1, 10.0), ahora - 30 * 60_000);
+        analitica.registrar(venta(2L, 100L, 1, 10.0), ahora);
+        analitica.registrar(venta(3L, 100L, 1, 10.0), ahora);
+        analitica.registrar(venta(3L, 100L, 1, 10.0), ahora);
+
+        // Act
+        AnaliticaVentasDto resultado = analitica.consultar(10, ahora);
+
+        // Assert
+        assertEquals(2, resultado.getCompradoresUltimos5Minutos());
+        assertEquals(3, resultado.getCompradoresVentana());
+        // Una hora y media después ya no queda nadie en la ventana
+        assertEquals(0, analitica.consultar(10, ahora + 90 * 60_000).getCompradoresVentana());
+    }
+
+    private Venta venta(Long idUsuario, Long idProducto, int cantidad, double precio) {
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdProducto(idProducto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(precio);
+        Venta venta = new Venta();
+        venta.setIdUsuario(idUsuario);
+        venta.getDetalles().add(detalle);
+        venta.setTotal(cantidad * precio * 1.19);
+        return venta;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
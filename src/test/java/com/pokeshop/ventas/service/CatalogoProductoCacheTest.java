@@ -0,0 +1,91 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogoProductoCacheTest {
+
+    @Mock
+    private ProductoBatchLoader productoBatchLoader;
+
+    private CatalogoProductoCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = new CatalogoProductoCache();
+        setPrivateField(cache, "productoBatchLoader", productoBatchLoader);
+        cache.iniciar();
+    }
+
+    @Test
+    void obtener_CuandoProductoYaEstaEnCache_NoDeberiaConsultarDeNuevoNiDevolverStock() throws Exception {
+        // Arrange
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto()));
+
+        // Act
+        ProductoExternoDto primera = cache.obtener(100L).get();
+        ProductoExternoDto segunda = cache.obtener(100L).get();
+
+        // Assert - El fallo trae el stock en vivo; el acierto solo nombre y precio
+        assertEquals(10, primera.getStock());
+        assertEquals("Pokemon Plush", segunda.getNombre());
+        assertEquals(19.99, segunda.getPrecio());
+        assertNull(segunda.getStock());
+        verify(productoBatchLoader, times(1)).cargar(100L);
+    }
+
+    @Test
+    void invalidar_DeberiaForzarUnaNuevaConsulta() throws Exception {
+        // Arrange
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto()));
+        cache.obtener(100L).get();
+
+        // Act
+        cache.invalidar(100L);
+        ProductoExternoDto producto = cache.obtener(100L).get();
+
+        // Assert
+        assertEquals(10, producto.getStock());
+        verify(productoBatchLoader, times(2)).cargar(100L);
+    }
+
+    @Test
+    void obtener_CuandoCacheDeshabilitada_DeberiaConsultarSiempre() throws Exception {
+        // Arrange
+        setPrivateField(cache, "habilitado", false);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto()));
+
+        // Act
+        cache.obtener(100L).get();
+        cache.obtener(100L).get();
+
+        // Assert
+        verify(productoBatchLoader, times(2)).cargar(100L);
+    }
+
+    private ProductoExternoDto crearProducto() {
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(100L);
+        producto.setNombre("Pokemon Plush");
+        producto.setPrecio(19.99);
+        producto.setStock(10);
+        return producto;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,233 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.diario.DiarioSegmentado;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DiarioVentasServiceTest {
+
+    @Mock
+    private VentaPersistenciaService ventaPersistenciaService;
+
+    @Mock
+    private VentaRepository ventaRepository;
+
+    @TempDir
+    Path directorio;
+
+    private DiarioVentasService diarioVentasService;
+
+    // Ids de cada llamada a guardarTodas que terminó bien
+    private final List<List<Long>> guardadas = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        diarioVentasService = new DiarioVentasService();
+        setPrivateField(diarioVentasService, "ventaPersistenciaService", ventaPersistenciaService);
+        setPrivateField(diarioVentasService, "ventaRepository", ventaRepository);
+        setPrivateField(diarioVentasService, "habilitado", true);
+        setPrivateField(diarioVentasService, "directorio", directorio.toString());
+        setPrivateField(diarioVentasService, "tamanoSegmentoMb", 1);
+        setPrivateField(diarioVentasService, "reintentoMs", 20L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        diarioVentasService.cerrar();
+    }
+
+    @Test
+    void reproducir_CuandoUnaVentaViolaUnaRestriccion_DeberiaDescartarSoloEsaYSeguir() throws Exception {
+        // Arrange - La venta 2 no se puede guardar nunca
+        doAnswer(inv -> {
+            List<Venta> ventas = inv.getArgument(0);
+            List<Long> ids = ventas.stream().map(Venta::getIdVenta).toList();
+            if (ids.contains(2L)) {
+                throw new DataIntegrityViolationException("Duplicate entry for key 'detalle_venta.PRIMARY'");
+            }
+            guardadas.add(ids);
+            return ventas;
+        }).when(ventaPersistenciaService).guardarTodas(anyList());
+        bloquearReproduccion();
+        diarioVentasService.iniciar();
+
+        // Act
+        for (long id = 1; id <= 3; id++) {
+            diarioVentasService.registrar(crearVenta(id));
+        }
+        liberarReproduccion();
+
+        // Assert - Las otras dos llegan a la base de datos y la 2 queda en descartados
+        esperarHasta(() -> guardadas.stream().mapToLong(List::size).sum() == 2);
+        assertEquals(List.of(1L, 3L), guardadas.stream().flatMap(List::stream).sorted().toList());
+        assertEquals(1, descartados());
+
+        // Una venta posterior no queda trabada detrás de la descartada
+        diarioVentasService.registrar(crearVenta(4L));
+        esperarHasta(() -> guardadas.stream().anyMatch(ids -> ids.contains(4L)));
+    }
+
+    @Test
+    void reproducir_CuandoUnRegistroNoSePuedeLeer_DeberiaDescartarloYGuardarLosDemas() throws Exception {
+        // Arrange - Un registro con una versión de formato desconocida, y después una venta válida
+        try (DiarioSegmentado diario = DiarioSegmentado.abrir(directorio, 1024 * 1024)) {
+            long fin = diario.agregar(new byte[]{99, 1, 2, 3});
+            assertTrue(diario.esperarDurable(fin, 5000));
+        }
+        doAnswer(inv -> {
+            List<Venta> ventas = inv.getArgument(0);
+            guardadas.add(ventas.stream().map(Venta::getIdVenta).toList());
+            return ventas;
+        }).when(ventaPersistenciaService).guardarTodas(anyList());
+        diarioVentasService.iniciar();
+
+        // Act
+        diarioVentasService.registrar(crearVenta(7L));
+
+        // Assert
+        esperarHasta(() -> guardadas.stream().anyMatch(ids -> ids.contains(7L)));
+        assertEquals(1, descartados());
+    }
+
+    @Test
+    void reproducir_CuandoLaBaseDeDatosNoResponde_DeberiaReintentarElLoteSinDescartar() throws Exception {
+        // Arrange - El primer intento falla por conexión
+        AtomicBoolean primerIntento = new AtomicBoolean(true);
+        doAnswer(inv -> {
+            if (primerIntento.getAndSet(false)) {
+                throw new CannotGetJdbcConnectionException("Connection is not available, request timed out");
+            }
+            List<Venta> ventas = inv.getArgument(0);
+            guardadas.add(ventas.stream().map(Venta::getIdVenta).toList());
+            return ventas;
+        }).when(ventaPersistenciaService).guardarTodas(anyList());
+        diarioVentasService.iniciar();
+
+        // Act
+        diarioVentasService.registrar(crearVenta(5L));
+
+        // Assert
+        esperarHasta(() -> !guardadas.isEmpty());
+        assertEquals(List.of(List.of(5L)), guardadas);
+        verify(ventaPersistenciaService, times(2)).guardarTodas(anyList());
+        assertEquals(0, descartados());
+    }
+
+    @Test
+    void estaPendiente_DeberiaSerTrueHastaQueLaVentaLlegaALaBaseDeDatos() throws Exception {
+        // Arrange
+        doAnswer(inv -> {
+            List<Venta> ventas = inv.getArgument(0);
+            guardadas.add(ventas.stream().map(Venta::getIdVenta).toList());
+            return ventas;
+        }).when(ventaPersistenciaService).guardarTodas(anyList());
+        bloquearReproduccion();
+        diarioVentasService.iniciar();
+
+        // Act
+        diarioVentasService.registrar(crearVenta(8L));
+
+        // Assert
+        assertTrue(diarioVentasService.estaPendiente(8L));
+        liberarReproduccion();
+        esperarHasta(() -> !diarioVentasService.estaPendiente(8L));
+        assertEquals(List.of(List.of(8L)), guardadas);
+    }
+
+    @Test
+    void unidadesPendientes_DeberiaSumarPorProductoHastaQueLasVentasLleganALaBaseDeDatos() throws Exception {
+        // Arrange
+        doAnswer(inv -> inv.getArgument(0)).when(ventaPersistenciaService).guardarTodas(anyList());
+        bloquearReproduccion();
+        diarioVentasService.iniciar();
+
+        // Act - Dos ventas de una unidad del producto 1
+        diarioVentasService.registrar(crearVenta(11L));
+        diarioVentasService.registrar(crearVenta(12L));
+
+        // Assert
+        assertEquals(Map.of(1L, 2), diarioVentasService.unidadesPendientes(List.of(1L, 2L)));
+        liberarReproduccion();
+        esperarHasta(() -> diarioVentasService.unidadesPendientes(List.of(1L)).isEmpty());
+    }
+
+    // Con el lote de reproducción en 0 el hilo no lee nada hasta que se libere
+    private void bloquearReproduccion() throws Exception {
+        setPrivateField(diarioVentasService, "tamanoLote", 0);
+    }
+
+    private void liberarReproduccion() throws Exception {
+        setPrivateField(diarioVentasService, "tamanoLote", 500);
+    }
+
+    private long descartados() throws Exception {
+        Path carpeta = directorio.resolve("descartados");
+        if (!Files.exists(carpeta)) {
+            return 0;
+        }
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.count();
+        }
+    }
+
+    private void esperarHasta(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "La condición no se cumplió a tiempo");
+            Thread.sleep(10);
+        }
+    }
+
+    private Venta crearVenta(Long idVenta) {
+        Venta venta = new Venta();
+        venta.setIdVenta(idVenta);
+        venta.setIdUsuario(1L);
+        venta.setFecha(LocalDateTime.now());
+        venta.setSubtotal(100.0);
+        venta.setIva(19.0);
+        venta.setTotal(119.0);
+        venta.setEstado("COMPLETADA");
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdDetalle(idVenta * 10);
+        detalle.setIdProducto(1L);
+        detalle.setNombreProducto("Pikachu Plush");
+        detalle.setCantidad(1);
+        detalle.setPrecioUnitario(100.0);
+        detalle.setVenta(venta);
+        venta.getDetalles().add(detalle);
+        return venta;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,249 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.RespuestaIdempotenteDto;
+import com.pokeshop.ventas.model.RegistroIdempotencia;
+import com.pokeshop.ventas.repository.IdempotenciaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaServiceTest {
+
+    @Mock
+    private IdempotenciaRepository idempotenciaRepository;
+
+    private IdempotenciaService idempotenciaService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotenciaService = new IdempotenciaService();
+        setPrivateField(idempotenciaService, "idempotenciaRepository", idempotenciaRepository);
+        idempotenciaService.iniciar();
+    }
+
+    @Test
+    void ejecutar_CuandoClaveNueva_DeberiaEjecutarYGuardarLaRespuesta() {
+        // Arrange
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+
+        // Act
+        RespuestaIdempotenteDto respuesta = idempotenciaService.ejecutar("clave-1", "huella", () -> venta(200));
+
+        // Assert
+        assertEquals(200, respuesta.getCodigoEstado());
+        assertFalse(respuesta.isRepetida());
+        verify(idempotenciaRepository).reservar(eq("clave-1"), eq("huella"), any(), any());
+        verify(idempotenciaRepository).completar("clave-1", 200, "application/json", null, "{\"idVenta\":1}");
+    }
+
+    @Test
+    void ejecutar_CuandoClaveReciente_DeberiaResponderDesdeMemoriaSinEjecutar() {
+        // Arrange
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        AtomicInteger ejecuciones = new AtomicInteger();
+        idempotenciaService.ejecutar("clave-1", "huella", () -> {
+            ejecuciones.incrementAndGet();
+            return venta(200);
+        });
+
+        // Act
+        RespuestaIdempotenteDto repetida = idempotenciaService.ejecutar("clave-1", "huella", () -> {
+            ejecuciones.incrementAndGet();
+            return venta(200);
+        });
+
+        // Assert
+        assertEquals(1, ejecuciones.get());
+        assertTrue(repetida.isRepetida());
+        assertEquals("{\"idVenta\":1}", repetida.getCuerpo());
+        verify(idempotenciaRepository, times(1)).findById("clave-1");
+    }
+
+    @Test
+    void ejecutar_CuandoReintentoLlegaDuranteLaVenta_DeberiaEsperarLaMismaRespuesta() throws Exception {
+        // Arrange
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+        CompletableFuture<RespuestaIdempotenteDto> original = CompletableFuture.supplyAsync(() ->
+                idempotenciaService.ejecutar("clave-1", "huella", () -> {
+                    enCurso.countDown();
+                    try {
+                        terminar.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return venta(200);
+                }));
+        assertTrue(enCurso.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<RespuestaIdempotenteDto> reintento = CompletableFuture.supplyAsync(() ->
+                idempotenciaService.ejecutar("clave-1", "huella", () -> fail("No debería ejecutarse dos veces")));
+        terminar.countDown();
+
+        // Assert
+        assertFalse(original.get(5, TimeUnit.SECONDS).isRepetida());
+        RespuestaIdempotenteDto repetida = reintento.get(5, TimeUnit.SECONDS);
+        assertTrue(repetida.isRepetida());
+        assertEquals(200, repetida.getCodigoEstado());
+    }
+
+    @Test
+    void ejecutar_CuandoMismaClaveConOtroCuerpo_DeberiaRetornarUnprocessable() {
+        // Arrange
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        idempotenciaService.ejecutar("clave-1", "huella", () -> venta(200));
+
+        // Act
+        RespuestaIdempotenteDto respuesta = idempotenciaService.ejecutar("clave-1", "otra", () -> venta(200));
+
+        // Assert
+        assertEquals(422, respuesta.getCodigoEstado());
+    }
+
+    @Test
+    void ejecutar_CuandoEstaGuardadaEnBaseDeDatos_DeberiaRepetirlaSinEjecutar() {
+        // Arrange
+        RegistroIdempotencia registro = registro(IdempotenciaService.COMPLETADA, LocalDateTime.now().plusHours(1));
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.of(registro));
+
+        // Act
+        RespuestaIdempotenteDto respuesta = idempotenciaService.ejecutar("clave-1", "huella",
+                () -> fail("No debería ejecutarse"));
+
+        // Assert
+        assertEquals(200, respuesta.getCodigoEstado());
+        assertTrue(respuesta.isRepetida());
+        assertEquals("{\"idVenta\":5}", respuesta.getCuerpo());
+        verify(idempotenciaRepository, never()).reservar(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void ejecutar_CuandoOtraInstanciaLaEstaProcesando_DeberiaRetornarConflict() {
+        // Arrange
+        RegistroIdempotencia registro = registro(IdempotenciaService.EN_CURSO, LocalDateTime.now().plusHours(1));
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.of(registro));
+
+        // Act
+        RespuestaIdempotenteDto respuesta = idempotenciaService.ejecutar("clave-1", "huella",
+                () -> fail("No debería ejecutarse"));
+
+        // Assert
+        assertEquals(409, respuesta.getCodigoEstado());
+    }
+
+    @Test
+    void ejecutar_CuandoLaVentaRespondeError5xx_DeberiaLiberarLaClave() {
+        // Arrange
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        // Act
+        idempotenciaService.ejecutar("clave-1", "huella", () -> {
+            ejecuciones.incrementAndGet();
+            return venta(503);
+        });
+        idempotenciaService.ejecutar("clave-1", "huella", () -> {
+            ejecuciones.incrementAndGet();
+            return venta(200);
+        });
+
+        // Assert
+        assertEquals(2, ejecuciones.get());
+        verify(idempotenciaRepository).liberar("clave-1");
+        verify(idempotenciaRepository, times(1)).completar(eq("clave-1"), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void ejecutar_CuandoLaVentaFallaPorTiempoAgotado_ElReintentoDeberiaEjecutarLaVenta() {
+        // Arrange - El 400 por tiempo agotado es pasajero: no se guarda para las próximas 24 h
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        RespuestaIdempotenteDto tiempoAgotado = new RespuestaIdempotenteDto(400, "text/plain;charset=UTF-8", null,
+                "Tiempo de espera agotado al consultar los servicios de Usuarios y Productos.", false, true);
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        // Act
+        RespuestaIdempotenteDto primera = idempotenciaService.ejecutar("clave-1", "huella", () -> {
+            ejecuciones.incrementAndGet();
+            return tiempoAgotado;
+        });
+        RespuestaIdempotenteDto reintento = idempotenciaService.ejecutar("clave-1", "huella", () -> {
+            ejecuciones.incrementAndGet();
+            return venta(200);
+        });
+
+        // Assert
+        assertEquals(400, primera.getCodigoEstado());
+        assertEquals(2, ejecuciones.get());
+        assertEquals(200, reintento.getCodigoEstado());
+        assertFalse(reintento.isRepetida());
+        verify(idempotenciaRepository).liberar("clave-1");
+        verify(idempotenciaRepository, never()).completar(eq("clave-1"), eq(400), any(), any(), any());
+        verify(idempotenciaRepository).completar(eq("clave-1"), eq(200), any(), any(), any());
+    }
+
+    @Test
+    void ejecutar_CuandoLaVentaSeRechazaPorStock_DeberiaGuardarElRechazo() {
+        // Arrange
+        when(idempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+
+        // Act
+        idempotenciaService.ejecutar("clave-1", "huella", () -> venta(400));
+        RespuestaIdempotenteDto repetida = idempotenciaService.ejecutar("clave-1", "huella",
+                () -> fail("No debería ejecutarse"));
+
+        // Assert
+        assertTrue(repetida.isRepetida());
+        assertEquals(400, repetida.getCodigoEstado());
+        verify(idempotenciaRepository).completar(eq("clave-1"), eq(400), any(), any(), any());
+    }
+
+    @Test
+    void huella_DeberiaSerSha256EnHexadecimal() {
+        // Act & Assert
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                IdempotenciaService.huella("abc"));
+    }
+
+    private RespuestaIdempotenteDto venta(int codigo) {
+        return new RespuestaIdempotenteDto(codigo, "application/json", null, "{\"idVenta\":1}", false);
+    }
+
+    private RegistroIdempotencia registro(String estado, LocalDateTime expira) {
+        RegistroIdempotencia registro = new RegistroIdempotencia();
+        registro.setClave("clave-1");
+        registro.setHuella("huella");
+        registro.setEstado(estado);
+        registro.setCodigoEstado(200);
+        registro.setTipoContenido("application/json");
+        registro.setCuerpo("{\"idVenta\":5}");
+        registro.setCreada(LocalDateTime.now());
+        registro.setExpira(expira);
+        return registro;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,208 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.EventoStock;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.EventoStockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxStockServiceTest {
+
+    @Mock
+    private EventoStockRepository eventoStockRepository;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Captor
+    private ArgumentCaptor<List<EventoStock>> eventosGuardados;
+
+    private OutboxStockService outboxStockService;
+
+    private final String productosUrl = "http://localhost:8081/api/v1/productos";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        outboxStockService = new OutboxStockService();
+        setPrivateField(outboxStockService, "eventoStockRepository", eventoStockRepository);
+        setPrivateField(outboxStockService, "restTemplate", restTemplate);
+        setPrivateField(outboxStockService, "productosUrl", productosUrl);
+        setPrivateField(outboxStockService, "modo", "outbox");
+        ProteccionServiciosRemotos proteccion = new ProteccionServiciosRemotos();
+        proteccion.iniciar();
+        setPrivateField(outboxStockService, "proteccion", proteccion);
+    }
+
+    @Test
+    void registrar_DeberiaGuardarUnEventoPorVentaYProducto() {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdVenta(7L);
+        venta.getDetalles().add(detalle(100L, 2));
+        venta.getDetalles().add(detalle(100L, 3));
+        venta.getDetalles().add(detalle(200L, 1));
+
+        // Act
+        outboxStockService.registrar(List.of(venta));
+
+        // Assert
+        verify(eventoStockRepository).saveAll(eventosGuardados.capture());
+        List<EventoStock> eventos = eventosGuardados.getValue();
+        assertEquals(2, eventos.size());
+        assertEquals(100L, eventos.get(0).getIdProducto());
+        assertEquals(5, eventos.get(0).getCantidad());
+        assertEquals(200L, eventos.get(1).getIdProducto());
+        assertEquals(1, eventos.get(1).getCantidad());
+        assertTrue(eventos.stream().allMatch(e -> OutboxStockService.PENDIENTE.equals(e.getEstado()) && e.getIdVenta() == 7L));
+    }
+
+    @Test
+    void registrar_CuandoModoRemoto_NoDeberiaGuardarEventos() throws Exception {
+        // Arrange
+        setPrivateField(outboxStockService, "modo", "remoto");
+        Venta venta = new Venta();
+        venta.getDetalles().add(detalle(100L, 2));
+
+        // Act
+        outboxStockService.registrar(List.of(venta));
+
+        // Assert
+        verifyNoInteractions(eventoStockRepository);
+    }
+
+    @Test
+    void despacharLote_DeberiaEnviarUnSoloDescuentoPorProducto() {
+        // Arrange
+        prepararLote(evento(1L, 100L, 2), evento(2L, 100L, 3), evento(3L, 200L, 1));
+
+        // Act
+        int tomados = outboxStockService.despacharLote();
+
+        // Assert
+        assertEquals(3, tomados);
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=5", null);
+        verify(restTemplate, times(1)).put(productosUrl + "/200/stock?cantidad=1", null);
+        verify(eventoStockRepository).marcar(List.of(1L, 2L), OutboxStockService.ENVIADO, null);
+        verify(eventoStockRepository).marcar(List.of(3L), OutboxStockService.ENVIADO, null);
+    }
+
+    @Test
+    void despacharLote_CuandoLaSumaNoEntra_DeberiaEnviarCadaEventoPorSeparado() {
+        // Arrange
+        prepararLote(evento(1L, 100L, 2), evento(2L, 100L, 3));
+        doNothing().when(restTemplate).put(anyString(), isNull());
+        doThrow(HttpClientErrorException.Conflict.class).when(restTemplate).put(productosUrl + "/100/stock?cantidad=5", null);
+        doThrow(HttpClientErrorException.Conflict.class).when(restTemplate).put(productosUrl + "/100/stock?cantidad=3", null);
+
+        // Act
+        outboxStockService.despacharLote();
+
+        // Assert
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=2", null);
+        verify(eventoStockRepository).marcar(List.of(1L), OutboxStockService.ENVIADO, null);
+        verify(eventoStockRepository).marcar(eq(List.of(2L)), eq(OutboxStockService.RECHAZADO), anyString());
+    }
+
+    @Test
+    void despacharLote_CuandoProductosNoResponde_DeberiaReprogramarConBackoff() {
+        // Arrange
+        prepararLote(evento(1L, 100L, 2));
+        doThrow(new ResourceAccessException("Connection refused")).when(restTemplate).put(anyString(), isNull());
+        LocalDateTime antes = LocalDateTime.now();
+
+        // Act
+        outboxStockService.despacharLote();
+
+        // Assert
+        verify(eventoStockRepository).reprogramar(eq(List.of(1L)), argThat(proximo -> proximo.isAfter(antes)), anyString());
+        verify(eventoStockRepository, never()).marcar(anyList(), eq(OutboxStockService.ENVIADO), any());
+    }
+
+    @Test
+    void despacharLote_CuandoSeAgotanLosIntentos_DeberiaMarcarloFallido() {
+        // Arrange
+        EventoStock evento = evento(1L, 100L, 2);
+        evento.setIntentos(19);
+        prepararLote(evento);
+        doThrow(new ResourceAccessException("Connection refused")).when(restTemplate).put(anyString(), isNull());
+
+        // Act
+        outboxStockService.despacharLote();
+
+        // Assert
+        verify(eventoStockRepository).marcar(eq(List.of(1L)), eq(OutboxStockService.FALLIDO), anyString());
+        verify(eventoStockRepository, never()).reprogramar(anyList(), any(), any());
+    }
+
+    @Test
+    void despacharLote_CuandoNoHayPendientes_NoDeberiaReclamarNada() {
+        // Arrange
+        when(eventoStockRepository.buscarPendientes(any(), any())).thenReturn(List.of());
+
+        // Act & Assert
+        assertEquals(0, outboxStockService.despacharLote());
+        verify(eventoStockRepository, never()).reclamar(anyCollection(), anyString(), any(), any());
+    }
+
+    @Test
+    void esperaReintento_DeberiaCrecerHastaElMaximo() {
+        for (int i = 0; i < 50; i++) {
+            long primera = OutboxStockService.esperaReintento(1, 500, 60000);
+            assertTrue(primera >= 250 && primera <= 500);
+            long tercera = OutboxStockService.esperaReintento(3, 500, 60000);
+            assertTrue(tercera >= 1000 && tercera <= 2000);
+            long tope = OutboxStockService.esperaReintento(40, 500, 60000);
+            assertTrue(tope >= 30000 && tope <= 60000);
+        }
+    }
+
+    private void prepararLote(EventoStock... eventos) {
+        List<Long> ids = Arrays.stream(eventos).map(EventoStock::getIdEvento).toList();
+        when(eventoStockRepository.buscarPendientes(any(), any())).thenReturn(ids);
+        when(eventoStockRepository.reclamar(eq(ids), anyString(), any(), any())).thenReturn(ids.size());
+        when(eventoStockRepository.findByReclamo(anyString())).thenReturn(List.of(eventos));
+    }
+
+    private EventoStock evento(Long idEvento, Long idProducto, int cantidad) {
+        EventoStock evento = new EventoStock();
+        evento.setIdEvento(idEvento);
+        evento.setIdVenta(idEvento * 10);
+        evento.setIdProducto(idProducto);
+        evento.setCantidad(cantidad);
+        evento.setEstado(OutboxStockService.PENDIENTE);
+        evento.setIntentos(0);
+        return evento;
+    }
+
+    private DetalleVenta detalle(Long idProducto, int cantidad) {
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdProducto(idProducto);
+        detalle.setCantidad(cantidad);
+        return detalle;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
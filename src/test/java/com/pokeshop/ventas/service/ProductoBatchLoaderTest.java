@@ -0,0 +1,116 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductoBatchLoaderTest {
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private ProductoBatchLoader loader;
+
+    private final String productosUrl = "http://localhost:8081/api/v1/productos";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        loader = new ProductoBatchLoader();
+        setPrivateField(loader, "restTemplate", restTemplate);
+        setPrivateField(loader, "productosUrl", productosUrl);
+        ProteccionServiciosRemotos proteccion = new ProteccionServiciosRemotos();
+        proteccion.iniciar();
+        setPrivateField(loader, "proteccion", proteccion);
+        setPrivateField(loader, "ventanaMs", 20L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loader.cerrar();
+    }
+
+    @Test
+    void cargar_CuandoVariasVentasPidenElMismoProducto_DeberiaHacerUnaSolaConsulta() throws Exception {
+        // Arrange
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(crearProducto(100L));
+
+        // Act - Dentro de la misma ventana
+        CompletableFuture<ProductoExternoDto> primera = loader.cargar(100L);
+        CompletableFuture<ProductoExternoDto> segunda = loader.cargar(100L);
+
+        // Assert
+        assertSame(primera, segunda);
+        assertEquals(100L, primera.get(1, TimeUnit.SECONDS).getIdProducto());
+        verify(restTemplate, times(1)).getForObject(productosUrl + "/100", ProductoExternoDto.class);
+    }
+
+    @Test
+    void cargar_CuandoHayEndpointMasivo_DeberiaConsultarTodoElLoteDeUnaVez() throws Exception {
+        // Arrange
+        setPrivateField(loader, "productosLoteUrl", productosUrl + "/lote");
+        when(restTemplate.getForObject(startsWith(productosUrl + "/lote?ids="), eq(ProductoExternoDto[].class)))
+            .thenReturn(new ProductoExternoDto[] { crearProducto(100L), crearProducto(200L) });
+
+        // Act
+        CompletableFuture<ProductoExternoDto> producto100 = loader.cargar(100L);
+        CompletableFuture<ProductoExternoDto> producto200 = loader.cargar(200L);
+        CompletableFuture<ProductoExternoDto> producto300 = loader.cargar(300L);
+
+        // Assert
+        assertEquals(100L, producto100.get(1, TimeUnit.SECONDS).getIdProducto());
+        assertEquals(200L, producto200.get(1, TimeUnit.SECONDS).getIdProducto());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> producto300.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(HttpClientErrorException.class, error.getCause());
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(ProductoExternoDto[].class));
+        verify(restTemplate, never()).getForObject(anyString(), eq(ProductoExternoDto.class));
+    }
+
+    @Test
+    void cargar_CuandoSeAlcanzaElMaximoDeIds_DeberiaDespacharSinEsperarLaVentana() throws Exception {
+        // Arrange
+        setPrivateField(loader, "ventanaMs", 60_000L);
+        setPrivateField(loader, "maximoIds", 2);
+        when(restTemplate.getForObject(anyString(), eq(ProductoExternoDto.class)))
+            .thenAnswer(invocation -> crearProducto(Long.valueOf(invocation.<String>getArgument(0).substring(productosUrl.length() + 1))));
+
+        // Act
+        CompletableFuture<ProductoExternoDto> producto100 = loader.cargar(100L);
+        CompletableFuture<ProductoExternoDto> producto200 = loader.cargar(200L);
+
+        // Assert - La ventana de 60 s no se espera
+        assertEquals(100L, producto100.get(1, TimeUnit.SECONDS).getIdProducto());
+        assertEquals(200L, producto200.get(1, TimeUnit.SECONDS).getIdProducto());
+    }
+
+    private ProductoExternoDto crearProducto(Long id) {
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(id);
+        producto.setNombre("Producto " + id);
+        producto.setPrecio(10.0);
+        producto.setStock(10);
+        return producto;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,94 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.ResumenProductoDiarioRepository;
+import com.pokeshop.ventas.repository.ResumenUsuarioMensualRepository;
+import com.pokeshop.ventas.repository.ResumenVentaDiariaRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResumenVentasServiceTest {
+
+    @Mock
+    private ResumenVentaDiariaRepository resumenDiarioRepository;
+
+    @Mock
+    private ResumenProductoDiarioRepository resumenProductoRepository;
+
+    @Mock
+    private ResumenUsuarioMensualRepository resumenUsuarioRepository;
+
+    @InjectMocks
+    private ResumenVentasService resumenVentasService;
+
+    @Test
+    void acumular_CuandoVariasVentasDelMismoDia_DeberiaHacerUnUpsertPorClave() {
+        // Arrange - Dos ventas del mismo usuario y día, con el producto 100 en ambas
+        LocalDateTime fecha = LocalDateTime.of(2025, 3, 15, 10, 0);
+        Venta venta1 = venta(1L, fecha, detalle(100L, 2, 10.0), detalle(200L, 1, 5.0));
+        Venta venta2 = venta(1L, fecha.plusHours(2), detalle(100L, 1, 10.0));
+
+        // Act
+        resumenVentasService.acumular(List.of(venta1, venta2));
+
+        // Assert
+        LocalDate dia = LocalDate.of(2025, 3, 15);
+        verify(resumenDiarioRepository).acumular(dia, 2L, 35.0,
+            venta1.getIva() + venta2.getIva(), venta1.getTotal() + venta2.getTotal());
+        verify(resumenProductoRepository).acumular(dia, 100L, "Producto 100", 3L, 30.0);
+        verify(resumenProductoRepository).acumular(dia, 200L, "Producto 200", 1L, 5.0);
+        verify(resumenUsuarioRepository).acumular(1L, LocalDate.of(2025, 3, 1), 2L, venta1.getTotal() + venta2.getTotal());
+        verifyNoMoreInteractions(resumenDiarioRepository, resumenProductoRepository, resumenUsuarioRepository);
+    }
+
+    @Test
+    void reconstruir_DeberiaRecalcularLosDiasYLosMesesCompletos() {
+        // Act
+        resumenVentasService.reconstruir(LocalDate.of(2025, 1, 20), LocalDate.of(2025, 2, 10));
+
+        // Assert
+        verify(resumenDiarioRepository).borrarRango(LocalDate.of(2025, 1, 20), LocalDate.of(2025, 2, 11));
+        verify(resumenProductoRepository).recalcularRango(
+            LocalDateTime.of(2025, 1, 20, 0, 0), LocalDateTime.of(2025, 2, 11, 0, 0));
+        verify(resumenUsuarioRepository).borrarRango(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 1));
+        verify(resumenUsuarioRepository).recalcularRango(
+            LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 3, 1, 0, 0));
+    }
+
+    private Venta venta(Long idUsuario, LocalDateTime fecha, DetalleVenta... detalles) {
+        Venta venta = new Venta();
+        venta.setIdUsuario(idUsuario);
+        venta.setFecha(fecha);
+        venta.setEstado("COMPLETADA");
+        double subtotal = 0.0;
+        for (DetalleVenta detalle : detalles) {
+            venta.getDetalles().add(detalle);
+            subtotal += detalle.getCantidad() * detalle.getPrecioUnitario();
+        }
+        venta.setSubtotal(subtotal);
+        venta.setIva(subtotal * 0.19);
+        venta.setTotal(subtotal * 1.19);
+        return venta;
+    }
+
+    private DetalleVenta detalle(Long idProducto, int cantidad, double precio) {
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setIdProducto(idProducto);
+        detalle.setNombreProducto("Producto " + idProducto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(precio);
+        return detalle;
+    }
+}
@@ -0,0 +1,136 @@
+package com.pokeshop.ventas.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioExistenciaCacheTest {
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private UsuarioExistenciaCache cache;
+
+    private final String usuariosUrl = "http://localhost:8080/api/v1/users";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = new UsuarioExistenciaCache();
+        setPrivateField(cache, "restTemplate", restTemplate);
+        setPrivateField(cache, "usuariosUrl", usuariosUrl);
+        ProteccionServiciosRemotos proteccion = new ProteccionServiciosRemotos();
+        proteccion.iniciar();
+        setPrivateField(cache, "proteccion", proteccion);
+        cache.iniciar();
+    }
+
+    @Test
+    void existe_CuandoUsuarioExiste_DeberiaConsultarUnaSolaVez() {
+        // Arrange
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class)).thenReturn("{\"id\":1}");
+
+        // Act & Assert
+        assertTrue(cache.existe(1L));
+        assertTrue(cache.existe(1L));
+        verify(restTemplate, times(1)).getForObject(usuariosUrl + "/1", String.class);
+    }
+
+    @Test
+    void existe_CuandoUsuarioNoExiste_DeberiaGuardarElNegativo() {
+        // Arrange
+        when(restTemplate.getForObject(usuariosUrl + "/999", String.class))
+            .thenThrow(HttpClientErrorException.NotFound.class);
+
+        // Act & Assert
+        assertFalse(cache.existe(999L));
+        assertFalse(cache.existe(999L));
+        verify(restTemplate, times(1)).getForObject(usuariosUrl + "/999", String.class);
+    }
+
+    @Test
+    void existe_CuandoFallaLaConexion_NoDeberiaGuardarElError() {
+        // Arrange
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenThrow(new ResourceAccessException("Connection refused"))
+            .thenReturn("{\"id\":1}");
+
+        // Act & Assert
+        assertThrows(ResourceAccessException.class, () -> cache.existe(1L));
+        assertTrue(cache.existe(1L));
+        verify(restTemplate, times(2)).getForObject(usuariosUrl + "/1", String.class);
+    }
+
+    @Test
+    void existe_CuandoUsuariosNoSoportaHead_DeberiaVolverAGet() throws Exception {
+        // Arrange
+        setPrivateField(cache, "verificarConHead", true);
+        when(restTemplate.headForHeaders(usuariosUrl + "/1"))
+            .thenThrow(HttpClientErrorException.MethodNotAllowed.class);
+        when(restTemplate.getForObject(anyString(), eq(String.class))).thenReturn("{}");
+
+        // Act
+        assertTrue(cache.existe(1L));
+        assertTrue(cache.existe(2L));
+
+        // Assert - Tras el primer 405 ya no se intenta HEAD
+        verify(restTemplate, times(1)).headForHeaders(anyString());
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(String.class));
+    }
+
+    @Test
+    void existe_CuandoSeVerificaConHead_NoDeberiaDescargarElUsuario() throws Exception {
+        // Arrange
+        setPrivateField(cache, "verificarConHead", true);
+        when(restTemplate.headForHeaders(usuariosUrl + "/1")).thenReturn(new HttpHeaders());
+
+        // Act & Assert
+        assertTrue(cache.existe(1L));
+        verify(restTemplate, never()).getForObject(anyString(), eq(String.class));
+    }
+
+    @Test
+    void existe_ConVariasVentasDelMismoUsuarioALaVez_DeberiaConsultarUnaSolaVez() throws Exception {
+        // Arrange - La consulta tarda lo suficiente para que las demás lleguen mientras sigue en curso
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class)).thenAnswer(inv -> {
+            Thread.sleep(200);
+            return "{\"id\":1}";
+        });
+
+        // Act
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                resultados.add(hilos.submit(() -> cache.existe(1L)));
+            }
+        }
+
+        // Assert
+        for (Future<Boolean> resultado : resultados) {
+            assertTrue(resultado.get());
+        }
+        verify(restTemplate, times(1)).getForObject(usuariosUrl + "/1", String.class);
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
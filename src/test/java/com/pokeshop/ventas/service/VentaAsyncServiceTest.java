@@ -0,0 +1,118 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.dto.TicketVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VentaAsyncServiceTest {
+
+    @Mock
+    private VentaService ventaService;
+
+    private VentaAsyncService ventaAsyncService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ventaAsyncService = new VentaAsyncService();
+        setPrivateField(ventaAsyncService, "ventaService", ventaService);
+        setPrivateField(ventaAsyncService, "trabajadores", 1);
+        setPrivateField(ventaAsyncService, "capacidadCola", 1);
+        ventaAsyncService.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ventaAsyncService.cerrar();
+    }
+
+    @Test
+    void encolar_CuandoLaVentaSeProcesa_DeberiaQuedarCompletada() throws Exception {
+        // Arrange
+        Venta venta = new Venta();
+        venta.setIdVenta(10L);
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class))).thenReturn(venta);
+
+        // Act
+        TicketVentaDto ticket = ventaAsyncService.encolar(crearSolicitud());
+
+        // Assert
+        assertEquals("PENDIENTE", ticket.getEstado());
+        TicketVentaDto resultado = esperarResultado(ticket.getIdTicket());
+        assertEquals("COMPLETADA", resultado.getEstado());
+        assertEquals(10L, resultado.getIdVenta());
+    }
+
+    @Test
+    void encolar_CuandoLaVentaFalla_DeberiaQuedarRechazadaConMotivo() throws Exception {
+        // Arrange
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class)))
+            .thenThrow(new RuntimeException("Stock insuficiente para: Pokemon Plush"));
+
+        // Act
+        TicketVentaDto ticket = ventaAsyncService.encolar(crearSolicitud());
+
+        // Assert
+        TicketVentaDto resultado = esperarResultado(ticket.getIdTicket());
+        assertEquals("RECHAZADA", resultado.getEstado());
+        assertEquals("Stock insuficiente para: Pokemon Plush", resultado.getMensaje());
+    }
+
+    @Test
+    void encolar_CuandoColaLlena_DeberiaRechazar() throws Exception {
+        // Arrange - Un trabajador bloqueado y una venta esperando llenan el pool
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(ventaService.crearVenta(any(SolicitudVentaDto.class))).thenAnswer(invocation -> {
+            liberar.await(5, TimeUnit.SECONDS);
+            return new Venta();
+        });
+        ventaAsyncService.encolar(crearSolicitud());
+        ventaAsyncService.encolar(crearSolicitud());
+
+        // Act & Assert
+        try {
+            assertThrows(RejectedExecutionException.class, () -> ventaAsyncService.encolar(crearSolicitud()));
+        } finally {
+            liberar.countDown();
+        }
+    }
+
+    private TicketVentaDto esperarResultado(String idTicket) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        TicketVentaDto ticket = ventaAsyncService.consultar(idTicket);
+        while ("PENDIENTE".equals(ticket.getEstado()) && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+            ticket = ventaAsyncService.consultar(idTicket);
+        }
+        return ticket;
+    }
+
+    private SolicitudVentaDto crearSolicitud() {
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        solicitud.setProductos(Arrays.asList());
+        return solicitud;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
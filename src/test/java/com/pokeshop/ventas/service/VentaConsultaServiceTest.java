@@ -0,0 +1,99 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.PaginaVentasDto;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VentaConsultaServiceTest {
+
+    @Mock
+    private VentaRepository ventaRepository;
+
+    private VentaConsultaService ventaConsultaService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ventaConsultaService = new VentaConsultaService();
+        Field field = VentaConsultaService.class.getDeclaredField("ventaRepository");
+        field.setAccessible(true);
+        field.set(ventaConsultaService, ventaRepository);
+    }
+
+    @Test
+    void buscar_CuandoHayMasResultados_DeberiaRetornarCursorDeLaUltimaVenta() {
+        // Arrange - Se piden 2 y el repositorio devuelve 3 ids (hay página siguiente)
+        LocalDateTime fecha = LocalDateTime.of(2025, 3, 1, 10, 0);
+        when(ventaRepository.buscarIdsPagina(1L, null, null, null, null, null, 3)).thenReturn(List.of(30L, 20L, 10L));
+        // El join fetch devuelve las ventas en otro orden
+        when(ventaRepository.buscarConDetalles(List.of(30L, 20L)))
+            .thenReturn(List.of(venta(20L, fecha), venta(30L, fecha.plusMinutes(1))));
+
+        // Act
+        PaginaVentasDto pagina = ventaConsultaService.buscar(1L, null, null, null, null, 2);
+
+        // Assert
+        assertEquals(List.of(30L, 20L), pagina.getVentas().stream().map(Venta::getIdVenta).toList());
+        assertNotNull(pagina.getSiguienteCursor());
+    }
+
+    @Test
+    void buscar_ConCursor_DeberiaContinuarDesdeLaUltimaVentaDevuelta() {
+        // Arrange
+        LocalDateTime fecha = LocalDateTime.of(2025, 3, 1, 10, 0);
+        when(ventaRepository.buscarIdsPagina(1L, null, null, null, null, null, 2)).thenReturn(List.of(30L, 20L));
+        when(ventaRepository.buscarConDetalles(List.of(30L))).thenReturn(List.of(venta(30L, fecha)));
+        String cursor = ventaConsultaService.buscar(1L, null, null, null, null, 1).getSiguienteCursor();
+
+        when(ventaRepository.buscarIdsPagina(1L, null, null, null, fecha, 30L, 2)).thenReturn(List.of(20L));
+        when(ventaRepository.buscarConDetalles(List.of(20L))).thenReturn(List.of(venta(20L, fecha)));
+
+        // Act
+        PaginaVentasDto pagina = ventaConsultaService.buscar(1L, null, null, null, cursor, 1);
+
+        // Assert - Última página: sin cursor siguiente
+        assertEquals(20L, pagina.getVentas().get(0).getIdVenta());
+        assertNull(pagina.getSiguienteCursor());
+    }
+
+    @Test
+    void buscar_CuandoCursorInvalido_DeberiaLanzarExcepcion() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+            () -> ventaConsultaService.buscar(null, null, null, null, "no-es-un-cursor", 20));
+        assertEquals("El cursor de paginación no es válido.", ex.getMessage());
+        verifyNoInteractions(ventaRepository);
+    }
+
+    @Test
+    void buscar_CuandoNoHayVentas_NoDeberiaConsultarDetalles() {
+        // Arrange
+        when(ventaRepository.buscarIdsPagina(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(List.of());
+
+        // Act
+        PaginaVentasDto pagina = ventaConsultaService.buscar(null, null, null, "COMPLETADA", null, 20);
+
+        // Assert
+        assertTrue(pagina.getVentas().isEmpty());
+        verify(ventaRepository, never()).buscarConDetalles(anyCollection());
+    }
+
+    private Venta venta(Long idVenta, LocalDateTime fecha) {
+        Venta venta = new Venta();
+        venta.setIdVenta(idVenta);
+        venta.setFecha(fecha);
+        return venta;
+    }
+}
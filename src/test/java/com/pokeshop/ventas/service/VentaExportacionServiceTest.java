@@ -0,0 +1,78 @@
+package com.pokeshop.ventas.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VentaExportacionServiceTest {
+
+    private VentaExportacionService exportacionService;
+
+    private final LocalDateTime desde = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private final LocalDateTime hasta = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:exportacion_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table ventas (id_venta bigint primary key, fecha timestamp, id_usuario bigint, " +
+            "estado varchar(50), subtotal double, iva double, total double)");
+        jdbc.execute("create table detalle_venta (id_detalle bigint primary key, id_producto bigint, " +
+            "nombre_producto varchar(255), cantidad int, precio_unitario double, id_venta bigint)");
+        jdbc.update("insert into ventas values (1, '2025-01-10 10:00:00', 7, 'COMPLETADA', 100.0, 19.0, 119.0)");
+        jdbc.update("insert into ventas values (2, '2025-01-11 10:00:00', 8, 'COMPLETADA', 50.0, 9.5, 59.5)");
+        jdbc.update("insert into ventas values (3, '2025-03-01 10:00:00', 9, 'COMPLETADA', 10.0, 1.9, 11.9)");
+        jdbc.update("insert into detalle_venta values (11, 100, 'Pikachu, edición \"especial\"', 1, 60.0, 1)");
+        jdbc.update("insert into detalle_venta values (12, 101, 'Charmander', 2, 20.0, 1)");
+        jdbc.update("insert into detalle_venta values (21, 102, 'Bulbasaur', 1, 50.0, 2)");
+
+        exportacionService = new VentaExportacionService();
+        setPrivateField(exportacionService, "dataSource", dataSource);
+        setPrivateField(exportacionService, "objectMapper", new ObjectMapper());
+        exportacionService.iniciar();
+    }
+
+    @Test
+    void exportar_EnCsv_DeberiaEscribirUnaFilaPorDetalleDelRango() throws Exception {
+        // Act
+        StringWriter salida = new StringWriter();
+        exportacionService.exportar(desde, hasta, VentaExportacionService.CSV, salida);
+
+        // Assert - Cabecera + 3 detalles; la venta de marzo queda fuera del rango
+        String[] lineas = salida.toString().split("\n");
+        assertEquals(4, lineas.length);
+        assertTrue(lineas[0].startsWith("id_venta,fecha"));
+        assertTrue(lineas[1].contains("\"Pikachu, edición \"\"especial\"\"\""));
+        assertTrue(lineas[3].startsWith("2,"));
+    }
+
+    @Test
+    void exportar_EnNdjson_DeberiaEscribirUnaVentaPorLineaConSusDetalles() throws Exception {
+        // Act
+        StringWriter salida = new StringWriter();
+        exportacionService.exportar(desde, hasta, VentaExportacionService.NDJSON, salida);
+
+        // Assert
+        String[] lineas = salida.toString().split("\n");
+        assertEquals(2, lineas.length);
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals("1", mapper.readTree(lineas[0]).get("idVenta").textValue());
+        assertEquals(2, mapper.readTree(lineas[0]).get("detalles").size());
+        assertEquals(1, mapper.readTree(lineas[1]).get("detalles").size());
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
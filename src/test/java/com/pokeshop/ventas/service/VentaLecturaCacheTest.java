@@ -0,0 +1,158 @@
+package com.pokeshop.ventas.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.VentaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VentaLecturaCacheTest {
+
+    @Mock
+    private VentaRepository ventaRepository;
+
+    private VentaLecturaCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = new VentaLecturaCache();
+        setPrivateField(cache, "ventaRepository", ventaRepository);
+        setPrivateField(cache, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        cache.iniciar();
+    }
+
+    @Test
+    void obtener_CuandoVentaCompletadaYaEstaEnCache_NoDeberiaConsultarNiSerializarDeNuevo() {
+        // Arrange
+        when(ventaRepository.buscarConDetalles(List.of(1L))).thenReturn(List.of(crearVenta(1L, "COMPLETADA", 1)));
+
+        // Act
+        VentaLecturaCache.VentaSerializada primera = cache.obtener(1L);
+        VentaLecturaCache.VentaSerializada segunda = cache.obtener(1L);
+
+        // Assert - El acierto devuelve los mismos bytes ya serializados
+        assertSame(primera, segunda);
+        assertTrue(new String(primera.json()).contains("\"idVenta\":\"1\""));
+        assertTrue(primera.etag().startsWith("\"") && primera.etag().endsWith("\""));
+        verify(ventaRepository, times(1)).buscarConDetalles(List.of(1L));
+    }
+
+    @Test
+    void obtener_CuandoVentaNoEstaCompletada_NoDeberiaGuardarla() {
+        // Arrange
+        when(ventaRepository.buscarConDetalles(List.of(2L))).thenReturn(List.of(crearVenta(2L, "PENDIENTE", 1)));
+
+        // Act
+        cache.obtener(2L);
+        cache.obtener(2L);
+
+        // Assert
+        verify(ventaRepository, times(2)).buscarConDetalles(List.of(2L));
+    }
+
+    @Test
+    void obtener_CuandoVentaNoExiste_DeberiaRetornarNull() {
+        // Arrange
+        when(ventaRepository.buscarConDetalles(List.of(3L))).thenReturn(List.of());
+
+        // Act & Assert
+        assertNull(cache.obtener(3L));
+    }
+
+    @Test
+    void obtener_CuandoJsonSuperaElMinimo_DeberiaGuardarTambienLaVersionGzip() throws Exception {
+        // Arrange
+        when(ventaRepository.buscarConDetalles(List.of(4L))).thenReturn(List.of(crearVenta(4L, "COMPLETADA", 40)));
+
+        // Act
+        VentaLecturaCache.VentaSerializada venta = cache.obtener(4L);
+
+        // Assert
+        assertNotNull(venta.gzip());
+        assertTrue(venta.gzip().length < venta.json().length);
+        assertNotEquals(venta.etag(), venta.etagGzip());
+        try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(venta.gzip()))) {
+            assertArrayEquals(venta.json(), entrada.readAllBytes());
+        }
+    }
+
+    @Test
+    void obtener_ConVariasLecturasDeLaMismaVentaALaVez_DeberiaConsultarUnaSolaVez() throws Exception {
+        // Arrange - La consulta tarda lo suficiente para que las demás lleguen mientras sigue en curso
+        when(ventaRepository.buscarConDetalles(List.of(5L))).thenAnswer(inv -> {
+            Thread.sleep(200);
+            return List.of(crearVenta(5L, "COMPLETADA", 1));
+        });
+
+        // Act
+        List<Future<VentaLecturaCache.VentaSerializada>> lecturas = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                lecturas.add(hilos.submit(() -> cache.obtener(5L)));
+            }
+        }
+
+        // Assert
+        VentaLecturaCache.VentaSerializada primera = lecturas.get(0).get();
+        for (Future<VentaLecturaCache.VentaSerializada> lectura : lecturas) {
+            assertSame(primera, lectura.get());
+        }
+        verify(ventaRepository, times(1)).buscarConDetalles(List.of(5L));
+    }
+
+    @Test
+    void obtener_CuandoLaConsultaFalla_DeberiaPropagarElErrorSinGuardarlo() {
+        // Arrange
+        when(ventaRepository.buscarConDetalles(List.of(6L)))
+                .thenThrow(new IllegalStateException("Connection is not available"))
+                .thenReturn(List.of(crearVenta(6L, "COMPLETADA", 1)));
+
+        // Act & Assert
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> cache.obtener(6L));
+        assertEquals("Connection is not available", error.getMessage());
+        assertNotNull(cache.obtener(6L));
+    }
+
+    private Venta crearVenta(Long idVenta, String estado, int cantidadDetalles) {
+        Venta venta = new Venta();
+        venta.setIdVenta(idVenta);
+        venta.setIdUsuario(10L);
+        venta.setSubtotal(100.0);
+        venta.setIva(19.0);
+        venta.setTotal(119.0);
+        venta.setEstado(estado);
+        for (int i = 0; i < cantidadDetalles; i++) {
+            DetalleVenta detalle = new DetalleVenta();
+            detalle.setIdProducto((long) i);
+            detalle.setNombreProducto("Pokemon Plush " + i);
+            detalle.setCantidad(1);
+            detalle.setPrecioUnitario(19.99);
+            detalle.setVenta(venta);
+            venta.getDetalles().add(detalle);
+        }
+        return venta;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
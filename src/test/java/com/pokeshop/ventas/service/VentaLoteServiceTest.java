@@ -0,0 +1,257 @@
+package com.pokeshop.ventas.service;
+
+import com.pokeshop.ventas.dto.ProductoExternoDto;
+import com.pokeshop.ventas.dto.ResultadoVentaLoteDto;
+import com.pokeshop.ventas.dto.SolicitudVentaDto;
+import com.pokeshop.ventas.model.Venta;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VentaLoteServiceTest {
+
+    @Mock
+    private ProductoBatchLoader productoBatchLoader;
+
+    @Mock
+    private UsuarioExistenciaCache usuarioExistenciaCache;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private VentaPersistenciaService ventaPersistenciaService;
+
+    @Mock
+    private AnaliticaVentasService analiticaVentasService;
+
+    private VentaLoteService ventaLoteService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ventaLoteService = new VentaLoteService();
+        setPrivateField(ventaLoteService, "productoBatchLoader", productoBatchLoader);
+        setPrivateField(ventaLoteService, "usuarioExistenciaCache", usuarioExistenciaCache);
+        setPrivateField(ventaLoteService, "stockService", stockService);
+        setPrivateField(ventaLoteService, "ventaPersistenciaService", ventaPersistenciaService);
+        setPrivateField(ventaLoteService, "analiticaVentasService", analiticaVentasService);
+        setPrivateField(ventaLoteService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    @Test
+    void procesar_DeberiaConsultarCadaProductoUnaVezYDescontarAgrupado() {
+        // Arrange - Tres órdenes del mismo producto y dos usuarios
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 10)));
+        simularGuardado();
+
+        List<SolicitudVentaDto> lote = Arrays.asList(
+                crearSolicitud(1L, 100L, 2), crearSolicitud(2L, 100L, 3), crearSolicitud(1L, 100L, 1));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(lote);
+
+        // Assert
+        assertEquals(3, resultados.size());
+        assertTrue(resultados.stream().allMatch(r -> "COMPLETADA".equals(r.getEstado())));
+        verify(productoBatchLoader, times(1)).cargar(100L);
+        verify(usuarioExistenciaCache, times(1)).existe(1L);
+        verify(usuarioExistenciaCache, times(1)).existe(2L);
+        verify(stockService, times(1)).descontarProducto(100L, 6, "Producto 100");
+        verify(ventaPersistenciaService, times(1)).guardarTodas(anyList());
+    }
+
+    @Test
+    void procesar_CuandoElStockNoAlcanzaParaTodas_DeberiaRechazarLasUltimas() {
+        // Arrange - Stock para la primera orden pero no para la segunda
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 5)));
+        simularGuardado();
+
+        List<SolicitudVentaDto> lote = Arrays.asList(crearSolicitud(1L, 100L, 4), crearSolicitud(2L, 100L, 4));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(lote);
+
+        // Assert
+        assertEquals("COMPLETADA", resultados.get(0).getEstado());
+        assertEquals("RECHAZADA", resultados.get(1).getEstado());
+        assertEquals("Stock insuficiente para: Producto 100", resultados.get(1).getMensaje());
+        verify(stockService, times(1)).descontarProducto(100L, 4, "Producto 100");
+    }
+
+    @Test
+    void procesar_CuandoProductosRechazaLaSuma_DeberiaDescontarOrdenPorOrden() {
+        // Arrange - Productos informó 10 pero ya no alcanza para las 6 juntas, ni para la orden de 3
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 10)));
+        simularGuardado();
+        RuntimeException rechazo = new RuntimeException("Stock insuficiente para: Producto 100",
+                new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+        doAnswer(inv -> {
+            int cantidad = inv.getArgument(1);
+            if (cantidad == 6 || cantidad == 3) {
+                throw rechazo;
+            }
+            return null;
+        }).when(stockService).descontarProducto(eq(100L), anyInt(), eq("Producto 100"));
+
+        List<SolicitudVentaDto> lote = Arrays.asList(
+                crearSolicitud(1L, 100L, 2), crearSolicitud(2L, 100L, 3), crearSolicitud(1L, 100L, 1));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(lote);
+
+        // Assert - Solo se rechaza la orden que no entra
+        assertEquals("COMPLETADA", resultados.get(0).getEstado());
+        assertEquals("RECHAZADA", resultados.get(1).getEstado());
+        assertEquals("Stock insuficiente para: Producto 100", resultados.get(1).getMensaje());
+        assertEquals("COMPLETADA", resultados.get(2).getEstado());
+        verify(stockService, times(1)).descontarProducto(100L, 2, "Producto 100");
+        verify(stockService, times(1)).descontarProducto(100L, 1, "Producto 100");
+        verify(ventaPersistenciaService, times(1)).guardarTodas(argThat(ventas -> ventas.size() == 2));
+    }
+
+    @Test
+    void procesar_CuandoElDescuentoAgrupadoFallaPorConexion_DeberiaRechazarSinReintentarOrdenPorOrden() {
+        // Arrange
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 10)));
+        doThrow(new RuntimeException("Error de conexión: No se pudo contactar con la API de Productos"))
+                .when(stockService).descontarProducto(100L, 3, "Producto 100");
+
+        List<SolicitudVentaDto> lote = Arrays.asList(crearSolicitud(1L, 100L, 2), crearSolicitud(2L, 100L, 1));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(lote);
+
+        // Assert
+        assertTrue(resultados.stream().allMatch(r -> "RECHAZADA".equals(r.getEstado())));
+        verify(stockService, times(1)).descontarProducto(anyLong(), anyInt(), anyString());
+        verify(ventaPersistenciaService, never()).guardarTodas(anyList());
+    }
+
+    @Test
+    void procesar_CuandoOrdenInvalidaOUsuarioInexistente_DeberiaRechazarSoloEsaOrden() {
+        // Arrange
+        when(usuarioExistenciaCache.existe(1L)).thenReturn(true);
+        when(usuarioExistenciaCache.existe(999L)).thenReturn(false);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 10)));
+        simularGuardado();
+
+        SolicitudVentaDto sinUsuario = crearSolicitud(null, 100L, 1);
+        List<SolicitudVentaDto> lote = Arrays.asList(crearSolicitud(1L, 100L, 1), sinUsuario, crearSolicitud(999L, 100L, 1));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(lote);
+
+        // Assert
+        assertEquals("COMPLETADA", resultados.get(0).getEstado());
+        assertEquals("El idUsuario es obligatorio", resultados.get(1).getMensaje());
+        assertEquals("El usuario con ID 999 no existe en la base de datos.", resultados.get(2).getMensaje());
+    }
+
+    @Test
+    void procesar_CuandoFallaElGuardado_DeberiaReponerStockYRechazarElBloque() {
+        // Arrange
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 10)));
+        when(ventaPersistenciaService.guardarTodas(anyList())).thenThrow(new RuntimeException("Deadlock"));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(List.of(crearSolicitud(1L, 100L, 2)));
+
+        // Assert
+        assertEquals("RECHAZADA", resultados.get(0).getEstado());
+        verify(stockService, times(1)).reponer(argThat(detalles -> detalles.size() == 1 && detalles.get(0).getCantidad() == 2));
+    }
+
+    private void simularGuardado() {
+        AtomicLong secuencia = new AtomicLong(1);
+        when(ventaPersistenciaService.guardarTodas(anyList())).thenAnswer(invocation -> {
+            List<Venta> ventas = invocation.getArgument(0);
+            ventas.forEach(venta -> venta.setIdVenta(secuencia.getAndIncrement()));
+            return ventas;
+        });
+    }
+
+    @Test
+    void procesar_EnModoOutboxSinStockConocido_DeberiaRechazarSinConfirmar() {
+        // Arrange - Productos respondió sin stock: en modo outbox nadie lo validaría después
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        ProductoExternoDto sinStock = crearProducto(100L, 0);
+        sinStock.setStock(null);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(sinStock));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(List.of(crearSolicitud(1L, 100L, 1)));
+
+        // Assert
+        assertEquals("RECHAZADA", resultados.get(0).getEstado());
+        assertEquals("Stock insuficiente para: Producto 100", resultados.get(0).getMensaje());
+        verify(ventaPersistenciaService, never()).guardarTodas(anyList());
+    }
+
+    @Test
+    void procesar_EnModoOutboxConUnidadesSinEnviar_DeberiaRestarlasDelDisponible() {
+        // Arrange - Productos informa 10, pero 7 ya se vendieron y su evento sigue PENDIENTE
+        when(usuarioExistenciaCache.existe(anyLong())).thenReturn(true);
+        when(productoBatchLoader.cargar(100L)).thenReturn(CompletableFuture.completedFuture(crearProducto(100L, 10)));
+        when(stockService.pendienteDeDescontar(anyCollection())).thenReturn(Map.of(100L, 7));
+        simularGuardado();
+
+        List<SolicitudVentaDto> lote = Arrays.asList(crearSolicitud(1L, 100L, 2), crearSolicitud(2L, 100L, 2));
+
+        // Act
+        List<ResultadoVentaLoteDto> resultados = ventaLoteService.procesar(lote);
+
+        // Assert - Quedan 3: entra la primera y la segunda se rechaza
+        assertEquals("COMPLETADA", resultados.get(0).getEstado());
+        assertEquals("RECHAZADA", resultados.get(1).getEstado());
+        assertEquals("Stock insuficiente para: Producto 100", resultados.get(1).getMensaje());
+        verify(stockService, times(1)).descontarProducto(100L, 2, "Producto 100");
+    }
+
+    private SolicitudVentaDto crearSolicitud(Long idUsuario, Long idProducto, int cantidad) {
+        SolicitudVentaDto.ItemProductoDto item = new SolicitudVentaDto.ItemProductoDto();
+        item.setIdProducto(idProducto);
+        item.setCantidad(cantidad);
+
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(idUsuario);
+        solicitud.setProductos(Arrays.asList(item));
+        return solicitud;
+    }
+
+    private ProductoExternoDto crearProducto(Long id, int stock) {
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(id);
+        producto.setNombre("Producto " + id);
+        producto.setPrecio(10.0);
+        producto.setStock(stock);
+        return producto;
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
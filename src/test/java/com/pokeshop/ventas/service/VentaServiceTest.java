@@ -1,10 +1,16 @@
 package com.pokeshop.ventas.service;
 
+import com.pokeshop.ventas.diario.DiarioNoDisponibleException;
+import com.pokeshop.ventas.diario.VentaPendienteException;
 import com.pokeshop.ventas.dto.ProductoExternoDto;
 import com.pokeshop.ventas.dto.SolicitudVentaDto;
 import com.pokeshop.ventas.model.DetalleVenta;
+import com.pokeshop.ventas.model.EventoStock;
 import com.pokeshop.ventas.model.Venta;
+import com.pokeshop.ventas.repository.EventoStockRepository;
 import com.pokeshop.ventas.repository.VentaRepository;
+import com.pokeshop.ventas.resiliencia.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,11 +22,16 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,9 +46,22 @@ class VentaServiceTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private ResumenVentasService resumenVentasService;
+
+    @Mock
+    private AnaliticaVentasService analiticaVentasService;
+
+    @Mock
+    private EventoStockRepository eventoStockRepository;
+
     @InjectMocks
     private VentaService ventaService;
 
+    private CatalogoProductoCache catalogoProductoCache;
+    private StockService stockService;
+    private OutboxStockService outboxStockService;
+
     private final String usuariosUrl = "http://localhost:8080/api/v1/users";
     private final String productosUrl = "http://localhost:8081/api/v1/productos";
 
@@ -45,7 +69,45 @@ class VentaServiceTest {
     void setUp() throws Exception {
         // Inyectar las propiedades @Value usando reflexión
         setPrivateField(ventaService, "usuariosUrl", usuariosUrl);
-        setPrivateField(ventaService, "productosUrl", productosUrl);
+
+        // Los colaboradores reales usan el RestTemplate y el repositorio simulados,
+        // así se verifican las mismas URLs y guardados que antes
+        ProteccionServiciosRemotos proteccion = new ProteccionServiciosRemotos();
+        proteccion.iniciar();
+        ProductoBatchLoader productoBatchLoader = new ProductoBatchLoader();
+        setPrivateField(productoBatchLoader, "restTemplate", restTemplate);
+        setPrivateField(productoBatchLoader, "productosUrl", productosUrl);
+        setPrivateField(productoBatchLoader, "proteccion", proteccion);
+        catalogoProductoCache = new CatalogoProductoCache();
+        setPrivateField(catalogoProductoCache, "productoBatchLoader", productoBatchLoader);
+        catalogoProductoCache.iniciar();
+        setPrivateField(ventaService, "catalogoProductoCache", catalogoProductoCache);
+
+        UsuarioExistenciaCache usuarioExistenciaCache = new UsuarioExistenciaCache();
+        setPrivateField(usuarioExistenciaCache, "restTemplate", restTemplate);
+        setPrivateField(usuarioExistenciaCache, "usuariosUrl", usuariosUrl);
+        setPrivateField(usuarioExistenciaCache, "proteccion", proteccion);
+        usuarioExistenciaCache.iniciar();
+        setPrivateField(ventaService, "usuarioExistenciaCache", usuarioExistenciaCache);
+
+        outboxStockService = new OutboxStockService();
+        setPrivateField(outboxStockService, "eventoStockRepository", eventoStockRepository);
+        DiarioVentasService diarioVentasService = new DiarioVentasService();
+
+        stockService = new StockService();
+        setPrivateField(stockService, "restTemplate", restTemplate);
+        setPrivateField(stockService, "productosUrl", productosUrl);
+        setPrivateField(stockService, "proteccion", proteccion);
+        setPrivateField(stockService, "outboxStockService", outboxStockService);
+        setPrivateField(stockService, "diarioVentasService", diarioVentasService);
+        setPrivateField(ventaService, "stockService", stockService);
+
+        VentaPersistenciaService ventaPersistenciaService = new VentaPersistenciaService();
+        setPrivateField(ventaPersistenciaService, "ventaRepository", ventaRepository);
+        setPrivateField(ventaPersistenciaService, "resumenVentasService", resumenVentasService);
+        setPrivateField(ventaPersistenciaService, "outboxStockService", outboxStockService);
+        setPrivateField(ventaService, "ventaPersistenciaService", ventaPersistenciaService);
+        setPrivateField(ventaService, "diarioVentasService", diarioVentasService);
     }
 
     @Test
@@ -370,6 +432,387 @@ class VentaServiceTest {
         assertEquals(119.0, ventaCapturada.getTotal(), 0.001); // 100 + 19
     }
 
+    @Test
+    void crearVenta_CuandoProductoRepetidoEnVariasLineas_DeberiaConsultarloUnaVezYValidarStockTotal() {
+        // Arrange - Dos líneas del mismo producto que juntas superan el stock
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+
+        SolicitudVentaDto.ItemProductoDto item1 = new SolicitudVentaDto.ItemProductoDto();
+        item1.setIdProducto(100L);
+        item1.setCantidad(3);
+
+        SolicitudVentaDto.ItemProductoDto item2 = new SolicitudVentaDto.ItemProductoDto();
+        item2.setIdProducto(100L);
+        item2.setCantidad(3);
+        solicitud.setProductos(Arrays.asList(item1, item2));
+
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(100L);
+        producto.setNombre("Pokemon Plush");
+        producto.setPrecio(19.99);
+        producto.setStock(5);
+
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto);
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            ventaService.crearVenta(solicitud);
+        });
+
+        assertEquals("Stock insuficiente para: Pokemon Plush", exception.getMessage());
+        verify(restTemplate, times(1)).getForObject(productosUrl + "/100", ProductoExternoDto.class);
+        verify(restTemplate, never()).put(anyString(), any());
+        verifyNoInteractions(ventaRepository);
+    }
+
+    @Test
+    void crearVenta_CuandoProductosRechazaElDescuento_DeberiaLanzarStockInsuficiente() {
+        // Arrange
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+
+        SolicitudVentaDto.ItemProductoDto item = new SolicitudVentaDto.ItemProductoDto();
+        item.setIdProducto(100L);
+        item.setCantidad(2);
+        solicitud.setProductos(Arrays.asList(item));
+
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(100L);
+        producto.setNombre("Pokemon Plush");
+        producto.setPrecio(19.99);
+        producto.setStock(10);
+
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto);
+
+        // El stock cambió entre la lectura y el descuento
+        doThrow(HttpClientErrorException.Conflict.class).when(restTemplate).put(anyString(), isNull());
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            ventaService.crearVenta(solicitud);
+        });
+
+        assertEquals("Stock insuficiente para: Pokemon Plush", exception.getMessage());
+        verifyNoInteractions(ventaRepository);
+    }
+
+    @Test
+    void crearVenta_CuandoFallaElGuardado_DeberiaReponerElStockDescontado() {
+        // Arrange
+        SolicitudVentaDto solicitud = crearSolicitudVentaValida();
+
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+
+        ProductoExternoDto producto1 = new ProductoExternoDto();
+        producto1.setIdProducto(100L);
+        producto1.setNombre("Pokemon Plush");
+        producto1.setPrecio(19.99);
+        producto1.setStock(10);
+
+        ProductoExternoDto producto2 = new ProductoExternoDto();
+        producto2.setIdProducto(200L);
+        producto2.setNombre("Pokemon Card");
+        producto2.setPrecio(5.99);
+        producto2.setStock(20);
+
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto1);
+        when(restTemplate.getForObject(productosUrl + "/200", ProductoExternoDto.class))
+            .thenReturn(producto2);
+
+        when(ventaRepository.save(any(Venta.class))).thenThrow(new RuntimeException("Deadlock"));
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            ventaService.crearVenta(solicitud);
+        });
+
+        assertTrue(exception.getMessage().contains("se repuso el stock"));
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=2", null);
+        verify(restTemplate, times(1)).put(productosUrl + "/200/stock?cantidad=1", null);
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=-2", null);
+        verify(restTemplate, times(1)).put(productosUrl + "/200/stock?cantidad=-1", null);
+    }
+
+    @Test
+    void crearVenta_CuandoElDiarioFallaAntesDeEscribir_DeberiaReponerElStockDescontado() throws Exception {
+        // Arrange
+        DiarioVentasService diario = mock(DiarioVentasService.class);
+        when(diario.estaHabilitado()).thenReturn(true);
+        when(diario.registrar(any(Venta.class))).thenThrow(new IllegalStateException("El diario está cerrado."));
+        setPrivateField(ventaService, "diarioVentasService", diario);
+        simularConsultasDeVentaValida();
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> ventaService.crearVenta(crearSolicitudVentaValida()));
+
+        assertTrue(exception.getMessage().contains("se repuso el stock"));
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=-2", null);
+        verify(restTemplate, times(1)).put(productosUrl + "/200/stock?cantidad=-1", null);
+    }
+
+    @Test
+    void crearVenta_CuandoFallaElFsyncDelDiario_DeberiaReponerStockYResponderNoDisponible() throws Exception {
+        // Arrange - Tras un fsync fallido la venta no se guardará nunca
+        DiarioVentasService diario = mock(DiarioVentasService.class);
+        when(diario.estaHabilitado()).thenReturn(true);
+        when(diario.registrar(any(Venta.class))).thenThrow(new DiarioNoDisponibleException(
+                "No se pudo sincronizar el diario con el disco: Input/output error", new UncheckedIOException(new IOException())));
+        setPrivateField(ventaService, "diarioVentasService", diario);
+        simularConsultasDeVentaValida();
+
+        // Act & Assert - 503 y no 202: nada indica que vaya a llegar a la base de datos
+        ServicioNoDisponibleException exception = assertThrows(ServicioNoDisponibleException.class,
+                () -> ventaService.crearVenta(crearSolicitudVentaValida()));
+
+        assertTrue(exception.getMessage().contains("se repuso el stock"));
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=-2", null);
+        verify(restTemplate, times(1)).put(productosUrl + "/200/stock?cantidad=-1", null);
+    }
+
+    @Test
+    void crearVenta_CuandoElDiarioNoConfirmaATiempo_DeberiaQuedarPendienteSinReponerStock() throws Exception {
+        // Arrange - La venta ya se escribió en el diario: se guardará igual
+        DiarioVentasService diario = mock(DiarioVentasService.class);
+        when(diario.estaHabilitado()).thenReturn(true);
+        when(diario.registrar(any(Venta.class))).thenThrow(new VentaPendienteException(42L, "tiempo de espera agotado"));
+        setPrivateField(ventaService, "diarioVentasService", diario);
+        simularConsultasDeVentaValida();
+
+        // Act & Assert
+        VentaPendienteException exception = assertThrows(VentaPendienteException.class,
+                () -> ventaService.crearVenta(crearSolicitudVentaValida()));
+
+        assertEquals(42L, exception.getIdVenta());
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=2", null);
+        verify(restTemplate, never()).put(productosUrl + "/100/stock?cantidad=-2", null);
+        verify(restTemplate, never()).put(productosUrl + "/200/stock?cantidad=-1", null);
+    }
+
+    @Test
+    void crearVenta_CuandoSegundaLineaEsRechazada_DeberiaReponerLaPrimera() {
+        // Arrange
+        SolicitudVentaDto solicitud = crearSolicitudVentaValida();
+
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+
+        ProductoExternoDto producto1 = new ProductoExternoDto();
+        producto1.setIdProducto(100L);
+        producto1.setNombre("Pokemon Plush");
+        producto1.setPrecio(19.99);
+        producto1.setStock(10);
+
+        ProductoExternoDto producto2 = new ProductoExternoDto();
+        producto2.setIdProducto(200L);
+        producto2.setNombre("Pokemon Card");
+        producto2.setPrecio(5.99);
+        producto2.setStock(20);
+
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto1);
+        when(restTemplate.getForObject(productosUrl + "/200", ProductoExternoDto.class))
+            .thenReturn(producto2);
+
+        doNothing().when(restTemplate).put(anyString(), isNull());
+        doThrow(HttpClientErrorException.Conflict.class)
+            .when(restTemplate).put(productosUrl + "/200/stock?cantidad=1", null);
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            ventaService.crearVenta(solicitud);
+        });
+
+        assertEquals("Stock insuficiente para: Pokemon Card", exception.getMessage());
+        verify(restTemplate, times(1)).put(productosUrl + "/100/stock?cantidad=-2", null);
+        verifyNoInteractions(ventaRepository);
+    }
+
+    @Test
+    void crearVenta_EnModoOutboxConProductoEnCache_DeberiaValidarElStockEnVivo() throws Exception {
+        // Arrange - Nombre y precio ya están en la caché, pero en modo outbox ningún PUT valida el stock
+        setPrivateField(stockService, "modo", "outbox");
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        SolicitudVentaDto.ItemProductoDto item = new SolicitudVentaDto.ItemProductoDto();
+        item.setIdProducto(100L);
+        item.setCantidad(10);
+        solicitud.setProductos(Arrays.asList(item));
+
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(100L);
+        producto.setNombre("Pokemon Plush");
+        producto.setPrecio(19.99);
+        producto.setStock(5);
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto);
+        catalogoProductoCache.obtener(100L).get();
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> ventaService.crearVenta(solicitud));
+
+        assertEquals("Stock insuficiente para: Pokemon Plush", exception.getMessage());
+        verify(restTemplate, times(2)).getForObject(productosUrl + "/100", ProductoExternoDto.class);
+        verifyNoInteractions(ventaRepository);
+    }
+
+    @Test
+    void crearVenta_EnModoOutboxConDosVentasSeguidasAntesDelDespacho_DeberiaRestarLoPendiente() throws Exception {
+        // Arrange - Productos informa 5 unidades hasta que el despachador envíe el descuento
+        setPrivateField(stockService, "modo", "outbox");
+        setPrivateField(outboxStockService, "modo", "outbox");
+        List<EventoStock> eventos = new ArrayList<>();
+        when(eventoStockRepository.saveAll(anyList())).thenAnswer(inv -> {
+            eventos.addAll(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(eventoStockRepository.sumarPendientesPorProducto(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return eventos.stream()
+                .filter(evento -> ids.contains(evento.getIdProducto()))
+                .filter(evento -> OutboxStockService.PENDIENTE.equals(evento.getEstado()))
+                .collect(Collectors.groupingBy(EventoStock::getIdProducto,
+                    Collectors.summingInt(EventoStock::getCantidad)))
+                .entrySet().stream()
+                .map(fila -> new Object[]{fila.getKey(), (long) fila.getValue()})
+                .toList();
+        });
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+        ProductoExternoDto producto = new ProductoExternoDto();
+        producto.setIdProducto(100L);
+        producto.setNombre("Pokemon Plush");
+        producto.setPrecio(19.99);
+        producto.setStock(5);
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(1L);
+        SolicitudVentaDto.ItemProductoDto item = new SolicitudVentaDto.ItemProductoDto();
+        item.setIdProducto(100L);
+        item.setCantidad(3);
+        solicitud.setProductos(Arrays.asList(item));
+
+        // Act - La primera entra; su evento sigue PENDIENTE cuando llega la segunda
+        ventaService.crearVenta(solicitud);
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> ventaService.crearVenta(solicitud));
+
+        // Assert - Quedan 2 unidades, no 5
+        assertEquals("Stock insuficiente para: Pokemon Plush", exception.getMessage());
+        assertEquals(1, eventos.size());
+        verify(ventaRepository, times(1)).save(any(Venta.class));
+        verify(restTemplate, never()).put(anyString(), isNull());
+    }
+
+    @Test
+    void crearVenta_CuandoHayRegistroDeMetricas_DeberiaMedirCadaFaseYElResultado() throws Exception {
+        // Arrange
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        setPrivateField(ventaService, "meterRegistry", registro);
+        SolicitudVentaDto solicitud = crearSolicitudVentaValida();
+
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+
+        ProductoExternoDto producto1 = new ProductoExternoDto();
+        producto1.setIdProducto(100L);
+        producto1.setNombre("Pokemon Plush");
+        producto1.setPrecio(19.99);
+        producto1.setStock(10);
+
+        ProductoExternoDto producto2 = new ProductoExternoDto();
+        producto2.setIdProducto(200L);
+        producto2.setNombre("Pokemon Card");
+        producto2.setPrecio(5.99);
+        producto2.setStock(20);
+
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto1);
+        when(restTemplate.getForObject(productosUrl + "/200", ProductoExternoDto.class))
+            .thenReturn(producto2);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        ventaService.crearVenta(solicitud);
+
+        // Assert
+        assertEquals(1, registro.get("ventas.fase").tag("fase", "validar_usuario").timer().count());
+        assertEquals(2, registro.get("ventas.fase").tag("fase", "obtener_producto").timer().count());
+        assertEquals(1, registro.get("ventas.fase").tag("fase", "consultas_remotas").timer().count());
+        assertEquals(1, registro.get("ventas.fase").tag("fase", "armar_venta").timer().count());
+        assertEquals(1, registro.get("ventas.fase").tag("fase", "descontar_stock").timer().count());
+        assertEquals(1, registro.get("ventas.fase").tag("fase", "guardar").timer().count());
+        assertEquals(1, registro.get("ventas.crear").tag("resultado", "completada").timer().count());
+        assertNull(registro.find("ventas.rechazos").counter());
+    }
+
+    @Test
+    void crearVenta_CuandoUsuarioNoExisteYHayRegistroDeMetricas_DeberiaContarElRechazoPorMotivo() throws Exception {
+        // Arrange
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        setPrivateField(ventaService, "meterRegistry", registro);
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(999L);
+        solicitud.setProductos(Arrays.asList());
+
+        when(restTemplate.getForObject(usuariosUrl + "/999", String.class))
+            .thenThrow(HttpClientErrorException.NotFound.class);
+
+        // Act
+        assertThrows(RuntimeException.class, () -> ventaService.crearVenta(solicitud));
+
+        // Assert
+        assertEquals(1.0, registro.get("ventas.rechazos").tag("motivo", "usuario_no_encontrado").counter().count());
+        assertEquals(1, registro.get("ventas.crear").tag("resultado", "rechazada").timer().count());
+        assertNull(registro.find("ventas.fase").tag("fase", "guardar").timer());
+    }
+
+    @Test
+    void crearVenta_CuandoUsuariosFallaRepetidamente_DeberiaAbrirElCircuitoYRechazarSinLlamar() throws Exception {
+        // Arrange - Con la configuración por defecto el circuito se abre tras 20 llamadas con 50% de fallos
+        when(restTemplate.getForObject(startsWith(usuariosUrl + "/"), eq(String.class)))
+            .thenThrow(new ResourceAccessException("Read timed out"));
+        for (long idUsuario = 1; idUsuario <= 20; idUsuario++) {
+            SolicitudVentaDto solicitud = new SolicitudVentaDto();
+            solicitud.setIdUsuario(idUsuario);
+            solicitud.setProductos(Arrays.asList());
+            assertThrows(RuntimeException.class, () -> ventaService.crearVenta(solicitud));
+        }
+        SolicitudVentaDto solicitud = new SolicitudVentaDto();
+        solicitud.setIdUsuario(21L);
+        solicitud.setProductos(Arrays.asList());
+
+        // Act & Assert - La excepción no queda envuelta como "Error inesperado al validar usuario"
+        assertThrows(ServicioNoDisponibleException.class, () -> ventaService.crearVenta(solicitud));
+        verify(restTemplate, never()).getForObject(usuariosUrl + "/21", String.class);
+        verifyNoInteractions(ventaRepository);
+    }
+
+    @Test
+    void motivoRechazo_DeberiaClasificarLosMensajesDeCadaFase() {
+        assertEquals("servicio_no_disponible", VentaService.motivoRechazo(new ServicioNoDisponibleException("usuarios", "circuito abierto", 5)));
+        assertEquals("stock_insuficiente", VentaService.motivoRechazo(new RuntimeException("Stock insuficiente para: Pokemon Plush")));
+        assertEquals("producto_no_encontrado", VentaService.motivoRechazo(new RuntimeException("Error: Producto ID 100 no encontrado.")));
+        assertEquals("error_conexion", VentaService.motivoRechazo(new RuntimeException("Error de conexión: No se pudo contactar con la API de Usuarios")));
+        assertEquals("error_conexion", VentaService.motivoRechazo(new ResourceAccessException("Connection refused")));
+        assertEquals("tiempo_agotado", VentaService.motivoRechazo(new RuntimeException("Tiempo de espera agotado al consultar los servicios de Usuarios y Productos.")));
+        assertEquals("otro", VentaService.motivoRechazo(new RuntimeException((String) null)));
+    }
+
     // Helper method para crear una solicitud de venta válida
     private SolicitudVentaDto crearSolicitudVentaValida() {
         SolicitudVentaDto solicitud = new SolicitudVentaDto();
@@ -386,7 +829,26 @@ class VentaServiceTest {
         solicitud.setProductos(Arrays.asList(item1, item2));
         return solicitud;
     }
-    
+
+    private void simularConsultasDeVentaValida() {
+        when(restTemplate.getForObject(usuariosUrl + "/1", String.class))
+            .thenReturn("{\"id\":1,\"nombre\":\"Usuario Test\"}");
+        ProductoExternoDto producto1 = new ProductoExternoDto();
+        producto1.setIdProducto(100L);
+        producto1.setNombre("Pokemon Plush");
+        producto1.setPrecio(19.99);
+        producto1.setStock(10);
+        ProductoExternoDto producto2 = new ProductoExternoDto();
+        producto2.setIdProducto(200L);
+        producto2.setNombre("Pokemon Card");
+        producto2.setPrecio(5.99);
+        producto2.setStock(20);
+        when(restTemplate.getForObject(productosUrl + "/100", ProductoExternoDto.class))
+            .thenReturn(producto1);
+        when(restTemplate.getForObject(productosUrl + "/200", ProductoExternoDto.class))
+            .thenReturn(producto2);
+    }
+
     // Helper method para setear campos privados usando reflexión
     private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
         Field field = target.getClass().getDeclaredField(fieldName);
@@ -0,0 +1,240 @@
+package com.pokeshop.ventas.stock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibroReservasTest {
+
+    @Test
+    void consumir_CuandoHayBloque_DeberiaLlamarAProductosUnaSolaVez() {
+        // Arrange
+        ProductosFalso productos = new ProductosFalso(100);
+        LibroReservas libro = new LibroReservas(10, productos);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            assertTrue(libro.consumir(1L, 2));
+        }
+
+        // Assert
+        assertEquals(1, productos.llamadas.get());
+        assertEquals(90, productos.stock.get());
+        assertEquals(0, libro.disponible(1L));
+    }
+
+    @Test
+    void consumir_CuandoNoQuedaUnBloqueEntero_DeberiaPedirSoloLoQueFalta() {
+        // Arrange
+        ProductosFalso productos = new ProductosFalso(13);
+        LibroReservas libro = new LibroReservas(10, productos);
+        assertTrue(libro.consumir(1L, 8)); // bloque de 10, quedan 2 reservadas y 3 en Productos
+
+        // Act & Assert
+        assertTrue(libro.consumir(1L, 4)); // 2 reservadas + 2 de Productos
+        assertEquals(1, productos.stock.get());
+        assertEquals(0, libro.disponible(1L));
+        assertFalse(libro.consumir(1L, 2));
+        assertEquals(1, productos.stock.get());
+    }
+
+    @Test
+    void consumir_ConVentasConcurrentes_NuncaDeberiaVenderDeMas() throws Exception {
+        // Arrange
+        ProductosFalso productos = new ProductosFalso(500);
+        LibroReservas libro = new LibroReservas(16, productos);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        AtomicInteger vendidas = new AtomicInteger();
+
+        // Act
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int hilo = 0; hilo < 8; hilo++) {
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    if (libro.consumir(1L, 1 + i % 3)) {
+                        vendidas.addAndGet(1 + i % 3);
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        ejecutor.shutdown();
+
+        // Assert
+        assertEquals(500, vendidas.get() + productos.stock.get() + libro.disponible(1L));
+        assertTrue(vendidas.get() <= 500);
+    }
+
+    @Test
+    void reponer_DeberiaVolverALaReservaSinLlamarAProductos() {
+        // Arrange
+        ProductosFalso productos = new ProductosFalso(100);
+        LibroReservas libro = new LibroReservas(10, productos);
+        libro.consumir(1L, 3);
+
+        // Act
+        libro.reponer(1L, 3);
+
+        // Assert
+        assertEquals(10, libro.disponible(1L));
+        assertEquals(1, productos.llamadas.get());
+    }
+
+    @Test
+    void devolverInactivas_DeberiaDevolverSoloLosProductosSinVentasRecientes() {
+        // Arrange
+        AtomicLong reloj = new AtomicLong();
+        ProductosFalso productos = new ProductosFalso(100);
+        LibroReservas libro = new LibroReservas(10, productos, reloj::get);
+        libro.consumir(1L, 1);
+        reloj.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        libro.consumir(2L, 1);
+
+        // Act
+        int devueltas = libro.devolverInactivas(30_000);
+
+        // Assert
+        assertEquals(9, devueltas);
+        assertEquals(0, libro.disponible(1L));
+        assertEquals(9, libro.disponible(2L));
+        assertEquals(89, productos.stock.get());
+    }
+
+    @Test
+    void devolverInactivas_CuandoProductosFalla_DeberiaConservarLaReserva() {
+        // Arrange
+        ProductosFalso productos = new ProductosFalso(100);
+        LibroReservas libro = new LibroReservas(10, productos);
+        libro.consumir(1L, 1);
+        productos.fallarDevoluciones = true;
+
+        // Act
+        int devueltas = libro.devolverTodas();
+
+        // Assert
+        assertEquals(0, devueltas);
+        assertEquals(9, libro.disponible(1L));
+    }
+
+    @Test
+    void devolverInactivas_DeberiaSacarDelMapaLasReservasInactivasQueQuedanVacias() {
+        // Arrange
+        AtomicLong reloj = new AtomicLong();
+        ProductosFalso productos = new ProductosFalso(100);
+        LibroReservas libro = new LibroReservas(10, productos, reloj::get);
+        libro.consumir(1L, 1);
+        reloj.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        libro.consumir(2L, 1);
+
+        // Act
+        libro.devolverInactivas(30_000);
+
+        // Assert - Solo queda el producto 2; el 1 vuelve a pedir un bloque si se vende otra vez
+        assertEquals(1, libro.productosEnMemoria());
+        assertTrue(libro.consumir(1L, 1));
+        assertEquals(9, libro.disponible(1L));
+        assertEquals(2, libro.productosEnMemoria());
+    }
+
+    @Test
+    void reponer_DeberiaContarComoUsoReciente() {
+        // Arrange
+        AtomicLong reloj = new AtomicLong();
+        ProductosFalso productos = new ProductosFalso(100);
+        LibroReservas libro = new LibroReservas(10, productos, reloj::get);
+        libro.consumir(1L, 3);
+        reloj.addAndGet(TimeUnit.SECONDS.toNanos(40));
+
+        // Act - Compensación de una venta que no se guardó
+        libro.reponer(1L, 3);
+        int devueltas = libro.devolverInactivas(30_000);
+
+        // Assert
+        assertEquals(0, devueltas);
+        assertEquals(10, libro.disponible(1L));
+    }
+
+    @Test
+    void devolverInactivas_ConVentasYReposicionesConcurrentes_NoDeberiaPerderUnidades() throws Exception {
+        // Arrange - Con inactividad 0 la revisión devuelve y retira la reserva casi en cada vuelta
+        ProductosFalso productos = new ProductosFalso(2000);
+        LibroReservas libro = new LibroReservas(8, productos);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(5);
+        AtomicInteger vendidas = new AtomicInteger();
+        AtomicBoolean terminado = new AtomicBoolean();
+
+        // Act
+        Future<?> revision = ejecutor.submit(() -> {
+            while (!terminado.get()) {
+                libro.devolverInactivas(0);
+            }
+        });
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int hilo = 0; hilo < 4; hilo++) {
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < 300; i++) {
+                    if (libro.consumir(1L, 1)) {
+                        vendidas.incrementAndGet();
+                        if (i % 3 == 0) {
+                            libro.reponer(1L, 1);
+                            vendidas.decrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        terminado.set(true);
+        revision.get(10, TimeUnit.SECONDS);
+        ejecutor.shutdown();
+        libro.devolverTodas();
+
+        // Assert - Todo lo que salió de Productos se vendió o volvió
+        assertEquals(2000, productos.stock.get() + vendidas.get());
+    }
+
+    // Stock de un solo producto compartido por todos los ids, como lo descuenta Productos
+    private static final class ProductosFalso implements LibroReservas.Proveedor {
+        final AtomicInteger stock;
+        final AtomicInteger llamadas = new AtomicInteger();
+        volatile boolean fallarDevoluciones;
+
+        ProductosFalso(int stock) {
+            this.stock = new AtomicInteger(stock);
+        }
+
+        @Override
+        public boolean tomar(long idProducto, int cantidad) {
+            llamadas.incrementAndGet();
+            synchronized (stock) {
+                if (stock.get() < cantidad) {
+                    return false;
+                }
+                stock.addAndGet(-cantidad);
+                return true;
+            }
+        }
+
+        @Override
+        public void devolver(long idProducto, int cantidad) {
+            if (fallarDevoluciones) {
+                throw new RuntimeException("Productos no responde");
+            }
+            stock.addAndGet(cantidad);
+        }
+    }
+}